@@ -4,6 +4,10 @@ plugins {
     alias(libs.plugins.spring.dependency.management)
 }
 
+// Démarrage rapide : classes AOT générées au build (processAot) et incluses dans le jar, utilisées au lancement
+// avec -Dspring.aot.enabled=true ; sans ce flag, le jar démarre comme avant. Voir aussi la tâche cdsArchive.
+apply(plugin = "org.springframework.boot.aot")
+
 group = "com.ycyw"
 version = "0.0.1-SNAPSHOT"
 description = "PoC Your Car Your Way"
@@ -20,6 +24,20 @@ configurations {
 	}
 }
 
+// Mesures hors JMH (démarrage, charge, relevés factices) : src/perf/java, JDK et HdrHistogram seulement
+val perf: SourceSet by sourceSets.creating
+
+// Benchmarks JMH : src/jmh/java, lancés par la tâche "jmh" ; ils réutilisent les générateurs de src/perf
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output + perf.output
+    runtimeClasspath += sourceSets.main.get().output + perf.output
+}
+
+configurations {
+    named(jmh.implementationConfigurationName) { extendsFrom(configurations.implementation.get()) }
+    named(jmh.runtimeOnlyConfigurationName) { extendsFrom(configurations.runtimeOnly.get()) }
+}
+
 repositories {
 	mavenCentral()
 }
@@ -34,6 +52,15 @@ dependencies {
     implementation(libs.jjwt.jackson)
     implementation(libs.spring.boot.starter.oauth2.resource.server)
     implementation(libs.spring.security.messaging)
+    implementation(libs.spring.boot.starter.jdbc)
+    implementation(libs.spring.boot.starter.actuator)
+    implementation(libs.jackson.dataformat.cbor)
+    implementation(libs.lucene.core)
+    implementation(libs.lucene.analysis.common)
+
+    runtimeOnly(libs.postgresql)
+    runtimeOnly(libs.h2)
+    runtimeOnly(libs.micrometer.registry.prometheus)
 
     compileOnly(libs.lombok)
     annotationProcessor(libs.lombok)
@@ -41,8 +68,113 @@ dependencies {
     testImplementation(libs.spring.boot.starter.test)
     testImplementation(libs.spring.security.test)
     testRuntimeOnly(libs.junit.platform.launcher)
+
+    "jmhImplementation"(libs.jmh.core)
+    "jmhAnnotationProcessor"(libs.jmh.generator.annprocess)
+
+    "perfImplementation"(libs.hdrhistogram)
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+// ./gradlew jmh [-Pjmh.include=<regex>] [-Pjmh.args="-wi 1 -i 3"] [-Pjmh.results=<fichier.json>]
+// Résultats JSON (build/results/jmh/results.json par défaut), comparables d'un commit à l'autre.
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks"
+    dependsOn(tasks.named("jmhClasses"))
+    classpath = jmh.runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    val results = providers.gradleProperty("jmh.results")
+        .map { layout.projectDirectory.file(it) }
+        .orElse(layout.buildDirectory.file("results/jmh/results.json"))
+    outputs.file(results)
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+    args(
+        providers.gradleProperty("jmh.include").getOrElse(".*"),
+        "-prof", "gc",
+        "-rf", "json",
+        "-rff", results.get().asFile.absolutePath,
+    )
+    providers.gradleProperty("jmh.args").orNull?.let { args(it.split(" ").filter(String::isNotBlank)) }
+}
+
+// ./gradlew generateStatement [-Pstatement.file=<fichier .csv|.jsonl>] [-Pstatement.lines=1000000]
+// Relevé de paiement factice pour le rapprochement (POST /api/payments/reconciliations), cf. StatementGenerator.
+tasks.register<JavaExec>("generateStatement") {
+    group = "benchmark"
+    description = "Writes a sample payment provider statement"
+    dependsOn(perf.classesTaskName)
+    classpath = perf.runtimeClasspath
+    mainClass = "com.ycyw.perf.StatementGenerator"
+    args(
+        providers.gradleProperty("statement.file")
+            .getOrElse(System.getProperty("java.io.tmpdir") + "/ycyw-statements/statement.csv"),
+        providers.gradleProperty("statement.lines").getOrElse("1000000"),
+    )
+}
+
+// Archive AppCDS pour le mode démarrage rapide : le jar est extrait (CDS exige un classpath de fichiers jar),
+// puis démarré une fois jusqu'au refresh du contexte pour enregistrer les classes chargées. Lancement :
+//   java -XX:SharedArchiveFile=build/cds/application.jsa -Dspring.aot.enabled=true -jar build/cds/<jar>
+val cdsDirectory = layout.buildDirectory.dir("cds")
+val bootJarFile = tasks.named<org.springframework.boot.gradle.tasks.bundling.BootJar>("bootJar").flatMap { it.archiveFile }
+val toolchainJava = javaToolchains.launcherFor(java.toolchain).map { it.executablePath.asFile.absolutePath }
+
+val extractBootJar = tasks.register<Exec>("extractBootJar") {
+    group = "build"
+    description = "Extracts the boot jar into build/cds for class data sharing"
+    inputs.file(bootJarFile)
+    outputs.dir(cdsDirectory)
+    doFirst {
+        delete(cdsDirectory)
+        commandLine(toolchainJava.get(), "-Djarmode=tools", "-jar", bootJarFile.get().asFile.absolutePath,
+            "extract", "--destination", cdsDirectory.get().asFile.absolutePath)
+    }
+}
+
+tasks.register<Exec>("cdsArchive") {
+    group = "build"
+    description = "Creates the AppCDS archive build/cds/application.jsa with a training start"
+    dependsOn(extractBootJar)
+    val archive = cdsDirectory.map { it.file("application.jsa") }
+    outputs.file(archive)
+    doFirst {
+        val searchDirectory = temporaryDir.resolve("search")
+        delete(searchDirectory)
+        commandLine(toolchainJava.get(), "-XX:ArchiveClassesAtExit=" + archive.get().asFile.absolutePath,
+            "-Dspring.aot.enabled=true", "-Dspring.context.exit=onRefresh",
+            "-jar", cdsDirectory.get().file(bootJarFile.get().asFile.name).asFile.absolutePath,
+            "--server.port=0", "--app.search.directory=" + searchDirectory.absolutePath)
+    }
+}
+
+// ./gradlew startupBenchmark [-Pstartup.runs=5]
+// Temps jusqu'au premier CONNECT STOMP accepté : jar standard contre AOT + AppCDS.
+tasks.register<JavaExec>("startupBenchmark") {
+    group = "benchmark"
+    description = "Compares time to first accepted STOMP CONNECT of the regular and fast-startup jars"
+    dependsOn("cdsArchive", perf.classesTaskName)
+    classpath = perf.runtimeClasspath
+    mainClass = "com.ycyw.perf.StartupBenchmark"
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(toolchainJava.get(), bootJarFile.get().asFile.absolutePath,
+            cdsDirectory.get().file(bootJarFile.get().asFile.name).asFile.absolutePath,
+            cdsDirectory.get().file("application.jsa").asFile.absolutePath,
+            providers.gradleProperty("startup.runs").getOrElse("5"))
+    })
+}
+
+// ./gradlew stompLoad [-Pload.args="--guests=2000 --agents=4 --guest-rate=0.5 --duration=60"]
+// Contre une instance démarrée à part, par exemple : ./gradlew bootRun --args='--app.ratelimit.enabled=false'
+tasks.register<JavaExec>("stompLoad") {
+    group = "benchmark"
+    description = "Drives simulated guest and employee STOMP sessions against a local instance and reports latency percentiles"
+    classpath = perf.runtimeClasspath
+    mainClass = "com.ycyw.perf.StompLoadGenerator"
+    argumentProviders.add(CommandLineArgumentProvider {
+        providers.gradleProperty("load.args").map { it.split(" ").filter(String::isNotBlank) }.getOrElse(emptyList())
+    })
+}
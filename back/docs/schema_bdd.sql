@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS "RevokedToken" CASCADE;
 DROP TABLE IF EXISTS "Message" CASCADE;
 DROP TABLE IF EXISTS "Conversation" CASCADE;
 DROP TABLE IF EXISTS "Payment" CASCADE;
@@ -6,6 +7,7 @@ DROP TABLE IF EXISTS "Vehicle" CASCADE;
 DROP TABLE IF EXISTS "Agency" CASCADE;
 DROP TABLE IF EXISTS "User" CASCADE;
 
+DROP TYPE IF EXISTS revoked_token_kind CASCADE;
 DROP TYPE IF EXISTS conversation_status CASCADE;
 DROP TYPE IF EXISTS payment_status CASCADE;
 DROP TYPE IF EXISTS rental_status CASCADE;
@@ -20,6 +22,7 @@ CREATE TYPE currency        AS ENUM ('EUR','USD','GBP');
 CREATE TYPE rental_status   AS ENUM ('PENDING','CONFIRMED','IN_PROGRESS','COMPLETED','CANCELLED','OVERDUE','REFUNDED');
 CREATE TYPE payment_status  AS ENUM ('PENDING','SUCCEEDED','FAILED','REFUNDED');
 CREATE TYPE conversation_status AS ENUM ('OPEN','CLOSED');
+CREATE TYPE revoked_token_kind  AS ENUM ('USED','FAMILY');
 
 CREATE TABLE "User" (
                         user_id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -103,6 +106,7 @@ CREATE TABLE "Rental" (
 CREATE INDEX idx_rental_user ON "Rental"(user_id);
 CREATE INDEX idx_rental_vehicle ON "Rental"(vehicle_id);
 CREATE INDEX idx_rental_status ON "Rental"(status);
+CREATE INDEX idx_rental_status_end ON "Rental"(status, end_at);
 CREATE INDEX idx_rental_pickup_return ON "Rental"(pickup_agency_id, return_agency_id);
 
 CREATE TABLE "Payment" (
@@ -124,7 +128,8 @@ CREATE INDEX idx_payment_status ON "Payment"(status);
 
 CREATE TABLE "Conversation" (
                                 conversation_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-                                client_id       BIGINT NOT NULL,
+                                client_key      VARCHAR(64) NOT NULL,
+                                client_id       BIGINT NULL,
                                 agent_id        BIGINT NULL,
                                 status          conversation_status NOT NULL DEFAULT 'OPEN',
                                 created_at      TIMESTAMPTZ NOT NULL DEFAULT NOW(),
@@ -136,11 +141,15 @@ CREATE TABLE "Conversation" (
 CREATE INDEX idx_conversation_status ON "Conversation"(status);
 CREATE INDEX idx_conversation_client ON "Conversation"(client_id);
 CREATE INDEX idx_conversation_agent  ON "Conversation"(agent_id);
+CREATE INDEX idx_conversation_client_key ON "Conversation"(client_key, status);
 
 CREATE TABLE "Message" (
                            message_id      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
                            conversation_id BIGINT NOT NULL,
-                           sender_id       BIGINT NOT NULL,
+                           sender_id       BIGINT NULL,
+                           sender_name     VARCHAR(255),
+                           sender_role     VARCHAR(30) NOT NULL,
+                           type            VARCHAR(10) NOT NULL DEFAULT 'CHAT',
                            content         TEXT NOT NULL,
                            sent_at         TIMESTAMPTZ NOT NULL DEFAULT NOW(),
                            is_read         BOOLEAN NOT NULL DEFAULT FALSE,
@@ -151,3 +160,10 @@ CREATE TABLE "Message" (
 CREATE INDEX idx_message_conversation ON "Message"(conversation_id, sent_at);
 CREATE INDEX idx_message_sender       ON "Message"(sender_id);
 
+CREATE TABLE "RevokedToken" (
+                                token_id        VARCHAR(64) PRIMARY KEY,
+                                kind            revoked_token_kind NOT NULL,
+                                expires_at      TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX idx_revoked_token_kind ON "RevokedToken"(kind, expires_at);
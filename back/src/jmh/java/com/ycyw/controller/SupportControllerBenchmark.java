@@ -0,0 +1,120 @@
+package com.ycyw.controller;
+
+import com.ycyw.cluster.*;
+import com.ycyw.dto.ClientMsg;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import com.ycyw.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routage d’un message client par {@link SupportController#fromClient}, avec un
+ * {@link SimpMessagingTemplate} dont le canal se contente de compter les envois.
+ * <ul>
+ *     <li><code>dispatched</code> : débit soutenu avec le vrai dispatcher ; quand les files sont pleines,
+ *     l’appelant est freiné par la contre-pression au lieu de perdre des messages ;</li>
+ *     <li><code>inline</code> : routage complet (conversion JSON et envois) exécuté sur le thread appelant.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SupportControllerBenchmark {
+
+	@Param({"dispatched", "inline"})
+	public String mode;
+
+	private final LongAdder sent = new LongAdder();
+	private ConversationDispatcher dispatcher;
+	private ClusterRelay cluster;
+	private SupportController controller;
+	private ClientMsg msg;
+	private SimpMessageHeaderAccessor sha;
+
+	@Setup
+	public void setUp() {
+		MessageChannel countingChannel = new MessageChannel() {
+			@Override
+			public boolean send(Message<?> message, long timeout) {
+				sent.increment();
+				return true;
+			}
+		};
+		SimpMessagingTemplate messaging = new SimpMessagingTemplate(countingChannel);
+
+		dispatcher = "inline".equals(mode)
+				? new InlineDispatcher()
+				: new ConversationDispatcher(256, 1024, 1000, true);
+		dispatcher.start();
+
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		JdbcTemplate unusedJdbc = new JdbcTemplate();
+		// services de persistance et d’indexation non démarrés : seule la mise en file est mesurée
+		ChatPersistenceService persistence = new ChatPersistenceService(
+				new ConversationRepository(unusedJdbc), new MessageRepository(unusedJdbc),
+				new TransactionTemplate(), registry, 1 << 20, 500, 200, 10_000);
+		SupportSearchService search = new SupportSearchService(new MessageRepository(unusedJdbc), registry,
+				Path.of("unused"), false, 1 << 20, 1000, 1000, 60_000);
+		// nœud unique : le relais livre au broker local sans trafic de cluster
+		ClusterTransport transport = new InProcessClusterTransport(new InProcessClusterTransport.Hub());
+		SessionDirectory directory = new SessionDirectory(transport, event -> { }, "bench");
+		cluster = new ClusterRelay(transport, directory, messaging, Jackson2ObjectMapperBuilder.json().build());
+		PresenceRegistry presence = new PresenceRegistry(directory, messaging);
+		AgentAssignmentService assignments = new AgentAssignmentService(directory, presence, cluster, persistence, new ConversationRepository(unusedJdbc));
+		ConversationHistoryService history = new ConversationHistoryService(new MessageRepository(unusedJdbc),
+				new ConversationRepository(unusedJdbc), persistence, registry, 50, 10_000);
+		ReadReceiptService receipts = new ReadReceiptService(cluster, persistence);
+		SupportRouter router = new SupportRouter(dispatcher, assignments, history, persistence, search, receipts, cluster);
+		router.registerWithCluster();
+		cluster.start();
+		controller = new SupportController(router, history, presence, receipts);
+
+		msg = new ClientMsg("Bonjour, ma réservation YCYW-48213 est-elle confirmée ?", "CHAT", null, "GUEST", null);
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put("clientId", "3f1c2a9e-8b7d-4c1e-9f0a-5d6b7c8e9f01");
+		sha = SimpMessageHeaderAccessor.create();
+		sha.setSessionAttributes(attributes);
+		sha.setLeaveMutable(true);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		dispatcher.stop();
+		cluster.stop();
+	}
+
+	@Benchmark
+	public void fromClient() {
+		controller.fromClient(msg, null, null, sha);
+	}
+
+	/** Exécute le routage sur le thread appelant pour en mesurer le coût complet. */
+	static final class InlineDispatcher extends ConversationDispatcher {
+		InlineDispatcher() {
+			super(1, 1, 0, true);
+		}
+
+		@Override
+		public boolean dispatch(String key, Runnable task) {
+			task.run();
+			return true;
+		}
+	}
+}
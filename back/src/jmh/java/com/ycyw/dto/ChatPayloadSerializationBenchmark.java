@@ -0,0 +1,75 @@
+package com.ycyw.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycyw.security.PayloadEncoding;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût Jackson des charges utiles STOMP : sérialisation d’un {@link AdminMsg} sortant
+ * et désérialisation d’un {@link ClientMsg} entrant, en JSON et en CBOR ({@link PayloadEncoding}).
+ * <p>
+ * La taille sur le fil de chaque format est affichée au démarrage du benchmark. <code>outboundFrame</code>
+ * reproduit le chemin réel d’un envoi : sérialisation JSON par le template, puis transcodage pour une
+ * session CBOR.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatPayloadSerializationBenchmark {
+
+	@Param({"json", "cbor"})
+	public String format;
+
+	private ObjectMapper json;
+	private ObjectMapper mapper;
+	private PayloadEncoding encoding;
+	private AdminMsg adminMsg;
+	private byte[] adminPayload;
+	private byte[] clientPayload;
+
+	@Setup
+	public void setUp() throws IOException {
+		json = Jackson2ObjectMapperBuilder.json().build();
+		mapper = "cbor".equals(format) ? PayloadEncoding.cborMapper() : json;
+		encoding = new PayloadEncoding();
+		adminMsg = new AdminMsg("3f1c2a9e-8b7d-4c1e-9f0a-5d6b7c8e9f01", "bob", "ROLE_CLIENT",
+				Instant.parse("2025-01-01T10:00:00.123456Z"), "Bonjour, ma réservation YCYW-48213 est-elle confirmée ?", "CHAT");
+		adminPayload = mapper.writeValueAsBytes(adminMsg);
+		byte[] clientJson = ("{\"content\":\"Bonjour, ma réservation YCYW-48213 est-elle confirmée ?\",\"type\":\"CHAT\","
+				+ "\"sender\":\"bob\",\"role\":\"CLIENT\",\"clientId\":\"3f1c2a9e-8b7d-4c1e-9f0a-5d6b7c8e9f01\"}")
+				.getBytes(StandardCharsets.UTF_8);
+		clientPayload = mapper.writeValueAsBytes(json.readValue(clientJson, ClientMsg.class));
+		System.out.printf("%n%s: AdminMsg %d bytes, ClientMsg %d bytes%n", format, adminPayload.length, clientPayload.length);
+	}
+
+	@Benchmark
+	public byte[] serializeAdminMsg() throws IOException {
+		return mapper.writeValueAsBytes(adminMsg);
+	}
+
+	@Benchmark
+	public AdminMsg deserializeAdminMsg() throws IOException {
+		return mapper.readValue(adminPayload, AdminMsg.class);
+	}
+
+	@Benchmark
+	public ClientMsg deserializeClientMsg() throws IOException {
+		return mapper.readValue(clientPayload, ClientMsg.class);
+	}
+
+	@Benchmark
+	public byte[] outboundFrame() throws IOException {
+		byte[] payload = json.writeValueAsBytes(adminMsg);
+		return "cbor".equals(format) ? encoding.transcode(payload) : payload;
+	}
+}
@@ -0,0 +1,76 @@
+package com.ycyw.security;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Émission d’un couple access/refresh token : pipeline Nimbus d’origine contre {@link JwtTokenMinter}.
+ * <p>
+ * Lancer avec <code>./gradlew jmh -Pjmh.include=JwtTokenMinting</code> ; le profileur GC fournit
+ * l’allocation par opération (<code>gc.alloc.rate.norm</code>).
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenMintingBenchmark {
+
+	private static final String SECRET = "MySecretForYourCarYourWay4l1f3xo";
+	private static final long ACCESS_MS = 900_000;
+	private static final long REFRESH_MS = 604_800_000;
+
+	private UserDetails user;
+	private JwtEncoder nimbusEncoder;
+	private JwtTokenMinter minter;
+
+	@Setup
+	public void setUp() {
+		user = User.withUsername("alice").password("x").roles("EMPLOYEE").build();
+		nimbusEncoder = new NimbusJwtEncoder(new ImmutableSecret<>(SECRET.getBytes()));
+		minter = new JwtTokenMinter(SECRET, ACCESS_MS, REFRESH_MS);
+	}
+
+	/** Implémentation d’origine de JwtTokenUtil : deux encodages Nimbus complets. */
+	@Benchmark
+	public String[] nimbusAccessAndRefresh() {
+		List<String> roles = user.getAuthorities().stream()
+				.map(GrantedAuthority::getAuthority)
+				.map(a -> a.startsWith("ROLE_") ? a.substring(5) : a)
+				.toList();
+
+		Instant now = Instant.now();
+		JwtClaimsSet access = JwtClaimsSet.builder()
+				.subject(user.getUsername())
+				.issuedAt(now)
+				.expiresAt(now.plusMillis(ACCESS_MS))
+				.claim("roles", roles)
+				.build();
+		JwtClaimsSet refresh = JwtClaimsSet.builder()
+				.subject(user.getUsername())
+				.issuedAt(now)
+				.expiresAt(now.plusMillis(REFRESH_MS))
+				.build();
+
+		return new String[]{
+				nimbusEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), access)).getTokenValue(),
+				nimbusEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), refresh)).getTokenValue()
+		};
+	}
+
+	@Benchmark
+	public JwtTokenMinter.TokenPair minterAccessAndRefresh() {
+		return minter.mint(user);
+	}
+}
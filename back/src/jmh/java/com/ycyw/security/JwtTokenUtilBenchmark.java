@@ -0,0 +1,60 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Émission d’un access token par {@link JwtTokenMinter} et décodage d’un token existant,
+ * avec ou sans le cache de JWT vérifiés. Le pipeline Nimbus d’origine est comparé dans
+ * {@link JwtTokenMintingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtTokenUtilBenchmark {
+
+	private static final String SECRET = "MySecretForYourCarYourWay4l1f3xo";
+
+	@Param({"true", "false"})
+	public boolean cachedDecoder;
+
+	private JwtTokenMinter minter;
+	private JwtDecoder decoder;
+	private UserDetails user;
+	private String token;
+
+	@Setup
+	public void setUp() {
+		JwtDecoder nimbus = NimbusJwtDecoder
+				.withSecretKey(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"))
+				.build();
+		decoder = cachedDecoder
+				? new CachingJwtDecoder(nimbus, 10_000, Duration.ofMinutes(15), new SimpleMeterRegistry())
+				: nimbus;
+		user = User.withUsername("alice").password("x").roles("EMPLOYEE").build();
+		minter = new JwtTokenMinter(SECRET, 900_000, 604_800_000);
+		token = minter.mintAccessToken(user);
+	}
+
+	@Benchmark
+	public String generate() {
+		return minter.mintAccessToken(user);
+	}
+
+	@Benchmark
+	public String decode() {
+		return decoder.decode(token).getSubject();
+	}
+}
@@ -0,0 +1,94 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Les deux {@link ChannelInterceptor} de {@link WebSocketConfig} sur des trames CONNECT (avec JWT)
+ * et SEND, avec ou sans le cache de JWT vérifiés.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebSocketInterceptorBenchmark {
+
+	private static final String SECRET = "MySecretForYourCarYourWay4l1f3xo";
+
+	@Param({"true", "false"})
+	public boolean cachedDecoder;
+
+	private ChannelInterceptor stompAuth;
+	private ChannelInterceptor clientId;
+	private MessageChannel channel;
+	private Message<byte[]> connect;
+	private Message<byte[]> send;
+
+	@Setup
+	public void setUp() {
+		JwtDecoder nimbus = NimbusJwtDecoder
+				.withSecretKey(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"))
+				.build();
+		CachingJwtDecoder caching = new CachingJwtDecoder(nimbus, 10_000, Duration.ofMinutes(15), new SimpleMeterRegistry());
+
+		JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+		authorities.setAuthoritiesClaimName("roles");
+		authorities.setAuthorityPrefix("ROLE_");
+		JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+		converter.setJwtGrantedAuthoritiesConverter(cachedDecoder ? caching.cachingAuthorities(authorities) : authorities);
+
+		WebSocketConfig config = new WebSocketConfig(cachedDecoder ? caching : nimbus, converter, new SimpleMeterRegistry(), null);
+		stompAuth = config.stompAuthInterceptor();
+		clientId = config.clientIdInterceptor();
+		channel = (message, timeout) -> true;
+
+		String token = new JwtTokenMinter(SECRET, 900_000, 604_800_000)
+				.mintAccessToken(User.withUsername("alice").password("x").roles("EMPLOYEE").build());
+		connect = frame(StompCommand.CONNECT, token);
+		send = frame(StompCommand.SEND, null);
+	}
+
+	private static Message<byte[]> frame(StompCommand command, String token) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setSessionId("s1");
+		accessor.setSessionAttributes(new HashMap<>());
+		accessor.setNativeHeader("X-Client-Id", "3f1c2a9e-8b7d-4c1e-9f0a-5d6b7c8e9f01");
+		if (token != null) {
+			accessor.setNativeHeader("Authorization", "Bearer " + token);
+		}
+		if (command == StompCommand.SEND) {
+			accessor.setDestination("/app/support.message");
+		}
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	@Benchmark
+	public Message<?> connectFrame() {
+		return clientId.preSend(stompAuth.preSend(connect, channel), channel);
+	}
+
+	@Benchmark
+	public Message<?> sendFrame() {
+		return clientId.preSend(stompAuth.preSend(send, channel), channel);
+	}
+}
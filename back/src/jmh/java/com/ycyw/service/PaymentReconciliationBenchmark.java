@@ -0,0 +1,120 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.ReconciliationReport;
+import com.ycyw.perf.StatementGenerator;
+import com.ycyw.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rapprochement complet d’un relevé de <code>lines</code> lignes ({@link StatementGenerator}) avec autant de
+ * paiements <code>PENDING</code> dans H2 en mémoire : lecture, une requête et un batch d’écriture par lot.
+ * Les statuts sont remis à <code>PENDING</code> avant chaque itération.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class PaymentReconciliationBenchmark {
+
+	@Param({"500000"})
+	public int lines;
+
+	@Param({"csv", "jsonl"})
+	public String format;
+
+	@Param({"1000"})
+	public int batchSize;
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private Path directory;
+	private Path statement;
+	private PaymentReconciliationService reconciliation;
+
+	@Setup
+	public void setUp() throws IOException {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		jdbc.update("INSERT INTO \"Agency\" (agency_id, name) VALUES (1, 'Paris')");
+		jdbc.update("INSERT INTO \"User\" (user_id, email, password) VALUES (1, 'bob', 'x')");
+		jdbc.update("""
+				INSERT INTO "Vehicle" (vehicle_id, owner_agency_id, current_agency_id, category, license_plate)
+				VALUES (1, 1, 1, 'citadine', 'AA-001-ZZ')""");
+		jdbc.update("""
+				INSERT INTO "Rental" (rental_id, pickup_agency_id, return_agency_id, user_id, vehicle_id, start_at, end_at,
+				                      amount, currency)
+				VALUES (1, 1, 1, 1, 1, TIMESTAMP WITH TIME ZONE '2026-01-01 10:00:00+00',
+				        TIMESTAMP WITH TIME ZONE '2026-01-02 10:00:00+00', 200.00, 'EUR')""");
+		insertPayments(jdbc, 1, lines);
+
+		directory = Files.createTempDirectory("ycyw-statements");
+		statement = directory.resolve("statement." + format);
+		StatementGenerator.write(statement, lines, 42);
+		reconciliation = new PaymentReconciliationService(new PaymentRepository(jdbc),
+				new TransactionTemplate(new DataSourceTransactionManager(db)), new SimpleMeterRegistry(),
+				directory, batchSize, new StatementReader(), Clock.systemUTC());
+	}
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		jdbc.update("UPDATE \"Payment\" SET status = 'PENDING', updated_at = NULL");
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		db.shutdown();
+		Files.deleteIfExists(statement);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public ReconciliationReport reconcile() throws IOException {
+		return reconciliation.reconcile(statement.getFileName().toString()).orElseThrow();
+	}
+
+	/** Insère les paiements <code>pi_0</code> à <code>pi_(count - 1)</code>, <code>PENDING</code>, sur la location <code>rentalId</code>. */
+	private static void insertPayments(JdbcTemplate jdbc, long rentalId, int count) {
+		int batch = 10_000;
+		for (int from = 0; from < count; from += batch) {
+			int offset = from;
+			int size = Math.min(batch, count - from);
+			jdbc.batchUpdate("""
+					INSERT INTO "Payment" (rental_id, amount, currency, status, method, provider_payment_id)
+					VALUES (?, ?, 'EUR', 'PENDING', 'card', ?)""", new BatchPreparedStatementSetter() {
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					ps.setLong(1, rentalId);
+					ps.setBigDecimal(2, StatementGenerator.amountOf(offset + i));
+					ps.setString(3, StatementGenerator.providerId(offset + i));
+				}
+
+				@Override
+				public int getBatchSize() {
+					return size;
+				}
+			});
+		}
+	}
+}
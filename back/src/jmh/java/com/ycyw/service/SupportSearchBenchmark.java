@@ -0,0 +1,107 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.dto.SearchResults;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence d’une recherche {@link SupportSearchService} sur un index de <code>messages</code> messages
+ * (3 000 conversations, vocabulaire de 20 000 mots, une immatriculation et une référence de réservation
+ * par message), construit au démarrage par le chemin d’indexation réel.
+ * <ul>
+ *     <li><code>commonTerm</code> : deux termes fréquents (8 % et 4 % des messages) ;</li>
+ *     <li><code>stopWord</code> : terme présent dans 40 % des messages, pire cas ;</li>
+ *     <li><code>plate</code> : immatriculation, cherchée comme une expression ;</li>
+ *     <li><code>phraseInConversation</code> : expression filtrée par conversation et période.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SupportSearchBenchmark {
+
+	private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+	private static final int CONVERSATIONS = 3000;
+	private static final int VOCABULARY = 20_000;
+
+	@Param({"1000000"})
+	public int messages;
+
+	private Path dir;
+	private SupportSearchService search;
+
+	@Setup
+	public void setUp() throws IOException, InterruptedException {
+		dir = Files.createTempDirectory("ycyw-search-bench");
+		search = new SupportSearchService(new MessageRepository(new JdbcTemplate()), new SimpleMeterRegistry(),
+				dir, false, 1 << 16, 10_000, 100, 600_000);
+		search.start();
+
+		SplittableRandom random = new SplittableRandom(42);
+		long start = System.nanoTime();
+		for (int i = 0; i < messages; i++) {
+			String clientId = "client-" + (i % CONVERSATIONS);
+			StringBuilder content = new StringBuilder(96);
+			for (int w = 0; w < 8; w++) {
+				// distribution de Zipf approchée : quelques mots très fréquents, une longue traîne
+				int word = (int) Math.pow(VOCABULARY, random.nextDouble());
+				content.append("mot").append(word).append(' ');
+			}
+			content.append(plate(i)).append(" YCYW-").append(i);
+			AdminMsg msg = new AdminMsg(clientId, "client", "GUEST", T0.plusSeconds(i), content.toString(), "CHAT");
+			while (!search.enqueue(msg, "agent-" + (i % 20))) {
+				Thread.onSpinWait();
+			}
+		}
+		while (search.search("ycyw-" + (messages - 1), null, null, null, null, 1).hits().isEmpty()) {
+			Thread.sleep(100);
+		}
+		System.out.printf("%nIndexed %d messages in %d ms%n", messages,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		search.stop();
+		FileSystemUtils.deleteRecursively(dir);
+	}
+
+	@Benchmark
+	public SearchResults stopWord() {
+		return search.search("mot1", null, null, null, null, 20);
+	}
+
+	@Benchmark
+	public SearchResults commonTerm() {
+		return search.search("mot10 mot20", null, null, null, null, 20);
+	}
+
+	@Benchmark
+	public SearchResults plate() {
+		return search.search(plate(messages / 2), null, null, null, null, 20);
+	}
+
+	@Benchmark
+	public SearchResults phraseInConversation() {
+		return search.search("\"mot1 mot2\"", "client-42", null, T0, T0.plusSeconds(messages / 2), 20);
+	}
+
+	private static String plate(int i) {
+		return String.format("%c%c-%03d-%c%c", 'A' + i % 26, 'A' + i / 26 % 26, i / 676 % 1000,
+				'A' + i / 7 % 26, 'A' + i / 11 % 26);
+	}
+}
@@ -0,0 +1,92 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AvailableVehicles;
+import com.ycyw.dto.RentalInterval;
+import com.ycyw.dto.VehicleSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche de disponibilité {@link VehicleAvailabilityService} sur une flotte de <code>vehicles</code> véhicules
+ * (200 agences, 10 catégories, soit ~50 véhicules par groupe) et <code>rentals</code> locations bloquantes
+ * réparties sur l’année à venir (~100 par véhicule, sans chevauchement), index construit par le chemin de
+ * reconstruction réel.
+ * <ul>
+ *     <li><code>weekend</code> : période de 3 jours, agence et catégorie tirées au hasard ;</li>
+ *     <li><code>month</code> : période de 30 jours, peu de véhicules libres.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class VehicleAvailabilityBenchmark {
+
+	private static final int AGENCIES = 200;
+	private static final String[] CATEGORIES = {"citadine", "compacte", "berline", "break", "SUV", "monospace", "utilitaire", "electric", "cabriolet", "premium"};
+	private static final Instant T0 = Instant.now().truncatedTo(ChronoUnit.DAYS);
+	private static final int HORIZON_HOURS = 365 * 24;
+
+	@Param({"100000"})
+	public int vehicles;
+
+	@Param({"10000000"})
+	public int rentals;
+
+	private VehicleAvailabilityService availability;
+	private SplittableRandom random;
+
+	@Setup
+	public void setUp() {
+		availability = new VehicleAvailabilityService(null, null, new SimpleMeterRegistry());
+		int perVehicle = rentals / vehicles;
+		int slot = HORIZON_HOURS / perVehicle;
+		long start = System.nanoTime();
+		availability.rebuild(
+				consumer -> {
+					for (int v = 0; v < vehicles; v++) {
+						consumer.accept(new VehicleSummary(v, v % AGENCIES, CATEGORIES[v / AGENCIES % CATEGORIES.length], true));
+					}
+				},
+				consumer -> {
+					SplittableRandom data = new SplittableRandom(42);
+					long id = 0;
+					// une location par créneau de "slot" heures, durée 1 h à slot - 1 h, dans le désordre
+					for (int r = 0; r < perVehicle; r++) {
+						for (int v = 0; v < vehicles; v++) {
+							int offset = data.nextInt(slot / 2);
+							Instant begin = T0.plus(Duration.ofHours((long) r * slot + offset));
+							Instant end = begin.plus(Duration.ofHours(1 + data.nextInt(slot - offset - 1)));
+							consumer.accept(new RentalInterval(id++, v, begin, end, true));
+						}
+					}
+				});
+		System.out.printf("%nIndexed %d vehicles, %d rentals in %d ms%n", vehicles, rentals,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		random = new SplittableRandom(7);
+	}
+
+	@Benchmark
+	public AvailableVehicles weekend() {
+		return search(Duration.ofDays(3));
+	}
+
+	@Benchmark
+	public AvailableVehicles month() {
+		return search(Duration.ofDays(30));
+	}
+
+	private AvailableVehicles search(Duration length) {
+		Instant from = T0.plus(Duration.ofHours(random.nextInt(HORIZON_HOURS - 24 * 30)));
+		return availability.findAvailable(random.nextInt(AGENCIES), CATEGORIES[random.nextInt(CATEGORIES.length)],
+				from, from.plus(length));
+	}
+}
@@ -0,0 +1,74 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.CatalogResults;
+import com.ycyw.dto.CatalogVehicle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche {@link VehicleCatalogService} sur un catalogue de <code>vehicles</code> véhicules (200 agences dans
+ * 50 villes, 10 catégories, 12 marques).
+ * <ul>
+ *     <li><code>cached</code> : une ville et une catégorie parmi 500 combinaisons, servies par le cache ;</li>
+ *     <li><code>scan</code> : même recherche sans cache (taille 0), donc parcours complet des colonnes.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VehicleCatalogBenchmark {
+
+	private static final String[] CATEGORIES = {"citadine", "compacte", "berline", "break", "SUV", "monospace", "utilitaire", "electric", "cabriolet", "premium"};
+	private static final String[] BRANDS = {"Renault", "Peugeot", "Citroën", "Dacia", "Toyota", "Volkswagen",
+			"Fiat", "Ford", "Opel", "Kia", "Hyundai", "Tesla"};
+	private static final int CITIES = 50;
+
+	@Param({"100000"})
+	public int vehicles;
+
+	private VehicleCatalogService catalog;
+	private VehicleCatalogService uncached;
+	private SplittableRandom random;
+
+	@Setup
+	public void setUp() {
+		catalog = catalogue(1000);
+		uncached = catalogue(0);
+		random = new SplittableRandom(7);
+	}
+
+	private VehicleCatalogService catalogue(int cacheSize) {
+		VehicleCatalogService service = new VehicleCatalogService(null, new SimpleMeterRegistry(), cacheSize);
+		SplittableRandom data = new SplittableRandom(42);
+		service.rebuild(consumer -> {
+			for (int v = 0; v < vehicles; v++) {
+				int agency = v % 200;
+				consumer.accept(new CatalogVehicle(v, BRANDS[data.nextInt(BRANDS.length)], "model",
+						CATEGORIES[v / 200 % CATEGORIES.length], 2 + data.nextInt(8), agency, "city" + agency % CITIES));
+			}
+		});
+		return service;
+	}
+
+	@Benchmark
+	public CatalogResults cached() {
+		return catalog.search(query());
+	}
+
+	@Benchmark
+	public CatalogResults scan() {
+		return uncached.search(query());
+	}
+
+	private VehicleCatalogService.Query query() {
+		return new VehicleCatalogService.Query(Set.of(CATEGORIES[random.nextInt(CATEGORIES.length)]), Set.of(),
+				Set.of(), Set.of("city" + random.nextInt(CITIES)), 0, 20);
+	}
+}
@@ -2,10 +2,12 @@ package com.ycyw;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 
 @SpringBootApplication
 @EnableWebSecurity
+@ImportRuntimeHints(ChatRuntimeHints.class)
 public class ChatApplication {
 
 	public static void main(String[] args) {
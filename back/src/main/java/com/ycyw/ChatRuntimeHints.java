@@ -0,0 +1,26 @@
+package com.ycyw;
+
+import com.ycyw.dto.*;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Indications AOT : types (dé)sérialisés par Jackson (JSON, CBOR) sur HTTP, STOMP et entre nœuds du cluster,
+ * dont {@link AdminReply} (classe Lombok, liée par ses accesseurs), et scripts SQL lus au démarrage.
+ */
+public class ChatRuntimeHints implements RuntimeHintsRegistrar {
+
+	static final Class<?>[] BOUND_TYPES = {
+			AdminMsg.class, AdminReply.class, ClientMsg.class, ConversationNotice.class, UnreadCount.class,
+			PresenceDelta.class, PresenceSnapshot.class, HistoryPage.class, SearchResults.class, SearchHit.class,
+			AuthenticationDTO.class, AuthenticationResponseDTO.class, AvailableVehicles.class,
+			CatalogResults.class, CatalogVehicle.class, ReconciliationReport.class
+	};
+
+	@Override
+	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+		new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BOUND_TYPES);
+		hints.resources().registerPattern("db/*.sql");
+	}
+}
@@ -0,0 +1,51 @@
+package com.ycyw.cluster;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+@Configuration
+public class ClusterConfig {
+
+	/**
+	 * Transport du cluster ({@code app.cluster.transport}) :
+	 * <code>local</code> (nœud unique, par défaut) ou <code>tcp</code>
+	 * (<code>app.cluster.bindAddress</code>, <code>app.cluster.port</code>,
+	 * <code>app.cluster.peers=hôte:port,...</code>, secret partagé <code>app.cluster.secret</code> obligatoire).
+	 */
+	@Bean
+	public ClusterTransport clusterTransport(@Value("${app.cluster.transport:local}") String transport,
+											 @Value("${app.cluster.bindAddress:127.0.0.1}") String bindAddress,
+											 @Value("${app.cluster.port:7700}") int port,
+											 @Value("${app.cluster.peers:}") List<String> peers,
+											 @Value("${app.cluster.queueCapacity:10000}") int queueCapacity,
+											 @Value("${app.cluster.secret:}") String secret,
+											 MeterRegistry registry) throws UnknownHostException {
+		if ("tcp".equalsIgnoreCase(transport)) {
+			if (secret.isBlank()) {
+				throw new IllegalStateException("app.cluster.secret is required with app.cluster.transport=tcp");
+			}
+			List<InetSocketAddress> addresses = peers.stream()
+					.filter(peer -> !peer.isBlank())
+					.map(ClusterConfig::address)
+					.toList();
+			return new TcpClusterTransport(InetAddress.getByName(bindAddress), port, addresses, queueCapacity,
+					secret, registry);
+		}
+		return new InProcessClusterTransport(new InProcessClusterTransport.Hub());
+	}
+
+	private static InetSocketAddress address(String peer) {
+		int colon = peer.lastIndexOf(':');
+		if (colon <= 0) {
+			throw new IllegalArgumentException("Cluster peer must be host:port, got " + peer);
+		}
+		return new InetSocketAddress(peer.substring(0, colon).trim(), Integer.parseInt(peer.substring(colon + 1).trim()));
+	}
+}
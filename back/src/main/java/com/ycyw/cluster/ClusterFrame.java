@@ -0,0 +1,125 @@
+package com.ycyw.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+
+/**
+ * Trame échangée entre les nœuds du cluster.
+ * <p>
+ * Le sens de <code>target</code> et <code>subject</code> dépend du type :
+ * </p>
+ * <ul>
+ *     <li>{@link Type#DELIVER} : <code>target</code> = destination STOMP, <code>payload</code> = corps JSON ;</li>
+ *     <li>{@link Type#CLIENT_MESSAGE} : message d’un client à traiter sur le nœud de la conversation ;</li>
+ *     <li>{@link Type#AGENT_MESSAGE} : réponse d’un agent, <code>subject</code> = nom de l’agent ;</li>
+ *     <li>{@link Type#CLAIM} / {@link Type#RELEASE} : <code>target</code> = {@link SessionDirectory.Kind},
+ *     <code>subject</code> = identifiant possédé ;</li>
+ *     <li>{@link Type#HELLO} : poignée de main du transport TCP, <code>target</code> = nodeId,
+ *     <code>subject</code> = port d’écoute, <code>timestamp</code> = instant d’émission,
+ *     <code>payload</code> = HMAC du secret partagé ;</li>
+ *     <li>{@link Type#REVOKE} : refresh token consommé ou famille révoquée, <code>target</code> = sorte
+ *     (<code>USED</code>, <code>FAMILY</code> si absente), <code>subject</code> = identifiant,
+ *     <code>timestamp</code> = fin de validité de l’entrée.</li>
+ * </ul>
+ * <p>
+ * Une trame lue dont la charge dépasse {@link #MAX_PAYLOAD} ou dont le type est inconnu est refusée
+ * (<code>IOException</code>) : la longueur annoncée vient du pair et n’est jamais allouée telle quelle.
+ * </p>
+ */
+public record ClusterFrame(Type type, String target, String subject, Instant timestamp, byte[] payload) {
+
+	public enum Type {DELIVER, CLIENT_MESSAGE, AGENT_MESSAGE, CLAIM, RELEASE, HELLO, REVOKE}
+
+	/** Taille maximale de la charge d’une trame (les messages STOMP sont limités à 64 Kio). */
+	public static final int MAX_PAYLOAD = 1 << 20;
+
+	private static final Type[] TYPES = Type.values();
+
+	public static ClusterFrame deliver(String destination, Instant receivedAt, byte[] json) {
+		return new ClusterFrame(Type.DELIVER, destination, null, receivedAt, json);
+	}
+
+	public static ClusterFrame clientMessage(byte[] json) {
+		return new ClusterFrame(Type.CLIENT_MESSAGE, null, null, null, json);
+	}
+
+	public static ClusterFrame agentMessage(String agent, byte[] json) {
+		return new ClusterFrame(Type.AGENT_MESSAGE, null, agent, null, json);
+	}
+
+	public static ClusterFrame claim(SessionDirectory.Kind kind, String id) {
+		return new ClusterFrame(Type.CLAIM, kind.name(), id, null, null);
+	}
+
+	public static ClusterFrame release(SessionDirectory.Kind kind, String id) {
+		return new ClusterFrame(Type.RELEASE, kind.name(), id, null, null);
+	}
+
+	public static ClusterFrame revoke(String kind, String id, Instant expiresAt) {
+		return new ClusterFrame(Type.REVOKE, kind, id, expiresAt, null);
+	}
+
+	static ClusterFrame hello(String nodeId, int port, Instant sentAt, byte[] mac) {
+		return new ClusterFrame(Type.HELLO, nodeId, Integer.toString(port), sentAt, mac);
+	}
+
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeByte(type.ordinal());
+		writeNullable(out, target);
+		writeNullable(out, subject);
+		out.writeBoolean(timestamp != null);
+		if (timestamp != null) {
+			out.writeLong(timestamp.getEpochSecond());
+			out.writeInt(timestamp.getNano());
+		}
+		out.writeInt(payload != null ? payload.length : -1);
+		if (payload != null) {
+			out.write(payload);
+		}
+	}
+
+	static ClusterFrame readFrom(DataInputStream in) throws IOException {
+		int ordinal = in.readUnsignedByte();
+		if (ordinal >= TYPES.length) {
+			throw new IOException("Unknown cluster frame type " + ordinal);
+		}
+		Type type = TYPES[ordinal];
+		String target = readNullable(in);
+		String subject = readNullable(in);
+		Instant timestamp = in.readBoolean() ? readInstant(in) : null;
+		int length = in.readInt();
+		if (length > MAX_PAYLOAD) {
+			throw new IOException("Cluster frame payload of " + length + " bytes exceeds " + MAX_PAYLOAD);
+		}
+		byte[] payload = null;
+		if (length >= 0) {
+			payload = new byte[length];
+			in.readFully(payload);
+		}
+		return new ClusterFrame(type, target, subject, timestamp, payload);
+	}
+
+	private static Instant readInstant(DataInputStream in) throws IOException {
+		long seconds = in.readLong();
+		int nanos = in.readInt();
+		try {
+			return Instant.ofEpochSecond(seconds, nanos);
+		} catch (DateTimeException e) {
+			throw new IOException("Invalid cluster frame timestamp", e);
+		}
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
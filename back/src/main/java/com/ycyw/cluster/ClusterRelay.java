@@ -0,0 +1,206 @@
+package com.ycyw.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycyw.dto.AdminMsg;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Set;
+
+import static com.ycyw.metrics.StompMetrics.RECEIVED_AT;
+import static com.ycyw.metrics.StompMetrics.receivedAt;
+
+/**
+ * Relais des messages de support entre les nœuds du cluster.
+ * <p>
+ * Chaque envoi est livré au broker local, puis uniquement aux autres nœuds qui détiennent une session pour
+ * le destinataire d’après le {@link SessionDirectory} ; le corps JSON est sérialisé une seule fois et
+ * transmis tel quel au broker distant. Les messages d’une conversation sont traités sur son nœud de
+ * référence ({@link SessionDirectory#homeOf(String)}) : un nœud qui reçoit un message d’une conversation
+ * dont il n’est pas la référence le lui transmet via {@link #forwardClientMessage} / {@link #forwardAgentMessage}.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ClusterRelay implements ClusterTransport.Receiver {
+
+	/** Traitement, sur le nœud de référence, des messages transmis par les autres nœuds. */
+	public interface CommandHandler {
+
+		void onClientMessage(AdminMsg msg);
+
+		void onAgentMessage(AdminMsg msg, String agent);
+	}
+
+	/** Refresh tokens consommés et familles révoquées, annoncés par les autres nœuds. */
+	public interface RevocationHandler {
+
+		void onRevoked(String kind, String id, Instant expiresAt);
+	}
+
+	private final ClusterTransport transport;
+	private final SessionDirectory directory;
+	private final SimpMessagingTemplate messaging;
+	private final ObjectMapper objectMapper;
+
+	private volatile CommandHandler commandHandler;
+	private volatile RevocationHandler revocationHandler;
+
+	public ClusterRelay(ClusterTransport transport,
+						SessionDirectory directory,
+						SimpMessagingTemplate messaging,
+						ObjectMapper objectMapper) {
+		this.transport = transport;
+		this.directory = directory;
+		this.messaging = messaging;
+		this.objectMapper = objectMapper;
+	}
+
+	@PostConstruct
+	public void start() {
+		transport.start(directory.nodeId(), this);
+	}
+
+	@PreDestroy
+	public void stop() {
+		transport.stop();
+	}
+
+	public void setCommandHandler(CommandHandler commandHandler) {
+		this.commandHandler = commandHandler;
+	}
+
+	public void setRevocationHandler(RevocationHandler revocationHandler) {
+		this.revocationHandler = revocationHandler;
+	}
+
+	public String homeOf(String clientId) {
+		return directory.homeOf(clientId);
+	}
+
+	public boolean isLocal(String nodeId) {
+		return directory.nodeId().equals(nodeId);
+	}
+
+	/** Envoie sur <code>/queue/support/{clientId}</code>, sur chaque nœud où le client est connecté. */
+	public void sendToClient(String clientId, Object payload, Instant receivedAt) {
+		String destination = "/queue/support/" + clientId;
+		messaging.convertAndSend(destination, payload, receivedAt(receivedAt));
+		relay(directory.nodesFor(SessionDirectory.Kind.CLIENT, clientId), destination, payload, receivedAt);
+	}
+
+	/** Envoie sur la destination utilisateur <code>/user/{user}{destination}</code>, où que l’utilisateur soit connecté. */
+	public void sendToUser(String user, String destination, Object payload, Instant receivedAt) {
+		messaging.convertAndSendToUser(user, destination, payload, receivedAt(receivedAt));
+		relay(directory.nodesFor(SessionDirectory.Kind.USER, user), "/user/" + user + destination, payload, receivedAt);
+	}
+
+	/** Envoie sur un topic réservé aux agents, sur chaque nœud où un agent est connecté. */
+	public void sendToAgents(String destination, Object payload) {
+		messaging.convertAndSend(destination, payload);
+		relay(directory.agentNodes(), destination, payload, null);
+	}
+
+	public void forwardClientMessage(String home, AdminMsg msg) {
+		transport.send(home, ClusterFrame.clientMessage(json(msg)));
+	}
+
+	public void forwardAgentMessage(String home, AdminMsg msg, String agent) {
+		transport.send(home, ClusterFrame.agentMessage(agent, json(msg)));
+	}
+
+	/** Annonce une révocation à tous les autres nœuds (sans garantie de livraison). */
+	public void broadcastRevocation(String kind, String id, Instant expiresAt) {
+		transport.broadcast(ClusterFrame.revoke(kind, id, expiresAt));
+	}
+
+	private void relay(Set<String> nodes, String destination, Object payload, Instant receivedAt) {
+		byte[] body = null;
+		for (String node : nodes) {
+			if (node.equals(directory.nodeId())) {
+				continue;
+			}
+			if (body == null) {
+				body = json(payload);
+			}
+			transport.send(node, ClusterFrame.deliver(destination, receivedAt, body));
+		}
+	}
+
+	@Override
+	public void onFrame(String fromNode, ClusterFrame frame) {
+		switch (frame.type()) {
+			case DELIVER -> deliver(frame);
+			case CLIENT_MESSAGE -> handler().onClientMessage(read(frame.payload()));
+			case AGENT_MESSAGE -> handler().onAgentMessage(read(frame.payload()), frame.subject());
+			case CLAIM -> directory.onClaim(fromNode, frame);
+			case RELEASE -> directory.onRelease(fromNode, frame);
+			case HELLO -> { /* propre au transport */ }
+			case REVOKE -> revoked(frame);
+		}
+	}
+
+	@Override
+	public void onNodeJoined(String nodeId) {
+		log.info("Cluster node {} joined", nodeId);
+		directory.syncTo(nodeId);
+	}
+
+	@Override
+	public void onNodeLeft(String nodeId) {
+		log.info("Cluster node {} left", nodeId);
+		directory.dropNode(nodeId);
+	}
+
+	/** Corps déjà sérialisé : transmis tel quel au broker local. */
+	private void deliver(ClusterFrame frame) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		if (frame.timestamp() != null) {
+			accessor.setHeader(RECEIVED_AT, frame.timestamp());
+		}
+		accessor.setLeaveMutable(true);
+		messaging.send(frame.target(), MessageBuilder.createMessage(frame.payload(), accessor.getMessageHeaders()));
+	}
+
+	private void revoked(ClusterFrame frame) {
+		RevocationHandler handler = revocationHandler;
+		if (handler != null) {
+			handler.onRevoked(frame.target(), frame.subject(), frame.timestamp());
+		}
+	}
+
+	private CommandHandler handler() {
+		CommandHandler handler = commandHandler;
+		if (handler == null) {
+			throw new IllegalStateException("No cluster command handler registered");
+		}
+		return handler;
+	}
+
+	private byte[] json(Object payload) {
+		try {
+			return objectMapper.writeValueAsBytes(payload);
+		} catch (JsonProcessingException e) {
+			throw new IllegalArgumentException("Cannot serialize " + payload.getClass().getSimpleName(), e);
+		}
+	}
+
+	private AdminMsg read(byte[] json) {
+		try {
+			return objectMapper.readValue(json, AdminMsg.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package com.ycyw.cluster;
+
+/**
+ * Transport des trames entre nœuds ({@code app.cluster.transport}).
+ * <p>
+ * Implémentations fournies : {@link InProcessClusterTransport} (nœuds dans une même JVM, ou nœud unique)
+ * et {@link TcpClusterTransport}. Un transport n’offre aucune garantie de livraison : un nœud qui
+ * (re)joint le cluster reçoit l’état complet de l’annuaire via {@link Receiver#onNodeJoined(String)}.
+ * </p>
+ */
+public interface ClusterTransport {
+
+	/** Démarre le transport pour le nœud <code>nodeId</code>. */
+	void start(String nodeId, Receiver receiver);
+
+	/** Envoie une trame à un nœud ; ignorée si le nœud n’est pas (ou plus) joignable. */
+	void send(String nodeId, ClusterFrame frame);
+
+	/** Envoie une trame à tous les autres nœuds connus. */
+	void broadcast(ClusterFrame frame);
+
+	void stop();
+
+	/**
+	 * Réception des trames et des changements de topologie. Les appels pour un même nœud émetteur
+	 * arrivent dans l’ordre d’envoi.
+	 */
+	interface Receiver {
+
+		void onFrame(String fromNode, ClusterFrame frame);
+
+		/** Le nœud est joignable : c’est le moment de lui envoyer l’état local. */
+		void onNodeJoined(String nodeId);
+
+		/** Le nœud a quitté le cluster : ses sessions doivent être oubliées. */
+		void onNodeLeft(String nodeId);
+	}
+}
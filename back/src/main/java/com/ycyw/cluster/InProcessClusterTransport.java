@@ -0,0 +1,98 @@
+package com.ycyw.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Transport entre nœuds d’une même JVM, reliés par un {@link Hub}.
+ * <p>
+ * Avec un hub privé, c’est le transport d’un nœud unique (<code>app.cluster.transport=local</code>) ;
+ * plusieurs instances partageant un hub permettent de tester un cluster sans réseau. Chaque nœud traite
+ * ses trames sur son propre thread virtuel, dans l’ordre d’arrivée.
+ * </p>
+ */
+@Slf4j
+public class InProcessClusterTransport implements ClusterTransport {
+
+	/** Nœuds reliés entre eux. */
+	public static final class Hub {
+		private final Map<String, InProcessClusterTransport> nodes = new ConcurrentHashMap<>();
+	}
+
+	private final Hub hub;
+	private final BlockingQueue<Runnable> mailbox = new LinkedBlockingQueue<>();
+
+	private String nodeId;
+	private Receiver receiver;
+	private Thread worker;
+
+	public InProcessClusterTransport(Hub hub) {
+		this.hub = hub;
+	}
+
+	@Override
+	public void start(String nodeId, Receiver receiver) {
+		this.nodeId = nodeId;
+		this.receiver = receiver;
+		this.worker = Thread.ofVirtual().name("cluster-" + nodeId).start(this::drain);
+		synchronized (hub) {
+			hub.nodes.forEach((otherId, other) -> {
+				other.post(() -> other.receiver.onNodeJoined(nodeId));
+				post(() -> receiver.onNodeJoined(otherId));
+			});
+			hub.nodes.put(nodeId, this);
+		}
+	}
+
+	@Override
+	public void send(String targetNode, ClusterFrame frame) {
+		InProcessClusterTransport target = hub.nodes.get(targetNode);
+		if (target != null && target != this) {
+			target.post(() -> target.receiver.onFrame(nodeId, frame));
+		}
+	}
+
+	@Override
+	public void broadcast(ClusterFrame frame) {
+		hub.nodes.forEach((otherId, other) -> {
+			if (other != this) {
+				other.post(() -> other.receiver.onFrame(nodeId, frame));
+			}
+		});
+	}
+
+	@Override
+	public void stop() {
+		synchronized (hub) {
+			if (nodeId == null || !hub.nodes.remove(nodeId, this)) {
+				return;
+			}
+			hub.nodes.values().forEach(other -> other.post(() -> other.receiver.onNodeLeft(nodeId)));
+		}
+		worker.interrupt();
+	}
+
+	private void post(Runnable delivery) {
+		mailbox.add(delivery);
+	}
+
+	private void drain() {
+		while (true) {
+			Runnable delivery;
+			try {
+				delivery = mailbox.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				delivery.run();
+			} catch (RuntimeException e) {
+				log.warn("Cluster frame handling failed on node {}: {}", nodeId, e.toString());
+			}
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package com.ycyw.cluster;
+
+/**
+ * Un client ou un agent vient d’ouvrir sa première session dans le cluster (<code>online</code>) ou d’en
+ * fermer la dernière. Les écouteurs peuvent recevoir deux événements d’un même identifiant dans le désordre :
+ * l’état courant fait foi ({@link SessionDirectory#nodesFor}).
+ */
+public record PresenceEvent(SessionDirectory.Kind kind, String id, boolean online) {
+}
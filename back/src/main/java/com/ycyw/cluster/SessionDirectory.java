@@ -0,0 +1,222 @@
+package com.ycyw.cluster;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Annuaire des sessions du cluster : quel nœud détient une session pour quel client, utilisateur ou agent.
+ * <p>
+ * Les sessions locales sont suivies via les événements STOMP ; seules les transitions (première session /
+ * dernière session d’un identifiant sur ce nœud) sont diffusées aux autres nœuds ({@link ClusterFrame.Type#CLAIM},
+ * {@link ClusterFrame.Type#RELEASE}). Chaque nœud tient ainsi une copie complète de l’annuaire, ce qui permet
+ * d’envoyer un message uniquement aux nœuds concernés.
+ * </p>
+ * <p>
+ * Les changements de présence d’un client ou d’un agent à l’échelle du cluster sont publiés en {@link PresenceEvent}.
+ * </p>
+ */
+@Component
+public class SessionDirectory {
+
+	public enum Kind {
+		/** <code>clientId</code> (en-tête <code>X-Client-Id</code>), pour <code>/queue/support/{clientId}</code>. */
+		CLIENT,
+		/** Utilisateur authentifié, pour les destinations <code>/user/...</code>. */
+		USER,
+		/** Employé connecté (agent de support). */
+		AGENT
+	}
+
+	private final String nodeId;
+	private final ClusterTransport transport;
+	private final ApplicationEventPublisher events;
+
+	/** Kind → identifiant → nœuds détenant au moins une session (y compris ce nœud). */
+	private final Map<Kind, Map<String, Set<String>>> owners = new EnumMap<>(Kind.class);
+	/** Sessions locales par identifiant, pour ne diffuser que les transitions. */
+	private final Map<Kind, Map<String, Integer>> localCounts = new EnumMap<>(Kind.class);
+	/** sessionId → identifiants revendiqués par la session. */
+	private final Map<String, List<Claim>> sessionClaims = new ConcurrentHashMap<>();
+
+	private record Claim(Kind kind, String id) {
+	}
+
+	public SessionDirectory(ClusterTransport transport,
+							ApplicationEventPublisher events,
+							@Value("${app.cluster.nodeId:}") String nodeId) {
+		this.transport = transport;
+		this.events = events;
+		this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+		for (Kind kind : Kind.values()) {
+			owners.put(kind, new ConcurrentHashMap<>());
+			localCounts.put(kind, new ConcurrentHashMap<>());
+		}
+	}
+
+	public String nodeId() {
+		return nodeId;
+	}
+
+	/** Nœuds détenant une session pour cet identifiant. */
+	public Set<String> nodesFor(Kind kind, String id) {
+		Set<String> nodes = owners.get(kind).get(id);
+		return nodes != null ? nodes : Set.of();
+	}
+
+	/**
+	 * Nœud de référence d’une conversation : le plus petit identifiant parmi les nœuds où le client est
+	 * connecté (déterministe sur tous les nœuds), ce nœud s’il n’est connecté nulle part.
+	 */
+	public String homeOf(String clientId) {
+		String home = null;
+		for (String node : nodesFor(Kind.CLIENT, clientId)) {
+			if (home == null || node.compareTo(home) < 0) {
+				home = node;
+			}
+		}
+		return home != null ? home : nodeId;
+	}
+
+	/** <code>true</code> si le client est connecté sur ce nœud et que ce nœud est la référence de sa conversation. */
+	public boolean isLocalHome(String clientId) {
+		Set<String> nodes = nodesFor(Kind.CLIENT, clientId);
+		return nodes.contains(nodeId) && homeOf(clientId).equals(nodeId);
+	}
+
+	public boolean isAgentOnline(String agent) {
+		return owners.get(Kind.AGENT).containsKey(agent);
+	}
+
+	public Set<String> onlineAgents() {
+		return owners.get(Kind.AGENT).keySet();
+	}
+
+	/** Nœuds ayant au moins un agent connecté (destinataires des notifications de support). */
+	public Set<String> agentNodes() {
+		Set<String> nodes = new HashSet<>();
+		owners.get(Kind.AGENT).values().forEach(nodes::addAll);
+		return nodes;
+	}
+
+	@EventListener
+	public void onConnected(SessionConnectedEvent event) {
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+		if (sessionId == null) {
+			return;
+		}
+		List<Claim> claims = new ArrayList<>(3);
+		String clientId = clientIdOf(event.getMessage());
+		if (clientId != null) {
+			claims.add(new Claim(Kind.CLIENT, clientId));
+		}
+		Principal user = event.getUser();
+		if (user != null) {
+			claims.add(new Claim(Kind.USER, user.getName()));
+			if (user instanceof Authentication auth && auth.getAuthorities().stream()
+					.anyMatch(a -> "ROLE_EMPLOYEE".equals(a.getAuthority()))) {
+				claims.add(new Claim(Kind.AGENT, user.getName()));
+			}
+		}
+		if (claims.isEmpty() || sessionClaims.putIfAbsent(sessionId, claims) != null) {
+			return;
+		}
+		claims.forEach(claim -> {
+			if (localCounts.get(claim.kind).merge(claim.id, 1, Integer::sum) == 1) {
+				addOwner(claim.kind, claim.id, nodeId);
+				transport.broadcast(ClusterFrame.claim(claim.kind, claim.id));
+			}
+		});
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		List<Claim> claims = sessionClaims.remove(event.getSessionId());
+		if (claims == null) {
+			return;
+		}
+		claims.forEach(claim -> {
+			if (localCounts.get(claim.kind).computeIfPresent(claim.id, (k, n) -> n > 1 ? n - 1 : null) == null) {
+				removeOwner(claim.kind, claim.id, nodeId);
+				transport.broadcast(ClusterFrame.release(claim.kind, claim.id));
+			}
+		});
+	}
+
+	void onClaim(String node, ClusterFrame frame) {
+		addOwner(Kind.valueOf(frame.target()), frame.subject(), node);
+	}
+
+	void onRelease(String node, ClusterFrame frame) {
+		removeOwner(Kind.valueOf(frame.target()), frame.subject(), node);
+	}
+
+	/** Envoie au nœud qui rejoint le cluster toutes les revendications locales. */
+	void syncTo(String node) {
+		localCounts.forEach((kind, counts) ->
+				counts.keySet().forEach(id -> transport.send(node, ClusterFrame.claim(kind, id))));
+	}
+
+	/** Oublie toutes les sessions d’un nœud parti. */
+	void dropNode(String node) {
+		owners.forEach((kind, ids) -> {
+			for (String id : List.copyOf(ids.keySet())) {
+				if (ids.getOrDefault(id, Set.of()).contains(node)) {
+					removeOwner(kind, id, node);
+				}
+			}
+		});
+	}
+
+	private void addOwner(Kind kind, String id, String node) {
+		boolean[] first = {false};
+		owners.get(kind).compute(id, (k, nodes) -> {
+			if (nodes == null) {
+				nodes = ConcurrentHashMap.newKeySet();
+				first[0] = true;
+			}
+			nodes.add(node);
+			return nodes;
+		});
+		if (first[0] && kind != Kind.USER) {
+			events.publishEvent(new PresenceEvent(kind, id, true));
+		}
+	}
+
+	private void removeOwner(Kind kind, String id, String node) {
+		boolean[] last = {false};
+		owners.get(kind).computeIfPresent(id, (k, nodes) -> {
+			nodes.remove(node);
+			last[0] = nodes.isEmpty();
+			return last[0] ? null : nodes;
+		});
+		if (last[0] && kind != Kind.USER) {
+			events.publishEvent(new PresenceEvent(kind, id, false));
+		}
+	}
+
+	/** Le <code>clientId</code> est posé dans les attributs de session lors du CONNECT. */
+	private static String clientIdOf(Message<?> connectedAck) {
+		Object connect = connectedAck.getHeaders().get(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+		Map<String, Object> attributes = connect instanceof Message<?> m
+				? SimpMessageHeaderAccessor.getSessionAttributes(m.getHeaders())
+				: SimpMessageHeaderAccessor.getSessionAttributes(connectedAck.getHeaders());
+		return attributes != null && attributes.get("clientId") instanceof String id ? id : null;
+	}
+}
@@ -0,0 +1,342 @@
+package com.ycyw.cluster;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport TCP entre nœuds (<code>app.cluster.transport=tcp</code>).
+ * <p>
+ * Chaque nœud écoute sur <code>app.cluster.port</code> et ouvre une connexion sortante vers chaque pair
+ * de <code>app.cluster.peers</code> (<code>hôte:port</code>, la liste peut contenir le nœud lui-même). Un pair
+ * inconnu qui se connecte est rappelé sur le port annoncé dans son {@link ClusterFrame.Type#HELLO}.
+ * Chaque sens utilise sa propre connexion : les trames sortantes passent par une file bornée par pair,
+ * vidée par un thread virtuel (écritures regroupées tant que la file n’est pas vide) ; une file pleine
+ * fait perdre la trame (<code>cluster.frames{result=dropped}</code>).
+ * </p>
+ * <p>
+ * Un pair est « joint » dès que la connexion sortante est établie, et « parti » lorsque sa connexion
+ * entrante se ferme. Les connexions sortantes perdues sont rétablies avec un délai croissant.
+ * </p>
+ * <p>
+ * Le port n’écoute que sur <code>app.cluster.bindAddress</code>. Les deux {@link ClusterFrame.Type#HELLO} d’une
+ * connexion portent un HMAC-SHA256 du secret partagé <code>app.cluster.secret</code> sur (nodeId, port, instant) :
+ * une poignée de main mal signée, trop ancienne ({@link #HELLO_MAX_SKEW}) ou rejouée ferme la connexion. Les trames
+ * ne sont ni chiffrées ni signées ensuite : le port doit rester sur un réseau privé.
+ * </p>
+ */
+@Slf4j
+public class TcpClusterTransport implements ClusterTransport {
+
+	private static final String HMAC = "HmacSHA256";
+	private static final long MAX_BACKOFF_MS = 5_000;
+	private static final int HANDSHAKE_TIMEOUT_MS = 5_000;
+	static final Duration HELLO_MAX_SKEW = Duration.ofSeconds(30);
+
+	private final InetAddress bindAddress;
+	private final int port;
+	private final SecretKeySpec secret;
+	private final List<InetSocketAddress> seeds;
+	private final int queueCapacity;
+
+	private final Map<InetSocketAddress, Peer> peersByAddress = new ConcurrentHashMap<>();
+	private final Map<String, Peer> peersById = new ConcurrentHashMap<>();
+
+	/** HMAC des HELLO acceptés pendant {@link #HELLO_MAX_SKEW}, contre le rejeu : HMAC → instant d’émission. */
+	private final Map<ByteBuffer, Instant> recentHellos = new ConcurrentHashMap<>();
+
+	private final Counter sent;
+	private final Counter received;
+	private final Counter dropped;
+	private final Counter rejected;
+
+	private String nodeId;
+	private Receiver receiver;
+	private ServerSocket server;
+	private volatile boolean running;
+
+	public TcpClusterTransport(InetAddress bindAddress, int port, List<InetSocketAddress> seeds, int queueCapacity,
+							   String secret, MeterRegistry registry) {
+		if (secret == null || secret.isBlank()) {
+			throw new IllegalArgumentException("A shared cluster secret is required");
+		}
+		this.bindAddress = bindAddress;
+		this.port = port;
+		this.seeds = List.copyOf(seeds);
+		this.queueCapacity = queueCapacity;
+		this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+		this.sent = Counter.builder("cluster.frames").tag("result", "sent").register(registry);
+		this.received = Counter.builder("cluster.frames").tag("result", "received").register(registry);
+		this.dropped = Counter.builder("cluster.frames").tag("result", "dropped").register(registry);
+		this.rejected = Counter.builder("cluster.handshakes").tag("result", "rejected")
+				.description("Cluster connections refused for a missing, stale or replayed HELLO signature")
+				.register(registry);
+	}
+
+	@Override
+	public void start(String nodeId, Receiver receiver) {
+		this.nodeId = nodeId;
+		this.receiver = receiver;
+		try {
+			server = new ServerSocket(port, 50, bindAddress);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot listen on cluster address " + bindAddress + ":" + port, e);
+		}
+		running = true;
+		Thread.ofVirtual().name("cluster-accept").start(this::accept);
+		seeds.forEach(this::connectTo);
+	}
+
+	/** Port d’écoute effectif (utile avec <code>app.cluster.port=0</code>). */
+	public int getLocalPort() {
+		return server.getLocalPort();
+	}
+
+	@Override
+	public void send(String targetNode, ClusterFrame frame) {
+		Peer peer = peersById.get(targetNode);
+		if (peer == null || !peer.queue.offer(frame)) {
+			dropped.increment();
+		}
+	}
+
+	@Override
+	public void broadcast(ClusterFrame frame) {
+		peersById.values().forEach(peer -> {
+			if (!peer.queue.offer(frame)) {
+				dropped.increment();
+			}
+		});
+	}
+
+	@Override
+	public void stop() {
+		running = false;
+		try {
+			server.close();
+		} catch (IOException ignored) {
+			// arrêt
+		}
+		peersByAddress.values().forEach(Peer::close);
+	}
+
+	private void connectTo(InetSocketAddress address) {
+		peersByAddress.computeIfAbsent(address, a -> {
+			Peer peer = new Peer(a);
+			peer.writer = Thread.ofVirtual().name("cluster-out-" + a).start(peer::run);
+			return peer;
+		});
+	}
+
+	private void accept() {
+		while (running) {
+			try {
+				Socket socket = server.accept();
+				Thread.ofVirtual().name("cluster-in").start(() -> read(socket));
+			} catch (IOException e) {
+				if (running) {
+					log.warn("Cluster accept failed: {}", e.toString());
+				}
+			}
+		}
+	}
+
+	/** Lecture d’une connexion entrante : HELLO, puis les trames du pair jusqu’à la fermeture. */
+	private void read(Socket socket) {
+		String from = null;
+		try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+			socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+			ClusterFrame hello = ClusterFrame.readFrom(in);
+			if (!verify(hello)) {
+				rejected.increment();
+				log.warn("Cluster connection from {} refused: invalid HELLO", socket.getRemoteSocketAddress());
+				return;
+			}
+			socket.setSoTimeout(0);
+			from = hello.target();
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			hello().writeTo(out);
+			out.flush();
+			if (nodeId.equals(from)) {
+				return;
+			}
+			if (!peersById.containsKey(from)) {
+				connectTo(new InetSocketAddress(socket.getInetAddress(), Integer.parseInt(hello.subject())));
+			}
+			while (running) {
+				ClusterFrame frame = ClusterFrame.readFrom(in);
+				received.increment();
+				try {
+					receiver.onFrame(from, frame);
+				} catch (RuntimeException e) {
+					log.warn("Cluster frame handling failed for node {}: {}", from, e.toString());
+				}
+			}
+		} catch (IOException e) {
+			log.debug("Cluster connection from {} closed: {}", from, e.toString());
+		}
+		if (from != null && !from.equals(nodeId) && running) {
+			receiver.onNodeLeft(from);
+		}
+	}
+
+	private ClusterFrame hello() {
+		Instant now = Instant.now();
+		int listenPort = getLocalPort();
+		return ClusterFrame.hello(nodeId, listenPort, now, mac(nodeId, Integer.toString(listenPort), now));
+	}
+
+	/** HELLO signé par le secret partagé, récent, et jamais vu : à accepter. */
+	private boolean verify(ClusterFrame hello) {
+		if (hello.type() != ClusterFrame.Type.HELLO || hello.target() == null || hello.subject() == null
+				|| hello.timestamp() == null || hello.payload() == null) {
+			return false;
+		}
+		Instant now = Instant.now();
+		if (Duration.between(hello.timestamp(), now).abs().compareTo(HELLO_MAX_SKEW) > 0) {
+			return false;
+		}
+		if (!MessageDigest.isEqual(hello.payload(), mac(hello.target(), hello.subject(), hello.timestamp()))) {
+			return false;
+		}
+		recentHellos.values().removeIf(sentAt -> Duration.between(sentAt, now).abs().compareTo(HELLO_MAX_SKEW) > 0);
+		return recentHellos.putIfAbsent(ByteBuffer.wrap(hello.payload()), hello.timestamp()) == null;
+	}
+
+	private byte[] mac(String node, String listenPort, Instant sentAt) {
+		try {
+			Mac mac = Mac.getInstance(HMAC);
+			mac.init(secret);
+			mac.update((node + "\n" + listenPort + "\n" + sentAt.getEpochSecond() + "." + sentAt.getNano())
+					.getBytes(StandardCharsets.UTF_8));
+			return mac.doFinal();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(HMAC + " not available", e);
+		}
+	}
+
+	/**
+	 * Connexion sortante vers un pair, rétablie tant que le transport tourne.
+	 */
+	private final class Peer {
+		private final InetSocketAddress address;
+		private final BlockingQueue<ClusterFrame> queue = new ArrayBlockingQueue<>(queueCapacity);
+		private volatile String peerId;
+		private volatile Socket socket;
+		private Thread writer;
+
+		private Peer(InetSocketAddress address) {
+			this.address = address;
+		}
+
+		private void run() {
+			long backoff = 100;
+			while (running) {
+				try (Socket s = new Socket()) {
+					socket = s;
+					s.connect(address, 2_000);
+					s.setTcpNoDelay(true);
+					s.setKeepAlive(true);
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+					hello().writeTo(out);
+					out.flush();
+					s.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+					ClusterFrame reply = ClusterFrame.readFrom(new DataInputStream(s.getInputStream()));
+					if (!verify(reply)) {
+						rejected.increment();
+						throw new IOException("invalid HELLO reply");
+					}
+					s.setSoTimeout(0);
+					String id = reply.target();
+					if (nodeId.equals(id)) {
+						// notre propre adresse dans la liste des pairs
+						peersByAddress.remove(address, this);
+						return;
+					}
+					peerId = id;
+					peersById.put(id, this);
+					receiver.onNodeJoined(id);
+					backoff = 100;
+					pump(out);
+				} catch (IOException e) {
+					log.debug("Cluster link to {} failed: {}", address, e.toString());
+				} finally {
+					if (peerId != null) {
+						peersById.remove(peerId, this);
+					}
+				}
+				sleep(backoff);
+				backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+			}
+		}
+
+		private void pump(DataOutputStream out) throws IOException {
+			while (running) {
+				ClusterFrame frame;
+				try {
+					frame = queue.poll(1, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (frame == null) {
+					continue;
+				}
+				frame.writeTo(out);
+				sent.increment();
+				// écritures regroupées : un seul flush tant que la file n’est pas vide
+				while ((frame = queue.poll()) != null) {
+					frame.writeTo(out);
+					sent.increment();
+				}
+				out.flush();
+			}
+		}
+
+		private void close() {
+			Socket s = socket;
+			if (s != null) {
+				try {
+					s.close();
+				} catch (IOException ignored) {
+					// arrêt
+				}
+			}
+			if (writer != null) {
+				writer.interrupt();
+			}
+		}
+
+		private void sleep(long ms) {
+			try {
+				Thread.sleep(ms);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
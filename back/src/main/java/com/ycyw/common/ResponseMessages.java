@@ -12,4 +12,6 @@ public class ResponseMessages {
 	public static final String AUTHENTICATION_FAILED = "Authentication failed. User could not be authenticated.";
 	public static final String INVALID_JWT = "Invalid or missing JWT token";
 	public static final String REFRESH_TOKEN_NOT_FOUND = "No refresh token found.";
+	public static final String TOO_MANY_LOGIN_ATTEMPTS = "Too many concurrent login attempts for this user. Please retry shortly.";
+	public static final String LOGIN_OVERLOADED = "Login is temporarily unavailable. Please retry shortly.";
 }
\ No newline at end of file
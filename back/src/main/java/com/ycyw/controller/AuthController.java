@@ -11,6 +11,7 @@ import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.Authentication;
@@ -32,7 +33,7 @@ public class AuthController {
 
 	private final AuthenticationManager authenticationManager;
 
-	public AuthController(JwtTokenUtil jwtService, UserService userService, AuthenticationManager authenticationManager) {
+	public AuthController(JwtTokenUtil jwtService, UserService userService, @Lazy AuthenticationManager authenticationManager) {
 		this.jwtService = jwtService;
 		this.userService = userService;
 		this.authenticationManager = authenticationManager;
@@ -50,8 +51,7 @@ public class AuthController {
 
 		UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
-		String token = jwtService.generateToken(userDetails);
-		jwtService.generateAndSetRefreshToken(userDetails, response);
+		String token = jwtService.issueTokens(userDetails, response);
 
 		return ResponseEntity.ok(new AuthenticationResponseDTO(token));
 
@@ -94,38 +94,48 @@ public class AuthController {
 
 	@PostMapping("/refresh")
 	public ResponseEntity<AuthenticationResponseDTO> refreshToken(HttpServletRequest request, HttpServletResponse response) {
-		Cookie[] cookies = request.getCookies();
-		if (cookies == null) {
-			jwtService.clearRefreshToken(response);
-			throw new RefreshTokenException(REFRESH_TOKEN_NOT_FOUND);
-		}
-
-		String refreshToken = null;
-		for (Cookie cookie : cookies) {
-			if ("refreshToken".equals(cookie.getName())) {
-				refreshToken = cookie.getValue();
-				break;
-			}
-		}
-
+		String refreshToken = refreshTokenOf(request);
 		if (refreshToken == null) {
 			jwtService.clearRefreshToken(response);
-			throw new RefreshTokenException(INVALID_JWT);
+			throw new RefreshTokenException(request.getCookies() == null ? REFRESH_TOKEN_NOT_FOUND : INVALID_JWT);
 		}
 
-		UserDetails user;
+		String newAccessToken;
 		try {
-			// Vérifier et extraire l'userdetails depuis le refresh token
-			user = jwtService.extractUserDetailsFromToken(refreshToken);
+			// Rotation : le refresh token présenté est consommé et remplacé par un nouveau de la même famille
+			newAccessToken = jwtService.rotateTokens(refreshToken, response);
 		} catch (InvalidJwtException e) {
 			jwtService.clearRefreshToken(response);
 			throw new RefreshTokenException(INVALID_JWT);
 		}
 
-		// Génère un nouvel access token et refresh token
-		String newAccessToken = jwtService.generateToken(user);
-		jwtService.generateAndSetRefreshToken(user, response);
-
 		return ResponseEntity.ok(new AuthenticationResponseDTO(newAccessToken));
 	}
+
+	/**
+	 * Déconnexion : révoque la famille du refresh token, qui n’est envoyé par le navigateur que sous
+	 * {@code /api/refresh}.
+	 */
+	@PostMapping("/refresh/revoke")
+	public ResponseEntity<?> revokeRefreshToken(HttpServletRequest request, HttpServletResponse response) {
+		String refreshToken = refreshTokenOf(request);
+		if (refreshToken != null) {
+			jwtService.revokeRefreshToken(refreshToken);
+		}
+		jwtService.clearRefreshToken(response);
+		return ResponseEntity.noContent().build();
+	}
+
+	private static String refreshTokenOf(HttpServletRequest request) {
+		Cookie[] cookies = request.getCookies();
+		if (cookies == null) {
+			return null;
+		}
+		for (Cookie cookie : cookies) {
+			if ("refreshToken".equals(cookie.getName())) {
+				return cookie.getValue();
+			}
+		}
+		return null;
+	}
 }
@@ -0,0 +1,42 @@
+package com.ycyw.controller;
+
+import com.ycyw.dto.ReconciliationReport;
+import com.ycyw.service.PaymentReconciliationService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+@RestController
+@RequestMapping("/api/payments/reconciliations")
+public class PaymentReconciliationController {
+
+	private final PaymentReconciliationService reconciliation;
+
+	public PaymentReconciliationController(PaymentReconciliationService reconciliation) {
+		this.reconciliation = reconciliation;
+	}
+
+	/**
+	 * Rapproche le relevé <code>statement</code> déposé dans le répertoire des relevés, pour les employés ;
+	 * <code>404</code> s’il est absent, <code>400</code> si le nom ou le format est invalide, <code>422</code> si
+	 * son en-tête est inexploitable et <code>409</code> si un rapprochement est déjà en cours.
+	 */
+	@PostMapping
+	public ResponseEntity<ReconciliationReport> reconcile(@RequestParam String statement) throws IOException {
+		try {
+			return reconciliation.reconcile(statement)
+					.map(ResponseEntity::ok)
+					.orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+		} catch (NoSuchFileException e) {
+			return ResponseEntity.notFound().build();
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+}
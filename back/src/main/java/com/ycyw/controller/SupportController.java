@@ -1,22 +1,42 @@
 package com.ycyw.controller;
 
 import com.ycyw.dto.*;
+import com.ycyw.security.WebSocketConfig;
+import com.ycyw.service.ConversationHistoryService;
+import com.ycyw.service.PresenceRegistry;
+import com.ycyw.service.ReadReceiptService;
+import com.ycyw.service.SupportRouter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Controller
 @RequiredArgsConstructor
 public class SupportController {
-	private final SimpMessagingTemplate messaging;
+
+	/** Types de message du chat, seuls acceptés (<code>Message.type</code>, <code>null</code> : <code>CHAT</code>). */
+	private static final Set<String> TYPES = Set.of("CHAT", "JOIN", "LEAVE", "READ");
+
+	/** Tailles de <code>Message.sender_name</code> et <code>Message.sender_role</code>. */
+	private static final int SENDER_LENGTH = 255;
+	private static final int ROLE_LENGTH = 30;
+
+	private final SupportRouter router;
+	private final ConversationHistoryService history;
+	private final PresenceRegistry presence;
+	private final ReadReceiptService receipts;
 
 	@MessageMapping("support.message")
 	public void fromClient(ClientMsg in,
@@ -25,40 +45,97 @@ public class SupportController {
 						   SimpMessageHeaderAccessor sha) {
 		Map<String, Object> attrs = sha.getSessionAttributes();
 		String clientId = attrs != null ? (String) attrs.get("clientId") : null;
-		if (clientId == null) {
+		if (clientId == null || !validType(in.type())) {
 			return;
 		}
 
 		String sender = in.sender() != null ? in.sender() : (principal != null ? principal.getName() : null);
-		String role = in.role();
-		if (role == null) {
-			if (auth != null && auth.isAuthenticated()) {
-				role = auth.getAuthorities().stream()
-						.findFirst().map(GrantedAuthority::getAuthority)
-						.orElse("ROLE_CLIENT");
-			} else {
-				role = "GUEST";
-			}
-		}
+		// rôle attribué par le serveur, jamais celui annoncé par le client : il décide du côté lu par l’agent
+		String role = auth != null && auth.isAuthenticated()
+				? auth.getAuthorities().stream().findFirst().map(GrantedAuthority::getAuthority).orElse("ROLE_CLIENT")
+				: "GUEST";
 
-		AdminMsg out = new AdminMsg(clientId, sender, role, Instant.now(), in.content(), in.type());
+		AdminMsg out = new AdminMsg(clientId, truncate(sender, SENDER_LENGTH), truncate(role, ROLE_LENGTH),
+				now(), in.content(), in.type());
 
-		messaging.convertAndSend("/topic/support.admin", out);
-		messaging.convertAndSend("/queue/support/" + clientId, out);
+		router.fromClient(out);
 	}
 
+	/** Réponse d’un agent : rejetée si la session n’est pas celle d’un employé. */
 	@MessageMapping("support.reply")
-	public void fromAdmin(AdminReply in, Principal principal) {
+	public void fromAdmin(AdminReply in, Principal principal, Authentication auth) {
+		String clientId = in.getTargetClientId();
+		if (clientId == null || principal == null || !isEmployee(auth)
+				|| !WebSocketConfig.CLIENT_ID.matcher(clientId).matches() || !validType(in.getType())) {
+			return;
+		}
 
+		String agent = principal.getName();
 		AdminMsg out = new AdminMsg(
-				in.getTargetClientId(),
-				principal != null ? principal.getName() : "support",
+				clientId,
+				truncate(agent, SENDER_LENGTH),
 				"ROLE_EMPLOYEE",
-				Instant.now(),
+				now(),
 				in.getContent(),
 				in.getType()
 		);
-		messaging.convertAndSend("/queue/support/" + in.getTargetClientId(), out);
-		messaging.convertAndSend("/topic/support.admin", out);
+		router.fromAgent(out, agent);
+	}
+
+	private static boolean validType(String type) {
+		return type == null || TYPES.contains(type);
+	}
+
+	/** Horodatage à la précision de <code>sent_at</code> : le message en mémoire et sa copie en base coïncident. */
+	private static Instant now() {
+		return Instant.now().truncatedTo(ChronoUnit.MICROS);
+	}
+
+	/** Les valeurs venues du client sont ramenées à la taille de leur colonne plutôt que de faire échouer le batch. */
+	private static String truncate(String value, int length) {
+		return value == null || value.length() <= length ? value : value.substring(0, length);
+	}
+
+	/**
+	 * Rejoue l’historique de la conversation de la session lors de l’abonnement à
+	 * <code>/app/support.history</code>. L’en-tête <code>before</code> (<code>nextCursor</code> de la page
+	 * précédente) permet de remonter aux pages précédentes. Rien n’est rejoué si la conversation appartient
+	 * à un autre utilisateur.
+	 */
+	@SubscribeMapping("support.history")
+	public HistoryPage history(SimpMessageHeaderAccessor sha,
+							   Authentication auth,
+							   @Header(name = "before", required = false) String before,
+							   @Header(name = "limit", required = false) Integer limit) {
+		Map<String, Object> attrs = sha.getSessionAttributes();
+		String clientId = attrs != null ? (String) attrs.get("clientId") : null;
+		String viewer = auth != null && auth.isAuthenticated() ? auth.getName() : null;
+		if (clientId == null || !history.mayRead(clientId, viewer)) {
+			return new HistoryPage(null, List.of(), null);
+		}
+		return history.page(clientId, before, limit != null ? limit : ConversationHistoryService.MAX_PAGE_SIZE);
+	}
+
+	/**
+	 * État de présence renvoyé à un agent lors de l’abonnement à <code>/app/support.presence</code> ;
+	 * les changements suivent sur {@link PresenceRegistry#PRESENCE_TOPIC}.
+	 */
+	@SubscribeMapping("support.presence")
+	public PresenceSnapshot presence(Authentication auth) {
+		return isEmployee(auth) ? presence.snapshot() : new PresenceSnapshot(Set.of(), Map.of());
+	}
+
+	/**
+	 * Non-lus des conversations de l’agent, renvoyés lors de l’abonnement à <code>/app/support.unread</code> ;
+	 * les changements suivent sur <code>/user{@value ReadReceiptService#UNREAD_QUEUE}</code>.
+	 */
+	@SubscribeMapping("support.unread")
+	public List<UnreadCount> unread(Authentication auth) {
+		return isEmployee(auth) ? receipts.unreadFor(auth.getName()) : List.of();
+	}
+
+	private static boolean isEmployee(Authentication auth) {
+		return auth != null && auth.getAuthorities().stream()
+				.anyMatch(a -> "ROLE_EMPLOYEE".equals(a.getAuthority()));
 	}
 }
@@ -0,0 +1,27 @@
+package com.ycyw.controller;
+
+import com.ycyw.dto.HistoryPage;
+import com.ycyw.service.ConversationHistoryService;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/support")
+public class SupportHistoryController {
+
+	private final ConversationHistoryService history;
+
+	public SupportHistoryController(ConversationHistoryService history) {
+		this.history = history;
+	}
+
+	/**
+	 * Historique d’une conversation pour les agents, paginé par curseur :
+	 * <code>before</code> reçoit le <code>nextCursor</code> de la page précédente.
+	 */
+	@GetMapping("/conversations/{clientId}/messages")
+	public HistoryPage messages(@PathVariable String clientId,
+								@RequestParam(required = false) String before,
+								@RequestParam(defaultValue = "50") int limit) {
+		return history.page(clientId, before, limit);
+	}
+}
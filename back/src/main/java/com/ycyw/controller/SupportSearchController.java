@@ -0,0 +1,41 @@
+package com.ycyw.controller;
+
+import com.ycyw.dto.SearchResults;
+import com.ycyw.service.SupportSearchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/support/search")
+public class SupportSearchController {
+
+	private final SupportSearchService search;
+
+	public SupportSearchController(SupportSearchService search) {
+		this.search = search;
+	}
+
+	/**
+	 * Recherche plein texte dans l’historique, pour les agents : tous les termes de <code>q</code> doivent
+	 * apparaître, les expressions entre guillemets dans cet ordre. Filtres facultatifs sur la conversation
+	 * (<code>clientId</code>), l’agent affecté et l’intervalle <code>[from, to[</code>.
+	 */
+	@GetMapping
+	public SearchResults search(@RequestParam String q,
+								@RequestParam(required = false) String clientId,
+								@RequestParam(required = false) String agent,
+								@RequestParam(required = false) Instant from,
+								@RequestParam(required = false) Instant to,
+								@RequestParam(defaultValue = "20") int limit) {
+		return search.search(q, clientId, agent, from, to, limit);
+	}
+
+	/** Reconstruit l’index depuis la base ; <code>409</code> si une reconstruction est déjà en cours. */
+	@PostMapping("/rebuild")
+	public ResponseEntity<Void> rebuild() {
+		return ResponseEntity.status(search.rebuild() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+	}
+}
@@ -0,0 +1,37 @@
+package com.ycyw.controller;
+
+import com.ycyw.dto.AvailableVehicles;
+import com.ycyw.service.VehicleAvailabilityService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/api/vehicles")
+public class VehicleAvailabilityController {
+
+	private final VehicleAvailabilityService availability;
+
+	public VehicleAvailabilityController(VehicleAvailabilityService availability) {
+		this.availability = availability;
+	}
+
+	/**
+	 * Véhicules de la catégorie <code>category</code> libres dans l’agence <code>agency</code> sur
+	 * <code>[from, to[</code> ; <code>400</code> si la période est vide.
+	 */
+	@GetMapping("/available")
+	public ResponseEntity<AvailableVehicles> available(@RequestParam long agency,
+													   @RequestParam String category,
+													   @RequestParam Instant from,
+													   @RequestParam Instant to) {
+		if (!from.isBefore(to)) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(availability.findAvailable(agency, category, from, to));
+	}
+}
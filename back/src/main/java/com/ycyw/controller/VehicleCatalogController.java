@@ -0,0 +1,42 @@
+package com.ycyw.controller;
+
+import com.ycyw.dto.CatalogResults;
+import com.ycyw.service.VehicleCatalogService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/catalog")
+public class VehicleCatalogController {
+
+	private static final int MAX_LIMIT = 100;
+
+	private final VehicleCatalogService catalog;
+
+	public VehicleCatalogController(VehicleCatalogService catalog) {
+		this.catalog = catalog;
+	}
+
+	/**
+	 * Véhicules proposés, filtrés par facette (valeurs multiples : « ou » dans une facette, « et » entre facettes),
+	 * avec les compteurs de chaque facette ; <code>400</code> si la pagination est invalide.
+	 */
+	@GetMapping("/vehicles")
+	public ResponseEntity<CatalogResults> vehicles(@RequestParam(required = false) Set<String> category,
+												   @RequestParam(required = false) Set<String> brand,
+												   @RequestParam(required = false) Set<String> seats,
+												   @RequestParam(required = false) Set<String> city,
+												   @RequestParam(defaultValue = "0") int offset,
+												   @RequestParam(defaultValue = "20") int limit) {
+		if (offset < 0 || limit < 1 || limit > MAX_LIMIT) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(catalog.search(
+				new VehicleCatalogService.Query(category, brand, seats, city, offset, limit)));
+	}
+}
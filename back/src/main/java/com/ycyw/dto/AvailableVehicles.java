@@ -0,0 +1,15 @@
+package com.ycyw.dto;
+
+import java.time.Instant;
+
+/**
+ * Véhicules d’une catégorie libres dans une agence sur <code>[from, to[</code>.
+ */
+public record AvailableVehicles(
+		long agencyId,
+		String category,
+		Instant from,
+		Instant to,
+		long[] vehicleIds
+) {
+}
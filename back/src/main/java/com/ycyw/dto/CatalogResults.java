@@ -0,0 +1,16 @@
+package com.ycyw.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page de résultats du catalogue, par identifiant croissant, et compteurs par facette
+ * (<code>category</code>, <code>brand</code>, <code>seats</code>, <code>city</code>). Le compteur d’une valeur
+ * applique tous les filtres sauf celui de sa propre facette.
+ */
+public record CatalogResults(
+		int total,
+		List<CatalogVehicle> vehicles,
+		Map<String, Map<String, Integer>> facets
+) {
+}
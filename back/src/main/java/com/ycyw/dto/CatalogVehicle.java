@@ -0,0 +1,16 @@
+package com.ycyw.dto;
+
+/**
+ * Véhicule du catalogue, avec la ville de son agence courante. <code>category</code> est la catégorie affichée
+ * (citadine, SUV, electric…), pas le code ACRISS.
+ */
+public record CatalogVehicle(
+		long vehicleId,
+		String brand,
+		String model,
+		String category,
+		int seats,
+		long agencyId,
+		String city
+) {
+}
@@ -0,0 +1,19 @@
+package com.ycyw.dto;
+
+import java.time.Instant;
+
+/**
+ * Notification légère diffusée à tous les agents sur <code>/topic/support.admin</code>.
+ *
+ * @param status <code>ASSIGNED</code> (conversation prise en charge par <code>agent</code>)
+ *               ou <code>UNASSIGNED</code> (conversation en attente d’un agent)
+ */
+public record ConversationNotice(
+		String clientId,
+		String status,
+		String agent,
+		Instant timestamp
+) {
+	public static final String ASSIGNED = "ASSIGNED";
+	public static final String UNASSIGNED = "UNASSIGNED";
+}
@@ -0,0 +1,15 @@
+package com.ycyw.dto;
+
+import java.util.List;
+
+/**
+ * Page d’historique d’une conversation, messages dans l’ordre chronologique.
+ * <code>nextCursor</code> est à passer en <code>before</code> pour obtenir la page précédente
+ * (<code>null</code> lorsqu’il n’y a plus rien à charger).
+ */
+public record HistoryPage(
+		String clientId,
+		List<AdminMsg> messages,
+		String nextCursor
+) {
+}
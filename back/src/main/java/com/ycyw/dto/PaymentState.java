@@ -0,0 +1,15 @@
+package com.ycyw.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Paiement tel qu’enregistré, pour le rapprochement avec les relevés du prestataire.
+ */
+public record PaymentState(
+		long paymentId,
+		String providerPaymentId,
+		BigDecimal amount,
+		String currency,
+		String status
+) {
+}
@@ -0,0 +1,18 @@
+package com.ycyw.dto;
+
+import java.time.Instant;
+
+/**
+ * Changement de présence diffusé aux agents sur <code>/topic/support.presence</code>.
+ *
+ * @param kind <code>CLIENT</code> (<code>id</code> = clientId) ou <code>AGENT</code> (<code>id</code> = nom de l’agent)
+ * @param load conversations ouvertes de l’agent, <code>null</code> pour un client
+ */
+public record PresenceDelta(
+		String kind,
+		String id,
+		boolean online,
+		Integer load,
+		Instant timestamp
+) {
+}
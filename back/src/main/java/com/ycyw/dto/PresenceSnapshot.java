@@ -0,0 +1,17 @@
+package com.ycyw.dto;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * État de présence renvoyé lors de l’abonnement à <code>/app/support.presence</code>, avant les
+ * {@link PresenceDelta}.
+ *
+ * @param clients clientIds connectés
+ * @param agents  agents connectés → conversations ouvertes
+ */
+public record PresenceSnapshot(
+		Set<String> clients,
+		Map<String, ? extends Number> agents
+) {
+}
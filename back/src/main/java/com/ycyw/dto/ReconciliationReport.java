@@ -0,0 +1,29 @@
+package com.ycyw.dto;
+
+/**
+ * Bilan du rapprochement d’un relevé avec <code>"Payment"</code>. Chaque ligne valide du relevé est comptée
+ * dans exactement un des compteurs <code>updated</code> à <code>duplicates</code> ; <code>malformed</code>
+ * compte les lignes illisibles.
+ *
+ * @param updated           statut du paiement mis à jour
+ * @param unchanged         statut déjà à jour
+ * @param unknown           aucun paiement pour ce <code>provider_payment_id</code>
+ * @param amountMismatches  montant ou devise différents : statut laissé tel quel
+ * @param conflicts         statut modifié entre la lecture et l’écriture, ou que la ligne ferait reculer
+ *                          (<code>REFUNDED</code> vers <code>SUCCEEDED</code>…) : laissé tel quel
+ * @param duplicates        ligne remplacée par une ligne suivante du même lot pour le même paiement
+ */
+public record ReconciliationReport(
+		String statement,
+		long lines,
+		long updated,
+		long unchanged,
+		long unknown,
+		long amountMismatches,
+		long conflicts,
+		long duplicates,
+		long malformed,
+		long durationMs,
+		long linesPerSecond
+) {
+}
@@ -0,0 +1,17 @@
+package com.ycyw.dto;
+
+import java.time.Instant;
+
+/**
+ * Location d’un véhicule sur <code>[startAt, endAt[</code> ; <code>blocking</code> si son statut est
+ * <code>CONFIRMED</code>, <code>IN_PROGRESS</code> ou <code>OVERDUE</code>. Une location <code>OVERDUE</code>
+ * bloque le véhicule jusqu’à son retour : <code>endAt</code> vaut alors {@link Instant#MAX}.
+ */
+public record RentalInterval(
+		long rentalId,
+		long vehicleId,
+		Instant startAt,
+		Instant endAt,
+		boolean blocking
+) {
+}
@@ -0,0 +1,19 @@
+package com.ycyw.dto;
+
+import java.time.Instant;
+
+/**
+ * Message trouvé par la recherche plein texte. <code>agent</code> est l’agent affecté à la conversation
+ * au moment de l’indexation du message (<code>null</code> si aucun).
+ */
+public record SearchHit(
+		String clientId,
+		String agent,
+		String sender,
+		String role,
+		Instant timestamp,
+		String content,
+		String type,
+		float score
+) {
+}
@@ -0,0 +1,14 @@
+package com.ycyw.dto;
+
+import java.util.List;
+
+/**
+ * Résultats d’une recherche, par pertinence décroissante.
+ * <code>total</code> est exact si <code>exact</code> vaut <code>true</code>, sinon c’est une borne inférieure.
+ */
+public record SearchResults(
+		long total,
+		boolean exact,
+		List<SearchHit> hits
+) {
+}
@@ -0,0 +1,15 @@
+package com.ycyw.dto;
+
+import java.time.Instant;
+
+/**
+ * Compteurs de non-lus poussés à un agent sur <code>/user/queue/support.unread</code> : messages du client
+ * pas encore lus dans la conversation, et total sur les conversations affectées à l’agent.
+ */
+public record UnreadCount(
+		String clientId,
+		int unread,
+		int total,
+		Instant timestamp
+) {
+}
@@ -0,0 +1,14 @@
+package com.ycyw.dto;
+
+/**
+ * Véhicule tel que vu par la recherche de disponibilité : agence courante, catégorie, et <code>inService</code>
+ * s’il est actif, localisé dans une agence et de statut <code>AVAILABLE</code> ou <code>BOOKED</code> (ses
+ * locations décident alors de sa disponibilité).
+ */
+public record VehicleSummary(
+		long vehicleId,
+		long agencyId,
+		String category,
+		boolean inService
+) {
+}
@@ -0,0 +1,14 @@
+package com.ycyw.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.IOException;
+
+/** Relevé de paiement inexploitable dans son ensemble (en-tête CSV incomplet…). */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class MalformedStatementException extends IOException {
+	public MalformedStatementException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,11 @@
+package com.ycyw.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyLoginAttemptsException extends RuntimeException {
+	public TooManyLoginAttemptsException(String message) {
+		super(message);
+	}
+}
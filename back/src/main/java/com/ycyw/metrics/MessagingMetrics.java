@@ -0,0 +1,70 @@
+package com.ycyw.metrics;
+
+import com.ycyw.service.ConversationDispatcher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Expose en métriques les compteurs du broker WebSocket et du {@link ConversationDispatcher}.
+ * <p>
+ * Les sessions ouvertes (<code>websocket.sessions.active</code>) sont comptées par {@link StompMetrics}, qui
+ * distingue aussi le WebSocket natif du WebSocket SockJS.
+ * </p>
+ * <p>
+ * Les sessions fermées pour dépassement de <code>sendBufferSizeLimit</code> ou <code>sendTimeLimit</code>
+ * (consommateurs trop lents) sont comptées dans <code>websocket.sessions.closed{reason=limit_exceeded}</code>.
+ * Les files des executors <code>clientInboundChannel</code> / <code>clientOutboundChannel</code> sont publiées
+ * par Spring Boot sous <code>executor.*</code>.
+ * </p>
+ */
+@Component
+public class MessagingMetrics implements MeterBinder {
+
+	private final WebSocketMessageBrokerStats brokerStats;
+	private final ConversationDispatcher dispatcher;
+
+	public MessagingMetrics(WebSocketMessageBrokerStats brokerStats, ConversationDispatcher dispatcher) {
+		this.brokerStats = brokerStats;
+		this.dispatcher = dispatcher;
+	}
+
+	@Override
+	public void bindTo(@NonNull MeterRegistry registry) {
+		closedCounter(registry, "limit_exceeded", SubProtocolWebSocketHandler.Stats::getLimitExceededSessions);
+		closedCounter(registry, "no_messages_received", SubProtocolWebSocketHandler.Stats::getNoMessagesReceivedSessions);
+		closedCounter(registry, "transport_error", SubProtocolWebSocketHandler.Stats::getTransportErrorSessions);
+
+		Gauge.builder("chat.dispatcher.pending", dispatcher, ConversationDispatcher::getPending)
+				.description("Routing tasks waiting in all shards")
+				.register(registry);
+		Gauge.builder("chat.dispatcher.max.shard.depth", dispatcher, ConversationDispatcher::getMaxShardDepth)
+				.description("Depth of the most loaded shard queue")
+				.register(registry);
+		FunctionCounter.builder("chat.dispatcher.tasks", dispatcher, ConversationDispatcher::getDispatchedCount)
+				.tag("result", "dispatched")
+				.register(registry);
+		FunctionCounter.builder("chat.dispatcher.tasks", dispatcher, ConversationDispatcher::getRejectedCount)
+				.tag("result", "rejected")
+				.register(registry);
+	}
+
+	private void closedCounter(MeterRegistry registry, String reason, ToIntFunction<SubProtocolWebSocketHandler.Stats> value) {
+		FunctionCounter.builder("websocket.sessions.closed", brokerStats, s -> statOf(s, value))
+				.description("Sessions closed by the server")
+				.tag("reason", reason)
+				.register(registry);
+	}
+
+	private static double statOf(WebSocketMessageBrokerStats brokerStats, ToIntFunction<SubProtocolWebSocketHandler.Stats> value) {
+		SubProtocolWebSocketHandler.Stats stats = brokerStats.getWebSocketSessionStats();
+		return stats != null ? value.applyAsInt(stats) : 0;
+	}
+}
@@ -0,0 +1,346 @@
+package com.ycyw.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.sockjs.transport.session.PollingSockJsSession;
+import org.springframework.web.socket.sockjs.transport.session.StreamingSockJsSession;
+import org.springframework.web.socket.sockjs.transport.session.WebSocketServerSockJsSession;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Métriques du pipeline STOMP : sessions actives par rôle et par transport, trames entrantes par destination,
+ * trames sortantes et latence de bout en bout des messages de support.
+ * <p>
+ * Les sessions par transport ({@link Transport}) sont comptées dès l’ouverture de la connexion, avant le
+ * CONNECT STOMP, dans <code>websocket.sessions.active{transport, sockjs}</code> : le tag <code>sockjs</code>
+ * distingue le WebSocket natif du WebSocket ouvert par SockJS et montre la part du trafic qui passe encore
+ * par le repli. <code>websocket.sessions.compressed</code> compte les sessions qui ont négocié
+ * <code>permessage-deflate</code>.
+ * </p>
+ * <p>
+ * La latence est mesurée de la réception dans {@code SupportController} (horodatage du message) jusqu’à
+ * l’écriture de la trame MESSAGE sur la session WebSocket, file de l’executor sortant comprise. Les envois
+ * concernés portent l’en-tête {@link #RECEIVED_AT} (voir {@link #receivedAt(Instant)}), qui n’est pas
+ * transmis au client : seuls les en-têtes natifs sont encodés en STOMP.
+ * </p>
+ * <p>
+ * Les identifiants présents dans les destinations (<code>/queue/support/{clientId}</code>) sont remplacés
+ * par <code>{id}</code> et le nombre de destinations distinctes est plafonné pour borner la cardinalité.
+ * </p>
+ */
+@Component
+public class StompMetrics implements WebSocketMessageBrokerConfigurer {
+
+	public static final String RECEIVED_AT = "ycyw.receivedAt";
+
+	static final String OTHER = "other";
+	private static final int MAX_DESTINATIONS = 100;
+
+	public enum Role {GUEST, CLIENT, EMPLOYEE}
+
+	/**
+	 * Transport d’une session : WebSocket natif (<code>/api/ws</code>) ou session SockJS
+	 * (<code>/api/ws-chat</code>). Le tag <code>transport</code> reprend les catégories de Spring
+	 * ({@code SubProtocolWebSocketHandler.Stats}).
+	 */
+	public enum Transport {
+		WEBSOCKET("websocket", false),
+		SOCKJS_WEBSOCKET("websocket", true),
+		/** xhr-streaming, eventsource, htmlfile. */
+		SOCKJS_STREAMING("http_streaming", true),
+		SOCKJS_POLLING("http_polling", true);
+
+		private final String tag;
+		private final boolean sockJs;
+
+		Transport(String tag, boolean sockJs) {
+			this.tag = tag;
+			this.sockJs = sockJs;
+		}
+
+		static Transport of(WebSocketSession session) {
+			return switch (session) {
+				case WebSocketServerSockJsSession s -> SOCKJS_WEBSOCKET;
+				case StreamingSockJsSession s -> SOCKJS_STREAMING;
+				case PollingSockJsSession s -> SOCKJS_POLLING;
+				default -> WEBSOCKET;
+			};
+		}
+	}
+
+	private record TransportSession(Transport transport, boolean compressed) {
+	}
+
+	private final MeterRegistry registry;
+
+	private final Map<Role, AtomicInteger> sessionsByRole = new ConcurrentHashMap<>();
+	/** sessionId → rôle, pour décompter correctement à la déconnexion. */
+	private final Map<String, Role> sessions = new ConcurrentHashMap<>();
+
+	private final Map<Transport, AtomicInteger> sessionsByTransport = new ConcurrentHashMap<>();
+	private final AtomicInteger compressedSessions = new AtomicInteger();
+	/** Identifiant de session WebSocket → transport. */
+	private final Map<String, TransportSession> transportSessions = new ConcurrentHashMap<>();
+
+	private final Map<String, Counter> inboundFrames = new ConcurrentHashMap<>();
+	private final Map<String, Counter> outboundFrames = new ConcurrentHashMap<>();
+	private final Map<String, Timer> latencies = new ConcurrentHashMap<>();
+
+	public StompMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		for (Role role : Role.values()) {
+			AtomicInteger count = new AtomicInteger();
+			sessionsByRole.put(role, count);
+			Gauge.builder("stomp.sessions.active", count, AtomicInteger::get)
+					.description("Connected STOMP sessions")
+					.tag("role", role.name())
+					.register(registry);
+		}
+		for (Transport transport : Transport.values()) {
+			AtomicInteger count = new AtomicInteger();
+			sessionsByTransport.put(transport, count);
+			Gauge.builder("websocket.sessions.active", count, AtomicInteger::get)
+					.description("Open WebSocket/SockJS sessions by transport")
+					.tag("transport", transport.tag)
+					.tag("sockjs", String.valueOf(transport.sockJs))
+					.register(registry);
+		}
+		Gauge.builder("websocket.sessions.compressed", compressedSessions, AtomicInteger::get)
+				.description("Open sessions that negotiated permessage-deflate")
+				.register(registry);
+	}
+
+	/**
+	 * En-têtes d’envoi portant l’instant de réception, pour {@code SimpMessagingTemplate#convertAndSend}.
+	 * Un nouvel ensemble d’en-têtes est nécessaire pour chaque envoi.
+	 */
+	public static MessageHeaders receivedAt(Instant receivedAt) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+		accessor.setHeader(RECEIVED_AT, receivedAt);
+		accessor.setLeaveMutable(true);
+		return accessor.getMessageHeaders();
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		registration.interceptors(inboundInterceptor());
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		registration.interceptors(outboundInterceptor());
+	}
+
+	@Override
+	public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+		registration.addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+			@Override
+			public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+				opened(session);
+				super.afterConnectionEstablished(session);
+			}
+
+			@Override
+			public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus status) throws Exception {
+				try {
+					super.afterConnectionClosed(session, status);
+				} finally {
+					closed(session);
+				}
+			}
+		});
+	}
+
+	void opened(WebSocketSession session) {
+		boolean compressed = session.getExtensions().stream()
+				.anyMatch(extension -> "permessage-deflate".equalsIgnoreCase(extension.getName()));
+		TransportSession opened = new TransportSession(Transport.of(session), compressed);
+		if (transportSessions.putIfAbsent(session.getId(), opened) == null) {
+			sessionsByTransport.get(opened.transport()).incrementAndGet();
+			if (compressed) {
+				compressedSessions.incrementAndGet();
+			}
+		}
+	}
+
+	void closed(WebSocketSession session) {
+		TransportSession closed = transportSessions.remove(session.getId());
+		if (closed != null) {
+			sessionsByTransport.get(closed.transport()).decrementAndGet();
+			if (closed.compressed()) {
+				compressedSessions.decrementAndGet();
+			}
+		}
+	}
+
+	public int openSessions(Transport transport) {
+		return sessionsByTransport.get(transport).get();
+	}
+
+	ChannelInterceptor inboundInterceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+				StompCommand command = accessor != null ? accessor.getCommand() : null;
+				if (command != null) {
+					frameCounter(inboundFrames, "stomp.inbound.frames", command.name(), accessor.getDestination()).increment();
+				}
+				return message;
+			}
+		};
+	}
+
+	ExecutorChannelInterceptor outboundInterceptor() {
+		return new ExecutorChannelInterceptor() {
+			@Override
+			public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+											@NonNull MessageHandler handler, Exception ex) {
+				MessageHeaders headers = message.getHeaders();
+				SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+				if (type == null) {
+					return;
+				}
+				String destination = destinationOf(headers);
+				frameCounter(outboundFrames, "stomp.outbound.frames", type.name(), destination).increment();
+				if (ex == null && headers.get(RECEIVED_AT) instanceof Instant receivedAt) {
+					Duration elapsed = Duration.between(receivedAt, Instant.now());
+					latency(destination).record(elapsed.isNegative() ? Duration.ZERO : elapsed);
+				}
+			}
+		};
+	}
+
+	@EventListener
+	public void onConnected(SessionConnectedEvent event) {
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+		if (sessionId == null) {
+			return;
+		}
+		Role role = roleOf(event.getUser());
+		if (sessions.putIfAbsent(sessionId, role) == null) {
+			sessionsByRole.get(role).incrementAndGet();
+		}
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		Role role = sessions.remove(event.getSessionId());
+		if (role != null) {
+			sessionsByRole.get(role).decrementAndGet();
+		}
+	}
+
+	public int activeSessions(Role role) {
+		return sessionsByRole.get(role).get();
+	}
+
+	private Counter frameCounter(Map<String, Counter> counters, String name, String command, String destination) {
+		String tag = destinationTag(destination);
+		String key = command + ' ' + tag;
+		Counter counter = counters.get(key);
+		if (counter == null) {
+			if (counters.size() >= MAX_DESTINATIONS) {
+				key = command + ' ' + OTHER;
+				tag = OTHER;
+			}
+			String destinationTag = tag;
+			counter = counters.computeIfAbsent(key, k -> Counter.builder(name)
+					.tag("command", command)
+					.tag("destination", destinationTag)
+					.register(registry));
+		}
+		return counter;
+	}
+
+	private Timer latency(String destination) {
+		String tag = destinationTag(destination);
+		Timer timer = latencies.get(tag);
+		if (timer == null) {
+			if (latencies.size() >= MAX_DESTINATIONS) {
+				tag = OTHER;
+			}
+			String destinationTag = tag;
+			timer = latencies.computeIfAbsent(tag, k -> Timer.builder("stomp.support.latency")
+					.description("From receipt in SupportController to the outbound WebSocket write")
+					.tag("destination", destinationTag)
+					.publishPercentiles(0.5, 0.95, 0.99)
+					.register(registry));
+		}
+		return timer;
+	}
+
+	/** Destination d’origine pour les destinations utilisateur (<code>/user/queue/...</code>). */
+	private static String destinationOf(MessageHeaders headers) {
+		String original = SimpMessageHeaderAccessor.getFirstNativeHeader(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION, headers);
+		if (original != null) {
+			return original;
+		}
+		return SimpMessageHeaderAccessor.getDestination(headers);
+	}
+
+	/**
+	 * Destination utilisable comme tag : le dernier segment est remplacé par <code>{id}</code>
+	 * s’il ressemble à un identifiant (chiffres ou longueur d’UUID).
+	 */
+	static String destinationTag(String destination) {
+		if (destination == null) {
+			return "none";
+		}
+		int slash = destination.lastIndexOf('/');
+		String last = destination.substring(slash + 1);
+		if (last.length() >= 32 || last.chars().anyMatch(Character::isDigit)) {
+			return destination.substring(0, slash + 1) + "{id}";
+		}
+		return destination;
+	}
+
+	public static Role roleOf(Principal user) {
+		if (user instanceof Authentication auth) {
+			boolean employee = false;
+			boolean client = false;
+			for (var authority : auth.getAuthorities()) {
+				employee |= "ROLE_EMPLOYEE".equals(authority.getAuthority());
+				client |= "ROLE_CLIENT".equals(authority.getAuthority());
+			}
+			if (employee) {
+				return Role.EMPLOYEE;
+			}
+			if (client) {
+				return Role.CLIENT;
+			}
+		}
+		return Role.GUEST;
+	}
+}
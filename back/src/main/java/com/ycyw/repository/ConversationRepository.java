@@ -0,0 +1,97 @@
+package com.ycyw.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Accès JDBC à la table <code>"Conversation"</code>.
+ * <p>
+ * Une conversation est identifiée côté chat par sa <code>client_key</code> (le <code>clientId</code>
+ * STOMP), qu’il s’agisse d’un invité ou d’un utilisateur connecté.
+ * </p>
+ */
+@Repository
+public class ConversationRepository {
+
+	private final JdbcTemplate jdbc;
+
+	public ConversationRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	public Optional<Long> findOpenIdByClientKey(String clientKey) {
+		List<Long> ids = jdbc.queryForList("""
+				SELECT conversation_id FROM "Conversation"
+				WHERE client_key = ? AND status = 'OPEN'
+				ORDER BY conversation_id DESC
+				FETCH FIRST 1 ROWS ONLY""", Long.class, clientKey);
+		return ids.stream().findFirst();
+	}
+
+	/**
+	 * Affecte la conversation à l’agent dont l’email est <code>agentUsername</code>
+	 * (<code>agent_id</code> reste vide si l’agent n’existe pas en base).
+	 */
+	public void assignAgent(long conversationId, String agentUsername) {
+		jdbc.update("""
+				UPDATE "Conversation"
+				SET agent_id = (SELECT user_id FROM "User" WHERE email = ?), updated_at = CURRENT_TIMESTAMP
+				WHERE conversation_id = ?""", agentUsername, conversationId);
+	}
+
+	/**
+	 * Rattache la conversation au client dont l’email est <code>username</code>, si elle n’a pas déjà un client
+	 * (<code>client_id</code> reste vide si l’utilisateur n’existe pas en base).
+	 */
+	public void assignClient(long conversationId, String username) {
+		jdbc.update("""
+				UPDATE "Conversation"
+				SET client_id = (SELECT user_id FROM "User" WHERE email = ?), updated_at = CURRENT_TIMESTAMP
+				WHERE conversation_id = ? AND client_id IS NULL""", username, conversationId);
+	}
+
+	/** Email du client rattaché à la dernière conversation de <code>clientKey</code> qui en a un. */
+	public Optional<String> findClientUsername(String clientKey) {
+		List<String> emails = jdbc.queryForList("""
+				SELECT u.email FROM "Conversation" c
+				JOIN "User" u ON u.user_id = c.client_id
+				WHERE c.client_key = ?
+				ORDER BY c.conversation_id DESC
+				FETCH FIRST 1 ROWS ONLY""", String.class, clientKey);
+		return emails.stream().findFirst();
+	}
+
+	/** Affectations des conversations ouvertes : client_key → email de l’agent. */
+	public Map<String, String> findOpenAssignments() {
+		Map<String, String> assignments = new HashMap<>();
+		jdbc.query("""
+				SELECT c.client_key, u.email FROM "Conversation" c
+				JOIN "User" u ON u.user_id = c.agent_id
+				WHERE c.status = 'OPEN'""",
+				rs -> {
+					assignments.put(rs.getString("client_key"), rs.getString("email"));
+				});
+		return assignments;
+	}
+
+	public long create(String clientKey) {
+		KeyHolder keyHolder = new GeneratedKeyHolder();
+		jdbc.update(con -> {
+			PreparedStatement ps = con.prepareStatement(
+					"INSERT INTO \"Conversation\" (client_key) VALUES (?)",
+					new String[]{"conversation_id"});
+			ps.setString(1, clientKey);
+			return ps;
+		}, keyHolder);
+		return Objects.requireNonNull(keyHolder.getKey()).longValue();
+	}
+}
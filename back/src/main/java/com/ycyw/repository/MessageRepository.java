@@ -0,0 +1,152 @@
+package com.ycyw.repository;
+
+import com.ycyw.dto.AdminMsg;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Accès JDBC à la table <code>"Message"</code>.
+ */
+@Repository
+public class MessageRepository {
+
+	private static final String INSERT = """
+			INSERT INTO "Message" (conversation_id, sender_name, sender_role, type, content, sent_at, is_read)
+			VALUES (?, ?, ?, ?, ?, ?, ?)""";
+
+	/**
+	 * Accusé de lecture d’une plage de messages, servi par <code>idx_message_conversation</code> ; la dernière
+	 * condition sélectionne les messages des agents (lus par le client) ou ceux du client (lus par l’agent).
+	 */
+	private static final String MARK_READ = """
+			UPDATE "Message" SET is_read = TRUE
+			WHERE conversation_id = ? AND sent_at <= ? AND is_read = FALSE
+			AND (sender_role IN ('ROLE_EMPLOYEE', 'EMPLOYEE')) = ?""";
+
+	/**
+	 * Pagination par curseur sur <code>idx_message_conversation (conversation_id, sent_at)</code> :
+	 * jamais d’OFFSET, la page suivante repart du couple (<code>sent_at</code>, <code>message_id</code>) le plus
+	 * ancien déjà servi, pour ne sauter aucun des messages qui partagent le même <code>sent_at</code>.
+	 */
+	private static final String PAGE_BEFORE = """
+			SELECT m.message_id, c.client_key, m.sender_name, m.sender_role, m.sent_at, m.content, m.type
+			FROM "Message" m
+			JOIN "Conversation" c ON c.conversation_id = m.conversation_id
+			WHERE c.client_key = ? AND (m.sent_at < ? OR (m.sent_at = ? AND m.message_id < ?))
+			ORDER BY m.sent_at DESC, m.message_id DESC
+			FETCH FIRST ? ROWS ONLY""";
+
+	/** Tous les messages avec l’agent affecté à leur conversation, pour la reconstruction de l’index de recherche. */
+	private static final String SCAN_ALL = """
+			SELECT c.client_key, u.email AS agent, m.sender_name, m.sender_role, m.sent_at, m.content, m.type
+			FROM "Message" m
+			JOIN "Conversation" c ON c.conversation_id = m.conversation_id
+			LEFT JOIN "User" u ON u.user_id = c.agent_id
+			ORDER BY m.message_id""";
+
+	private static final int SCAN_FETCH_SIZE = 1000;
+
+	private final JdbcTemplate jdbc;
+
+	public MessageRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	/**
+	 * Retourne au plus <code>limit</code> messages de la conversation antérieurs au couple
+	 * (<code>before</code>, <code>beforeId</code>), du plus récent au plus ancien. Avec
+	 * <code>beforeId = Long.MIN_VALUE</code>, seuls les messages strictement antérieurs à <code>before</code>.
+	 */
+	public List<StoredMessage> findBefore(String clientKey, Instant before, long beforeId, int limit) {
+		OffsetDateTime sentAt = OffsetDateTime.ofInstant(before, ZoneOffset.UTC);
+		return jdbc.query(PAGE_BEFORE, (rs, rowNum) -> new StoredMessage(rs.getLong("message_id"), new AdminMsg(
+				rs.getString("client_key"),
+				rs.getString("sender_name"),
+				rs.getString("sender_role"),
+				rs.getObject("sent_at", OffsetDateTime.class).toInstant(),
+				rs.getString("content"),
+				rs.getString("type")
+		)), clientKey, sentAt, sentAt, beforeId, limit);
+	}
+
+	/** Message lu en base, avec son identifiant (second terme du curseur de pagination). */
+	public record StoredMessage(long messageId, AdminMsg message) {
+	}
+
+	/**
+	 * Parcourt tous les messages par lots de <code>SCAN_FETCH_SIZE</code> lignes, sans les charger en mémoire.
+	 *
+	 * @param consumer reçoit chaque message et l’email de l’agent de sa conversation (<code>null</code> si aucun)
+	 */
+	public void scanAll(BiConsumer<AdminMsg, String> consumer) {
+		jdbc.query(connection -> {
+			PreparedStatement ps = connection.prepareStatement(SCAN_ALL);
+			ps.setFetchSize(SCAN_FETCH_SIZE);
+			return ps;
+		}, (RowCallbackHandler) rs -> consumer.accept(new AdminMsg(
+				rs.getString("client_key"),
+				rs.getString("sender_name"),
+				rs.getString("sender_role"),
+				rs.getObject("sent_at", OffsetDateTime.class).toInstant(),
+				rs.getString("content"),
+				rs.getString("type")
+		), rs.getString("agent")));
+	}
+
+	/**
+	 * Insère les messages en un seul batch JDBC.
+	 *
+	 * @param conversationIds identifiant de conversation de chaque message, à la même position
+	 * @param read            <code>is_read</code> de chaque message, à la même position
+	 */
+	public void insertAll(List<AdminMsg> messages, long[] conversationIds, boolean[] read) {
+		jdbc.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				AdminMsg msg = messages.get(i);
+				ps.setLong(1, conversationIds[i]);
+				ps.setString(2, msg.sender());
+				ps.setString(3, msg.role() != null ? msg.role() : "GUEST");
+				ps.setString(4, msg.type() != null ? msg.type() : "CHAT");
+				ps.setString(5, msg.content() != null ? msg.content() : "");
+				ps.setObject(6, OffsetDateTime.ofInstant(msg.timestamp(), ZoneOffset.UTC));
+				ps.setBoolean(7, read[i]);
+			}
+
+			@Override
+			public int getBatchSize() {
+				return messages.size();
+			}
+		});
+	}
+
+	/**
+	 * Marque comme lus, en un seul batch JDBC, les messages de chaque plage : ceux de la conversation envoyés
+	 * jusqu’à <code>upTo</code> inclus, par un agent si <code>agentMessages</code>, sinon par le client.
+	 */
+	public void markRead(long[] conversationIds, Instant[] upTo, boolean[] agentMessages) {
+		jdbc.batchUpdate(MARK_READ, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setLong(1, conversationIds[i]);
+				ps.setObject(2, OffsetDateTime.ofInstant(upTo[i], ZoneOffset.UTC));
+				ps.setBoolean(3, agentMessages[i]);
+			}
+
+			@Override
+			public int getBatchSize() {
+				return conversationIds.length;
+			}
+		});
+	}
+}
@@ -0,0 +1,96 @@
+package com.ycyw.repository;
+
+import com.ycyw.dto.PaymentState;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Accès JDBC à la table <code>"Payment"</code>.
+ */
+@Repository
+public class PaymentRepository {
+
+	private static final RowMapper<PaymentState> STATE = (rs, i) -> new PaymentState(
+			rs.getLong("payment_id"),
+			rs.getString("provider_payment_id"),
+			rs.getBigDecimal("amount"),
+			rs.getString("currency"),
+			rs.getString("status"));
+
+	/** Ne modifie le statut que s’il n’a pas changé depuis la lecture. */
+	private static final String UPDATE_STATUS = """
+			UPDATE "Payment" SET status = ?, updated_at = ?
+			WHERE payment_id = ? AND status = ?""";
+
+	/**
+	 * Chaque ligne trouvée est revérifiée contre toute la liste <code>IN</code> : au-delà d’une centaine
+	 * d’identifiants, la requête coûte plus que l’aller-retour supplémentaire.
+	 */
+	static final int LOOKUP_CHUNK = 100;
+
+	private final JdbcTemplate jdbc;
+
+	public PaymentRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	/**
+	 * Paiements par <code>provider_payment_id</code>, par requêtes de {@value #LOOKUP_CHUNK} identifiants au plus ;
+	 * les identifiants inconnus sont absents.
+	 */
+	public Map<String, PaymentState> findByProviderIds(Collection<String> providerPaymentIds) {
+		Map<String, PaymentState> payments = HashMap.newHashMap(providerPaymentIds.size());
+		List<String> ids = List.copyOf(providerPaymentIds);
+		for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK) {
+			List<String> chunk = ids.subList(from, Math.min(ids.size(), from + LOOKUP_CHUNK));
+			String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+			jdbc.query("""
+							SELECT payment_id, provider_payment_id, amount, currency, status FROM "Payment"
+							WHERE provider_payment_id IN (%s)""".formatted(placeholders),
+					(RowCallbackHandler) rs -> {
+						PaymentState payment = STATE.mapRow(rs, 0);
+						payments.put(payment.providerPaymentId(), payment);
+					},
+					chunk.toArray());
+		}
+		return payments;
+	}
+
+	/**
+	 * Met à jour les statuts en un seul batch JDBC ; la ligne <code>i</code> passe de <code>expected[i]</code>
+	 * à <code>statuses[i]</code>.
+	 *
+	 * @return nombre de lignes modifiées par paiement, à la même position
+	 */
+	public int[] updateStatuses(long[] paymentIds, String[] expected, String[] statuses, Instant now) {
+		OffsetDateTime updatedAt = OffsetDateTime.ofInstant(now, ZoneOffset.UTC);
+		return jdbc.batchUpdate(UPDATE_STATUS, new BatchPreparedStatementSetter() {
+			@Override
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				ps.setString(1, statuses[i]);
+				ps.setObject(2, updatedAt);
+				ps.setLong(3, paymentIds[i]);
+				ps.setString(4, expected[i]);
+			}
+
+			@Override
+			public int getBatchSize() {
+				return paymentIds.length;
+			}
+		});
+	}
+}
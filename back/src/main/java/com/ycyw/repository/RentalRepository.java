@@ -0,0 +1,67 @@
+package com.ycyw.repository;
+
+import com.ycyw.dto.RentalInterval;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Accès JDBC à la table <code>"Rental"</code>.
+ */
+@Repository
+public class RentalRepository {
+
+	private static final int SCAN_FETCH_SIZE = 10_000;
+
+	private static final RowMapper<RentalInterval> INTERVAL = (rs, i) -> {
+		String status = rs.getString("status");
+		// véhicule pas encore rendu : bloqué au-delà de la fin prévue
+		Instant end = "OVERDUE".equals(status) ? Instant.MAX : rs.getObject("end_at", OffsetDateTime.class).toInstant();
+		return new RentalInterval(
+				rs.getLong("rental_id"),
+				rs.getLong("vehicle_id"),
+				rs.getObject("start_at", OffsetDateTime.class).toInstant(),
+				end,
+				switch (status) {
+					case "CONFIRMED", "IN_PROGRESS", "OVERDUE" -> true;
+					default -> false;
+				});
+	};
+
+	private final JdbcTemplate jdbc;
+
+	public RentalRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	public Optional<RentalInterval> findById(long rentalId) {
+		List<RentalInterval> rentals = jdbc.query("""
+				SELECT rental_id, vehicle_id, start_at, end_at, status FROM "Rental"
+				WHERE rental_id = ?""", INTERVAL, rentalId);
+		return rentals.stream().findFirst();
+	}
+
+	/**
+	 * Locations <code>CONFIRMED</code> ou <code>IN_PROGRESS</code> qui ne sont pas terminées à <code>now</code>,
+	 * et toutes les locations <code>OVERDUE</code>, en streaming.
+	 */
+	public void scanBlocking(Instant now, Consumer<RentalInterval> consumer) {
+		jdbc.query(connection -> {
+			PreparedStatement ps = connection.prepareStatement("""
+					SELECT rental_id, vehicle_id, start_at, end_at, status FROM "Rental"
+					WHERE status IN ('CONFIRMED', 'IN_PROGRESS') AND end_at > ? OR status = 'OVERDUE'""");
+			ps.setFetchSize(SCAN_FETCH_SIZE);
+			ps.setObject(1, OffsetDateTime.ofInstant(now, ZoneOffset.UTC));
+			return ps;
+		}, (RowCallbackHandler) rs -> consumer.accept(INTERVAL.mapRow(rs, 0)));
+	}
+}
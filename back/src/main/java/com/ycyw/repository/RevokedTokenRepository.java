@@ -0,0 +1,98 @@
+package com.ycyw.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Accès JDBC à la table <code>"RevokedToken"</code>.
+ * <p>
+ * Deux sortes de lignes : <code>USED</code>, le <code>jti</code> d’un refresh token déjà échangé, écrit après
+ * coup par lots, et <code>FAMILY</code>, une famille de refresh tokens révoquée (déconnexion, réutilisation
+ * détectée). Les deux sont relues au démarrage de chaque nœud. Les lignes sont inutiles après
+ * <code>expires_at</code> et purgées périodiquement.
+ * </p>
+ */
+@Repository
+public class RevokedTokenRepository {
+
+	private static final String INSERT = """
+			INSERT INTO "RevokedToken" (token_id, kind, expires_at) VALUES (?, ?, ?)""";
+
+	private final JdbcTemplate jdbc;
+
+	public RevokedTokenRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	/** Consomme un <code>jti</code> ; renvoie <code>false</code> s’il l’avait déjà été. */
+	public boolean markUsed(String jti, Instant expiresAt) {
+		return insert(jti, "USED", expiresAt);
+	}
+
+	/**
+	 * Enregistre des <code>jti</code> consommés en un seul batch JDBC ; ceux déjà présents (consommés aussi sur un
+	 * autre nœud) sont ignorés.
+	 */
+	public void markUsedAll(Map<String, Instant> tokens) {
+		List<Object[]> rows = new ArrayList<>(tokens.size());
+		tokens.forEach((jti, expiresAt) -> rows.add(new Object[]{jti, "USED", utc(expiresAt)}));
+		try {
+			jdbc.batchUpdate(INSERT, rows);
+		} catch (DuplicateKeyException e) {
+			// ligne à ligne : seuls les doublons sont écartés
+			tokens.forEach(this::markUsed);
+		}
+	}
+
+	/** Révoque une famille ; renvoie <code>false</code> si elle l’était déjà. */
+	public boolean revokeFamily(String family, Instant expiresAt) {
+		return insert(family, "FAMILY", expiresAt);
+	}
+
+	/** Familles révoquées encore valides à <code>now</code>. */
+	public void forEachRevokedFamily(Instant now, BiConsumer<String, Instant> consumer) {
+		forEach("FAMILY", now, consumer);
+	}
+
+	/** <code>jti</code> consommés de refresh tokens encore valides à <code>now</code>. */
+	public void forEachUsedToken(Instant now, BiConsumer<String, Instant> consumer) {
+		forEach("USED", now, consumer);
+	}
+
+	private void forEach(String kind, Instant now, BiConsumer<String, Instant> consumer) {
+		jdbc.query("""
+				SELECT token_id, expires_at FROM "RevokedToken"
+				WHERE kind = ? AND expires_at > ?""",
+				rs -> {
+					consumer.accept(rs.getString("token_id"), rs.getObject("expires_at", OffsetDateTime.class).toInstant());
+				},
+				kind, utc(now));
+	}
+
+	public int deleteExpired(Instant now) {
+		return jdbc.update("""
+				DELETE FROM "RevokedToken" WHERE expires_at <= ?""", utc(now));
+	}
+
+	private boolean insert(String id, String kind, Instant expiresAt) {
+		try {
+			jdbc.update(INSERT, id, kind, utc(expiresAt));
+			return true;
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	private static OffsetDateTime utc(Instant instant) {
+		return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+	}
+}
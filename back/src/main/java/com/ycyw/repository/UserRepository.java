@@ -0,0 +1,38 @@
+package com.ycyw.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Accès JDBC à la table <code>"User"</code>.
+ * <p>
+ * Le nom d’utilisateur Spring Security est l’<code>email</code> ; le rôle de la table devient
+ * l’authority <code>ROLE_&lt;role&gt;</code> et <code>is_active = FALSE</code> un compte désactivé.
+ * </p>
+ */
+@Repository
+public class UserRepository {
+
+	private final JdbcTemplate jdbc;
+
+	public UserRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	public Optional<UserDetails> findByEmail(String email) {
+		List<UserDetails> users = jdbc.query("""
+				SELECT email, password, role, is_active FROM "User" WHERE email = ?""",
+				(rs, i) -> User.withUsername(rs.getString("email"))
+						.password(rs.getString("password"))
+						.roles(rs.getString("role"))
+						.disabled(!rs.getBoolean("is_active"))
+						.build(),
+				email);
+		return users.stream().findFirst();
+	}
+}
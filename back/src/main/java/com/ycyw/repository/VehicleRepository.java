@@ -0,0 +1,86 @@
+package com.ycyw.repository;
+
+import com.ycyw.dto.CatalogVehicle;
+import com.ycyw.dto.VehicleSummary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Accès JDBC à la table <code>"Vehicle"</code>.
+ */
+@Repository
+public class VehicleRepository {
+
+	private static final int SCAN_FETCH_SIZE = 10_000;
+
+	/** Colonnes de {@link #SUMMARY}. */
+	private static final String SUMMARY_COLUMNS =
+			"SELECT vehicle_id, current_agency_id, category, status, is_active FROM \"Vehicle\"";
+
+	private static final RowMapper<VehicleSummary> SUMMARY = (rs, i) -> {
+		long agencyId = rs.getLong("current_agency_id");
+		boolean located = !rs.wasNull();
+		String status = rs.getString("status");
+		return new VehicleSummary(
+				rs.getLong("vehicle_id"),
+				agencyId,
+				rs.getString("category"),
+				located && rs.getBoolean("is_active") && ("AVAILABLE".equals(status) || "BOOKED".equals(status)));
+	};
+
+	private static final String CATALOG = """
+			SELECT v.vehicle_id, v.brand, v.model, v.category, v.seats, v.current_agency_id, a.city
+			FROM "Vehicle" v JOIN "Agency" a ON a.agency_id = v.current_agency_id
+			WHERE v.status = 'AVAILABLE' AND v.is_active""";
+
+	private static final RowMapper<CatalogVehicle> CATALOG_ENTRY = (rs, i) -> new CatalogVehicle(
+			rs.getLong("vehicle_id"),
+			rs.getString("brand"),
+			rs.getString("model"),
+			rs.getString("category"),
+			rs.getInt("seats"),
+			rs.getLong("current_agency_id"),
+			rs.getString("city"));
+
+	private final JdbcTemplate jdbc;
+
+	public VehicleRepository(JdbcTemplate jdbc) {
+		this.jdbc = jdbc;
+	}
+
+	public Optional<VehicleSummary> findById(long vehicleId) {
+		List<VehicleSummary> vehicles = jdbc.query(SUMMARY_COLUMNS + " WHERE vehicle_id = ?", SUMMARY, vehicleId);
+		return vehicles.stream().findFirst();
+	}
+
+	/** Parcourt toute la flotte en streaming (reconstruction de l’index de disponibilité). */
+	public void scanAll(Consumer<VehicleSummary> consumer) {
+		jdbc.query(connection -> {
+			PreparedStatement ps = connection.prepareStatement(SUMMARY_COLUMNS);
+			ps.setFetchSize(SCAN_FETCH_SIZE);
+			return ps;
+		}, (RowCallbackHandler) rs -> consumer.accept(SUMMARY.mapRow(rs, 0)));
+	}
+
+	/** Véhicule tel qu’affiché au catalogue, vide s’il n’est pas (ou plus) proposé à la location. */
+	public Optional<CatalogVehicle> findListed(long vehicleId) {
+		List<CatalogVehicle> listed = jdbc.query(CATALOG + " AND v.vehicle_id = ?", CATALOG_ENTRY, vehicleId);
+		return listed.stream().findFirst();
+	}
+
+	/** Parcourt les véhicules proposés à la location (statut <code>AVAILABLE</code>) en streaming. */
+	public void scanListed(Consumer<CatalogVehicle> consumer) {
+		jdbc.query(connection -> {
+			PreparedStatement ps = connection.prepareStatement(CATALOG);
+			ps.setFetchSize(SCAN_FETCH_SIZE);
+			return ps;
+		}, (RowCallbackHandler) rs -> consumer.accept(CATALOG_ENTRY.mapRow(rs, 0)));
+	}
+}
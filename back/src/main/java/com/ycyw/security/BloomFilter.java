@@ -0,0 +1,76 @@
+package com.ycyw.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtre de Bloom sur des chaînes, sans suppression, sûr en accès concurrent.
+ * <p>
+ * Dimensionné pour <code>expectedInsertions</code> éléments avec un taux de faux positifs
+ * <code>fpp</code> (environ 10 bits par élément à 1 %). Les <code>k</code> positions sont dérivées de deux
+ * empreintes 64 bits (double hachage de Kirsch et Mitzenmacher), la chaîne n’est parcourue qu’une fois.
+ * </p>
+ */
+final class BloomFilter {
+
+	private final AtomicLongArray words;
+	private final long bits;
+	private final int hashes;
+
+	BloomFilter(int expectedInsertions, double fpp) {
+		int n = Math.max(1, expectedInsertions);
+		long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		int wordCount = (int) Math.max(1, (m + 63) / 64);
+		this.words = new AtomicLongArray(wordCount);
+		this.bits = wordCount * 64L;
+		this.hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+	}
+
+	void put(String key) {
+		long h1 = hash(key);
+		long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashes; i++) {
+			long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+			long current = words.get(word);
+			while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+				current = words.get(word);
+			}
+		}
+	}
+
+	boolean mightContain(String key) {
+		long h1 = hash(key);
+		long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1;
+		for (int i = 0; i < hashes; i++) {
+			long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+			if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	long bitSize() {
+		return bits;
+	}
+
+	/** FNV-1a 64 bits puis finalisation de MurmurHash3. */
+	private static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
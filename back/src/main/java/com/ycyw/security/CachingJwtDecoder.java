@@ -0,0 +1,169 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link JwtDecoder} qui mémorise les JWT déjà vérifiés.
+ * <p>
+ * Utilisé à la fois par le resource server HTTP et par l’intercepteur STOMP du CONNECT : une tempête de
+ * reconnexions ne re-vérifie plus la signature HMAC ni ne re-parse les claims d’un même token.
+ * Les entrées sont indexées par l’empreinte SHA-256 du token (le token brut n’est pas conservé comme clé)
+ * et expirent au plus tard à l’<code>exp</code> du JWT. Seuls les tokens valides sont mis en cache.
+ * Un token en cache reste accepté jusqu’à son expiration, comme sans cache : la révocation porte sur les
+ * familles de refresh tokens et se vérifie après le décodage ({@link RefreshTokenDenylist}).
+ * </p>
+ * <p>
+ * Les authorities calculées pour un JWT sont conservées avec lui, voir {@link #cachingAuthorities(Converter)}.
+ * </p>
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+	private final JwtDecoder delegate;
+	private final int maxEntries;
+	private final Duration maxTtl;
+	private final Clock clock;
+
+	private final Map<ByteBuffer, Entry> cache = new ConcurrentHashMap<>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+
+	public CachingJwtDecoder(JwtDecoder delegate, int maxEntries, Duration maxTtl, MeterRegistry registry) {
+		this(delegate, maxEntries, maxTtl, registry, Clock.systemUTC());
+	}
+
+	CachingJwtDecoder(JwtDecoder delegate, int maxEntries, Duration maxTtl, MeterRegistry registry, Clock clock) {
+		this.delegate = delegate;
+		this.maxEntries = maxEntries;
+		this.maxTtl = maxTtl;
+		this.clock = clock;
+
+		Gauge.builder("security.jwt.cache.size", cache, Map::size).register(registry);
+		this.hits = Counter.builder("security.jwt.cache").tag("result", "hit").register(registry);
+		this.misses = Counter.builder("security.jwt.cache").tag("result", "miss").register(registry);
+		this.evictions = Counter.builder("security.jwt.cache.evictions").register(registry);
+	}
+
+	@Override
+	public Jwt decode(String token) throws JwtException {
+		return entryFor(token).jwt;
+	}
+
+	/**
+	 * Enveloppe le convertisseur d’authorities pour ne le calculer qu’une fois par JWT en cache.
+	 */
+	public Converter<Jwt, Collection<GrantedAuthority>> cachingAuthorities(Converter<Jwt, Collection<GrantedAuthority>> converter) {
+		return new Converter<>() {
+			@Override
+			public Collection<GrantedAuthority> convert(@NonNull Jwt jwt) {
+				Entry entry = cache.get(digest(jwt.getTokenValue()));
+				if (entry == null || entry.jwt != jwt) {
+					return converter.convert(jwt);
+				}
+				Collection<GrantedAuthority> authorities = entry.authorities;
+				if (authorities == null) {
+					authorities = converter.convert(jwt);
+					entry.authorities = authorities;
+				}
+				return authorities;
+			}
+		};
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	private Entry entryFor(String token) {
+		ByteBuffer key = digest(token);
+		Instant now = clock.instant();
+		Entry entry = cache.get(key);
+		if (entry != null) {
+			if (now.isBefore(entry.expiresAt)) {
+				hits.increment();
+				return entry;
+			}
+			cache.remove(key, entry);
+		}
+		misses.increment();
+
+		Jwt jwt = delegate.decode(token);
+		Instant expiresAt = now.plus(maxTtl);
+		if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expiresAt)) {
+			expiresAt = jwt.getExpiresAt();
+		}
+		entry = new Entry(jwt, expiresAt);
+		if (now.isBefore(expiresAt)) {
+			if (cache.size() >= maxEntries) {
+				sweep(now);
+			}
+			cache.put(key, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Libère de la place : d’abord les entrées expirées, puis, si le cache est encore plein,
+	 * un dixième des entrées dans l’ordre (pseudo-aléatoire) de la table.
+	 */
+	private void sweep(Instant now) {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			cache.values().removeIf(e -> !now.isBefore(e.expiresAt));
+			int excess = cache.size() - maxEntries + Math.max(1, maxEntries / 10);
+			Iterator<Entry> it = cache.values().iterator();
+			while (excess-- > 0 && it.hasNext()) {
+				it.next();
+				it.remove();
+				evictions.increment();
+			}
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	private static ByteBuffer digest(String token) {
+		try {
+			MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+			return ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private static final class Entry {
+		private final Jwt jwt;
+		private final Instant expiresAt;
+		private volatile Collection<GrantedAuthority> authorities;
+
+		private Entry(Jwt jwt, Instant expiresAt) {
+			this.jwt = jwt;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.ycyw.security;
+
+import com.ycyw.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link UserDetailsService} sur la table <code>"User"</code>, avec un cache borné à expiration.
+ * <p>
+ * Sollicité à chaque login et à chaque <code>/api/refresh</code>. Les comptes trouvés (actifs ou non) sont
+ * gardés au plus <code>ttl</code> ; les utilisateurs inconnus ne sont pas mis en cache. Plusieurs
+ * demandes simultanées pour un même utilisateur absent du cache partagent une seule requête SQL.
+ * </p>
+ * <p>
+ * Le cache renvoie une copie de l’utilisateur à chaque appel : le {@code ProviderManager} efface le mot
+ * de passe de l’utilisateur authentifié, ce qui ne doit pas atteindre l’entrée en cache.
+ * </p>
+ * <p>
+ * Aucune écriture de l’application ne modifie un compte : une désactivation, un mot de passe ou un rôle changé
+ * en base prend effet au plus tard après <code>ttl</code> (<code>app.userCache.ttlMs</code>).
+ * </p>
+ */
+public class CachingUserDetailsService implements UserDetailsService {
+
+	private final UserRepository users;
+	private final int maxEntries;
+	private final Duration ttl;
+	private final Clock clock;
+
+	private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+	/** Chargements en cours, partagés par les demandes concurrentes d’un même utilisateur. */
+	private final Map<String, CompletableFuture<UserDetails>> loading = new ConcurrentHashMap<>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter coalesced;
+	private final Counter evictions;
+
+	public CachingUserDetailsService(UserRepository users, int maxEntries, Duration ttl, MeterRegistry registry) {
+		this(users, maxEntries, ttl, registry, Clock.systemUTC());
+	}
+
+	CachingUserDetailsService(UserRepository users, int maxEntries, Duration ttl, MeterRegistry registry, Clock clock) {
+		this.users = users;
+		this.maxEntries = maxEntries;
+		this.ttl = ttl;
+		this.clock = clock;
+
+		Gauge.builder("security.users.cache.size", cache, Map::size).register(registry);
+		this.hits = Counter.builder("security.users.cache").tag("result", "hit").register(registry);
+		this.misses = Counter.builder("security.users.cache").tag("result", "miss").register(registry);
+		this.coalesced = Counter.builder("security.users.cache").tag("result", "coalesced").register(registry);
+		this.evictions = Counter.builder("security.users.cache.evictions").register(registry);
+	}
+
+	@Override
+	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+		Instant now = clock.instant();
+		Entry entry = cache.get(username);
+		if (entry != null) {
+			if (now.isBefore(entry.expiresAt)) {
+				hits.increment();
+				return copyOf(entry.user, username);
+			}
+			cache.remove(username, entry);
+		}
+
+		CompletableFuture<UserDetails> load = new CompletableFuture<>();
+		CompletableFuture<UserDetails> pending = loading.putIfAbsent(username, load);
+		if (pending != null) {
+			coalesced.increment();
+			return copyOf(await(pending), username);
+		}
+		misses.increment();
+
+		UserDetails user;
+		try {
+			user = users.findByEmail(username).orElse(null);
+		} catch (RuntimeException e) {
+			loading.remove(username, load);
+			load.completeExceptionally(e);
+			throw e;
+		}
+		if (user != null) {
+			if (cache.size() >= maxEntries) {
+				sweep(now);
+			}
+			entry = new Entry(user, now.plus(ttl));
+			cache.put(username, entry);
+		}
+		loading.remove(username, load);
+		load.complete(user);
+		return copyOf(user, username);
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	private static UserDetails await(CompletableFuture<UserDetails> pending) {
+		try {
+			return pending.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	private static UserDetails copyOf(UserDetails user, String username) {
+		if (user == null) {
+			throw new UsernameNotFoundException(username);
+		}
+		return User.withUserDetails(user).build();
+	}
+
+	/**
+	 * Libère de la place : d’abord les entrées expirées, puis, si le cache est encore plein,
+	 * un dixième des entrées dans l’ordre (pseudo-aléatoire) de la table.
+	 */
+	private void sweep(Instant now) {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			cache.values().removeIf(e -> !now.isBefore(e.expiresAt));
+			int excess = cache.size() - maxEntries + Math.max(1, maxEntries / 10);
+			Iterator<Entry> it = cache.values().iterator();
+			while (excess-- > 0 && it.hasNext()) {
+				it.next();
+				it.remove();
+				evictions.increment();
+			}
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	private record Entry(UserDetails user, Instant expiresAt) {
+	}
+}
@@ -0,0 +1,136 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors des canaux STOMP (<code>clientInboundChannel</code>, <code>clientOutboundChannel</code>,
+ * <code>brokerChannel</code>), tous bornés.
+ * <p>
+ * Deux modes (<code>app.websocket.executor</code>) :
+ * </p>
+ * <ul>
+ *     <li><code>virtual</code> : un thread virtuel par message, au plus <code>concurrency</code> en parallèle ;</li>
+ *     <li><code>pool</code> : <code>concurrency</code> threads plateforme et une file de <code>queueCapacity</code> messages.</li>
+ * </ul>
+ * <p>
+ * Une fois la limite atteinte, l’appelant (thread d’E/S WebSocket, broker) attend au plus
+ * <code>offerTimeoutMs</code> avant que le message ne soit rejeté, comme pour le {@code ConversationDispatcher} :
+ * la contre-pression remonte jusqu’à la connexion au lieu d’accumuler des messages en mémoire.
+ * Les rejets sont comptés dans <code>stomp.channel.rejected{channel}</code>.
+ * </p>
+ */
+final class ChannelExecutors {
+
+	private ChannelExecutors() {
+	}
+
+	static TaskExecutor virtual(String name, int concurrency, long offerTimeoutMs, MeterRegistry registry) {
+		return new VirtualThreadExecutor(name, concurrency, offerTimeoutMs, registry);
+	}
+
+	/**
+	 * Pool plateforme borné. Enregistré auprès de Spring via {@code ChannelRegistration#taskExecutor}, il est
+	 * initialisé par le conteneur et publié par Spring Boot sous <code>executor.*</code>.
+	 */
+	static ThreadPoolTaskExecutor pool(String name, int threads, int queueCapacity, long offerTimeoutMs,
+									   MeterRegistry registry) {
+		Counter rejected = rejectedCounter(name, registry);
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix(name + "-");
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.setRejectedExecutionHandler((task, pool) -> {
+			try {
+				if (!pool.isShutdown() && pool.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			rejected.increment();
+			throw new RejectedExecutionException(name + " saturated");
+		});
+		return executor;
+	}
+
+	private static Counter rejectedCounter(String name, MeterRegistry registry) {
+		return Counter.builder("stomp.channel.rejected")
+				.description("Messages rejected because the channel executor stayed saturated")
+				.tag("channel", name)
+				.register(registry);
+	}
+
+	/**
+	 * Un thread virtuel par tâche, concurrence bornée par un sémaphore.
+	 */
+	private static final class VirtualThreadExecutor implements TaskExecutor {
+
+		private final String name;
+		private final int concurrency;
+		private final long offerTimeoutMs;
+		private final Semaphore permits;
+		private final ThreadFactory threads;
+		private final Counter rejected;
+
+		private VirtualThreadExecutor(String name, int concurrency, long offerTimeoutMs, MeterRegistry registry) {
+			this.name = name;
+			this.concurrency = concurrency;
+			this.offerTimeoutMs = offerTimeoutMs;
+			this.permits = new Semaphore(concurrency);
+			this.threads = Thread.ofVirtual().name(name + "-", 0).factory();
+			this.rejected = rejectedCounter(name, registry);
+
+			Gauge.builder("executor.active", this, e -> e.concurrency - e.permits.availablePermits())
+					.tag("name", name + "Executor")
+					.register(registry);
+			Gauge.builder("executor.queued", permits, Semaphore::getQueueLength)
+					.description("Callers waiting for a free slot")
+					.tag("name", name + "Executor")
+					.register(registry);
+		}
+
+		@Override
+		public void execute(@NonNull Runnable task) {
+			if (!acquire()) {
+				rejected.increment();
+				throw new RejectedExecutionException(name + " saturated");
+			}
+			try {
+				threads.newThread(() -> {
+					try {
+						task.run();
+					} finally {
+						permits.release();
+					}
+				}).start();
+			} catch (RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+
+		private boolean acquire() {
+			if (permits.tryAcquire()) {
+				return true;
+			}
+			try {
+				return permits.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+	}
+}
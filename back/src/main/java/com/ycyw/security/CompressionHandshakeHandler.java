@@ -0,0 +1,116 @@
+package com.ycyw.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeFailureException;
+import org.springframework.web.socket.server.RequestUpgradeStrategy;
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Poignée de main WebSocket des endpoints natif et SockJS : <code>permessage-deflate</code> n’est négocié que si la
+ * compression est activée (<code>app.websocket.compression</code>).
+ * <p>
+ * Les trames JSON du chat se compressent bien, mais chaque session compressée garde un contexte zlib et paie
+ * le CPU de (dé)compression : à désactiver si la mémoire par session prime sur la bande passante.
+ * </p>
+ * <p>
+ * Tomcat négocie ses extensions d’après l’en-tête <code>Sec-WebSocket-Extensions</code> de la requête, quelle que
+ * soit la sélection de Spring : sans compression, l’en-tête est aussi masqué à la mise à niveau
+ * (<code>permessage-deflate</code> est la seule extension que Tomcat connaisse).
+ * </p>
+ */
+class CompressionHandshakeHandler extends DefaultHandshakeHandler {
+
+	static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+	static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+
+	private final boolean compression;
+
+	CompressionHandshakeHandler(boolean compression) {
+		super(compression ? new StandardWebSocketUpgradeStrategy()
+				: new WithoutExtensions(new StandardWebSocketUpgradeStrategy()));
+		this.compression = compression;
+	}
+
+	@Override
+	@NonNull
+	protected List<WebSocketExtension> filterRequestedExtensions(@NonNull ServerHttpRequest request,
+																 @NonNull List<WebSocketExtension> requestedExtensions,
+																 @NonNull List<WebSocketExtension> supportedExtensions) {
+		List<WebSocketExtension> extensions = super.filterRequestedExtensions(request, requestedExtensions, supportedExtensions);
+		return compression ? extensions : extensions.stream()
+				.filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+				.toList();
+	}
+
+	/** Mise à niveau sur une requête privée de son en-tête <code>Sec-WebSocket-Extensions</code>. */
+	static final class WithoutExtensions implements RequestUpgradeStrategy {
+
+		private final RequestUpgradeStrategy delegate;
+
+		WithoutExtensions(RequestUpgradeStrategy delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		@NonNull
+		public String[] getSupportedVersions() {
+			return delegate.getSupportedVersions();
+		}
+
+		@Override
+		@NonNull
+		public List<WebSocketExtension> getSupportedExtensions(@NonNull ServerHttpRequest request) {
+			return delegate.getSupportedExtensions(request);
+		}
+
+		@Override
+		public void upgrade(@NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response,
+							@Nullable String selectedProtocol, @NonNull List<WebSocketExtension> selectedExtensions,
+							@Nullable Principal user, @NonNull WebSocketHandler wsHandler,
+							@NonNull Map<String, Object> attributes) throws HandshakeFailureException {
+			if (request instanceof ServletServerHttpRequest servlet) {
+				request = new ServletServerHttpRequest(new HiddenExtensions(servlet.getServletRequest()));
+			}
+			delegate.upgrade(request, response, selectedProtocol, selectedExtensions, user, wsHandler, attributes);
+		}
+	}
+
+	static final class HiddenExtensions extends HttpServletRequestWrapper {
+
+		HiddenExtensions(HttpServletRequest request) {
+			super(request);
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? null : super.getHeader(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaders(String name) {
+			return EXTENSIONS_HEADER.equalsIgnoreCase(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+		}
+
+		@Override
+		public Enumeration<String> getHeaderNames() {
+			return Collections.enumeration(Collections.list(super.getHeaderNames()).stream()
+					.filter(name -> !EXTENSIONS_HEADER.equalsIgnoreCase(name))
+					.toList());
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.ycyw.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Abonnements groupés : un abonnement à <code>{destination}.batch</code> reçoit les messages de
+ * <code>{destination}</code> regroupés en une seule trame contenant un tableau.
+ * <p>
+ * L’abonnement est réécrit vers la destination d’origine à l’entrée. Sur le canal sortant, les trames MESSAGE
+ * de cet abonnement sont mises en attente par session, puis envoyées ensemble dès que
+ * <code>app.websocket.batch.maxMessages</code> messages sont en attente ou au plus tard
+ * <code>app.websocket.batch.windowMs</code> après le premier. Les corps ne sont pas re-sérialisés : un tableau
+ * JSON (ou CBOR de longueur indéfinie, voir {@link PayloadEncoding}) est formé en concaténant les charges
+ * utiles. L’ordre d’arrivée est conservé dans la trame et d’une trame à l’autre, donc l’ordre de chaque
+ * conversation.
+ * </p>
+ */
+@Slf4j
+@Component
+public class FrameBatcher implements WebSocketMessageBrokerConfigurer {
+
+	public static final String BATCH_SUFFIX = ".batch";
+
+	/** En-tête interne des trames déjà groupées, qui repassent par le canal sortant. */
+	private static final String BATCHED = "ycyw.batched";
+
+	private static final byte CBOR_INDEFINITE_ARRAY = (byte) 0x9f;
+	private static final byte CBOR_BREAK = (byte) 0xff;
+	private static final Log ORDER_LOG = LogFactory.getLog(FrameBatcher.class);
+
+	private final MessageChannel clientOutboundChannel;
+	private final long windowMs;
+	private final int maxMessages;
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+			Thread.ofPlatform().name("stomp-batch-flush").daemon().factory());
+
+	/** sessionId → subscriptionId → trames en attente. */
+	private final Map<String, Map<String, Batch>> batches = new ConcurrentHashMap<>();
+
+	public FrameBatcher(@Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+						@Value("${app.websocket.batch.windowMs:50}") long windowMs,
+						@Value("${app.websocket.batch.maxMessages:50}") int maxMessages) {
+		this.clientOutboundChannel = clientOutboundChannel;
+		this.windowMs = windowMs;
+		this.maxMessages = maxMessages;
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		registration.interceptors(inboundInterceptor());
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		registration.interceptors(outboundInterceptor());
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		batches.remove(event.getSessionId());
+	}
+
+	@PreDestroy
+	public void stop() {
+		timer.shutdownNow();
+	}
+
+	ChannelInterceptor inboundInterceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+				if (accessor == null || accessor.getSessionId() == null) {
+					return message;
+				}
+				if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+					return subscribe(message, accessor);
+				}
+				if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand()) && accessor.getSubscriptionId() != null) {
+					Map<String, Batch> sessionBatches = batches.get(accessor.getSessionId());
+					if (sessionBatches != null) {
+						sessionBatches.remove(accessor.getSubscriptionId());
+					}
+				}
+				return message;
+			}
+		};
+	}
+
+	ChannelInterceptor outboundInterceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				if (batches.isEmpty() || message.getHeaders().containsKey(BATCHED)
+						|| SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+					return message;
+				}
+				Map<String, Batch> sessionBatches = batches.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+				String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+				Batch batch = sessionBatches != null && subscriptionId != null ? sessionBatches.get(subscriptionId) : null;
+				if (batch == null || !(message.getPayload() instanceof byte[]) || format(message) == null) {
+					return message;
+				}
+				batch.add(message);
+				return null;
+			}
+		};
+	}
+
+	private Message<?> subscribe(Message<?> message, StompHeaderAccessor accessor) {
+		String destination = accessor.getDestination();
+		if (destination == null || !destination.endsWith(BATCH_SUFFIX) || accessor.getSubscriptionId() == null) {
+			return message;
+		}
+		batches.computeIfAbsent(accessor.getSessionId(), k -> new ConcurrentHashMap<>())
+				.put(accessor.getSubscriptionId(), new Batch());
+		StompHeaderAccessor rewritten = StompHeaderAccessor.wrap(message);
+		rewritten.setDestination(destination.substring(0, destination.length() - BATCH_SUFFIX.length()));
+		return MessageBuilder.createMessage(message.getPayload(), rewritten.getMessageHeaders());
+	}
+
+	/** Trames en attente d’un abonnement groupé. */
+	private final class Batch {
+
+		private final List<Message<?>> pending = new ArrayList<>();
+		/** L’ordre de publication est préservé (WebSocketConfig) : le canal sortant sait rappeler ce décorateur. */
+		private final MessageChannel channel = new OrderedMessageChannelDecorator(clientOutboundChannel, ORDER_LOG);
+
+		synchronized void add(Message<?> message) {
+			pending.add(message);
+			if (pending.size() >= maxMessages) {
+				flush();
+			} else if (pending.size() == 1) {
+				timer.schedule(this::flushPending, windowMs, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		synchronized void flushPending() {
+			if (!pending.isEmpty()) {
+				flush();
+			}
+		}
+
+		/** Les lots d’un abonnement passent par un même décorateur ordonné : ils ne peuvent pas se doubler. */
+		private void flush() {
+			List<Message<?>> messages = List.copyOf(pending);
+			pending.clear();
+			try {
+				channel.send(combine(messages));
+			} catch (RuntimeException e) {
+				log.warn("Dropped a batch of {} STOMP frames: {}", messages.size(), e.toString());
+			}
+		}
+	}
+
+	/** Concatène les charges utiles en un tableau, sous les en-têtes du premier message du lot. */
+	static Message<byte[]> combine(List<Message<?>> messages) {
+		Message<?> first = messages.getFirst();
+		boolean cbor = PayloadEncoding.CBOR.equals(format(first));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(cbor ? CBOR_INDEFINITE_ARRAY : '[');
+		for (int i = 0; i < messages.size(); i++) {
+			if (i > 0 && !cbor) {
+				out.write(',');
+			}
+			out.writeBytes((byte[]) messages.get(i).getPayload());
+		}
+		out.write(cbor ? CBOR_BREAK : ']');
+
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(first);
+		accessor.setHeader(BATCHED, Boolean.TRUE);
+		// RECEIVED_AT est celui du premier message : la latence mesurée est celle du plus ancien du lot
+		accessor.setNativeHeader("batch-size", Integer.toString(messages.size()));
+		// le décorateur ordonné y ajoute son rappel
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(out.toByteArray(), accessor.getMessageHeaders());
+	}
+
+	/** JSON ou CBOR : les seuls formats qui se concatènent en tableau. */
+	private static MimeType format(Message<?> message) {
+		Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+		MimeType mimeType = contentType instanceof MimeType m ? m
+				: contentType instanceof String value ? MimeTypeUtils.parseMimeType(value) : null;
+		if (mimeType == null) {
+			return null;
+		}
+		if (MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+			return MimeTypeUtils.APPLICATION_JSON;
+		}
+		return PayloadEncoding.CBOR.isCompatibleWith(mimeType) ? PayloadEncoding.CBOR : null;
+	}
+}
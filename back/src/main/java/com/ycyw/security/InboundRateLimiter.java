@@ -0,0 +1,215 @@
+package com.ycyw.security;
+
+import com.ycyw.metrics.StompMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limitation du débit des trames SEND entrantes, par session et par identité (utilisateur authentifié,
+ * sinon <code>clientId</code>), avec des limites par rôle (<code>app.ratelimit.{guest|client|employee}.*</code>).
+ * <p>
+ * Chaque seau est un seau à jetons sous forme GCRA : un seul <code>long</code> (instant théorique de la
+ * prochaine arrivée) mis à jour par CAS, sans verrou ni allocation par trame. Une trame au-delà de la
+ * limite est abandonnée ; après <code>app.ratelimit.maxDropped</code> abandons consécutifs, la session
+ * reçoit une trame ERROR et est fermée. Les autres sessions ne sont pas affectées.
+ * </p>
+ */
+@Slf4j
+@Component
+public class InboundRateLimiter implements WebSocketMessageBrokerConfigurer {
+
+	static final String ERROR_MESSAGE = "Rate limit exceeded";
+
+	/** Débit soutenu et rafale admise pour un rôle. */
+	record Limit(double perSecond, int burst) {
+
+		long intervalNanos() {
+			return (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+		}
+	}
+
+	/** Seau à jetons (GCRA) : instant théorique de la prochaine arrivée. */
+	static final class Bucket {
+
+		private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+		private final long intervalNanos;
+		private final long toleranceNanos;
+
+		Bucket(Limit limit) {
+			this.intervalNanos = limit.intervalNanos();
+			this.toleranceNanos = intervalNanos * (limit.burst() - 1L);
+		}
+
+		boolean tryAcquire(long now) {
+			while (true) {
+				long current = theoreticalArrival.get();
+				long tat = current == Long.MIN_VALUE ? now : Math.max(current, now);
+				if (tat - now > toleranceNanos) {
+					return false;
+				}
+				if (theoreticalArrival.compareAndSet(current, tat + intervalNanos)) {
+					return true;
+				}
+			}
+		}
+
+		/** Seau plein : le supprimer ne change rien pour son propriétaire. */
+		boolean isIdle(long now) {
+			long tat = theoreticalArrival.get();
+			return tat == Long.MIN_VALUE || tat - now <= 0;
+		}
+	}
+
+	/** État d’une session, résolu à sa première trame SEND. */
+	private static final class SessionState {
+		final StompMetrics.Role role;
+		final Bucket session;
+		final Bucket identity;
+		final AtomicInteger dropped = new AtomicInteger();
+
+		SessionState(StompMetrics.Role role, Bucket session, Bucket identity) {
+			this.role = role;
+			this.session = session;
+			this.identity = identity;
+		}
+	}
+
+	private final MessageChannel clientOutboundChannel;
+	private final boolean enabled;
+	private final int maxDropped;
+	private final Map<StompMetrics.Role, Limit> limits = new EnumMap<>(StompMetrics.Role.class);
+	private final Map<StompMetrics.Role, Counter> droppedFrames = new EnumMap<>(StompMetrics.Role.class);
+	private final Map<StompMetrics.Role, Counter> rejectedSessions = new EnumMap<>(StompMetrics.Role.class);
+
+	private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+	private final Map<String, Bucket> principals = new ConcurrentHashMap<>();
+	private final Map<String, Bucket> clients = new ConcurrentHashMap<>();
+
+	public InboundRateLimiter(@Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+							  MeterRegistry registry,
+							  @Value("${app.ratelimit.enabled:true}") boolean enabled,
+							  @Value("${app.ratelimit.maxDropped:20}") int maxDropped,
+							  @Value("${app.ratelimit.guest.perSecond:2}") double guestPerSecond,
+							  @Value("${app.ratelimit.guest.burst:10}") int guestBurst,
+							  @Value("${app.ratelimit.client.perSecond:5}") double clientPerSecond,
+							  @Value("${app.ratelimit.client.burst:20}") int clientBurst,
+							  @Value("${app.ratelimit.employee.perSecond:20}") double employeePerSecond,
+							  @Value("${app.ratelimit.employee.burst:50}") int employeeBurst) {
+		this.clientOutboundChannel = clientOutboundChannel;
+		this.enabled = enabled;
+		this.maxDropped = maxDropped;
+		limits.put(StompMetrics.Role.GUEST, new Limit(guestPerSecond, guestBurst));
+		limits.put(StompMetrics.Role.CLIENT, new Limit(clientPerSecond, clientBurst));
+		limits.put(StompMetrics.Role.EMPLOYEE, new Limit(employeePerSecond, employeeBurst));
+		for (StompMetrics.Role role : StompMetrics.Role.values()) {
+			droppedFrames.put(role, Counter.builder("stomp.inbound.ratelimited")
+					.description("Inbound STOMP frames over the rate limit")
+					.tag("role", role.name()).tag("outcome", "dropped")
+					.register(registry));
+			rejectedSessions.put(role, Counter.builder("stomp.inbound.ratelimited")
+					.description("Inbound STOMP frames over the rate limit")
+					.tag("role", role.name()).tag("outcome", "rejected")
+					.register(registry));
+		}
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		if (enabled) {
+			registration.interceptors(interceptor());
+		}
+	}
+
+	ChannelInterceptor interceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				MessageHeaders headers = message.getHeaders();
+				if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+					return message;
+				}
+				String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+				if (sessionId == null) {
+					return message;
+				}
+				SessionState state = sessions.get(sessionId);
+				if (state == null) {
+					state = sessions.computeIfAbsent(sessionId, id -> newSession(headers));
+				}
+				long now = System.nanoTime();
+				if (state.session.tryAcquire(now) && (state.identity == null || state.identity.tryAcquire(now))) {
+					state.dropped.set(0);
+					return message;
+				}
+				onDropped(sessionId, state);
+				return null;
+			}
+		};
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		if (sessions.remove(event.getSessionId()) == null) {
+			return;
+		}
+		long now = System.nanoTime();
+		principals.values().removeIf(bucket -> bucket.isIdle(now));
+		clients.values().removeIf(bucket -> bucket.isIdle(now));
+	}
+
+	private SessionState newSession(MessageHeaders headers) {
+		Principal user = SimpMessageHeaderAccessor.getUser(headers);
+		StompMetrics.Role role = StompMetrics.roleOf(user);
+		Limit limit = limits.get(role);
+		Bucket identity = null;
+		if (role != StompMetrics.Role.GUEST && user != null) {
+			identity = principals.computeIfAbsent(user.getName(), k -> new Bucket(limit));
+		} else {
+			Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+			if (attributes != null && attributes.get("clientId") instanceof String clientId) {
+				identity = clients.computeIfAbsent(clientId, k -> new Bucket(limit));
+			}
+		}
+		return new SessionState(role, new Bucket(limit), identity);
+	}
+
+	private void onDropped(String sessionId, SessionState state) {
+		droppedFrames.get(state.role).increment();
+		if (state.dropped.incrementAndGet() != maxDropped) {
+			return;
+		}
+		rejectedSessions.get(state.role).increment();
+		log.warn("Closing STOMP session {} ({}): {} frames over the rate limit", sessionId, state.role, maxDropped);
+		StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+		error.setSessionId(sessionId);
+		error.setMessage(ERROR_MESSAGE);
+		clientOutboundChannel.send(MessageBuilder.createMessage(new byte[0], error.getMessageHeaders()));
+	}
+}
@@ -1,22 +1,21 @@
 package com.ycyw.security;
 
-import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 @Configuration
 public class JwtConfig {
 
 	/**
-	 * Clé secrète utilisée pour signer et vérifier les JWT.
+	 * Clé secrète utilisée pour vérifier les JWT, signés par {@link JwtTokenMinter}.
 	 * <p>
 	 * Cette valeur est injectée depuis le fichier de configuration {@code application.properties}
 	 * sous la clé {@code app.jwtSecret}.
@@ -25,31 +24,27 @@ public class JwtConfig {
 	@Value("${app.jwtSecret}")
 	private String jwtSecret;
 
-	/**
-	 * Crée un bean {@link JwtEncoder} pour générer des JWT signés.
-	 * <p>
-	 * Utilise {@link NimbusJwtEncoder} avec une clé secrète HMAC-SHA256 pour assurer
-	 * l'intégrité des tokens.
-	 * </p>
-	 *
-	 * @return Une instance de {@link JwtEncoder} configurée avec la clé secrète.
-	 */
-	@Bean
-	public JwtEncoder jwtEncoder() {
-		return new NimbusJwtEncoder(new ImmutableSecret<>(this.jwtSecret.getBytes()));
-	}
+	/** Nombre maximal de JWT vérifiés gardés en cache ({@code app.jwtCache.maxEntries}). */
+	@Value("${app.jwtCache.maxEntries:10000}")
+	private int jwtCacheMaxEntries;
+
+	/** Durée de vie maximale d'une entrée, plafonnée de toute façon par l'expiration du token. */
+	@Value("${app.jwtCache.maxTtlMs:900000}")
+	private long jwtCacheMaxTtlMs;
 
 	/**
 	 * Crée un bean {@link JwtDecoder} pour valider et décoder les JWT.
 	 * <p>
 	 * Utilise {@link NimbusJwtDecoder} avec HMAC-SHA256 pour s'assurer que les tokens
-	 * sont bien signés avec la clé correcte.
+	 * sont bien signés avec la clé correcte. Le décodeur est enveloppé dans un {@link CachingJwtDecoder}
+	 * partagé par le resource server HTTP et l'authentification STOMP.
 	 * </p>
 	 *
 	 * @return Une instance de {@link JwtDecoder} configurée pour la validation des JWT.
 	 */
 	@Bean
-	public JwtDecoder jwtDecoder() {
-		return NimbusJwtDecoder.withSecretKey(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256")).build();
+	public CachingJwtDecoder jwtDecoder(MeterRegistry meterRegistry) {
+		JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256")).build();
+		return new CachingJwtDecoder(nimbus, jwtCacheMaxEntries, Duration.ofMillis(jwtCacheMaxTtlMs), meterRegistry);
 	}
 }
@@ -0,0 +1,194 @@
+package com.ycyw.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Émission des JWT HS256 (access et refresh) sans passer par le pipeline Nimbus à chaque appel.
+ * <p>
+ * L’en-tête encodé et la clé HMAC sont préparés une seule fois ; chaque thread réutilise sa propre
+ * instance de {@link Mac}. Le fragment JSON propre à un utilisateur (<code>sub</code> et <code>roles</code>)
+ * est calculé une fois puis mis en cache, et les deux tokens sont produits en une seule passe.
+ * Les tokens restent des JWS compacts standards, validés par le {@code JwtDecoder} de {@link JwtConfig}.
+ * </p>
+ * <p>
+ * Chaque refresh token porte un identifiant unique (<code>jti</code>) et celui de sa famille (<code>fam</code>) :
+ * une nouvelle famille à chaque login, conservée lors des renouvellements (voir {@link RefreshTokenDenylist}).
+ * </p>
+ */
+@Component
+public class JwtTokenMinter {
+
+	/** {"alg":"HS256"}, identique à l’en-tête produit par {@code JwsHeader.with(MacAlgorithm.HS256)}. */
+	private static final byte[] HEADER = base64Url("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.US_ASCII));
+	public static final String FAMILY_CLAIM = "fam";
+	private static final int MAX_CACHED_USERS = 10_000;
+
+	private final long accessTtlSeconds;
+	private final long refreshTtlSeconds;
+	private final Mac prototype;
+	private final ThreadLocal<Mac> macs;
+	private final Map<String, UserClaims> userClaims = new ConcurrentHashMap<>();
+
+	public JwtTokenMinter(@Value("${app.jwtSecret}") String secret,
+						  @Value("${app.jwtExpirationMs}") long accessTtlMs,
+						  @Value("${app.jwtRefreshExpirationMs}") long refreshTtlMs) {
+		this.accessTtlSeconds = accessTtlMs / 1000;
+		this.refreshTtlSeconds = refreshTtlMs / 1000;
+		try {
+			this.prototype = Mac.getInstance("HmacSHA256");
+			this.prototype.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("HmacSHA256 not available", e);
+		}
+		this.macs = ThreadLocal.withInitial(this::newMac);
+	}
+
+	/** Access token et refresh token émis au même instant pour le même utilisateur. */
+	public record TokenPair(String accessToken, String refreshToken) {
+	}
+
+	/** Paire émise au login : le refresh token ouvre une nouvelle famille. */
+	public TokenPair mint(UserDetails user) {
+		return mint(user, newId());
+	}
+
+	/** Paire émise lors d’un renouvellement : le refresh token reste dans la famille <code>family</code>. */
+	public TokenPair mint(UserDetails user, String family) {
+		UserClaims claims = claimsOf(user);
+		long now = Instant.now().getEpochSecond();
+		return new TokenPair(
+				sign(claims.subjectPrefix, now, now + accessTtlSeconds, claims.accessSuffix),
+				sign(claims.subjectPrefix, now, now + refreshTtlSeconds, refreshSuffix(family)));
+	}
+
+	public String mintAccessToken(UserDetails user) {
+		UserClaims claims = claimsOf(user);
+		long now = Instant.now().getEpochSecond();
+		return sign(claims.subjectPrefix, now, now + accessTtlSeconds, claims.accessSuffix);
+	}
+
+	private static String refreshSuffix(String family) {
+		return ",\"jti\":" + jsonString(newId()) + ",\"" + FAMILY_CLAIM + "\":" + jsonString(family) + "}";
+	}
+
+	private static String newId() {
+		return UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Assemble <code>base64url(header) . base64url(claims) . base64url(hmac)</code>.
+	 * Les claims sont écrits dans l’ordre <code>sub, iat, exp</code>, puis <code>roles</code> (access)
+	 * ou <code>jti, fam</code> (refresh).
+	 */
+	private String sign(String prefix, long iat, long exp, String suffix) {
+		String json = prefix + iat + ",\"exp\":" + exp + suffix;
+		byte[] payload = base64Url(json.getBytes(StandardCharsets.UTF_8));
+
+		byte[] token = new byte[HEADER.length + 1 + payload.length + 1 + 43];
+		System.arraycopy(HEADER, 0, token, 0, HEADER.length);
+		token[HEADER.length] = '.';
+		System.arraycopy(payload, 0, token, HEADER.length + 1, payload.length);
+		int signingInputLength = HEADER.length + 1 + payload.length;
+
+		Mac mac = macs.get();
+		mac.update(token, 0, signingInputLength);
+		byte[] signature = base64Url(mac.doFinal());
+
+		token[signingInputLength] = '.';
+		System.arraycopy(signature, 0, token, signingInputLength + 1, signature.length);
+		return new String(token, StandardCharsets.US_ASCII);
+	}
+
+	private UserClaims claimsOf(UserDetails user) {
+		Collection<? extends GrantedAuthority> authorities = user.getAuthorities();
+		UserClaims claims = userClaims.get(user.getUsername());
+		if (claims == null || !claims.matches(authorities)) {
+			if (userClaims.size() >= MAX_CACHED_USERS) {
+				userClaims.clear();
+			}
+			claims = new UserClaims(user.getUsername(), authorities);
+			userClaims.put(user.getUsername(), claims);
+		}
+		return claims;
+	}
+
+	private Mac newMac() {
+		try {
+			return (Mac) prototype.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException("HmacSHA256 Mac cannot be cloned", e);
+		}
+	}
+
+	private static byte[] base64Url(byte[] bytes) {
+		return Base64.getUrlEncoder().withoutPadding().encode(bytes);
+	}
+
+	/**
+	 * Fragments JSON précalculés pour un utilisateur.
+	 */
+	private static final class UserClaims {
+		private final Set<GrantedAuthority> authorities;
+		private final String subjectPrefix;
+		private final String accessSuffix;
+
+		private UserClaims(String username, Collection<? extends GrantedAuthority> authorities) {
+			this.authorities = Set.copyOf(authorities);
+			this.subjectPrefix = "{\"sub\":" + jsonString(username) + ",\"iat\":";
+
+			StringBuilder roles = new StringBuilder(",\"roles\":[");
+			for (GrantedAuthority granted : authorities) {
+				String authority = granted.getAuthority();
+				if (authority.startsWith("ROLE_")) {
+					authority = authority.substring(5);
+				}
+				if (roles.charAt(roles.length() - 1) != '[') {
+					roles.append(',');
+				}
+				roles.append(jsonString(authority));
+			}
+			this.accessSuffix = roles.append("]}").toString();
+		}
+
+		private boolean matches(Collection<? extends GrantedAuthority> current) {
+			return authorities.size() == current.size() && authorities.containsAll(current);
+		}
+	}
+
+	static String jsonString(String value) {
+		StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"' -> sb.append("\\\"");
+				case '\\' -> sb.append("\\\\");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
+}
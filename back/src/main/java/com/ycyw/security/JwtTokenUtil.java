@@ -1,9 +1,8 @@
 package com.ycyw.security;
 
-import org.springframework.security.core.GrantedAuthority;
+import com.ycyw.exception.InvalidJwtException;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.oauth2.jwt.*;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,7 +13,8 @@ import org.springframework.security.oauth2.jwt.*;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.List;
+
+import static com.ycyw.common.ResponseMessages.INVALID_JWT;
 
 
 @Service
@@ -22,50 +22,33 @@ public class JwtTokenUtil {
 
 	public static final String JWT_REFRESH_URL = "/api/refresh";
 
-	private final JwtEncoder jwtEncoder;
+	private final JwtTokenMinter tokenMinter;
 	private final JwtDecoder jwtDecoder;
 	private final UserDetailsService userDetailsService;
-
-	@Value("${app.jwtExpirationMs}")
-	private int jwtExpirationInMs;
+	private final RefreshTokenDenylist denylist;
 
 	@Value("${app.jwtRefreshExpirationMs}")
 	private int jwtRefreshExpirationInMs;
 
 	@Autowired
-	public JwtTokenUtil(JwtEncoder jwtEncoder, JwtDecoder jwtDecoder, UserDetailsService userDetailsService) {
-		this.jwtEncoder = jwtEncoder;
+	public JwtTokenUtil(JwtTokenMinter tokenMinter, JwtDecoder jwtDecoder, UserDetailsService userDetailsService,
+						RefreshTokenDenylist denylist) {
+		this.tokenMinter = tokenMinter;
 		this.jwtDecoder = jwtDecoder;
 		this.userDetailsService = userDetailsService;
+		this.denylist = denylist;
 	}
 
-	public String generateToken(UserDetails user) {
-		List<String> roles = user.getAuthorities().stream()
-				.map(GrantedAuthority::getAuthority)
-				.map(a -> a.startsWith("ROLE_") ? a.substring(5) : a)
-				.toList();
-
-		Instant now = Instant.now();
-		JwtClaimsSet claims = JwtClaimsSet.builder()
-				.subject(String.valueOf(user.getUsername()))
-				.issuedAt(now)
-				.expiresAt(now.plusMillis(jwtExpirationInMs))
-				.claim("roles", roles)
-				.build();
-
-		return this.jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims)).getTokenValue();
+	/**
+	 * Émet en une passe l’access token (retourné) et le refresh token (déposé en cookie).
+	 */
+	public String issueTokens(UserDetails user, HttpServletResponse response) {
+		JwtTokenMinter.TokenPair tokens = tokenMinter.mint(user);
+		setRefreshTokenCookie(tokens.refreshToken(), response);
+		return tokens.accessToken();
 	}
 
-	public void generateAndSetRefreshToken(UserDetails user, HttpServletResponse response) {
-		Instant now = Instant.now();
-		JwtClaimsSet claims = JwtClaimsSet.builder()
-				.subject(String.valueOf(user.getUsername()))
-				.issuedAt(now)
-				.expiresAt(now.plusMillis(jwtRefreshExpirationInMs))
-				.build();
-
-		String refreshToken = this.jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims)).getTokenValue();
-
+	private void setRefreshTokenCookie(String refreshToken, HttpServletResponse response) {
 		Cookie refreshTokenCookie = new Cookie("refreshToken", refreshToken);
 		refreshTokenCookie.setHttpOnly(true);
 		refreshTokenCookie.setSecure(false); // à true en production pour HTTPS
@@ -101,13 +84,67 @@ public class JwtTokenUtil {
 		response.addCookie(deleteCookie);
 	}
 
-	public UserDetails extractUserDetailsFromToken(String token) {
-		String username = extractUsernameFromToken(token);
-		return userDetailsService.loadUserByUsername(username);
+	/**
+	 * Échange un refresh token contre une nouvelle paire de la même famille (rotation) : l’access token est
+	 * retourné, le refresh token déposé en cookie. Refusé si la famille est révoquée, si le compte a été supprimé
+	 * ou désactivé, ou si le token a déjà été échangé hors du délai de grâce — auquel cas toute la famille est
+	 * révoquée ({@link RefreshTokenDenylist#exchange}).
+	 */
+	public String rotateTokens(String refreshToken, HttpServletResponse response) {
+		Jwt jwt = decode(refreshToken);
+		String family = jwt.getClaimAsString(JwtTokenMinter.FAMILY_CLAIM);
+		if (jwt.getId() == null || jwt.getExpiresAt() == null || family == null || denylist.isRevoked(family)) {
+			throw new InvalidJwtException(INVALID_JWT);
+		}
+		UserDetails user = loadEnabledUser(jwt.getSubject());
+		JwtTokenMinter.TokenPair tokens = denylist.exchange(jwt.getId(), jwt.getExpiresAt(),
+				() -> tokenMinter.mint(user, family)).orElse(null);
+		if (tokens == null) {
+			denylist.revoke(family, familyExpiry());
+			throw new InvalidJwtException(INVALID_JWT);
+		}
+		setRefreshTokenCookie(tokens.refreshToken(), response);
+		return tokens.accessToken();
+	}
+
+	/** Révoque la famille d’un refresh token (déconnexion) ; un token invalide est ignoré. */
+	public void revokeRefreshToken(String refreshToken) {
+		Jwt jwt;
+		try {
+			jwt = decode(refreshToken);
+		} catch (InvalidJwtException e) {
+			return;
+		}
+		String family = jwt.getClaimAsString(JwtTokenMinter.FAMILY_CLAIM);
+		if (family != null) {
+			denylist.revoke(family, familyExpiry());
+		}
+	}
+
+	private Jwt decode(String token) {
+		try {
+			return jwtDecoder.decode(token);
+		} catch (JwtException e) {
+			throw new InvalidJwtException(INVALID_JWT);
+		}
+	}
+
+	/** Un compte supprimé ou désactivé depuis l’émission du token est refusé comme un token invalide. */
+	private UserDetails loadEnabledUser(String username) {
+		UserDetails user;
+		try {
+			user = userDetailsService.loadUserByUsername(username);
+		} catch (UsernameNotFoundException e) {
+			throw new InvalidJwtException(INVALID_JWT);
+		}
+		if (!user.isEnabled()) {
+			throw new InvalidJwtException(INVALID_JWT);
+		}
+		return user;
 	}
 
-	public String extractUsernameFromToken(String token) {
-		Jwt decodedJwt = jwtDecoder.decode(token);
-		return decodedJwt.getSubject();
+	/** Une famille vit au plus la durée d’un refresh token après son dernier renouvellement. */
+	private Instant familyExpiry() {
+		return Instant.now().plusMillis(jwtRefreshExpirationInMs);
 	}
 }
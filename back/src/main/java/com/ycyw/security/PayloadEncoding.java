@@ -0,0 +1,178 @@
+package com.ycyw.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Encodage des charges utiles STOMP négocié par session : JSON (défaut) ou CBOR.
+ * <p>
+ * Le client demande CBOR avec l’en-tête <code>content-type:application/cbor</code> sur sa trame CONNECT.
+ * Les envois restent sérialisés une seule fois en JSON par {@code SimpMessagingTemplate} ; les trames MESSAGE
+ * destinées à une session CBOR sont transcodées en flux (sans arbre intermédiaire) sur le canal sortant, le
+ * dernier résultat étant réutilisé pour les abonnés suivants d’un même message. Les trames SEND en
+ * <code>application/cbor</code> sont lues avec les mêmes DTO que le JSON.
+ * </p>
+ * <p>
+ * CBOR exige des trames WebSocket binaires : la négociation est ignorée sur SockJS, qui ne transporte que du
+ * texte, et ces sessions restent en JSON. Voir {@link WebSocketBrokerConfiguration} pour l’envoi binaire.
+ * </p>
+ */
+@Component
+public class PayloadEncoding implements WebSocketMessageBrokerConfigurer {
+
+	public static final MimeType CBOR = new MimeType("application", "cbor");
+
+	/** Attribut de session : transport de la session (<code>websocket</code> ou <code>sockjs</code>). */
+	public static final String TRANSPORT_ATTRIBUTE = "transport";
+	/** Attribut de session : encodage négocié, présent uniquement pour CBOR. */
+	public static final String ENCODING_ATTRIBUTE = "payloadEncoding";
+	public static final String SOCKJS = "sockjs";
+
+	private final JsonFactory jsonFactory = new JsonFactory();
+	private final CBORFactory cborFactory = new CBORFactory();
+
+	/** Sessions ayant négocié CBOR. */
+	private final Set<String> cborSessions = ConcurrentHashMap.newKeySet();
+	/** Dernier transcodage : un message diffusé sur un topic partage la même charge utile pour tous ses abonnés. */
+	private final AtomicReference<Transcoded> last = new AtomicReference<>();
+
+	private record Transcoded(byte[] json, byte[] cbor) {
+	}
+
+	/** Mapper CBOR configuré comme le mapper JSON des messages (modules Java Time, dates ISO-8601). */
+	public static ObjectMapper cborMapper() {
+		return Jackson2ObjectMapperBuilder.cbor().build();
+	}
+
+	@Override
+	public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+		MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(CBOR);
+		cbor.setObjectMapper(cborMapper());
+		// sans content-type, les convertisseurs par défaut (JSON) s’appliquent
+		cbor.setStrictContentTypeMatch(true);
+		messageConverters.add(cbor);
+		return true;
+	}
+
+	@Override
+	public void configureClientInboundChannel(ChannelRegistration registration) {
+		registration.interceptors(inboundInterceptor());
+	}
+
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		registration.interceptors(outboundInterceptor());
+	}
+
+	ChannelInterceptor inboundInterceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+				if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+					negotiate(accessor);
+				}
+				return message;
+			}
+		};
+	}
+
+	ChannelInterceptor outboundInterceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+				if (sessionId == null || cborSessions.isEmpty() || !cborSessions.contains(sessionId)
+						|| SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+						|| !(message.getPayload() instanceof byte[] json)) {
+					return message;
+				}
+				if (!isJson(message.getHeaders().get(MessageHeaders.CONTENT_TYPE))) {
+					return message;
+				}
+				SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+				accessor.setContentType(CBOR);
+				return MessageBuilder.createMessage(cachedTranscode(json), accessor.getMessageHeaders());
+			}
+		};
+	}
+
+	@EventListener
+	public void onDisconnect(SessionDisconnectEvent event) {
+		cborSessions.remove(event.getSessionId());
+	}
+
+	private void negotiate(StompHeaderAccessor accessor) {
+		List<String> requested = accessor.getNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER);
+		Map<String, Object> attributes = accessor.getSessionAttributes();
+		if (requested == null || requested.isEmpty() || attributes == null || accessor.getSessionId() == null
+				|| !CBOR.isCompatibleWith(MimeTypeUtils.parseMimeType(requested.getFirst()))
+				|| SOCKJS.equals(attributes.get(TRANSPORT_ATTRIBUTE))) {
+			return;
+		}
+		attributes.put(ENCODING_ATTRIBUTE, CBOR.toString());
+		cborSessions.add(accessor.getSessionId());
+	}
+
+	private static boolean isJson(Object contentType) {
+		MimeType mimeType = contentType instanceof MimeType m ? m
+				: contentType instanceof String value ? MimeTypeUtils.parseMimeType(value) : null;
+		return mimeType != null && MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+	}
+
+	private byte[] cachedTranscode(byte[] json) {
+		Transcoded cached = last.get();
+		if (cached != null && cached.json == json) {
+			return cached.cbor;
+		}
+		byte[] cbor = transcode(json);
+		last.set(new Transcoded(json, cbor));
+		return cbor;
+	}
+
+	/** Copie en flux d’un document JSON en CBOR. */
+	public byte[] transcode(byte[] json) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+		try (JsonParser parser = jsonFactory.createParser(json);
+			 JsonGenerator generator = cborFactory.createGenerator(out)) {
+			parser.nextToken();
+			generator.copyCurrentStructure(parser);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+}
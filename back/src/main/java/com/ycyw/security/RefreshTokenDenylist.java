@@ -0,0 +1,294 @@
+package com.ycyw.security;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Révocation des refresh tokens, vérifiée en mémoire à chaque <code>/api/refresh</code>.
+ * <p>
+ * Chaque refresh token porte un <code>jti</code> et l’identifiant de sa famille (<code>fam</code>), partagé
+ * par tous les tokens issus d’un même login. Un token n’est échangeable qu’une fois : sa consommation est
+ * notée en mémoire jusqu’à l’expiration du token, diffusée aux autres nœuds et écrite dans
+ * <code>"RevokedToken"</code> par lots (<code>app.refreshTokens.flushIntervalMs</code>), hors de la requête.
+ * Un second échange du même token révoque toute la famille, sauf dans le délai de grâce
+ * (<code>app.refreshTokens.reuseGraceMs</code>) : deux onglets qui partagent le cookie renouvellent en même
+ * temps, et le second reçoit la paire déjà émise pour le premier (une nouvelle paire de la famille si le
+ * premier échange a eu lieu sur un autre nœud).
+ * </p>
+ * <p>
+ * Les jetons consommés et les familles révoquées sont chargés au démarrage, puis tenus à jour localement et par
+ * diffusion aux autres nœuds ; la table reste la référence, relue à chaque purge. Une diffusion perdue ou un
+ * échange simultané sur deux nœuds peut laisser passer une réutilisation avant la purge suivante.
+ * </p>
+ * <p>
+ * La vérification passe d’abord par un {@link BloomFilter} : dans le cas courant (famille non révoquée) elle
+ * ne touche pas à la table exacte. Les entrées sont oubliées à l’expiration de la révocation, c’est-à-dire
+ * quand plus aucun token de la famille ne peut être valide ; le filtre est alors reconstruit.
+ * </p>
+ */
+@Slf4j
+@Component
+public class RefreshTokenDenylist implements ClusterRelay.RevocationHandler {
+
+	/** Sortes de révocation, comme la colonne <code>"RevokedToken".kind</code>. */
+	static final String FAMILY = "FAMILY";
+	static final String USED = "USED";
+
+	private static final int MIN_CAPACITY = 1024;
+
+	private final RevokedTokenRepository repository;
+	private final ClusterRelay cluster;
+	private final double fpp;
+	private final long purgeIntervalMs;
+	private final long graceMs;
+	private final long flushIntervalMs;
+	private final Clock clock;
+
+	/** Familles révoquées → fin de validité de la révocation. */
+	private final Map<String, Instant> revoked = new ConcurrentHashMap<>();
+	private volatile BloomFilter filter;
+	private int capacity;
+
+	/** Refresh tokens consommés, ici ou sur un autre nœud → instant de consommation et fin de validité. */
+	private final Map<String, UsedToken> used = new ConcurrentHashMap<>();
+	/** Paires émises en échange d’un token, gardées le temps du délai de grâce. */
+	private final Map<String, Successor> successors = new ConcurrentHashMap<>();
+	/** <code>jti</code> consommés sur ce nœud, pas encore écrits en base. */
+	private final Queue<String> unpersisted = new ConcurrentLinkedQueue<>();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+			Thread.ofPlatform().name("refresh-denylist").daemon().factory());
+
+	private final Counter negatives;
+	private final Counter hits;
+	private final Counter falsePositives;
+	private final Counter reuses;
+	private final Counter graceReuses;
+
+	@Autowired
+	public RefreshTokenDenylist(RevokedTokenRepository repository,
+								ClusterRelay cluster,
+								MeterRegistry registry,
+								@Value("${app.refreshTokens.falsePositiveRate:0.01}") double fpp,
+								@Value("${app.refreshTokens.purgeIntervalMs:3600000}") long purgeIntervalMs,
+								@Value("${app.refreshTokens.reuseGraceMs:5000}") long graceMs,
+								@Value("${app.refreshTokens.flushIntervalMs:1000}") long flushIntervalMs) {
+		this(repository, cluster, registry, fpp, purgeIntervalMs, graceMs, flushIntervalMs, Clock.systemUTC());
+	}
+
+	RefreshTokenDenylist(RevokedTokenRepository repository, ClusterRelay cluster, MeterRegistry registry,
+						 double fpp, long purgeIntervalMs, long graceMs, long flushIntervalMs, Clock clock) {
+		this.repository = repository;
+		this.cluster = cluster;
+		this.fpp = fpp;
+		this.purgeIntervalMs = purgeIntervalMs;
+		this.graceMs = graceMs;
+		this.flushIntervalMs = flushIntervalMs;
+		this.clock = clock;
+		rebuildFilter();
+
+		Gauge.builder("security.refresh.denylist.size", revoked, Map::size).register(registry);
+		this.negatives = Counter.builder("security.refresh.denylist").tag("result", "negative").register(registry);
+		this.hits = Counter.builder("security.refresh.denylist").tag("result", "revoked").register(registry);
+		this.falsePositives = Counter.builder("security.refresh.denylist").tag("result", "false_positive").register(registry);
+		this.reuses = Counter.builder("security.refresh.reused").register(registry);
+		this.graceReuses = Counter.builder("security.refresh.reused.grace").register(registry);
+		Gauge.builder("security.refresh.used.size", used, Map::size).register(registry);
+	}
+
+	@PostConstruct
+	public void start() {
+		reload();
+		cluster.setRevocationHandler(this);
+		scheduler.scheduleWithFixedDelay(this::purge, purgeIntervalMs, purgeIntervalMs, TimeUnit.MILLISECONDS);
+		scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	/** Arrête les tâches périodiques et écrit les derniers jetons consommés. */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		scheduler.shutdownNow();
+		scheduler.awaitTermination(5, TimeUnit.SECONDS);
+		flush();
+	}
+
+	/** La famille a-t-elle été révoquée ? Sans accès à la base. */
+	public boolean isRevoked(String family) {
+		if (!filter.mightContain(family)) {
+			negatives.increment();
+			return false;
+		}
+		if (revoked.containsKey(family)) {
+			hits.increment();
+			return true;
+		}
+		falsePositives.increment();
+		return false;
+	}
+
+	/**
+	 * Consomme le refresh token <code>jti</code> et renvoie la paire émise en échange par <code>mint</code>. Vide
+	 * si le token avait déjà été échangé, ici ou sur un autre nœud, hors du délai de grâce. Sans accès à la
+	 * base.
+	 */
+	public Optional<JwtTokenMinter.TokenPair> exchange(String jti, Instant expiresAt,
+													   Supplier<JwtTokenMinter.TokenPair> mint) {
+		Instant now = clock.instant();
+		UsedToken previous = used.putIfAbsent(jti, new UsedToken(now, expiresAt));
+		if (previous == null) {
+			JwtTokenMinter.TokenPair tokens = mint.get();
+			successors.put(jti, new Successor(now.plusMillis(graceMs), tokens));
+			unpersisted.add(jti);
+			cluster.broadcastRevocation(USED, jti, expiresAt);
+			return Optional.of(tokens);
+		}
+		if (now.isBefore(previous.usedAt().plusMillis(graceMs))) {
+			graceReuses.increment();
+			Successor successor = successors.get(jti);
+			return Optional.of(successor != null ? successor.tokens() : mint.get());
+		}
+		reuses.increment();
+		return Optional.empty();
+	}
+
+	/** Révoque une famille jusqu’à <code>expiresAt</code>, sur tous les nœuds. */
+	public void revoke(String family, Instant expiresAt) {
+		repository.revokeFamily(family, expiresAt);
+		add(family, expiresAt);
+		cluster.broadcastRevocation(FAMILY, family, expiresAt);
+	}
+
+	@Override
+	public void onRevoked(String kind, String id, Instant expiresAt) {
+		if (id == null || expiresAt == null) {
+			return;
+		}
+		if (USED.equals(kind)) {
+			used.putIfAbsent(id, new UsedToken(clock.instant(), expiresAt));
+		} else {
+			add(id, expiresAt);
+		}
+	}
+
+	public int size() {
+		return revoked.size();
+	}
+
+	/** Le refresh token <code>jti</code> a-t-il été échangé, ici, sur un autre nœud ou avant le démarrage ? */
+	boolean isUsed(String jti) {
+		return used.containsKey(jti);
+	}
+
+	synchronized void add(String family, Instant expiresAt) {
+		if (!clock.instant().isBefore(expiresAt)) {
+			return;
+		}
+		revoked.merge(family, expiresAt, RefreshTokenDenylist::later);
+		if (revoked.size() > capacity) {
+			rebuildFilter();
+		} else {
+			filter.put(family);
+		}
+	}
+
+	/** Recharge les jetons consommés et les familles révoquées depuis la table (démarrage, puis à chaque purge). */
+	void reload() {
+		Instant now = clock.instant();
+		repository.forEachUsedToken(now, this::usedElsewhere);
+		Map<String, Instant> persisted = new HashMap<>();
+		repository.forEachRevokedFamily(now, persisted::put);
+		synchronized (this) {
+			persisted.forEach((family, expiresAt) -> revoked.merge(family, expiresAt, RefreshTokenDenylist::later));
+			rebuildFilter();
+		}
+		log.info("Loaded {} revoked refresh token families", persisted.size());
+	}
+
+	/** Oublie les révocations expirées, en mémoire et en base, et reconstruit le filtre. */
+	void purge() {
+		Instant now = clock.instant();
+		used.values().removeIf(token -> !now.isBefore(token.expiresAt()));
+		try {
+			repository.deleteExpired(now);
+			repository.forEachUsedToken(now, this::usedElsewhere);
+			Map<String, Instant> persisted = new HashMap<>();
+			repository.forEachRevokedFamily(now, persisted::put);
+			synchronized (this) {
+				revoked.values().removeIf(expiresAt -> !now.isBefore(expiresAt));
+				persisted.forEach((family, expiresAt) -> revoked.merge(family, expiresAt, RefreshTokenDenylist::later));
+				rebuildFilter();
+			}
+		} catch (DataAccessException e) {
+			log.warn("Refresh token denylist purge failed, keeping the current entries", e);
+		}
+	}
+
+	/** Écrit en un batch les jetons consommés sur ce nœud ; remis en file si la base est indisponible. */
+	void flush() {
+		Instant now = clock.instant();
+		successors.values().removeIf(successor -> !now.isBefore(successor.until()));
+		Map<String, Instant> batch = new HashMap<>();
+		String jti;
+		while ((jti = unpersisted.poll()) != null) {
+			UsedToken token = used.get(jti);
+			if (token != null) {
+				batch.put(jti, token.expiresAt());
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+		try {
+			repository.markUsedAll(batch);
+		} catch (DataAccessException e) {
+			log.warn("Could not persist {} used refresh tokens, retrying", batch.size(), e);
+			unpersisted.addAll(batch.keySet());
+		}
+	}
+
+	/** Jeton consommé ailleurs ou avant le démarrage : hors délai de grâce. */
+	private void usedElsewhere(String jti, Instant expiresAt) {
+		used.putIfAbsent(jti, new UsedToken(Instant.MIN, expiresAt));
+	}
+
+	private static Instant later(Instant a, Instant b) {
+		return a.isAfter(b) ? a : b;
+	}
+
+	/** Appelé sous le verrou (ou depuis le constructeur) : le nouveau filtre n’est publié qu’une fois complet. */
+	private void rebuildFilter() {
+		capacity = Math.max(MIN_CAPACITY, revoked.size() * 2);
+		BloomFilter next = new BloomFilter(capacity, fpp);
+		revoked.keySet().forEach(next::put);
+		filter = next;
+	}
+
+	private record UsedToken(Instant usedAt, Instant expiresAt) {
+	}
+
+	private record Successor(Instant until, JwtTokenMinter.TokenPair tokens) {
+	}
+}
@@ -1,5 +1,8 @@
 package com.ycyw.security;
 
+import com.ycyw.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -8,49 +11,56 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+	/** Nombre maximal d’utilisateurs gardés en cache ({@code app.userCache.maxEntries}). */
+	@Value("${app.userCache.maxEntries:10000}")
+	private int userCacheMaxEntries;
+
+	/** Durée de vie d’un utilisateur en cache, sauf invalidation explicite. */
+	@Value("${app.userCache.ttlMs:300000}")
+	private long userCacheTtlMs;
+
 	@Bean
-	SecurityFilterChain filter(HttpSecurity http) throws Exception {
+	SecurityFilterChain filter(HttpSecurity http, JwtAuthenticationConverter jwtAuthenticationConverter) throws Exception {
 		http
 				.cors(cors -> cors.configurationSource(corsConfigurationSource()))
 				.csrf(AbstractHttpConfigurer::disable)
 				.sessionManagement(configurer -> configurer.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
 				.authorizeHttpRequests(auth -> auth
-						.requestMatchers("/api/me","/api/login", "/api/refresh", "/api/ws-chat/**", "/error").permitAll()
+						.requestMatchers("/api/me","/api/login", "/api/refresh", "/api/refresh/revoke", "/api/ws", "/api/ws-chat/**", "/api/catalog/vehicles", "/actuator/health", "/error").permitAll()
+						.requestMatchers("/api/support/**", "/api/payments/**", "/actuator/**").hasRole("EMPLOYEE")
 						.anyRequest().authenticated()
 				)
 
 				.oauth2ResourceServer(oauth2 -> oauth2
-						.jwt(jwtConfigurer -> jwtConfigurer.jwtAuthenticationConverter(jwtAuthenticationConverter()))
+						.jwt(jwtConfigurer -> jwtConfigurer.jwtAuthenticationConverter(jwtAuthenticationConverter))
 				);
 
 		return http.build();
 	}
 
 	@Bean
-	public JwtAuthenticationConverter jwtAuthenticationConverter() {
+	public JwtAuthenticationConverter jwtAuthenticationConverter(CachingJwtDecoder jwtDecoder) {
 		JwtGrantedAuthoritiesConverter authoritiesConverter = new JwtGrantedAuthoritiesConverter();
 		authoritiesConverter.setAuthoritiesClaimName("roles");
 		authoritiesConverter.setAuthorityPrefix("ROLE_");
 
 		JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-		converter.setJwtGrantedAuthoritiesConverter(authoritiesConverter);
+		converter.setJwtGrantedAuthoritiesConverter(jwtDecoder.cachingAuthorities(authoritiesConverter));
 		return converter;
 	}
 
@@ -59,13 +69,13 @@ public class SecurityConfig {
 		return config.getAuthenticationManager();
 	}
 
+	/**
+	 * Utilisateurs de la table <code>"User"</code>, derrière un cache borné partagé par le login
+	 * et le renouvellement des tokens.
+	 */
 	@Bean
-	UserDetailsService users(PasswordEncoder encoder) {
-		UserDetails u1 = User
-				.withUsername("alice").password(encoder.encode("password")).roles("EMPLOYEE").build();
-		UserDetails u2 = User
-				.withUsername("bob").password(encoder.encode("password")).roles("CLIENT").build();
-		return new InMemoryUserDetailsManager(u1, u2);
+	CachingUserDetailsService users(UserRepository repository, MeterRegistry meterRegistry) {
+		return new CachingUserDetailsService(repository, userCacheMaxEntries, Duration.ofMillis(userCacheTtlMs), meterRegistry);
 	}
 
 	@Bean
@@ -0,0 +1,167 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Configuration du broker STOMP, à la place de {@code @EnableWebSocketMessageBroker}.
+ * <p>
+ * Les {@code WebSocketMessageBrokerConfigurer} ({@link WebSocketConfig}, métriques…) sont toujours appliqués ;
+ * seule la décoration des sessions change, pour choisir ce qui arrive à un consommateur lent lorsque son
+ * buffer d’envoi dépasse <code>app.websocket.sendBufferSizeLimit</code> (<code>app.websocket.overflow</code>) :
+ * </p>
+ * <ul>
+ *     <li><code>terminate</code> (défaut Spring) : la session est fermée, le client se reconnecte et recharge
+ *     l’historique ;</li>
+ *     <li><code>drop</code> : les messages les plus anciens du buffer sont abandonnés et comptés
+ *     (<code>websocket.messages.dropped</code>).</li>
+ * </ul>
+ * <p>
+ * Dans les deux cas, une session bloquée au-delà de <code>app.websocket.sendTimeLimitMs</code> est fermée.
+ * </p>
+ * <p>
+ * Le transport de chaque session est noté dans ses attributs ({@link PayloadEncoding#TRANSPORT_ATTRIBUTE}).
+ * Spring n’envoie en binaire que les trames <code>application/octet-stream</code> : les trames CBOR
+ * ({@link PayloadEncoding}) des sessions WebSocket natives sont donc réémises en trames binaires.
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+public class WebSocketBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+	@Value("${app.websocket.overflow:terminate}")
+	private String overflow;
+
+	private final Counter droppedMessages;
+
+	public WebSocketBrokerConfiguration(MeterRegistry meterRegistry) {
+		this.droppedMessages = Counter.builder("websocket.messages.dropped")
+				.description("Outbound messages dropped from the send buffer of a slow session")
+				.register(meterRegistry);
+	}
+
+	@Bean
+	@Override
+	public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+														AbstractSubscribableChannel clientOutboundChannel) {
+		ConcurrentWebSocketSessionDecorator.OverflowStrategy strategy =
+				ConcurrentWebSocketSessionDecorator.OverflowStrategy.valueOf(overflow.toUpperCase(Locale.ROOT));
+		SubProtocolWebSocketHandler handler = new SubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel) {
+			@Override
+			@NonNull
+			protected WebSocketSession decorateSession(@NonNull WebSocketSession session) {
+				boolean sockJs = session instanceof SockJsSession;
+				session.getAttributes().put(PayloadEncoding.TRANSPORT_ATTRIBUTE, sockJs ? PayloadEncoding.SOCKJS : "websocket");
+				WebSocketSession target = sockJs ? session : new BinaryCborFrames(session);
+				return concurrent(target, getSendTimeLimit(), getSendBufferSizeLimit(), strategy, droppedMessages);
+			}
+		};
+		handler.setPhase(getPhase());
+		return handler;
+	}
+
+	static ConcurrentWebSocketSessionDecorator concurrent(WebSocketSession session, int sendTimeLimit,
+														  int bufferSizeLimit,
+														  ConcurrentWebSocketSessionDecorator.OverflowStrategy strategy,
+														  Counter dropped) {
+		return strategy == ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP
+				? new DropCountingSession(session, sendTimeLimit, bufferSizeLimit, dropped)
+				: new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit, strategy);
+	}
+
+	/**
+	 * Session en mode <code>drop</code> qui compte les messages abandonnés. Spring n’expose pas son buffer :
+	 * les messages confiés sont suivis dans le même ordre, et ceux qui précèdent le message réellement envoyé
+	 * (session décorée) ont été retirés du buffer sans être envoyés. L’ordre est celui du buffer tant que les
+	 * envois d’une session ne sont pas concurrents ({@code setPreservePublishOrder}, {@link WebSocketConfig}).
+	 */
+	static final class DropCountingSession extends ConcurrentWebSocketSessionDecorator {
+
+		private final Queue<WebSocketMessage<?>> pending;
+
+		DropCountingSession(WebSocketSession delegate, int sendTimeLimit, int bufferSizeLimit, Counter dropped) {
+			this(new ConcurrentLinkedQueue<>(), delegate, sendTimeLimit, bufferSizeLimit, dropped);
+		}
+
+		private DropCountingSession(Queue<WebSocketMessage<?>> pending, WebSocketSession delegate, int sendTimeLimit,
+									int bufferSizeLimit, Counter dropped) {
+			super(new WebSocketSessionDecorator(delegate) {
+				@Override
+				public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+					WebSocketMessage<?> head;
+					while ((head = pending.poll()) != null && head != message) {
+						dropped.increment();
+					}
+					super.sendMessage(message);
+				}
+			}, sendTimeLimit, bufferSizeLimit, OverflowStrategy.DROP);
+			this.pending = pending;
+		}
+
+		@Override
+		public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+			pending.add(message);
+			super.sendMessage(message);
+		}
+	}
+
+	/** Réémet en trame binaire les trames STOMP dont le corps est en CBOR, pour les sessions l’ayant négocié. */
+	static final class BinaryCborFrames extends WebSocketSessionDecorator {
+
+		private static final byte[] CBOR_HEADER =
+				("content-type:" + PayloadEncoding.CBOR).getBytes(StandardCharsets.US_ASCII);
+
+		BinaryCborFrames(WebSocketSession delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public void sendMessage(@NonNull WebSocketMessage<?> message) throws IOException {
+			if (message instanceof TextMessage text && getAttributes().containsKey(PayloadEncoding.ENCODING_ATTRIBUTE)) {
+				byte[] frame = text.asBytes();
+				if (isCbor(frame)) {
+					super.sendMessage(new BinaryMessage(frame, text.isLast()));
+					return;
+				}
+			}
+			super.sendMessage(message);
+		}
+
+		/** Cherche l’en-tête <code>content-type</code> CBOR dans les en-têtes de la trame (avant la ligne vide). */
+		static boolean isCbor(byte[] frame) {
+			for (int i = 1; i + CBOR_HEADER.length <= frame.length; i++) {
+				if (frame[i - 1] != '\n') {
+					continue;
+				}
+				if (frame[i] == '\n') {
+					return false;
+				}
+				if (Arrays.equals(frame, i, i + CBOR_HEADER.length, CBOR_HEADER, 0, CBOR_HEADER.length)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
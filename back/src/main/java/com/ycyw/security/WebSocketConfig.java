@@ -1,7 +1,12 @@
 package com.ycyw.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -11,56 +16,187 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.regex.Pattern;
 
+/**
+ * Configuration STOMP : endpoints, broker, intercepteurs et exécution des canaux.
+ * <p>
+ * Deux endpoints partagent le même broker : <code>/api/ws</code> en WebSocket natif, utilisé par défaut, et
+ * <code>/api/ws-chat</code> en SockJS, gardé en repli. Compression <code>permessage-deflate</code>, heartbeats
+ * STOMP et taille des messages se règlent par <code>app.websocket.*</code>.
+ * </p>
+ * <p>
+ * Le broker est activé par {@link WebSocketBrokerConfiguration}. Les canaux entrant, sortant et broker
+ * s’exécutent sur des executors bornés ({@link ChannelExecutors}) ; l’ordre des messages est préservé
+ * par session dans les deux sens. Les limites d’envoi par session (<code>app.websocket.*</code>) sont
+ * réglées pour un grand nombre de sessions de chat peu actives : petit buffer par session, fermeture
+ * rapide des connexions qui n’envoient jamais de CONNECT.
+ * </p>
+ */
+@Slf4j
 @Configuration
-@EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+	/** Identifiant de client accepté dans l’en-tête <code>X-Client-Id</code> (UUID du front, clés de test). */
+	public static final Pattern CLIENT_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+	/** Préfixe des topics réservés aux agents ({@link com.ycyw.service.PresenceRegistry#PRESENCE_TOPIC}, notifications). */
+	static final String AGENT_TOPICS = "/topic/support.";
+
 	private final JwtDecoder jwtDecoder;
 	private final JwtAuthenticationConverter jwtAuthenticationConverter;
+	private final MeterRegistry meterRegistry;
+	private final TaskScheduler messageBrokerTaskScheduler;
+
+	/** <code>virtual</code> ou <code>pool</code>, voir {@link ChannelExecutors}. */
+	@Value("${app.websocket.executor:virtual}")
+	private String executorMode;
+
+	@Value("${app.websocket.inbound.concurrency:256}")
+	private int inboundConcurrency;
+
+	@Value("${app.websocket.inbound.queueCapacity:1000}")
+	private int inboundQueueCapacity;
+
+	@Value("${app.websocket.outbound.concurrency:256}")
+	private int outboundConcurrency;
+
+	@Value("${app.websocket.outbound.queueCapacity:1000}")
+	private int outboundQueueCapacity;
+
+	/** 0 : le broker traite les messages sur le thread appelant (comportement par défaut de Spring). */
+	@Value("${app.websocket.broker.concurrency:0}")
+	private int brokerConcurrency;
+
+	@Value("${app.websocket.broker.queueCapacity:1000}")
+	private int brokerQueueCapacity;
+
+	@Value("${app.websocket.offerTimeoutMs:1000}")
+	private long offerTimeoutMs;
+
+	@Value("${app.websocket.sendTimeLimitMs:10000}")
+	private int sendTimeLimitMs;
+
+	@Value("${app.websocket.sendBufferSizeLimit:65536}")
+	private int sendBufferSizeLimit;
 
+	@Value("${app.websocket.timeToFirstMessageMs:30000}")
+	private int timeToFirstMessageMs;
 
-	public WebSocketConfig(JwtDecoder jwtDecoder, JwtAuthenticationConverter jwtAuthenticationConverter) {
+	/**
+	 * Taille maximale d’un message STOMP entrant, en octets. Les tampons de Tomcat (8 Ko par défaut, session fermée
+	 * en 1009 au-delà) suivent la même valeur, voir <code>server.servlet.context-parameters</code>.
+	 */
+	@Value("${app.websocket.messageSizeLimit:65536}")
+	private int messageSizeLimit;
+
+	/** Négociation de <code>permessage-deflate</code>, voir {@link CompressionHandshakeHandler}. */
+	@Value("${app.websocket.compression:true}")
+	private boolean compression;
+
+	/** Heartbeats STOMP proposés : envoi par le serveur et réception attendue du client (0 : aucun). */
+	@Value("${app.websocket.heartbeat.serverMs:10000}")
+	private long heartbeatServerMs;
+
+	@Value("${app.websocket.heartbeat.clientMs:10000}")
+	private long heartbeatClientMs;
+
+	/**
+	 * Décodeur JWT injecté en proxy paresseux : il ne sert qu’au premier CONNECT authentifié, la configuration des
+	 * canaux STOMP ne l’instancie donc pas au démarrage. Pas le convertisseur : sa méthode <code>convert</code>
+	 * est <code>final</code> et un proxy de classe l’exécuterait sur une instance vide. Le planificateur des
+	 * heartbeats est celui du broker, créé par la configuration même qui appelle ce configurateur.
+	 */
+	public WebSocketConfig(@Lazy JwtDecoder jwtDecoder, JwtAuthenticationConverter jwtAuthenticationConverter,
+						   MeterRegistry meterRegistry,
+						   @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler messageBrokerTaskScheduler) {
 		this.jwtDecoder = jwtDecoder;
 		this.jwtAuthenticationConverter = jwtAuthenticationConverter;
+		this.meterRegistry = meterRegistry;
+		this.messageBrokerTaskScheduler = messageBrokerTaskScheduler;
 	}
 
 	@Override
 	public void registerStompEndpoints(StompEndpointRegistry registry) {
+		CompressionHandshakeHandler handshakeHandler = new CompressionHandshakeHandler(compression);
+		// WebSocket natif : transport par défaut du front, sans trames ni requêtes supplémentaires SockJS
+		registry
+				.addEndpoint("/api/ws")
+				.setHandshakeHandler(handshakeHandler)
+				.setAllowedOriginPatterns("http://localhost:4200");
+		// repli SockJS (réseaux ou navigateurs sans WebSocket)
 		registry
 				.addEndpoint("/api/ws-chat")
+				.setHandshakeHandler(handshakeHandler)
 				.setAllowedOriginPatterns("http://localhost:4200")
 				.withSockJS();
+		// avec un executor, deux trames d’une même session pourraient sinon être traitées dans le désordre
+		registry.setPreserveReceiveOrder(true);
 	}
 
 	@Override
 	public void configureMessageBroker(MessageBrokerRegistry registry) {
-		registry.enableSimpleBroker("/topic", "/queue"); // diffusion
+		registry.enableSimpleBroker("/topic", "/queue") // diffusion
+				.setHeartbeatValue(new long[]{heartbeatServerMs, heartbeatClientMs})
+				.setTaskScheduler(messageBrokerTaskScheduler);
 		registry.setApplicationDestinationPrefixes("/app"); // @MessageMapping("...")
 		registry.setUserDestinationPrefix("/user"); // unicast
+		registry.setPreservePublishOrder(true);
+		if (brokerConcurrency > 0) {
+			configureExecutor(registry.configureBrokerChannel(), "brokerChannel", brokerConcurrency, brokerQueueCapacity);
+		}
 	}
 
 	@Override
 	public void configureClientInboundChannel(ChannelRegistration registration) {
+		configureExecutor(registration, "clientInboundChannel", inboundConcurrency, inboundQueueCapacity);
 		registration.interceptors(
 				stompAuthInterceptor(),
-				clientIdInterceptor()
+				clientIdInterceptor(),
+				destinationInterceptor()
 		);
 	}
 
+	@Override
+	public void configureClientOutboundChannel(ChannelRegistration registration) {
+		configureExecutor(registration, "clientOutboundChannel", outboundConcurrency, outboundQueueCapacity);
+	}
+
+	@Override
+	public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+		registration
+				.setMessageSizeLimit(messageSizeLimit)
+				.setSendTimeLimit(sendTimeLimitMs)
+				.setSendBufferSizeLimit(sendBufferSizeLimit)
+				.setTimeToFirstMessage(timeToFirstMessageMs);
+	}
+
+	private void configureExecutor(ChannelRegistration registration, String channel, int concurrency, int queueCapacity) {
+		if ("pool".equalsIgnoreCase(executorMode)) {
+			registration.taskExecutor(ChannelExecutors.pool(channel, concurrency, queueCapacity, offerTimeoutMs, meterRegistry));
+		} else {
+			registration.executor(ChannelExecutors.virtual(channel, concurrency, offerTimeoutMs, meterRegistry));
+		}
+	}
+
 	/**
 	 * Intercepteur STOMP qui récupère l’en-tête <code>X-Client-Id</code> lors du CONNECT
 	 * et l’enregistre dans les attributs de session STOMP sous la clé <code>clientId</code>.
+	 * Un identifiant hors du format attendu ({@link #CLIENT_ID}, taille de <code>Conversation.client_key</code>)
+	 * est ignoré : la session n’a alors pas de conversation.
 	 * <p>
 	 * Router les messages vers une file dédiée au client (<code>/queue/support/{clientId}</code>).
 	 * </p>
@@ -73,7 +209,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 				StompHeaderAccessor acc = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 				if (acc != null && StompCommand.CONNECT.equals(acc.getCommand())) {
 					String cid = first(acc);
-					if (cid != null && !cid.isBlank()) {
+					if (cid != null && CLIENT_ID.matcher(cid).matches()) {
 						Objects.requireNonNull(acc.getSessionAttributes()).put("clientId", cid);
 					}
 				}
@@ -86,6 +222,40 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 		};
 	}
 
+	/**
+	 * Intercepteur STOMP qui filtre les destinations : les topics des agents (<code>/topic/support.*</code> :
+	 * présence, notifications de conversation) ne sont ouverts en SUBSCRIBE qu’aux employés, et les SEND ne
+	 * visent que <code>/app</code> (personne ne publie directement sur le broker). Une trame refusée est ignorée.
+	 */
+	@Bean
+	public ChannelInterceptor destinationInterceptor() {
+		return new ChannelInterceptor() {
+			@Override
+			public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+				StompHeaderAccessor acc = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+				if (acc == null || acc.getCommand() == null) {
+					return message;
+				}
+				String destination = acc.getDestination();
+				boolean denied = switch (acc.getCommand()) {
+					case SUBSCRIBE -> destination != null && destination.startsWith(AGENT_TOPICS) && !isEmployee(acc);
+					case SEND -> destination == null || !destination.startsWith("/app/");
+					default -> false;
+				};
+				if (denied) {
+					log.debug("STOMP {} to {} refused for session {}", acc.getCommand(), destination, acc.getSessionId());
+					return null;
+				}
+				return message;
+			}
+
+			private boolean isEmployee(StompHeaderAccessor acc) {
+				return acc.getUser() instanceof Authentication auth && auth.getAuthorities().stream()
+						.anyMatch(a -> "ROLE_EMPLOYEE".equals(a.getAuthority()));
+			}
+		};
+	}
+
 	/**
 	 * Intercepteur STOMP qui lors du CONNECT, lit le header Authorization (Bearer JWT),
 	 * décode le token et attache l’Authentication Spring Security à la session STOMP.
@@ -114,8 +284,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 								}
 							}
 						}
-					} catch (Exception e) {
-						// log.warn("WS auth failed: {}", e.toString());
+					} catch (JwtException e) {
+						// jeton expiré ou invalide : la session continue en invité
+						log.debug("STOMP CONNECT token rejected for session {}: {}", accessor.getSessionId(), e.getMessage());
+					} catch (RuntimeException e) {
+						log.warn("STOMP CONNECT authentication failed for session {}, continuing as guest: {}",
+								accessor.getSessionId(), e.toString());
 					}
 				}
 				return message;
@@ -0,0 +1,218 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.cluster.PresenceEvent;
+import com.ycyw.cluster.SessionDirectory;
+import com.ycyw.dto.ConversationNotice;
+import com.ycyw.repository.ConversationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Affectation des conversations de support aux agents connectés.
+ * <p>
+ * Chaque nouvelle conversation est confiée à l’agent en ligne ayant le moins de conversations ouvertes ;
+ * ses messages ne sont ensuite envoyés qu’à cet agent (<code>/user/queue/support.admin</code>). Seules
+ * des {@link ConversationNotice} transitent par le topic commun. Sans agent en ligne, la conversation
+ * reste en attente et sera affectée au prochain agent qui se connecte. L’affectation est reportée
+ * dans <code>Conversation.agent_id</code>.
+ * </p>
+ * <p>
+ * La présence des agents est celle du cluster ({@link SessionDirectory}) : un agent connecté sur un autre
+ * nœud peut se voir confier une conversation. Les affectations sont tenues par le nœud de référence de
+ * chaque conversation ; les charges sont donc comptées par nœud.
+ * </p>
+ */
+@Slf4j
+@Service
+public class AgentAssignmentService {
+
+	public static final String NOTICE_TOPIC = "/topic/support.admin";
+	public static final String AGENT_QUEUE = "/queue/support.admin";
+
+	private final SessionDirectory directory;
+	private final PresenceRegistry presence;
+	private final ClusterRelay cluster;
+	private final ChatPersistenceService persistence;
+	private final ConversationRepository conversations;
+
+	/** clientId → agent affecté. */
+	private final Map<String, String> assignments = new ConcurrentHashMap<>();
+	/** Conversations en attente d’un agent. */
+	private final Set<String> waiting = ConcurrentHashMap.newKeySet();
+
+	public AgentAssignmentService(SessionDirectory directory,
+								  PresenceRegistry presence,
+								  ClusterRelay cluster,
+								  ChatPersistenceService persistence,
+								  ConversationRepository conversations) {
+		this.directory = directory;
+		this.presence = presence;
+		this.cluster = cluster;
+		this.persistence = persistence;
+		this.conversations = conversations;
+	}
+
+	@PostConstruct
+	public void loadAssignments() {
+		conversations.findOpenAssignments().forEach((clientId, agent) -> {
+			assignments.put(clientId, agent);
+			loadOf(agent).incrementAndGet();
+		});
+	}
+
+	/**
+	 * Agent chargé de la conversation, affecté si besoin.
+	 *
+	 * @return <code>null</code> si aucun agent n’est en ligne
+	 */
+	public String agentFor(String clientId) {
+		String agent = assignments.get(clientId);
+		if (agent != null && directory.isAgentOnline(agent)) {
+			return agent;
+		}
+		if (directory.onlineAgents().isEmpty() && waiting.contains(clientId)) {
+			// déjà signalée en attente : inutile de prendre le verrou à chaque message
+			return null;
+		}
+		return assign(clientId);
+	}
+
+	/** Agent actuellement affecté à la conversation, sans (ré)affectation ; <code>null</code> si aucun. */
+	public String assignedAgent(String clientId) {
+		return assignments.get(clientId);
+	}
+
+	/**
+	 * Un agent prend explicitement la conversation (par exemple en y répondant). Seul un employé connecté
+	 * ({@link SessionDirectory.Kind#AGENT}) peut la prendre.
+	 *
+	 * @return <code>false</code> si <code>agent</code> n’est pas un agent en ligne
+	 */
+	public synchronized boolean claim(String clientId, String agent) {
+		if (!directory.isAgentOnline(agent)) {
+			return false;
+		}
+		if (!agent.equals(assignments.get(clientId))) {
+			setAssignment(clientId, agent);
+		}
+		return true;
+	}
+
+	/** Libère la conversation (départ du client). */
+	public synchronized void release(String clientId) {
+		waiting.remove(clientId);
+		String agent = assignments.remove(clientId);
+		if (agent != null) {
+			loadOf(agent).decrementAndGet();
+		}
+	}
+
+	public boolean isAgentOnline(String agent) {
+		return directory.isAgentOnline(agent);
+	}
+
+	/**
+	 * Premier agent en ligne dans le cluster, ou dernier parti : (ré)affectation des conversations. Un client
+	 * parti sans <code>LEAVE</code> quitte la file d’attente.
+	 */
+	@EventListener
+	public synchronized void onPresence(PresenceEvent event) {
+		if (event.kind() == SessionDirectory.Kind.CLIENT) {
+			if (!event.online()) {
+				waiting.remove(event.id());
+			}
+			return;
+		}
+		if (event.kind() != SessionDirectory.Kind.AGENT) {
+			return;
+		}
+		if (event.online()) {
+			assignWaiting();
+		} else {
+			reassignFrom(event.id());
+		}
+	}
+
+	private synchronized String assign(String clientId) {
+		String current = assignments.get(clientId);
+		if (current != null && directory.isAgentOnline(current)) {
+			return current;
+		}
+		String agent = leastLoadedAgent();
+		if (agent == null) {
+			if (waiting.add(clientId)) {
+				notice(clientId, ConversationNotice.UNASSIGNED, current);
+			}
+			return null;
+		}
+		setAssignment(clientId, agent);
+		return agent;
+	}
+
+	private void setAssignment(String clientId, String agent) {
+		String previous = assignments.put(clientId, agent);
+		if (previous != null) {
+			loadOf(previous).decrementAndGet();
+		}
+		loadOf(agent).incrementAndGet();
+		waiting.remove(clientId);
+		persistence.recordAssignment(clientId, agent);
+		notice(clientId, ConversationNotice.ASSIGNED, agent);
+	}
+
+	private synchronized void assignWaiting() {
+		for (String clientId : new ArrayList<>(waiting)) {
+			String agent = leastLoadedAgent();
+			if (agent == null) {
+				return;
+			}
+			setAssignment(clientId, agent);
+		}
+	}
+
+	private synchronized void reassignFrom(String agent) {
+		List<String> orphans = new ArrayList<>();
+		assignments.forEach((clientId, assigned) -> {
+			// les conversations dont le client n’est connecté à aucun nœud sont réaffectées à son prochain message
+			if (assigned.equals(agent) && directory.isLocalHome(clientId)) {
+				orphans.add(clientId);
+			}
+		});
+		for (String clientId : orphans) {
+			assign(clientId);
+		}
+		log.debug("Agent {} went offline, {} conversations reassigned", agent, orphans.size());
+	}
+
+	private String leastLoadedAgent() {
+		String best = null;
+		int bestLoad = Integer.MAX_VALUE;
+		for (String agent : directory.onlineAgents()) {
+			int load = presence.loadOf(agent, 0);
+			if (load < bestLoad) {
+				best = agent;
+				bestLoad = load;
+			}
+		}
+		return best;
+	}
+
+	private AtomicInteger loadOf(String agent) {
+		return presence.load(agent);
+	}
+
+	private void notice(String clientId, String status, String agent) {
+		cluster.sendToAgents(NOTICE_TOPIC, new ConversationNotice(clientId, status, agent, Instant.now()));
+	}
+}
@@ -0,0 +1,400 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Persistance différée (write-behind) des messages de support.
+ * <p>
+ * Les messages sont déposés dans une file bornée sans jamais bloquer le thread STOMP, puis un thread
+ * d’écriture unique les regroupe par taille (<code>app.persistence.batchSize</code>) ou par délai
+ * (<code>app.persistence.flushIntervalMs</code>) et les insère en un batch JDBC dans une seule transaction.
+ * La conversation ouverte de chaque <code>clientId</code> est réutilisée, ou créée au premier message.
+ * </p>
+ * <p>
+ * Les accusés de lecture ({@link #recordRead}) sont regroupés de la même façon : seul le dernier instant lu
+ * de chaque conversation est retenu, puis reporté par le thread d’écriture en un <code>UPDATE</code> par
+ * plage. Un message encore en file au moment de l’accusé est inséré directement avec <code>is_read</code>.
+ * </p>
+ */
+@Slf4j
+@Service
+public class ChatPersistenceService {
+
+	private final ConversationRepository conversations;
+	private final MessageRepository messages;
+	private final TransactionTemplate tx;
+
+	private final int batchSize;
+	private final long flushIntervalNanos;
+	private final int conversationCacheSize;
+	private final BlockingQueue<AdminMsg> queue;
+
+	private final Counter persisted;
+	private final Counter dropped;
+	private final Counter failed;
+	private final Counter readRanges;
+	private final Timer flushTimer;
+	private final DistributionSummary batchSizes;
+
+	/** Affectations d’agent en attente d’écriture : clientId → agent. */
+	private final Map<String, String> pendingAssignments = new ConcurrentHashMap<>();
+
+	/** Rattachements au client connecté en attente d’écriture : clientId → utilisateur. */
+	private final Map<String, String> pendingClients = new ConcurrentHashMap<>();
+
+	/** Accusés de lecture en attente d’écriture : clientId → derniers instants lus. */
+	private final Map<String, ReadMarks> pendingReads = new ConcurrentHashMap<>();
+
+	/** Cache clientId → conversation ouverte, accédé uniquement par le thread d’écriture. */
+	private final Map<String, Long> conversationIds;
+
+	/** Cache clientId → derniers instants lus, accédé uniquement par le thread d’écriture. */
+	private final Map<String, ReadMarks> readMarks;
+
+	private Thread writer;
+	private volatile boolean running;
+
+	public ChatPersistenceService(ConversationRepository conversations,
+								  MessageRepository messages,
+								  TransactionTemplate tx,
+								  MeterRegistry registry,
+								  @Value("${app.persistence.queueCapacity:65536}") int queueCapacity,
+								  @Value("${app.persistence.batchSize:500}") int batchSize,
+								  @Value("${app.persistence.flushIntervalMs:200}") long flushIntervalMs,
+								  @Value("${app.persistence.conversationCacheSize:10000}") int conversationCacheSize) {
+		this.conversations = conversations;
+		this.messages = messages;
+		this.tx = tx;
+		this.batchSize = batchSize;
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+		this.conversationCacheSize = conversationCacheSize;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.conversationIds = new LinkedHashMap<>(256, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+				return size() > ChatPersistenceService.this.conversationCacheSize;
+			}
+		};
+		this.readMarks = new LinkedHashMap<>(256, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ReadMarks> eldest) {
+				return size() > ChatPersistenceService.this.conversationCacheSize;
+			}
+		};
+
+		Gauge.builder("chat.persistence.queue.depth", queue, BlockingQueue::size)
+				.description("Messages waiting to be written")
+				.register(registry);
+		this.persisted = Counter.builder("chat.persistence.messages").tag("result", "persisted").register(registry);
+		this.dropped = Counter.builder("chat.persistence.messages").tag("result", "dropped").register(registry);
+		this.failed = Counter.builder("chat.persistence.messages").tag("result", "failed").register(registry);
+		this.readRanges = Counter.builder("chat.persistence.read.ranges")
+				.description("Range updates of Message.is_read")
+				.register(registry);
+		this.flushTimer = Timer.builder("chat.persistence.flush")
+				.description("Latency of one batch insert and commit")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		this.batchSizes = DistributionSummary.builder("chat.persistence.batch.size").register(registry);
+	}
+
+	@PostConstruct
+	public void start() {
+		running = true;
+		writer = Thread.ofPlatform().daemon().name("chat-persistence").start(this::run);
+	}
+
+	/**
+	 * Dépose un message à persister. N’attend jamais : si la file est pleine, le message est
+	 * compté comme perdu.
+	 *
+	 * @return <code>false</code> si le message n’a pas pu être mis en file
+	 */
+	public boolean enqueue(AdminMsg msg) {
+		if (msg.clientId() == null) {
+			return false;
+		}
+		if (queue.offer(msg)) {
+			return true;
+		}
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * Enregistre l’affectation d’une conversation à un agent. Elle est écrite par le thread
+	 * d’écriture, qui est aussi le seul à créer les conversations : pas de doublon possible.
+	 */
+	public void recordAssignment(String clientId, String agent) {
+		pendingAssignments.put(clientId, agent);
+	}
+
+	/** Enregistre le rattachement d’une conversation à l’utilisateur connecté qui en est le client. */
+	public void recordClient(String clientId, String username) {
+		pendingClients.put(clientId, username);
+	}
+
+	/**
+	 * Enregistre un accusé de lecture de la conversation jusqu’à <code>upTo</code> inclus : par l’agent
+	 * (messages du client) si <code>byAgent</code>, sinon par le client (messages des agents).
+	 */
+	public void recordRead(String clientId, boolean byAgent, Instant upTo) {
+		pendingReads.merge(clientId, byAgent ? new ReadMarks(upTo, null) : new ReadMarks(null, upTo), ReadMarks::max);
+	}
+
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	private void run() {
+		List<AdminMsg> batch = new ArrayList<>(batchSize);
+		while (running) {
+			try {
+				collect(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+			// accusés pris en compte avant l’insertion : les messages du batch en héritent
+			Map<String, ReadMarks> reads = takeReads();
+			if (!batch.isEmpty()) {
+				flush(batch);
+				batch.clear();
+			}
+			flushReads(reads);
+			flushPending(pendingAssignments, conversations::assignAgent, "conversation assignments");
+			flushPending(pendingClients, conversations::assignClient, "conversation clients");
+		}
+		// vidage final lors de l’arrêt
+		Map<String, ReadMarks> reads = takeReads();
+		while (queue.drainTo(batch, batchSize) > 0) {
+			flush(batch);
+			batch.clear();
+		}
+		flushReads(reads);
+		flushPending(pendingAssignments, conversations::assignAgent, "conversation assignments");
+		flushPending(pendingClients, conversations::assignClient, "conversation clients");
+	}
+
+	/**
+	 * Remplit le batch jusqu’à <code>batchSize</code> messages ou jusqu’à l’expiration du délai
+	 * ouvert par le premier message.
+	 */
+	private void collect(List<AdminMsg> batch) throws InterruptedException {
+		AdminMsg first = queue.poll(100, TimeUnit.MILLISECONDS);
+		if (first == null) {
+			return;
+		}
+		batch.add(first);
+		long deadline = System.nanoTime() + flushIntervalNanos;
+		while (batch.size() < batchSize) {
+			queue.drainTo(batch, batchSize - batch.size());
+			long remaining = deadline - System.nanoTime();
+			if (batch.size() >= batchSize || remaining <= 0) {
+				break;
+			}
+			AdminMsg next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null) {
+				break;
+			}
+			batch.add(next);
+		}
+	}
+
+	void flush(List<AdminMsg> batch) {
+		long start = System.nanoTime();
+		try {
+			write(batch);
+		} catch (DataAccessException e) {
+			// le cache a pu référencer une conversation fermée ou supprimée : une seconde tentative
+			conversationIds.clear();
+			try {
+				write(batch);
+			} catch (DataAccessException retry) {
+				log.warn("Failed to persist a batch of {} support messages, writing them one by one: {}",
+						batch.size(), retry.toString());
+				int lost = writeEach(batch);
+				persisted.increment(batch.size() - lost);
+				batchSizes.record(batch.size());
+				return;
+			}
+		} finally {
+			flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+		persisted.increment(batch.size());
+		batchSizes.record(batch.size());
+	}
+
+	/**
+	 * Repli après l’échec d’un batch : une transaction par message, pour ne perdre que les lignes rejetées.
+	 *
+	 * @return le nombre de messages perdus
+	 */
+	private int writeEach(List<AdminMsg> batch) {
+		int lost = 0;
+		// les conversations créées par le batch annulé n’existent pas
+		conversationIds.clear();
+		for (AdminMsg msg : batch) {
+			try {
+				write(List.of(msg));
+			} catch (DataAccessException e) {
+				conversationIds.remove(msg.clientId());
+				lost++;
+				failed.increment();
+				log.error("Failed to persist a support message of {}: {}", msg.clientId(), e.toString());
+			}
+		}
+		return lost;
+	}
+
+	private void write(List<AdminMsg> batch) {
+		tx.executeWithoutResult(status -> {
+			long[] ids = new long[batch.size()];
+			boolean[] read = new boolean[batch.size()];
+			for (int i = 0; i < ids.length; i++) {
+				AdminMsg msg = batch.get(i);
+				ids[i] = conversationIdOf(msg.clientId());
+				ReadMarks marks = readMarks.get(msg.clientId());
+				read[i] = marks != null && marks.covers(msg);
+			}
+			messages.insertAll(batch, ids, read);
+		});
+	}
+
+	/** Retire les accusés en attente et les reporte dans {@link #readMarks}. */
+	private Map<String, ReadMarks> takeReads() {
+		if (pendingReads.isEmpty()) {
+			return Map.of();
+		}
+		Map<String, ReadMarks> reads = new HashMap<>();
+		for (Map.Entry<String, ReadMarks> entry : pendingReads.entrySet()) {
+			// un accusé plus récent arrivé entre-temps reste en attente
+			if (pendingReads.remove(entry.getKey(), entry.getValue())) {
+				reads.put(entry.getKey(), entry.getValue());
+				readMarks.merge(entry.getKey(), entry.getValue(), ReadMarks::max);
+			}
+		}
+		return reads;
+	}
+
+	/** Un <code>UPDATE</code> par plage lue, le tout en un batch JDBC. */
+	private void flushReads(Map<String, ReadMarks> reads) {
+		if (reads.isEmpty()) {
+			return;
+		}
+		try {
+			Integer ranges = tx.execute(status -> writeReads(reads));
+			readRanges.increment(ranges != null ? ranges : 0);
+		} catch (DataAccessException e) {
+			conversationIds.clear();
+			// nouvel essai au prochain tour
+			reads.forEach((clientId, marks) -> pendingReads.merge(clientId, marks, ReadMarks::max));
+			log.warn("Failed to persist {} read receipts: {}", reads.size(), e.toString());
+		}
+	}
+
+	private int writeReads(Map<String, ReadMarks> reads) {
+		long[] ids = new long[reads.size() * 2];
+		Instant[] upTo = new Instant[ids.length];
+		boolean[] agentMessages = new boolean[ids.length];
+		int n = 0;
+		for (Map.Entry<String, ReadMarks> entry : reads.entrySet()) {
+			long id = conversationIdOf(entry.getKey());
+			ReadMarks marks = entry.getValue();
+			if (marks.byAgent() != null) {
+				ids[n] = id;
+				upTo[n++] = marks.byAgent();
+			}
+			if (marks.byClient() != null) {
+				ids[n] = id;
+				upTo[n] = marks.byClient();
+				agentMessages[n++] = true;
+			}
+		}
+		messages.markRead(Arrays.copyOf(ids, n), Arrays.copyOf(upTo, n), Arrays.copyOf(agentMessages, n));
+		return n;
+	}
+
+	/** Écrit les rattachements clientId → utilisateur en attente (agent affecté ou client connecté). */
+	private void flushPending(Map<String, String> pending, BiConsumer<Long, String> update, String what) {
+		if (pending.isEmpty()) {
+			return;
+		}
+		Map<String, String> snapshot = Map.copyOf(pending);
+		try {
+			tx.executeWithoutResult(status -> snapshot.forEach((clientId, username) ->
+					update.accept(conversationIdOf(clientId), username)));
+			// une réaffectation survenue pendant l’écriture reste en attente
+			snapshot.forEach(pending::remove);
+		} catch (DataAccessException e) {
+			conversationIds.clear();
+			log.warn("Failed to persist {} {}: {}", snapshot.size(), what, e.toString());
+		}
+	}
+
+	private long conversationIdOf(String clientId) {
+		Long id = conversationIds.get(clientId);
+		if (id == null) {
+			id = conversations.findOpenIdByClientKey(clientId)
+					.orElseGet(() -> conversations.create(clientId));
+			conversationIds.put(clientId, id);
+		}
+		return id;
+	}
+
+	/** Message envoyé par un agent, donc lu par le client ; sinon envoyé par le client et lu par l’agent. */
+	static boolean sentByAgent(AdminMsg msg) {
+		return "ROLE_EMPLOYEE".equals(msg.role()) || "EMPLOYEE".equals(msg.role());
+	}
+
+	/** Derniers instants lus d’une conversation, par l’agent et par le client (<code>null</code> : aucun). */
+	record ReadMarks(Instant byAgent, Instant byClient) {
+
+		static ReadMarks max(ReadMarks a, ReadMarks b) {
+			return new ReadMarks(latest(a.byAgent, b.byAgent), latest(a.byClient, b.byClient));
+		}
+
+		boolean covers(AdminMsg msg) {
+			Instant upTo = sentByAgent(msg) ? byClient : byAgent;
+			return upTo != null && !msg.timestamp().isAfter(upTo);
+		}
+
+		private static Instant latest(Instant a, Instant b) {
+			return a == null ? b : b == null || a.isAfter(b) ? a : b;
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		// pas d’interruption : elle pourrait couper une écriture JDBC en cours
+		running = false;
+		writer.join(TimeUnit.SECONDS.toMillis(10));
+	}
+}
@@ -0,0 +1,175 @@
+package com.ycyw.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exécute les traitements de routage des messages de support, partitionnés par <code>clientId</code>.
+ * <p>
+ * Chaque conversation est affectée à un shard fixe (hash du <code>clientId</code>) : les messages d’une même
+ * conversation sont donc traités dans leur ordre d’arrivée, tandis que les conversations réparties sur des
+ * shards différents s’exécutent en parallèle. Chaque shard possède une file bornée et un thread dédié
+ * (virtuel par défaut).
+ * </p>
+ * <p>
+ * Lorsqu’une file est pleine, l’appelant attend au plus <code>app.dispatcher.offerTimeoutMs</code> avant que
+ * le message ne soit rejeté : une conversation lente ne bloque que son propre shard.
+ * </p>
+ */
+@Slf4j
+@Component
+public class ConversationDispatcher {
+
+	private final int shardCount;
+	private final int queueCapacity;
+	private final long offerTimeoutMs;
+	private final boolean virtualThreads;
+
+	private final LongAdder dispatched = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	private BlockingQueue<Runnable>[] queues;
+	private Thread[] workers;
+	private volatile boolean running;
+
+	public ConversationDispatcher(@Value("${app.dispatcher.shards:256}") int shardCount,
+								  @Value("${app.dispatcher.queueCapacity:1024}") int queueCapacity,
+								  @Value("${app.dispatcher.offerTimeoutMs:20}") long offerTimeoutMs,
+								  @Value("${app.dispatcher.virtualThreads:true}") boolean virtualThreads) {
+		if (shardCount <= 0 || queueCapacity <= 0) {
+			throw new IllegalArgumentException("Dispatcher shards and queue capacity must be positive");
+		}
+		this.shardCount = shardCount;
+		this.queueCapacity = queueCapacity;
+		this.offerTimeoutMs = offerTimeoutMs;
+		this.virtualThreads = virtualThreads;
+	}
+
+	@PostConstruct
+	@SuppressWarnings("unchecked")
+	public void start() {
+		queues = new BlockingQueue[shardCount];
+		workers = new Thread[shardCount];
+		running = true;
+		Thread.Builder builder = virtualThreads
+				? Thread.ofVirtual().name("conv-dispatch-", 0)
+				: Thread.ofPlatform().daemon().name("conv-dispatch-", 0);
+		for (int i = 0; i < shardCount; i++) {
+			BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+			queues[i] = queue;
+			workers[i] = builder.start(() -> drain(queue));
+		}
+	}
+
+	/**
+	 * Soumet un traitement pour la conversation <code>key</code>.
+	 *
+	 * @return <code>false</code> si la file du shard est restée pleine au-delà du délai d’attente
+	 */
+	public boolean dispatch(String key, Runnable task) {
+		if (!running) {
+			rejected.increment();
+			return false;
+		}
+		BlockingQueue<Runnable> queue = queues[shardOf(key)];
+		try {
+			if (queue.offer(task) || queue.offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+				dispatched.increment();
+				return true;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		rejected.increment();
+		return false;
+	}
+
+	int shardOf(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16); // même dispersion que HashMap
+		return Math.floorMod(h, shardCount);
+	}
+
+	public int getShardCount() {
+		return shardCount;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/** Nombre total de traitements en attente, tous shards confondus. */
+	public int getPending() {
+		int pending = 0;
+		for (BlockingQueue<Runnable> queue : queues) {
+			pending += queue.size();
+		}
+		return pending;
+	}
+
+	/** Taille de la file la plus chargée, pour repérer une conversation lente. */
+	public int getMaxShardDepth() {
+		int max = 0;
+		for (BlockingQueue<Runnable> queue : queues) {
+			max = Math.max(max, queue.size());
+		}
+		return max;
+	}
+
+	public long getDispatchedCount() {
+		return dispatched.sum();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private void drain(BlockingQueue<Runnable> queue) {
+		while (true) {
+			Runnable task;
+			try {
+				// pas de réveil périodique : stop() interrompt les threads
+				task = queue.take();
+			} catch (InterruptedException e) {
+				if (running) {
+					continue;
+				}
+				// vidage final avant l’arrêt
+				while ((task = queue.poll()) != null) {
+					runSafely(task);
+				}
+				return;
+			}
+			runSafely(task);
+		}
+	}
+
+	private void runSafely(Runnable task) {
+		try {
+			task.run();
+		} catch (RuntimeException e) {
+			log.warn("Support dispatch task failed: {}", e.toString());
+		}
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		for (Thread worker : workers) {
+			long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			worker.join(Math.max(1, remainingMs));
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.dto.HistoryPage;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Historique des conversations de support, servi à la reconnexion d’un client ou à l’ouverture
+ * d’une conversation par un agent.
+ * <p>
+ * Les derniers messages de chaque conversation active sont conservés en mémoire dans un buffer
+ * circulaire borné (<code>app.history.bufferSize</code>). Le nombre de conversations gardées en mémoire
+ * est plafonné (<code>app.history.maxConversations</code>) : les moins récemment utilisées sont évincées.
+ * Les pages plus anciennes que le buffer sont lues en base par curseur sur (<code>sent_at</code>,
+ * <code>message_id</code>) : un curseur issu de la base se poursuit en base.
+ * </p>
+ * <p>
+ * Un client ne relit une conversation que s’il en est le propriétaire ({@link #mayRead}) : la première
+ * lecture par un utilisateur connecté lui rattache la <code>clientId</code>, en mémoire et dans
+ * <code>Conversation.client_id</code>. Une conversation d’invité reste lisible avec sa seule <code>clientId</code>.
+ * </p>
+ */
+@Service
+public class ConversationHistoryService {
+
+	public static final int MAX_PAGE_SIZE = 100;
+
+	/** Propriétaire d’une conversation d’invité. */
+	private static final String GUEST = "";
+
+	private final MessageRepository messages;
+	private final ConversationRepository conversations;
+	private final ChatPersistenceService persistence;
+	private final int bufferSize;
+	private final Map<String, MessageRingBuffer> buffers;
+
+	/** Propriétaire connu de chaque <code>clientId</code> (email, ou {@link #GUEST}), LRU comme les buffers. */
+	private final Map<String, String> owners;
+
+	private final Counter memoryHits;
+	private final Counter databaseReads;
+
+	public ConversationHistoryService(MessageRepository messages,
+									  ConversationRepository conversations,
+									  ChatPersistenceService persistence,
+									  MeterRegistry registry,
+									  @Value("${app.history.bufferSize:50}") int bufferSize,
+									  @Value("${app.history.maxConversations:10000}") int maxConversations) {
+		this.messages = messages;
+		this.conversations = conversations;
+		this.persistence = persistence;
+		this.bufferSize = bufferSize;
+		this.buffers = new LinkedHashMap<>(1024, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, MessageRingBuffer> eldest) {
+				return size() > maxConversations;
+			}
+		};
+		this.owners = new LinkedHashMap<>(1024, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxConversations;
+			}
+		};
+
+		Gauge.builder("chat.history.conversations", this, ConversationHistoryService::size)
+				.description("Conversations held in memory")
+				.register(registry);
+		this.memoryHits = Counter.builder("chat.history.pages").tag("source", "memory").register(registry);
+		this.databaseReads = Counter.builder("chat.history.pages").tag("source", "database").register(registry);
+	}
+
+	/** Enregistre un message routé ; à appeler dans l’ordre de la conversation. */
+	public void append(AdminMsg msg) {
+		if (msg.clientId() == null) {
+			return;
+		}
+		MessageRingBuffer buffer;
+		synchronized (buffers) {
+			buffer = buffers.computeIfAbsent(msg.clientId(), k -> new MessageRingBuffer(bufferSize));
+		}
+		buffer.add(msg);
+	}
+
+	/**
+	 * Indique si <code>viewer</code> (email, <code>null</code> pour un invité) peut relire la conversation de
+	 * <code>clientId</code>. Une conversation rattachée à un utilisateur n’est lisible que par lui ; sinon, la
+	 * lecture par un utilisateur connecté la lui rattache.
+	 */
+	public boolean mayRead(String clientId, String viewer) {
+		String owner;
+		synchronized (owners) {
+			owner = owners.get(clientId);
+		}
+		if (owner == null) {
+			owner = conversations.findClientUsername(clientId).orElse(GUEST);
+		}
+		if (!GUEST.equals(owner)) {
+			rememberOwner(clientId, owner);
+			return owner.equals(viewer);
+		}
+		if (viewer != null) {
+			rememberOwner(clientId, viewer);
+			persistence.recordClient(clientId, viewer);
+		} else {
+			rememberOwner(clientId, GUEST);
+		}
+		return true;
+	}
+
+	private void rememberOwner(String clientId, String owner) {
+		synchronized (owners) {
+			// un rattachement concurrent l’emporte sur une conversation d’invité
+			String current = owners.get(clientId);
+			if (current == null || GUEST.equals(current)) {
+				owners.put(clientId, owner);
+			}
+		}
+	}
+
+	/**
+	 * Retourne au plus <code>limit</code> messages antérieurs au curseur <code>before</code>
+	 * (les plus récents si <code>before</code> est <code>null</code>). Un curseur invalide donne une page vide.
+	 */
+	public HistoryPage page(String clientId, String before, int limit) {
+		Cursor cursor;
+		try {
+			cursor = Cursor.parse(before);
+		} catch (DateTimeParseException | NumberFormatException e) {
+			return new HistoryPage(clientId, List.of(), null);
+		}
+		int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+
+		MessageRingBuffer buffer = null;
+		if (cursor.messageId() == null) {
+			synchronized (buffers) {
+				buffer = buffers.get(clientId);
+			}
+		}
+
+		List<Entry> served = new ArrayList<>(size);
+		List<Entry> oldest = buffer != null ? buffer.collectBefore(cursor, size, served) : List.of();
+		List<AdminMsg> page = new ArrayList<>(size);
+		served.forEach(entry -> page.add(entry.message()));
+		String next = null;
+		if (page.size() < size) {
+			int missing = size - page.size();
+			List<MessageRepository.StoredMessage> rows;
+			if (!oldest.isEmpty() && !cursor.precedes(oldest.getLast())) {
+				// le buffer ne couvre pas la page : complément en base à partir du plus ancien message en mémoire
+				rows = olderThan(clientId, oldest, missing);
+			} else {
+				long fromId = cursor.messageId() != null ? cursor.messageId() : Long.MIN_VALUE;
+				rows = messages.findBefore(clientId,
+						cursor.sentAt() == Instant.MAX ? Instant.now() : cursor.sentAt(), fromId, missing);
+			}
+			rows.forEach(row -> page.add(row.message()));
+			databaseReads.increment();
+			if (page.size() == size) {
+				next = Cursor.of(rows.getLast());
+			}
+		} else {
+			memoryHits.increment();
+			next = Cursor.of(served.getLast());
+		}
+
+		Collections.reverse(page);
+		return new HistoryPage(clientId, page, next);
+	}
+
+	/**
+	 * Messages en base antérieurs au plus ancien message en mémoire. Les messages en mémoire n’ont pas encore de
+	 * <code>message_id</code> : ceux qui partagent l’horodatage du plus ancien (<code>ties</code>) sont lus en
+	 * base avec les autres, puis écartés.
+	 */
+	private List<MessageRepository.StoredMessage> olderThan(String clientId, List<Entry> ties, int limit) {
+		List<MessageRepository.StoredMessage> rows = messages.findBefore(clientId, ties.getLast().message().timestamp(),
+				Long.MAX_VALUE, limit + ties.size());
+		List<Entry> buffered = new ArrayList<>(ties);
+		List<MessageRepository.StoredMessage> older = new ArrayList<>(limit);
+		for (MessageRepository.StoredMessage row : rows) {
+			if (!removeFirst(buffered, row.message()) && older.size() < limit) {
+				older.add(row);
+			}
+		}
+		return older;
+	}
+
+	private static boolean removeFirst(List<Entry> buffered, AdminMsg stored) {
+		for (int i = 0; i < buffered.size(); i++) {
+			if (buffered.get(i).persistedAs(stored)) {
+				buffered.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void evict(String clientId) {
+		synchronized (buffers) {
+			buffers.remove(clientId);
+		}
+	}
+
+	private int size() {
+		synchronized (buffers) {
+			return buffers.size();
+		}
+	}
+
+	/**
+	 * Curseur de pagination sur le plus ancien message servi : son <code>sent_at</code> ISO-8601, suivi de
+	 * <code>/message_id</code> lorsqu’il vient de la base, ou de <code>~séquence</code> lorsqu’il vient du buffer.
+	 * Un horodatage seul reprend strictement avant cet instant.
+	 */
+	record Cursor(Instant sentAt, Long messageId, long sequence) {
+
+		static final Cursor START = new Cursor(Instant.MAX, null, Long.MIN_VALUE);
+
+		static Cursor parse(String value) {
+			if (value == null || value.isBlank()) {
+				return START;
+			}
+			int slash = value.indexOf('/');
+			if (slash >= 0) {
+				return new Cursor(Instant.parse(value.substring(0, slash)), Long.parseLong(value.substring(slash + 1)),
+						Long.MIN_VALUE);
+			}
+			int tilde = value.indexOf('~');
+			if (tilde >= 0) {
+				return new Cursor(Instant.parse(value.substring(0, tilde)), null,
+						Long.parseLong(value.substring(tilde + 1)));
+			}
+			return new Cursor(Instant.parse(value), null, Long.MIN_VALUE);
+		}
+
+		static String of(Entry buffered) {
+			return buffered.message().timestamp() + "~" + buffered.sequence();
+		}
+
+		static String of(MessageRepository.StoredMessage stored) {
+			return stored.message().timestamp() + "/" + stored.messageId();
+		}
+
+		/** Indique si le curseur est antérieur à <code>entry</code>, sur (horodatage, séquence). */
+		boolean precedes(Entry entry) {
+			int byTime = sentAt.compareTo(entry.message().timestamp());
+			return byTime < 0 || byTime == 0 && sequence < entry.sequence();
+		}
+	}
+
+	/**
+	 * Message en mémoire et son rang dans la conversation, qui départage les messages de même horodatage
+	 * comme <code>message_id</code> en base.
+	 */
+	record Entry(long sequence, AdminMsg message) {
+
+		boolean isBefore(Cursor cursor) {
+			int byTime = message.timestamp().compareTo(cursor.sentAt());
+			return byTime < 0 || byTime == 0 && sequence < cursor.sequence();
+		}
+
+		/** Indique si <code>stored</code>, lu en base, est la copie persistée de ce message. */
+		boolean persistedAs(AdminMsg stored) {
+			return message.timestamp().equals(stored.timestamp())
+					&& Objects.equals(message.sender(), stored.sender())
+					&& Objects.equals(Objects.requireNonNullElse(message.content(), ""), stored.content());
+		}
+	}
+
+	/**
+	 * Buffer circulaire des derniers messages d’une conversation.
+	 */
+	static final class MessageRingBuffer {
+
+		private final Entry[] slots;
+		private int next;
+		private int count;
+		private long sequence;
+
+		MessageRingBuffer(int capacity) {
+			this.slots = new Entry[capacity];
+		}
+
+		synchronized void add(AdminMsg msg) {
+			slots[next] = new Entry(sequence++, msg);
+			next = (next + 1) % slots.length;
+			if (count < slots.length) {
+				count++;
+			}
+		}
+
+		/**
+		 * Ajoute à <code>out</code>, du plus récent au plus ancien, les messages antérieurs à <code>before</code>.
+		 *
+		 * @return le plus ancien message conservé, précédé de ceux qui partagent son horodatage ; vide si le
+		 * buffer est vide
+		 */
+		synchronized List<Entry> collectBefore(Cursor before, int limit, List<Entry> out) {
+			List<Entry> oldest = new ArrayList<>();
+			for (int i = 1; i <= count; i++) {
+				Entry entry = slots[Math.floorMod(next - i, slots.length)];
+				if (out.size() < limit && entry.isBefore(before)) {
+					out.add(entry);
+				}
+				if (!oldest.isEmpty() && !oldest.getLast().message().timestamp().equals(entry.message().timestamp())) {
+					oldest.clear();
+				}
+				oldest.add(entry);
+			}
+			return oldest;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.ycyw.service;
+
+import com.ycyw.exception.LoginUnavailableException;
+import com.ycyw.exception.TooManyLoginAttemptsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static com.ycyw.common.ResponseMessages.LOGIN_OVERLOADED;
+import static com.ycyw.common.ResponseMessages.TOO_MANY_LOGIN_ATTEMPTS;
+
+/**
+ * Exécuteur dédié à la vérification des mots de passe (BCrypt).
+ * <p>
+ * Le calcul BCrypt ne tourne plus sur les threads Tomcat mais sur un pool borné
+ * (<code>app.login.threads</code>, la moitié des cœurs par défaut) : une rafale de <code>/api/login</code>
+ * ne peut plus monopoliser tous les CPU au détriment du chat et des refresh.
+ * </p>
+ * <p>
+ * Contrôle d’admission : au-delà de <code>app.login.perUserLimit</code> vérifications simultanées pour un
+ * même identifiant, la requête est refusée en 429 ; si la file d’attente est pleine ou que la vérification
+ * dépasse <code>app.login.timeoutMs</code>, elle est refusée en 503. Une vérification abandonnée après
+ * démarrage occupe son créneau par utilisateur jusqu’à sa fin réelle.
+ * </p>
+ */
+@Component
+public class CredentialVerificationExecutor {
+
+	private final ThreadPoolExecutor executor;
+	private final int perUserLimit;
+	private final long timeoutMs;
+	private final Map<String, AtomicInteger> inFlightByUser = new ConcurrentHashMap<>();
+
+	private final Timer queueWait;
+	private final Timer verification;
+	private final Counter rejectedQueueFull;
+	private final Counter rejectedUserLimit;
+	private final Counter rejectedTimeout;
+
+	public CredentialVerificationExecutor(MeterRegistry registry,
+										  @Value("${app.login.threads:0}") int threads,
+										  @Value("${app.login.queueCapacity:64}") int queueCapacity,
+										  @Value("${app.login.perUserLimit:2}") int perUserLimit,
+										  @Value("${app.login.timeoutMs:5000}") long timeoutMs) {
+		int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				Thread.ofPlatform().daemon().name("credential-verify-", 0).factory(),
+				new ThreadPoolExecutor.AbortPolicy());
+		this.perUserLimit = perUserLimit;
+		this.timeoutMs = timeoutMs;
+
+		Gauge.builder("auth.login.queue.depth", executor, e -> e.getQueue().size()).register(registry);
+		Gauge.builder("auth.login.active", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+		this.queueWait = Timer.builder("auth.login.queue.wait")
+				.description("Time a login waited for a verification thread")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		this.verification = Timer.builder("auth.login.verification")
+				.description("Password verification time")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		this.rejectedQueueFull = Counter.builder("auth.login.rejected").tag("reason", "queue_full").register(registry);
+		this.rejectedUserLimit = Counter.builder("auth.login.rejected").tag("reason", "user_limit").register(registry);
+		this.rejectedTimeout = Counter.builder("auth.login.rejected").tag("reason", "timeout").register(registry);
+	}
+
+	/**
+	 * Exécute la vérification sur le pool dédié et attend son résultat.
+	 * Les exceptions levées par la vérification sont propagées telles quelles.
+	 */
+	public <T> T verify(String username, Supplier<T> verificationTask) {
+		String key = username != null ? username : "";
+		if (inFlightByUser.compute(key, (k, count) -> {
+			AtomicInteger c = count != null ? count : new AtomicInteger();
+			c.incrementAndGet();
+			return c;
+		}).get() > perUserLimit) {
+			release(key);
+			rejectedUserLimit.increment();
+			throw new TooManyLoginAttemptsException(TOO_MANY_LOGIN_ATTEMPTS);
+		}
+
+		long submittedAt = System.nanoTime();
+		Future<T> result;
+		try {
+			result = executor.submit(() -> {
+				long startedAt = System.nanoTime();
+				queueWait.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+				try {
+					return verificationTask.get();
+				} finally {
+					verification.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+					// le créneau n’est rendu qu’à la fin réelle du calcul, même si l’appelant a abandonné
+					release(key);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			release(key);
+			rejectedQueueFull.increment();
+			throw new LoginUnavailableException(LOGIN_OVERLOADED);
+		}
+		return await(key, result);
+	}
+
+	private <T> T await(String key, Future<T> result) {
+		try {
+			return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			abandon(key, result);
+			rejectedTimeout.increment();
+			throw new LoginUnavailableException(LOGIN_OVERLOADED);
+		} catch (InterruptedException e) {
+			abandon(key, result);
+			Thread.currentThread().interrupt();
+			throw new LoginUnavailableException(LOGIN_OVERLOADED);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Une vérification encore en file est retirée et son créneau rendu. Une vérification déjà démarrée ne
+	 * s’interrompt pas (BCrypt ignore l’interruption) : elle garde son créneau jusqu’à sa fin.
+	 */
+	private void abandon(String key, Future<?> result) {
+		if (executor.remove((Runnable) result)) {
+			release(key);
+		} else {
+			result.cancel(true);
+		}
+	}
+
+	private void release(String key) {
+		inFlightByUser.computeIfPresent(key, (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,273 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.PaymentState;
+import com.ycyw.dto.ReconciliationReport;
+import com.ycyw.repository.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rapprochement des relevés du prestataire de paiement avec la table <code>"Payment"</code>.
+ * <p>
+ * Le relevé est lu en flux par {@link StatementReader} et découpé en lots de <code>batchSize</code> lignes.
+ * Chaque lot est rapproché sur <code>provider_payment_id</code> par des requêtes d’une centaine d’identifiants
+ * au plus ({@link PaymentRepository#findByProviderIds}), puis les statuts qui diffèrent sont écrits en un seul
+ * batch JDBC, dans une transaction. La lecture du lot suivant se poursuit pendant l’écriture du
+ * précédent : au plus deux lots sont en mémoire, quelle que soit la taille du relevé.
+ * </p>
+ * <p>
+ * Un paiement dont le montant ou la devise ne correspond pas au relevé garde son statut : c’est une anomalie
+ * à examiner, comptée dans le bilan. Un statut ne fait qu’avancer (<code>PENDING</code> vers un statut final,
+ * <code>FAILED</code> vers <code>SUCCEEDED</code>, <code>SUCCEEDED</code> vers <code>REFUNDED</code>) : une ligne
+ * qui le ferait reculer, par exemple un relevé plus ancien rejoué, est comptée en conflit. L’écriture ne
+ * s’applique que si le statut lu n’a pas changé entre-temps.
+ * </p>
+ */
+@Slf4j
+@Service
+public class PaymentReconciliationService {
+
+	private final PaymentRepository payments;
+	private final TransactionTemplate tx;
+	private final Path directory;
+	private final int batchSize;
+	private final StatementReader reader;
+	private final Clock clock;
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	private final Counter updatedLines;
+	private final Counter unchangedLines;
+	private final Counter unknownLines;
+	private final Counter mismatchedLines;
+	private final Counter conflictLines;
+	private final Counter malformedLines;
+	private final Timer duration;
+
+	@Autowired
+	public PaymentReconciliationService(PaymentRepository payments,
+										TransactionTemplate tx,
+										MeterRegistry registry,
+										@Value("${app.reconciliation.directory}") Path directory,
+										@Value("${app.reconciliation.batchSize:1000}") int batchSize) {
+		this(payments, tx, registry, directory, batchSize, new StatementReader(), Clock.systemUTC());
+	}
+
+	PaymentReconciliationService(PaymentRepository payments, TransactionTemplate tx, MeterRegistry registry,
+								 Path directory, int batchSize, StatementReader reader, Clock clock) {
+		this.payments = payments;
+		this.tx = tx;
+		this.directory = directory;
+		this.batchSize = batchSize;
+		this.reader = reader;
+		this.clock = clock;
+
+		this.updatedLines = lines(registry, "updated");
+		this.unchangedLines = lines(registry, "unchanged");
+		this.unknownLines = lines(registry, "unknown");
+		this.mismatchedLines = lines(registry, "mismatch");
+		this.conflictLines = lines(registry, "conflict");
+		this.malformedLines = lines(registry, "malformed");
+		this.duration = Timer.builder("payments.reconciliation.duration").register(registry);
+	}
+
+	private static Counter lines(MeterRegistry registry, String result) {
+		return Counter.builder("payments.reconciliation.lines").tag("result", result).register(registry);
+	}
+
+	/**
+	 * Rapproche le relevé <code>name</code> du répertoire des relevés (<code>.csv</code> ou <code>.jsonl</code>) ;
+	 * vide si un rapprochement est déjà en cours.
+	 *
+	 * @throws IllegalArgumentException nom hors du répertoire ou format inconnu
+	 * @throws NoSuchFileException      relevé absent
+	 */
+	public Optional<ReconciliationReport> reconcile(String name) throws IOException {
+		Path file = directory.resolve(name).normalize();
+		if (file.getParent() == null || !file.getParent().equals(directory.normalize())) {
+			throw new IllegalArgumentException("Statement must be a file of " + directory);
+		}
+		if (!Files.isRegularFile(file)) {
+			throw new NoSuchFileException(file.toString());
+		}
+		return reconcile(file);
+	}
+
+	Optional<ReconciliationReport> reconcile(Path file) throws IOException {
+		StatementReader.Format format = StatementReader.Format.of(file);
+		if (!running.compareAndSet(false, true)) {
+			return Optional.empty();
+		}
+		ExecutorService writer = Executors.newSingleThreadExecutor(
+				Thread.ofPlatform().name("payment-reconciliation").daemon().factory());
+		try {
+			long start = System.nanoTime();
+			Pipeline pipeline = new Pipeline(writer);
+			long malformed = reader.read(file, format, pipeline::add);
+			pipeline.finish();
+			long elapsed = System.nanoTime() - start;
+			duration.record(elapsed, TimeUnit.NANOSECONDS);
+			malformedLines.increment(malformed);
+
+			Tally tally = pipeline.tally;
+			long lines = tally.updated + tally.unchanged + tally.unknown + tally.mismatched + tally.conflicts
+					+ tally.duplicates;
+			long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+			ReconciliationReport report = new ReconciliationReport(file.getFileName().toString(), lines,
+					tally.updated, tally.unchanged, tally.unknown, tally.mismatched, tally.conflicts, tally.duplicates,
+					malformed, millis, lines * 1000 / Math.max(1, millis));
+			log.info("Reconciled {}: {} lines in {} ms ({} lines/s), {} updated, {} unchanged, {} unknown, "
+							+ "{} amount mismatches, {} conflicts, {} malformed", report.statement(), lines, millis,
+					report.linesPerSecond(), tally.updated, tally.unchanged, tally.unknown, tally.mismatched,
+					tally.conflicts, malformed);
+			return Optional.of(report);
+		} finally {
+			writer.shutdownNow();
+			running.set(false);
+		}
+	}
+
+	/** Compteurs d’un rapprochement ; modifiés par le seul thread d’écriture, lus après {@link Pipeline#finish()}. */
+	private static final class Tally {
+		long updated;
+		long unchanged;
+		long unknown;
+		long mismatched;
+		long conflicts;
+		long duplicates;
+	}
+
+	/** Lots en cours de constitution (thread de lecture) et en cours d’écriture (un seul à la fois). */
+	private final class Pipeline {
+		private final ExecutorService writer;
+		private final Tally tally = new Tally();
+		private List<StatementReader.Line> batch = new ArrayList<>(batchSize);
+		private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+		private Pipeline(ExecutorService writer) {
+			this.writer = writer;
+		}
+
+		private void add(StatementReader.Line line) {
+			batch.add(line);
+			if (batch.size() == batchSize) {
+				flush();
+			}
+		}
+
+		private void flush() {
+			await();
+			List<StatementReader.Line> full = batch;
+			pending = CompletableFuture.runAsync(() -> apply(full, tally), writer);
+			batch = new ArrayList<>(batchSize);
+		}
+
+		private void finish() {
+			if (!batch.isEmpty()) {
+				flush();
+			}
+			await();
+		}
+
+		private void await() {
+			try {
+				pending.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Reconciliation interrupted", e);
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	/** Rapproche un lot : des lectures par tranches, un batch d’écriture. */
+	private void apply(List<StatementReader.Line> lines, Tally tally) {
+		// la dernière ligne d’un paiement l’emporte au sein du lot ; d’un lot à l’autre, l’ordre du relevé est suivi
+		Map<String, StatementReader.Line> latest = LinkedHashMap.newLinkedHashMap(lines.size());
+		for (StatementReader.Line line : lines) {
+			latest.put(line.providerPaymentId(), line);
+		}
+		tally.duplicates += lines.size() - latest.size();
+
+		Map<String, PaymentState> found = payments.findByProviderIds(latest.keySet());
+		int n = 0;
+		long[] ids = new long[found.size()];
+		String[] expected = new String[found.size()];
+		String[] statuses = new String[found.size()];
+		for (StatementReader.Line line : latest.values()) {
+			PaymentState payment = found.get(line.providerPaymentId());
+			if (payment == null) {
+				tally.unknown++;
+				unknownLines.increment();
+			} else if (payment.amount().compareTo(line.amount()) != 0 || !payment.currency().equals(line.currency())) {
+				tally.mismatched++;
+				mismatchedLines.increment();
+			} else if (payment.status().equals(line.status())) {
+				tally.unchanged++;
+				unchangedLines.increment();
+			} else if (!advances(payment.status(), line.status())) {
+				tally.conflicts++;
+				conflictLines.increment();
+			} else {
+				ids[n] = payment.paymentId();
+				expected[n] = payment.status();
+				statuses[n] = line.status();
+				n++;
+			}
+		}
+		if (n == 0) {
+			return;
+		}
+
+		long[] updatedIds = Arrays.copyOf(ids, n);
+		String[] expectedStatuses = Arrays.copyOf(expected, n);
+		String[] newStatuses = Arrays.copyOf(statuses, n);
+		// une validation par lot plutôt que par ligne
+		int[] counts = tx.execute(status ->
+				payments.updateStatuses(updatedIds, expectedStatuses, newStatuses, clock.instant()));
+		for (int count : counts) {
+			if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+				tally.updated++;
+				updatedLines.increment();
+			} else {
+				tally.conflicts++;
+				conflictLines.increment();
+			}
+		}
+	}
+
+	/** Transitions admises ; un remboursement est définitif. */
+	static boolean advances(String from, String to) {
+		return switch (from) {
+			case "PENDING" -> true;
+			case "FAILED" -> "SUCCEEDED".equals(to);
+			case "SUCCEEDED" -> "REFUNDED".equals(to);
+			default -> false;
+		};
+	}
+}
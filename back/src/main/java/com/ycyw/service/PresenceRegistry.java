@@ -0,0 +1,93 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.PresenceEvent;
+import com.ycyw.cluster.SessionDirectory;
+import com.ycyw.dto.PresenceDelta;
+import com.ycyw.dto.PresenceSnapshot;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Présence des clients et des agents, alimentée par le cycle de vie des sessions STOMP ({@link SessionDirectory}).
+ * <p>
+ * Structures concurrentes sans verrou global : clients connectés, agents connectés et charge de chaque agent
+ * (conversations ouvertes, tenue par {@link AgentAssignmentService}). Chaque changement est poussé aux agents
+ * connectés à ce nœud sous forme de {@link PresenceDelta} sur {@link #PRESENCE_TOPIC}, topic auquel seuls les
+ * employés peuvent s’abonner (<code>WebSocketConfig.destinationInterceptor</code>) ; tous les nœuds
+ * recevant les mêmes transitions, chaque agent reçoit chaque delta une seule fois. L’état complet
+ * ({@link #snapshot()}) est une vue des mêmes structures, obtenue en O(1).
+ * </p>
+ */
+@Service
+public class PresenceRegistry {
+
+	public static final String PRESENCE_TOPIC = "/topic/support.presence";
+
+	private final SessionDirectory directory;
+	private final SimpMessagingTemplate messaging;
+
+	/** clientId → connecté depuis. */
+	private final Map<String, Instant> clients = new ConcurrentHashMap<>();
+	/** Agent → conversations ouvertes, connecté ou non. */
+	private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+	/** Agents connectés → même compteur que dans {@link #loads}. */
+	private final Map<String, AtomicInteger> agents = new ConcurrentHashMap<>();
+
+	private final PresenceSnapshot snapshot = new PresenceSnapshot(
+			Collections.unmodifiableSet(clients.keySet()), Collections.unmodifiableMap(agents));
+
+	public PresenceRegistry(SessionDirectory directory, SimpMessagingTemplate messaging) {
+		this.directory = directory;
+		this.messaging = messaging;
+	}
+
+	@EventListener
+	public void onPresence(PresenceEvent event) {
+		// l’annuaire fait foi : deux événements d’un même identifiant peuvent arriver dans le désordre
+		boolean online = !directory.nodesFor(event.kind(), event.id()).isEmpty();
+		boolean changed = switch (event.kind()) {
+			case CLIENT -> online
+					? clients.putIfAbsent(event.id(), Instant.now()) == null
+					: clients.remove(event.id()) != null;
+			case AGENT -> online
+					? agents.putIfAbsent(event.id(), load(event.id())) == null
+					: agents.remove(event.id()) != null;
+			case USER -> false;
+		};
+		if (changed) {
+			Integer load = event.kind() == SessionDirectory.Kind.AGENT ? load(event.id()).get() : null;
+			messaging.convertAndSend(PRESENCE_TOPIC,
+					new PresenceDelta(event.kind().name(), event.id(), online, load, Instant.now()));
+		}
+	}
+
+	public boolean isClientOnline(String clientId) {
+		return clients.containsKey(clientId);
+	}
+
+	public boolean isAgentOnline(String agent) {
+		return agents.containsKey(agent);
+	}
+
+	/** Vue en lecture seule de l’état courant. */
+	public PresenceSnapshot snapshot() {
+		return snapshot;
+	}
+
+	public int loadOf(String agent, int defaultValue) {
+		AtomicInteger load = loads.get(agent);
+		return load != null ? load.get() : defaultValue;
+	}
+
+	/** Compteur de conversations ouvertes de l’agent. */
+	AtomicInteger load(String agent) {
+		return loads.computeIfAbsent(agent, k -> new AtomicInteger());
+	}
+}
@@ -0,0 +1,155 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.dto.UnreadCount;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accusés de lecture et compteurs de messages non lus.
+ * <p>
+ * Un client ou un agent accuse lecture d’une conversation jusqu’à l’horodatage du dernier message lu (le
+ * curseur de l’historique), par un message de type <code>READ</code> ; répondre vaut lecture pour l’agent.
+ * Les compteurs sont tenus en mémoire par le nœud de référence de la conversation et modifiés sur le thread
+ * de son {@link ConversationDispatcher} : messages du client non lus par l’agent dans chaque conversation, et
+ * total par agent. Chaque changement est poussé à l’agent concerné sur {@link #UNREAD_QUEUE} ; le report de
+ * <code>Message.is_read</code> en base est regroupé par {@link ChatPersistenceService#recordRead}.
+ * </p>
+ */
+@Service
+public class ReadReceiptService {
+
+	public static final String UNREAD_QUEUE = "/queue/support.unread";
+
+	/** Instants de non-lus conservés par conversation ; au-delà, seul leur nombre est gardé. */
+	static final int MAX_TRACKED = 1000;
+
+	private final ClusterRelay cluster;
+	private final ChatPersistenceService persistence;
+
+	private final Map<String, Unread> conversations = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> agents = new ConcurrentHashMap<>();
+
+	public ReadReceiptService(ClusterRelay cluster, ChatPersistenceService persistence) {
+		this.cluster = cluster;
+		this.persistence = persistence;
+	}
+
+	/** Message du client : un non-lu de plus pour l’agent affecté (ou pour le suivant, s’il n’y en a pas). */
+	public void onClientMessage(String clientId, Instant timestamp, String agent) {
+		Unread unread = conversations.computeIfAbsent(clientId, k -> new Unread());
+		creditTo(clientId, unread, agent);
+		if (unread.pending.size() == MAX_TRACKED) {
+			unread.pending.removeFirst();
+			unread.untracked++;
+		}
+		unread.pending.addLast(timestamp);
+		unread.count++;
+		if (agent != null) {
+			total(agent).incrementAndGet();
+			push(agent, clientId, unread.count);
+		}
+	}
+
+	/** L’agent a lu la conversation jusqu’à <code>upTo</code> inclus. */
+	public void readByAgent(String clientId, String agent, Instant upTo) {
+		persistence.recordRead(clientId, true, upTo);
+		Unread unread = conversations.get(clientId);
+		if (unread == null) {
+			return;
+		}
+		creditTo(clientId, unread, agent);
+		int before = unread.count;
+		if (!unread.pending.isEmpty() && !unread.pending.getFirst().isAfter(upTo)) {
+			// les non-lus non conservés sont antérieurs au plus ancien conservé
+			unread.untracked = 0;
+		}
+		while (!unread.pending.isEmpty() && !unread.pending.getFirst().isAfter(upTo)) {
+			unread.pending.removeFirst();
+		}
+		unread.count = unread.untracked + unread.pending.size();
+		int read = before - unread.count;
+		if (read > 0) {
+			total(agent).addAndGet(-read);
+			push(agent, clientId, unread.count);
+		}
+	}
+
+	/** Le client a lu la conversation jusqu’à <code>upTo</code> inclus. */
+	public void readByClient(String clientId, Instant upTo) {
+		persistence.recordRead(clientId, false, upTo);
+	}
+
+	/** Conversation libérée : ses non-lus ne comptent plus pour l’agent. */
+	public void release(String clientId) {
+		Unread unread = conversations.remove(clientId);
+		if (unread != null && unread.agent != null) {
+			total(unread.agent).addAndGet(-unread.count);
+			push(unread.agent, clientId, 0);
+		}
+	}
+
+	/** Non-lus des conversations affectées à l’agent et tenues par ce nœud. */
+	public List<UnreadCount> unreadFor(String agent) {
+		int total = totalOf(agent);
+		Instant now = Instant.now();
+		List<UnreadCount> counts = new ArrayList<>();
+		conversations.forEach((clientId, unread) -> {
+			if (agent.equals(unread.agent) && unread.count > 0) {
+				counts.add(new UnreadCount(clientId, unread.count, total, now));
+			}
+		});
+		return counts;
+	}
+
+	public int unreadOf(String clientId) {
+		Unread unread = conversations.get(clientId);
+		return unread != null ? unread.count : 0;
+	}
+
+	public int totalOf(String agent) {
+		AtomicInteger total = agents.get(agent);
+		return total != null ? total.get() : 0;
+	}
+
+	/** Reporte les non-lus de la conversation sur l’agent qui en a désormais la charge. */
+	private void creditTo(String clientId, Unread unread, String agent) {
+		if (Objects.equals(unread.agent, agent)) {
+			return;
+		}
+		String previous = unread.agent;
+		unread.agent = agent;
+		if (previous != null) {
+			total(previous).addAndGet(-unread.count);
+			push(previous, clientId, 0);
+		}
+		if (agent != null) {
+			total(agent).addAndGet(unread.count);
+		}
+	}
+
+	private AtomicInteger total(String agent) {
+		return agents.computeIfAbsent(agent, k -> new AtomicInteger());
+	}
+
+	private void push(String agent, String clientId, int unread) {
+		cluster.sendToUser(agent, UNREAD_QUEUE, new UnreadCount(clientId, unread, totalOf(agent), Instant.now()), null);
+	}
+
+	/** Non-lus d’une conversation, modifiés uniquement sur le thread de son dispatcher. */
+	private static final class Unread {
+		final ArrayDeque<Instant> pending = new ArrayDeque<>();
+		int untracked;
+		/** Lus aussi par {@link #unreadFor(String)}, hors du thread du dispatcher. */
+		volatile String agent;
+		volatile int count;
+	}
+}
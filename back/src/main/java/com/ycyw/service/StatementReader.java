@@ -0,0 +1,244 @@
+package com.ycyw.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ycyw.exception.MalformedStatementException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Lecture en flux d’un relevé de prestataire de paiement, CSV (avec en-tête) ou JSON Lines.
+ * <p>
+ * Le fichier est projeté en mémoire par fenêtres successives de <code>window</code> octets : la mémoire
+ * utilisée ne dépend pas de la taille du relevé. Une ligne à cheval sur deux fenêtres est relue au début de la
+ * suivante ; une ligne plus longue qu’une fenêtre interrompt la lecture.
+ * </p>
+ * Colonnes (ou champs JSON) lues : <code>provider_payment_id</code>, <code>status</code>
+ * (<code>SUCCEEDED</code>, <code>FAILED</code> ou <code>REFUNDED</code>), <code>amount</code> et
+ * <code>currency</code> ; les autres sont ignorées.
+ */
+final class StatementReader {
+
+	static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+	/** Au-delà, la ligne est comptée comme illisible sans être analysée. */
+	static final int MAX_LINE = 8 * 1024;
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	enum Format {
+		CSV, JSONL;
+
+		static Format of(Path file) {
+			String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+			if (name.endsWith(".csv")) {
+				return CSV;
+			}
+			if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+				return JSONL;
+			}
+			throw new IllegalArgumentException("Unsupported statement format: " + file.getFileName());
+		}
+	}
+
+	record Line(String providerPaymentId, String status, BigDecimal amount, String currency) {
+	}
+
+	private final int window;
+
+	StatementReader() {
+		this(DEFAULT_WINDOW);
+	}
+
+	StatementReader(int window) {
+		this.window = window;
+	}
+
+	/**
+	 * Passe chaque ligne valide à <code>lines</code>, dans l’ordre du fichier.
+	 *
+	 * @return nombre de lignes illisibles (hors lignes vides et en-tête CSV)
+	 */
+	long read(Path file, Format format, Consumer<Line> lines) throws IOException {
+		Parser parser = format == Format.CSV ? new CsvParser() : new JsonLinesParser();
+		byte[] line = new byte[MAX_LINE];
+		long malformed = 0;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long position = 0;
+			while (position < size) {
+				int length = (int) Math.min(window, size - position);
+				boolean last = position + length == size;
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				int start = 0;
+				for (int i = 0; i < length; i++) {
+					if (buffer.get(i) == '\n') {
+						malformed += parse(buffer, start, i, line, parser, lines);
+						start = i + 1;
+					}
+				}
+				if (last) {
+					if (start < length) {
+						malformed += parse(buffer, start, length, line, parser, lines);
+					}
+					position = size;
+				} else if (start == 0) {
+					throw new IOException("Statement line longer than " + window + " bytes at offset " + position);
+				} else {
+					position += start;
+				}
+			}
+		}
+		return malformed;
+	}
+
+	/** Analyse <code>buffer[from, to[</code> (sans le <code>\n</code>) ; renvoie 1 si la ligne est illisible. */
+	private static int parse(MappedByteBuffer buffer, int from, int to, byte[] line, Parser parser,
+							 Consumer<Line> lines) throws IOException {
+		if (to > from && buffer.get(to - 1) == '\r') {
+			to--;
+		}
+		int length = to - from;
+		if (length == 0) {
+			return 0;
+		}
+		if (length > MAX_LINE) {
+			return 1;
+		}
+		buffer.get(from, line, 0, length);
+		try {
+			Line parsed = parser.parse(line, length);
+			if (parsed == null) {
+				return 0;
+			}
+			if (parsed.providerPaymentId() == null || parsed.providerPaymentId().isEmpty()
+					|| parsed.amount() == null || parsed.currency() == null || !isFinalStatus(parsed.status())) {
+				return 1;
+			}
+			lines.accept(parsed);
+			return 0;
+		} catch (MalformedStatementException e) {
+			throw e;
+		} catch (IOException | IllegalArgumentException e) {
+			return 1;
+		}
+	}
+
+	private static boolean isFinalStatus(String status) {
+		return "SUCCEEDED".equals(status) || "FAILED".equals(status) || "REFUNDED".equals(status);
+	}
+
+	private interface Parser {
+		/** <code>null</code> pour une ligne à ignorer (en-tête). */
+		Line parse(byte[] line, int length) throws IOException;
+	}
+
+	/** CSV simple : séparateur virgule, guillemets autour d’un champ tolérés mais pas de virgule à l’intérieur. */
+	private static final class CsvParser implements Parser {
+		private int idColumn = -1;
+		private int statusColumn = -1;
+		private int amountColumn = -1;
+		private int currencyColumn = -1;
+		private int columns;
+
+		@Override
+		public Line parse(byte[] line, int length) throws MalformedStatementException {
+			String[] fields = split(line, length);
+			if (columns == 0) {
+				header(fields);
+				return null;
+			}
+			if (fields.length < columns) {
+				throw new IllegalArgumentException("Missing columns");
+			}
+			return new Line(fields[idColumn],
+					fields[statusColumn].toUpperCase(Locale.ROOT),
+					new BigDecimal(fields[amountColumn]),
+					fields[currencyColumn].toUpperCase(Locale.ROOT));
+		}
+
+		private void header(String[] fields) throws MalformedStatementException {
+			for (int i = 0; i < fields.length; i++) {
+				switch (fields[i].toLowerCase(Locale.ROOT)) {
+					case "provider_payment_id" -> idColumn = i;
+					case "status" -> statusColumn = i;
+					case "amount" -> amountColumn = i;
+					case "currency" -> currencyColumn = i;
+					default -> { }
+				}
+			}
+			if (idColumn < 0 || statusColumn < 0 || amountColumn < 0 || currencyColumn < 0) {
+				throw new MalformedStatementException("Statement header must name provider_payment_id, status, amount"
+						+ " and currency: " + String.join(",", fields));
+			}
+			columns = 1 + Math.max(Math.max(idColumn, statusColumn), Math.max(amountColumn, currencyColumn));
+		}
+
+		private static String[] split(byte[] line, int length) {
+			int count = 1;
+			for (int i = 0; i < length; i++) {
+				if (line[i] == ',') {
+					count++;
+				}
+			}
+			String[] fields = new String[count];
+			int field = 0;
+			int start = 0;
+			for (int i = 0; i <= length; i++) {
+				if (i == length || line[i] == ',') {
+					int from = start;
+					int to = i;
+					if (to - from >= 2 && line[from] == '"' && line[to - 1] == '"') {
+						from++;
+						to--;
+					}
+					fields[field++] = new String(line, from, to - from, StandardCharsets.UTF_8).trim();
+					start = i + 1;
+				}
+			}
+			return fields;
+		}
+	}
+
+	/** Un objet JSON par ligne ; <code>amount</code> en nombre ou en chaîne. */
+	private static final class JsonLinesParser implements Parser {
+		@Override
+		public Line parse(byte[] line, int length) throws IOException {
+			String id = null;
+			String status = null;
+			BigDecimal amount = null;
+			String currency = null;
+			try (JsonParser json = JSON.createParser(line, 0, length)) {
+				if (json.nextToken() != JsonToken.START_OBJECT) {
+					throw new IOException("Not a JSON object");
+				}
+				while (json.nextToken() == JsonToken.FIELD_NAME) {
+					String field = json.currentName();
+					JsonToken value = json.nextToken();
+					switch (field) {
+						case "provider_payment_id" -> id = json.getValueAsString();
+						case "status" -> status = upper(json.getValueAsString());
+						case "amount" -> amount = value.isNumeric() ? json.getDecimalValue() : new BigDecimal(json.getText());
+						case "currency" -> currency = upper(json.getValueAsString());
+						default -> json.skipChildren();
+					}
+				}
+			}
+			return new Line(id, status, amount, currency);
+		}
+
+		private static String upper(String value) {
+			return value != null ? value.toUpperCase(Locale.ROOT) : null;
+		}
+	}
+}
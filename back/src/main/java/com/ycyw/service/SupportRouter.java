@@ -0,0 +1,167 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.dto.AdminMsg;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Acheminement des messages de support vers leurs destinataires.
+ * <p>
+ * Une conversation est traitée sur son nœud de référence ({@link ClusterRelay#homeOf(String)}) : un message
+ * reçu sur un autre nœud du cluster y est d’abord transmis. Le traitement est confié au
+ * {@link ConversationDispatcher} (ordre préservé par conversation) : envoi au client sur
+ * <code>/queue/support/{clientId}</code>, à l’agent affecté sur sa destination utilisateur (via le relais,
+ * quel que soit le nœud où ils sont connectés), puis mise en historique, persistance et indexation
+ * ({@link SupportSearchService}). Les envois portent l’instant de réception pour la mesure de latence de
+ * bout en bout (<code>stomp.support.latency</code>).
+ * </p>
+ */
+@Slf4j
+@Service
+public class SupportRouter implements ClusterRelay.CommandHandler {
+
+	private final ConversationDispatcher dispatcher;
+	private final AgentAssignmentService assignments;
+	private final ConversationHistoryService history;
+	private final ChatPersistenceService persistence;
+	private final SupportSearchService search;
+	private final ReadReceiptService receipts;
+	private final ClusterRelay cluster;
+
+	public SupportRouter(ConversationDispatcher dispatcher,
+						 AgentAssignmentService assignments,
+						 ConversationHistoryService history,
+						 ChatPersistenceService persistence,
+						 SupportSearchService search,
+						 ReadReceiptService receipts,
+						 ClusterRelay cluster) {
+		this.dispatcher = dispatcher;
+		this.assignments = assignments;
+		this.history = history;
+		this.persistence = persistence;
+		this.search = search;
+		this.receipts = receipts;
+		this.cluster = cluster;
+	}
+
+	@PostConstruct
+	public void registerWithCluster() {
+		cluster.setCommandHandler(this);
+	}
+
+	/** Message d’un client (invité ou connecté). */
+	public void fromClient(AdminMsg msg) {
+		String home = cluster.homeOf(msg.clientId());
+		if (cluster.isLocal(home)) {
+			onClientMessage(msg);
+		} else {
+			cluster.forwardClientMessage(home, msg);
+		}
+	}
+
+	/** Réponse d’un agent : répondre à une conversation revient à la prendre en charge. */
+	public void fromAgent(AdminMsg msg, String agent) {
+		String home = cluster.homeOf(msg.clientId());
+		if (cluster.isLocal(home)) {
+			onAgentMessage(msg, agent);
+		} else {
+			cluster.forwardAgentMessage(home, msg, agent);
+		}
+	}
+
+	/**
+	 * La présence est suivie par le serveur ({@link PresenceRegistry}) : <code>JOIN</code> n’est pas diffusé et
+	 * <code>LEAVE</code> libère seulement la conversation. <code>READ</code> est un accusé de lecture
+	 * ({@link ReadReceiptService}), ni diffusé ni enregistré.
+	 */
+	@Override
+	public void onClientMessage(AdminMsg msg) {
+		String clientId = msg.clientId();
+		if ("JOIN".equals(msg.type())) {
+			return;
+		}
+		if ("LEAVE".equals(msg.type())) {
+			route(clientId, () -> {
+				assignments.release(clientId);
+				receipts.release(clientId);
+			});
+			return;
+		}
+		if ("READ".equals(msg.type())) {
+			Instant upTo = readUpTo(msg);
+			if (upTo != null) {
+				route(clientId, () -> receipts.readByClient(clientId, upTo));
+			}
+			return;
+		}
+		route(clientId, () -> {
+			cluster.sendToClient(clientId, msg, msg.timestamp());
+			String agent = assignments.agentFor(clientId);
+			if (agent != null) {
+				cluster.sendToUser(agent, AgentAssignmentService.AGENT_QUEUE, msg, msg.timestamp());
+			}
+			record(msg, agent);
+			receipts.onClientMessage(clientId, msg.timestamp(), agent);
+		});
+	}
+
+	@Override
+	public void onAgentMessage(AdminMsg msg, String agent) {
+		String clientId = msg.clientId();
+		if ("READ".equals(msg.type())) {
+			Instant upTo = readUpTo(msg);
+			if (upTo != null) {
+				route(clientId, () -> {
+					// seul l’agent affecté solde les non-lus : un autre agent qui lit ne les prend pas à son compte
+					if (agent.equals(assignments.assignedAgent(clientId))) {
+						receipts.readByAgent(clientId, agent, upTo);
+					}
+				});
+			}
+			return;
+		}
+		route(clientId, () -> {
+			if (!assignments.claim(clientId, agent)) {
+				return;
+			}
+			cluster.sendToClient(clientId, msg, msg.timestamp());
+			cluster.sendToUser(agent, AgentAssignmentService.AGENT_QUEUE, msg, msg.timestamp());
+			record(msg, agent);
+			receipts.readByAgent(clientId, agent, msg.timestamp());
+		});
+	}
+
+	/**
+	 * Instant jusqu’auquel un <code>READ</code> accuse lecture (ISO-8601 dans <code>content</code>), borné à sa
+	 * réception : un accusé ne couvre jamais un message pas encore reçu.
+	 */
+	private static Instant readUpTo(AdminMsg msg) {
+		if (msg.content() == null) {
+			return null;
+		}
+		try {
+			Instant upTo = Instant.parse(msg.content());
+			return upTo.isAfter(msg.timestamp()) ? msg.timestamp() : upTo;
+		} catch (DateTimeParseException e) {
+			log.debug("Ignoring READ with invalid cursor {} for client {}", msg.content(), msg.clientId());
+			return null;
+		}
+	}
+
+	private void record(AdminMsg msg, String agent) {
+		history.append(msg);
+		persistence.enqueue(msg);
+		search.enqueue(msg, agent);
+	}
+
+	private void route(String clientId, Runnable fanOut) {
+		if (!dispatcher.dispatch(clientId, fanOut)) {
+			log.warn("Support message dropped for client {}: dispatcher queue full", clientId);
+		}
+	}
+}
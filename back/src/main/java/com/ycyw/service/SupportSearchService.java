@@ -0,0 +1,434 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.dto.SearchHit;
+import com.ycyw.dto.SearchResults;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index plein texte (Lucene) de l’historique des conversations de support, stocké en segments sur disque
+ * (<code>app.search.directory</code>).
+ * <p>
+ * L’index est incrémental : chaque message routé est déposé dans une file bornée sans bloquer le routage,
+ * puis un thread d’indexation unique l’ajoute à l’index. Les nouveaux messages deviennent visibles des
+ * recherches au plus tard <code>app.search.refreshIntervalMs</code> après leur indexation (réouverture
+ * quasi temps réel depuis l’<code>IndexWriter</code>) ; les segments sont validés sur disque toutes les
+ * <code>app.search.commitIntervalMs</code> et à l’arrêt.
+ * </p>
+ * <p>
+ * L’index peut être reconstruit à partir de la table <code>"Message"</code> ({@link #rebuild()}), par exemple
+ * au démarrage avec la base H2 en mémoire, ou pour un nœud qui n’a pas routé toutes les conversations. Chaque
+ * document porte une clé (conversation, instant à la microseconde, émetteur) : un message indexé à la fois en
+ * direct et par la reconstruction n’apparaît qu’une fois.
+ * </p>
+ */
+@Slf4j
+@Service
+public class SupportSearchService {
+
+	public static final int MAX_RESULTS = 100;
+
+	/** Documents en mémoire avant écriture d’un segment. */
+	private static final double RAM_BUFFER_MB = 64;
+
+	static final String ID = "id";
+	static final String CONVERSATION = "conversation";
+	static final String AGENT = "agent";
+	static final String SENDER = "sender";
+	static final String ROLE = "role";
+	static final String TYPE = "type";
+	static final String TIMESTAMP = "timestamp";
+	static final String CONTENT = "content";
+
+	/** Termes isolés ou expressions entre guillemets. */
+	private static final Pattern TOKENS = Pattern.compile("\"([^\"]*)\"?|(\\S+)");
+
+	private record Entry(AdminMsg msg, String agent) {
+	}
+
+	private final MessageRepository messages;
+	private final Path path;
+	private final boolean rebuildOnStartup;
+	private final int batchSize;
+	private final long refreshIntervalNanos;
+	private final long commitIntervalNanos;
+	private final BlockingQueue<Entry> queue;
+	private final Analyzer analyzer = analyzer();
+	private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+	private final Counter indexed;
+	private final Counter dropped;
+	private final Counter failed;
+	private final Timer queryTimer;
+
+	private Directory directory;
+	private IndexWriter writer;
+	private SearcherManager searchers;
+	private Thread indexer;
+	private volatile boolean running;
+
+	public SupportSearchService(MessageRepository messages,
+								MeterRegistry registry,
+								@Value("${app.search.directory}") Path path,
+								@Value("${app.search.rebuildOnStartup:false}") boolean rebuildOnStartup,
+								@Value("${app.search.queueCapacity:65536}") int queueCapacity,
+								@Value("${app.search.batchSize:1000}") int batchSize,
+								@Value("${app.search.refreshIntervalMs:1000}") long refreshIntervalMs,
+								@Value("${app.search.commitIntervalMs:60000}") long commitIntervalMs) {
+		this.messages = messages;
+		this.path = path;
+		this.rebuildOnStartup = rebuildOnStartup;
+		this.batchSize = batchSize;
+		this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMs);
+		this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMs);
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+		Gauge.builder("chat.search.queue.depth", queue, BlockingQueue::size)
+				.description("Messages waiting to be indexed")
+				.register(registry);
+		Gauge.builder("chat.search.documents", this, SupportSearchService::documents)
+				.description("Messages in the search index")
+				.register(registry);
+		this.indexed = Counter.builder("chat.search.messages").tag("result", "indexed").register(registry);
+		this.dropped = Counter.builder("chat.search.messages").tag("result", "dropped").register(registry);
+		this.failed = Counter.builder("chat.search.messages").tag("result", "failed").register(registry);
+		this.queryTimer = Timer.builder("chat.search.query")
+				.description("Latency of one search")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+	}
+
+	@PostConstruct
+	public void start() throws IOException {
+		directory = FSDirectory.open(path);
+		writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+				.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+				.setRAMBufferSizeMB(RAM_BUFFER_MB));
+		searchers = new SearcherManager(writer, null);
+		running = true;
+		indexer = Thread.ofPlatform().daemon().name("chat-search-indexer").start(this::run);
+		if (rebuildOnStartup) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Dépose un message à indexer. N’attend jamais : si la file est pleine, le message est compté
+	 * comme perdu (il sera retrouvé par la prochaine reconstruction).
+	 *
+	 * @param agent agent affecté à la conversation, ou <code>null</code>
+	 */
+	public boolean enqueue(AdminMsg msg, String agent) {
+		if (msg.clientId() == null || msg.content() == null || msg.content().isBlank()) {
+			return false;
+		}
+		if (queue.offer(new Entry(msg, agent))) {
+			return true;
+		}
+		dropped.increment();
+		return false;
+	}
+
+	/**
+	 * Recherche des messages contenant tous les termes et expressions (entre guillemets) de <code>text</code>.
+	 * Un terme qui se découpe en plusieurs mots, comme une immatriculation <code>AB-123-CD</code>, est cherché
+	 * comme une expression. Les accents et la casse sont ignorés.
+	 *
+	 * @param conversation <code>clientId</code> de la conversation, ou <code>null</code>
+	 * @param agent        agent affecté, ou <code>null</code>
+	 * @param from         borne basse incluse, ou <code>null</code>
+	 * @param to           borne haute exclue, ou <code>null</code>
+	 */
+	public SearchResults search(String text, String conversation, String agent, Instant from, Instant to, int limit) {
+		Query query = parse(text, conversation, agent, from, to);
+		if (query == null) {
+			return new SearchResults(0, true, List.of());
+		}
+		long start = System.nanoTime();
+		try {
+			IndexSearcher searcher = searchers.acquire();
+			try {
+				// tri par pertinence seule : les documents non compétitifs sont sautés (block-max WAND)
+				TopDocs top = searcher.search(query, Math.clamp(limit, 1, MAX_RESULTS));
+				StoredFields stored = searcher.storedFields();
+				List<SearchHit> hits = new ArrayList<>(top.scoreDocs.length);
+				for (ScoreDoc scoreDoc : top.scoreDocs) {
+					hits.add(toHit(stored.document(scoreDoc.doc), scoreDoc.score));
+				}
+				return new SearchResults(top.totalHits.value(),
+						top.totalHits.relation() == TotalHits.Relation.EQUAL_TO, hits);
+			} finally {
+				searchers.release(searcher);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Reconstruit l’index à partir de la table <code>"Message"</code>, sur un thread dédié. Les recherches
+	 * continuent sur l’index précédent jusqu’à la fin de la reconstruction.
+	 *
+	 * @return <code>false</code> si une reconstruction est déjà en cours
+	 */
+	public boolean rebuild() {
+		if (!rebuilding.compareAndSet(false, true)) {
+			return false;
+		}
+		Thread.ofPlatform().daemon().name("chat-search-rebuild").start(() -> {
+			long start = System.nanoTime();
+			long[] count = new long[1];
+			try {
+				// les messages indexés en direct pendant le parcours sont conservés : même clé, pas de doublon
+				writer.deleteAll();
+				messages.scanAll((msg, agent) -> {
+					if (msg.content() != null && !msg.content().isBlank()) {
+						index(msg, agent);
+						count[0]++;
+					}
+				});
+				writer.commit();
+				searchers.maybeRefresh();
+				log.info("Search index rebuilt: {} messages in {} ms", count[0],
+						TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			} catch (AlreadyClosedException e) {
+				log.debug("Search index rebuild interrupted by shutdown");
+			} catch (IOException | UncheckedIOException | DataAccessException e) {
+				log.error("Search index rebuild failed after {} messages: {}", count[0], e.toString());
+			} finally {
+				rebuilding.set(false);
+			}
+		});
+		return true;
+	}
+
+	public boolean isRebuilding() {
+		return rebuilding.get();
+	}
+
+	private void run() {
+		List<Entry> batch = new ArrayList<>(batchSize);
+		long lastRefresh = System.nanoTime();
+		long lastCommit = lastRefresh;
+		boolean pending = false;
+		while (running) {
+			try {
+				Entry first = queue.poll(refreshIntervalNanos, TimeUnit.NANOSECONDS);
+				if (first != null) {
+					batch.add(first);
+					queue.drainTo(batch, batchSize - 1);
+					write(batch);
+					batch.clear();
+					pending = true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+			long now = System.nanoTime();
+			// pendant une reconstruction, les recherches restent sur l’index précédent
+			if (pending && !rebuilding.get() && now - lastRefresh >= refreshIntervalNanos) {
+				refresh();
+				pending = false;
+				lastRefresh = now;
+			}
+			if (now - lastCommit >= commitIntervalNanos) {
+				commit();
+				lastCommit = now;
+			}
+		}
+		while (queue.drainTo(batch, batchSize) > 0) {
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	private void write(List<Entry> batch) {
+		try {
+			for (Entry entry : batch) {
+				index(entry.msg(), entry.agent());
+			}
+			indexed.increment(batch.size());
+		} catch (UncheckedIOException | AlreadyClosedException e) {
+			failed.increment(batch.size());
+			log.error("Failed to index {} support messages: {}", batch.size(), e.toString());
+		}
+	}
+
+	private void index(AdminMsg msg, String agent) {
+		Instant timestamp = msg.timestamp().truncatedTo(ChronoUnit.MICROS);
+		long micros = ChronoUnit.MICROS.between(Instant.EPOCH, timestamp);
+		Document doc = new Document();
+		doc.add(new StringField(CONVERSATION, msg.clientId(), Field.Store.YES));
+		if (agent != null) {
+			doc.add(new StringField(AGENT, agent, Field.Store.YES));
+		}
+		if (msg.sender() != null) {
+			doc.add(new StoredField(SENDER, msg.sender()));
+		}
+		doc.add(new StoredField(ROLE, msg.role() != null ? msg.role() : "GUEST"));
+		doc.add(new StoredField(TYPE, msg.type() != null ? msg.type() : "CHAT"));
+		doc.add(new LongField(TIMESTAMP, micros, Field.Store.YES));
+		doc.add(new TextField(CONTENT, msg.content(), Field.Store.YES));
+		// même clé que la ligne relue en base (sent_at à la microseconde)
+		String id = msg.clientId() + '\u0000' + micros + '\u0000' + msg.sender();
+		doc.add(new StringField(ID, id, Field.Store.NO));
+		try {
+			writer.updateDocument(new Term(ID, id), doc);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	Query parse(String text, String conversation, String agent, Instant from, Instant to) {
+		if (text == null) {
+			return null;
+		}
+		QueryBuilder builder = new QueryBuilder(analyzer);
+		BooleanQuery.Builder query = new BooleanQuery.Builder();
+		int clauses = 0;
+		Matcher tokens = TOKENS.matcher(text);
+		while (tokens.find()) {
+			String part = tokens.group(1) != null ? tokens.group(1) : tokens.group(2);
+			Query clause = builder.createPhraseQuery(CONTENT, part);
+			if (clause != null) {
+				query.add(clause, BooleanClause.Occur.MUST);
+				clauses++;
+			}
+		}
+		if (clauses == 0) {
+			return null;
+		}
+		if (conversation != null) {
+			query.add(new TermQuery(new Term(CONVERSATION, conversation)), BooleanClause.Occur.FILTER);
+		}
+		if (agent != null) {
+			query.add(new TermQuery(new Term(AGENT, agent)), BooleanClause.Occur.FILTER);
+		}
+		if (from != null || to != null) {
+			long lower = from != null ? ChronoUnit.MICROS.between(Instant.EPOCH, from) : Long.MIN_VALUE;
+			long upper = to != null ? ChronoUnit.MICROS.between(Instant.EPOCH, to) - 1 : Long.MAX_VALUE;
+			query.add(LongField.newRangeQuery(TIMESTAMP, lower, upper), BooleanClause.Occur.FILTER);
+		}
+		return query.build();
+	}
+
+	private static SearchHit toHit(Document doc, float score) {
+		return new SearchHit(
+				doc.get(CONVERSATION),
+				doc.get(AGENT),
+				doc.get(SENDER),
+				doc.get(ROLE),
+				Instant.EPOCH.plus(doc.getField(TIMESTAMP).numericValue().longValue(), ChronoUnit.MICROS),
+				doc.get(CONTENT),
+				doc.get(TYPE),
+				score);
+	}
+
+	/** Découpage standard, puis minuscules et suppression des accents (« réservation » = « reservation »). */
+	static Analyzer analyzer() {
+		return new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer source = new StandardTokenizer();
+				return new TokenStreamComponents(source, new ASCIIFoldingFilter(new LowerCaseFilter(source)));
+			}
+
+			@Override
+			protected TokenStream normalize(String fieldName, TokenStream in) {
+				return new ASCIIFoldingFilter(new LowerCaseFilter(in));
+			}
+		};
+	}
+
+	private void refresh() {
+		try {
+			searchers.maybeRefresh();
+		} catch (IOException | AlreadyClosedException e) {
+			log.warn("Failed to refresh the search index: {}", e.toString());
+		}
+	}
+
+	private void commit() {
+		try {
+			if (writer.hasUncommittedChanges()) {
+				writer.commit();
+			}
+		} catch (IOException | AlreadyClosedException e) {
+			log.warn("Failed to commit the search index: {}", e.toString());
+		}
+	}
+
+	private long documents() {
+		IndexWriter current = writer;
+		return current != null && current.isOpen() ? current.getDocStats().numDocs : 0;
+	}
+
+	@PreDestroy
+	public void stop() throws InterruptedException, IOException {
+		running = false;
+		if (indexer != null) {
+			indexer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		if (writer != null) {
+			searchers.close();
+			writer.close();
+			directory.close();
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package com.ycyw.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -15,16 +16,22 @@ import static com.ycyw.common.ResponseMessages.INVALID_IDENTIFIER;
 public class UserService {
 
 	private final AuthenticationManager authenticationManager;
+	private final CredentialVerificationExecutor verificationExecutor;
 
 	@Autowired
-	public UserService(AuthenticationManager authenticationManager) {
+	public UserService(@Lazy AuthenticationManager authenticationManager, CredentialVerificationExecutor verificationExecutor) {
 		this.authenticationManager = authenticationManager;
+		this.verificationExecutor = verificationExecutor;
 	}
 
+	/**
+	 * Vérifie les identifiants sur l’exécuteur dédié (BCrypt hors des threads Tomcat).
+	 * Le contexte de sécurité est renseigné sur le thread appelant.
+	 */
 	public Authentication authenticate(String username, String password) {
 		try {
-			Authentication auth = authenticationManager.authenticate(
-					new UsernamePasswordAuthenticationToken(username, password));
+			Authentication auth = verificationExecutor.verify(username, () -> authenticationManager.authenticate(
+					new UsernamePasswordAuthenticationToken(username, password)));
 			SecurityContextHolder.getContext().setAuthentication(auth);
 			return auth;
 		} catch (AuthenticationException e) {
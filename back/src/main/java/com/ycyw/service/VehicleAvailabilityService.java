@@ -0,0 +1,441 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AvailableVehicles;
+import com.ycyw.dto.RentalInterval;
+import com.ycyw.dto.VehicleSummary;
+import com.ycyw.repository.RentalRepository;
+import com.ycyw.repository.VehicleRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Disponibilité des véhicules, calculée en mémoire sans requête SQL par recherche.
+ * <p>
+ * Chaque véhicule garde ses locations bloquantes (<code>CONFIRMED</code> et <code>IN_PROGRESS</code> non
+ * terminées, <code>OVERDUE</code>) triées par début, dans des tableaux primitifs en minutes depuis l’epoch :
+ * débuts, fins, maximum cumulé des fins et identifiants. Un véhicule est libre sur <code>[from, to[</code> si
+ * toutes les locations commençant avant <code>to</code> se terminent au plus tard à <code>from</code> : une
+ * recherche dichotomique par véhicule, le maximum cumulé couvrant aussi d’éventuels chevauchements en base.
+ * Les véhicules sont regroupés par (agence, catégorie) et une recherche ne parcourt que son groupe.
+ * </p>
+ * <p>
+ * L’index est construit depuis la base au démarrage, puis tenu à jour par {@link #rentalChanged(long)} et
+ * {@link #vehicleChanged(long)}, à appeler après chaque écriture dans <code>"Rental"</code> ou
+ * <code>"Vehicle"</code>. Les tableaux d’un véhicule et les membres d’un groupe sont remplacés en bloc : les
+ * recherches ne prennent aucun verrou. Les bornes sont arrondies à la minute vers l’extérieur (locations
+ * élargies, période demandée élargie), jamais au risque d’annoncer libre un véhicule occupé.
+ * </p>
+ */
+@Slf4j
+@Service
+public class VehicleAvailabilityService {
+
+	private static final long[] NONE = new long[0];
+
+	private final VehicleRepository vehicles;
+	private final RentalRepository rentals;
+	private final Timer searchTimer;
+
+	private volatile Index index = new Index();
+
+	public VehicleAvailabilityService(VehicleRepository vehicles, RentalRepository rentals, MeterRegistry registry) {
+		this.vehicles = vehicles;
+		this.rentals = rentals;
+		Gauge.builder("fleet.availability.vehicles", this, s -> s.index.vehicles.size()).register(registry);
+		Gauge.builder("fleet.availability.rentals", this, s -> s.index.rentals()).register(registry);
+		this.searchTimer = Timer.builder("fleet.availability.search").register(registry);
+	}
+
+	@PostConstruct
+	public void start() {
+		rebuild();
+	}
+
+	/**
+	 * Reconstruit l’index depuis la base. Les recherches continuent sur l’ancien index jusqu’à la bascule ;
+	 * les mises à jour attendent la fin de la reconstruction.
+	 */
+	public void rebuild() {
+		Instant now = Instant.now();
+		rebuild(vehicles::scanAll, consumer -> rentals.scanBlocking(now, consumer));
+	}
+
+	synchronized void rebuild(Consumer<Consumer<VehicleSummary>> vehicleSource,
+							  Consumer<Consumer<RentalInterval>> rentalSource) {
+		long start = System.nanoTime();
+		Index next = new Index();
+		Map<Long, TimelineBuilder> builders = new HashMap<>();
+		vehicleSource.accept(summary -> {
+			next.vehicles.put(summary.vehicleId(), new Vehicle(summary));
+			builders.put(summary.vehicleId(), new TimelineBuilder());
+		});
+		long[] loaded = new long[1];
+		rentalSource.accept(rental -> {
+			TimelineBuilder builder = builders.get(rental.vehicleId());
+			if (builder != null && rental.blocking()) {
+				builder.add(rental.rentalId(), startMinute(rental.startAt()), endMinute(rental.endAt()));
+				loaded[0]++;
+			}
+		});
+
+		Map<GroupKey, VehicleListBuilder> members = new HashMap<>();
+		for (Vehicle vehicle : next.vehicles.values()) {
+			vehicle.timeline = builders.get(vehicle.id).build();
+			if (vehicle.summary.inService()) {
+				members.computeIfAbsent(GroupKey.of(vehicle.summary), key -> new VehicleListBuilder()).add(vehicle);
+			}
+		}
+		members.forEach((key, list) -> next.groups.put(key, list.build()));
+		index = next;
+		log.info("Vehicle availability index built: {} vehicles, {} rentals, {} groups in {} ms",
+				next.vehicles.size(), loaded[0], next.groups.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	/**
+	 * Véhicules en service de la catégorie <code>category</code>, présents dans l’agence <code>agencyId</code>
+	 * et sans location bloquante qui chevauche <code>[from, to[</code>, par identifiant croissant.
+	 */
+	public AvailableVehicles findAvailable(long agencyId, String category, Instant from, Instant to) {
+		if (!from.isBefore(to)) {
+			throw new IllegalArgumentException("from must be before to");
+		}
+		long start = System.nanoTime();
+		Group group = index.groups.get(new GroupKey(agencyId, category));
+		long[] ids = group != null ? group.available(startMinute(from), endMinute(to)) : NONE;
+		searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		return new AvailableVehicles(agencyId, category, from, to, ids);
+	}
+
+	/** Relit une location après son écriture en base (création, changement de dates ou de statut). */
+	public void rentalChanged(long rentalId) {
+		rentals.findById(rentalId).ifPresent(this::apply);
+	}
+
+	/** Relit un véhicule après son écriture en base (création, transfert d’agence, changement de statut). */
+	public void vehicleChanged(long vehicleId) {
+		vehicles.findById(vehicleId).ifPresent(this::apply);
+	}
+
+	synchronized void apply(RentalInterval rental) {
+		Vehicle vehicle = index.vehicles.get(rental.vehicleId());
+		if (vehicle == null) {
+			return;
+		}
+		Timeline timeline = vehicle.timeline.without(rental.rentalId());
+		if (rental.blocking()) {
+			timeline = timeline.with(rental.rentalId(), startMinute(rental.startAt()), endMinute(rental.endAt()),
+					startMinute(Instant.now()));
+		}
+		vehicle.timeline = timeline;
+		if (vehicle.summary.inService()) {
+			Group group = index.groups.get(GroupKey.of(vehicle.summary));
+			if (group != null) {
+				group.put(vehicle.id, timeline);
+			}
+		}
+	}
+
+	synchronized void apply(VehicleSummary summary) {
+		Index current = index;
+		Vehicle vehicle = current.vehicles.get(summary.vehicleId());
+		if (vehicle == null) {
+			vehicle = new Vehicle(summary);
+			vehicle.timeline = Timeline.EMPTY;
+			current.vehicles.put(summary.vehicleId(), vehicle);
+		} else {
+			if (vehicle.summary.inService()) {
+				Group group = current.groups.get(GroupKey.of(vehicle.summary));
+				if (group != null) {
+					group.remove(vehicle.id);
+				}
+			}
+			vehicle.summary = summary;
+		}
+		if (summary.inService()) {
+			current.groups.computeIfAbsent(GroupKey.of(summary), key -> new Group(NONE, new Timeline[0]))
+					.put(vehicle.id, vehicle.timeline);
+		}
+	}
+
+	/** Début arrondi à la minute inférieure. */
+	static int startMinute(Instant instant) {
+		return Math.toIntExact(Math.floorDiv(instant.getEpochSecond(), 60));
+	}
+
+	/** Fin arrondie à la minute supérieure ; une fin hors de portée (location en retard) devient illimitée. */
+	static int endMinute(Instant instant) {
+		long seconds = instant.getEpochSecond() + (instant.getNano() > 0 ? 1 : 0);
+		return (int) Math.min(Math.floorDiv(seconds + 59, 60), Integer.MAX_VALUE);
+	}
+
+	private record GroupKey(long agencyId, String category) {
+
+		static GroupKey of(VehicleSummary summary) {
+			return new GroupKey(summary.agencyId(), summary.category());
+		}
+	}
+
+	private static final class Index {
+		private final Map<Long, Vehicle> vehicles = new ConcurrentHashMap<>();
+		private final Map<GroupKey, Group> groups = new ConcurrentHashMap<>();
+
+		private long rentals() {
+			long total = 0;
+			for (Vehicle vehicle : vehicles.values()) {
+				total += vehicle.timeline.size();
+			}
+			return total;
+		}
+	}
+
+	/** Lu et modifié sous le verrou du service ; les recherches ne passent que par les {@link Group}. */
+	private static final class Vehicle {
+		private final long id;
+		private VehicleSummary summary;
+		private Timeline timeline;
+
+		private Vehicle(VehicleSummary summary) {
+			this.id = summary.vehicleId();
+			this.summary = summary;
+		}
+	}
+
+	/**
+	 * Véhicules en service d’une agence et d’une catégorie, par identifiant croissant, avec leurs locations :
+	 * une recherche ne suit que deux références par véhicule (le {@link Timeline} et ses clés).
+	 */
+	private static final class Group {
+		private volatile Members members;
+
+		private Group(long[] ids, Timeline[] timelines) {
+			this.members = new Members(ids, timelines);
+		}
+
+		private long[] available(int from, int to) {
+			Members snapshot = members;
+			long[] ids = new long[snapshot.ids.length];
+			int count = 0;
+			for (int i = 0; i < ids.length; i++) {
+				if (snapshot.timelines[i].isFree(from, to)) {
+					ids[count++] = snapshot.ids[i];
+				}
+			}
+			return count == ids.length ? ids : Arrays.copyOf(ids, count);
+		}
+
+		/** Ajoute le véhicule ou remplace ses locations (copie à l’écriture, sous le verrou du service). */
+		private void put(long id, Timeline timeline) {
+			Members current = members;
+			int position = Arrays.binarySearch(current.ids, id);
+			if (position >= 0) {
+				Timeline[] timelines = current.timelines.clone();
+				timelines[position] = timeline;
+				members = new Members(current.ids, timelines);
+				return;
+			}
+			position = -position - 1;
+			int n = current.ids.length;
+			long[] ids = new long[n + 1];
+			Timeline[] timelines = new Timeline[n + 1];
+			System.arraycopy(current.ids, 0, ids, 0, position);
+			System.arraycopy(current.timelines, 0, timelines, 0, position);
+			ids[position] = id;
+			timelines[position] = timeline;
+			System.arraycopy(current.ids, position, ids, position + 1, n - position);
+			System.arraycopy(current.timelines, position, timelines, position + 1, n - position);
+			members = new Members(ids, timelines);
+		}
+
+		private void remove(long id) {
+			Members current = members;
+			int position = Arrays.binarySearch(current.ids, id);
+			if (position < 0) {
+				return;
+			}
+			int n = current.ids.length;
+			long[] ids = new long[n - 1];
+			Timeline[] timelines = new Timeline[n - 1];
+			System.arraycopy(current.ids, 0, ids, 0, position);
+			System.arraycopy(current.timelines, 0, timelines, 0, position);
+			System.arraycopy(current.ids, position + 1, ids, position, n - position - 1);
+			System.arraycopy(current.timelines, position + 1, timelines, position, n - position - 1);
+			members = new Members(ids, timelines);
+		}
+
+		private record Members(long[] ids, Timeline[] timelines) {
+		}
+	}
+
+	/**
+	 * Locations bloquantes d’un véhicule, triées par début ; immuable.
+	 * <p>
+	 * Seul <code>keys</code> sert aux recherches : <code>(début &lt;&lt; 32) | maxFin</code>, où <code>maxFin</code>
+	 * est la plus grande fin parmi les locations <code>0..i</code>. Les autres tableaux servent aux mises à jour.
+	 * </p>
+	 */
+	static final class Timeline {
+		static final Timeline EMPTY = new Timeline(new int[0], new int[0], new long[0]);
+
+		private final long[] keys;
+		private final int[] starts;
+		private final int[] ends;
+		private final long[] ids;
+
+		private Timeline(int[] starts, int[] ends, long[] ids) {
+			this.starts = starts;
+			this.ends = ends;
+			this.ids = ids;
+			this.keys = new long[starts.length];
+			int max = Integer.MIN_VALUE;
+			for (int i = 0; i < ends.length; i++) {
+				max = Math.max(max, ends[i]);
+				keys[i] = ((long) starts[i] << 32) | (max & 0xFFFFFFFFL);
+			}
+		}
+
+		int size() {
+			return starts.length;
+		}
+
+		boolean isFree(int from, int to) {
+			// dernière location qui commence avant "to"
+			long[] keys = this.keys;
+			int lo = 0;
+			int hi = keys.length - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if ((int) (keys[mid] >> 32) < to) {
+					lo = mid + 1;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			return hi < 0 || (int) keys[hi] <= from;
+		}
+
+		Timeline without(long id) {
+			for (int i = 0; i < ids.length; i++) {
+				if (ids[i] == id) {
+					return new Timeline(remove(starts, i), remove(ends, i), remove(ids, i));
+				}
+			}
+			return this;
+		}
+
+		/** Ajoute une location et oublie au passage celles terminées avant <code>now</code>. */
+		Timeline with(long id, int start, int end, int now) {
+			int n = starts.length;
+			int[] nextStarts = new int[n + 1];
+			int[] nextEnds = new int[n + 1];
+			long[] nextIds = new long[n + 1];
+			int size = 0;
+			boolean inserted = false;
+			for (int i = 0; i <= n; i++) {
+				if (!inserted && (i == n || starts[i] > start)) {
+					nextStarts[size] = start;
+					nextEnds[size] = end;
+					nextIds[size++] = id;
+					inserted = true;
+				}
+				if (i < n && ends[i] > now) {
+					nextStarts[size] = starts[i];
+					nextEnds[size] = ends[i];
+					nextIds[size++] = ids[i];
+				}
+			}
+			return new Timeline(Arrays.copyOf(nextStarts, size), Arrays.copyOf(nextEnds, size), Arrays.copyOf(nextIds, size));
+		}
+
+		private static int[] remove(int[] values, int index) {
+			int[] next = new int[values.length - 1];
+			System.arraycopy(values, 0, next, 0, index);
+			System.arraycopy(values, index + 1, next, index, values.length - index - 1);
+			return next;
+		}
+
+		private static long[] remove(long[] values, int index) {
+			long[] next = new long[values.length - 1];
+			System.arraycopy(values, 0, next, 0, index);
+			System.arraycopy(values, index + 1, next, index, values.length - index - 1);
+			return next;
+		}
+	}
+
+	/** Accumule les locations d’un véhicule pendant la reconstruction, puis les trie par début. */
+	private static final class TimelineBuilder {
+		private int[] starts = new int[4];
+		private int[] ends = new int[4];
+		private long[] ids = new long[4];
+		private int size;
+
+		private void add(long id, int start, int end) {
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+				ids = Arrays.copyOf(ids, size * 2);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			ids[size++] = id;
+		}
+
+		private Timeline build() {
+			if (size == 0) {
+				return Timeline.EMPTY;
+			}
+			// tri des positions par début : (début << 32) | position
+			long[] order = new long[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = ((long) starts[i] << 32) | i;
+			}
+			Arrays.sort(order);
+			int[] sortedStarts = new int[size];
+			int[] sortedEnds = new int[size];
+			long[] sortedIds = new long[size];
+			for (int i = 0; i < size; i++) {
+				int from = (int) order[i];
+				sortedStarts[i] = starts[from];
+				sortedEnds[i] = ends[from];
+				sortedIds[i] = ids[from];
+			}
+			return new Timeline(sortedStarts, sortedEnds, sortedIds);
+		}
+	}
+
+	private static final class VehicleListBuilder {
+		private Vehicle[] vehicles = new Vehicle[8];
+		private int size;
+
+		private void add(Vehicle vehicle) {
+			if (size == vehicles.length) {
+				vehicles = Arrays.copyOf(vehicles, size * 2);
+			}
+			vehicles[size++] = vehicle;
+		}
+
+		private Group build() {
+			Vehicle[] sorted = Arrays.copyOf(vehicles, size);
+			Arrays.sort(sorted, (a, b) -> Long.compare(a.id, b.id));
+			long[] ids = new long[size];
+			Timeline[] timelines = new Timeline[size];
+			for (int i = 0; i < size; i++) {
+				ids[i] = sorted[i].id;
+				timelines[i] = sorted[i].timeline;
+			}
+			return new Group(ids, timelines);
+		}
+	}
+}
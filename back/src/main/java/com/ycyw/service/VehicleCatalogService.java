@@ -0,0 +1,425 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.CatalogResults;
+import com.ycyw.dto.CatalogVehicle;
+import com.ycyw.repository.VehicleRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Catalogue des véhicules proposés à la location, servi depuis la mémoire.
+ * <p>
+ * Les véhicules <code>AVAILABLE</code> sont chargés au démarrage dans un instantané en colonnes, trié par
+ * identifiant : un code entier par facette (catégorie, marque, places, ville de l’agence), attribué par
+ * dictionnaire. Une recherche parcourt ces colonnes une fois pour filtrer, paginer et compter les facettes ;
+ * les lecteurs ne prennent pas de verrou (lecture optimiste d’un {@link StampedLock}, relue sous verrou en cas
+ * d’écriture concurrente).
+ * </p>
+ * <p>
+ * Les résultats sont mis en cache par requête. Après {@link #vehicleChanged(long)} (statut, agence…), seules
+ * les requêtes dont le résultat pouvait dépendre du véhicule sont évincées : celles que l’ancienne ou la
+ * nouvelle version du véhicule satisfait à au plus un filtre près, puisque les compteurs d’une facette ignorent
+ * son propre filtre.
+ * </p>
+ */
+@Slf4j
+@Service
+public class VehicleCatalogService {
+
+	public static final List<String> FACETS = List.of("category", "brand", "seats", "city");
+
+	private static final int CATEGORY = 0;
+	private static final int BRAND = 1;
+	private static final int SEATS = 2;
+	private static final int CITY = 3;
+
+	private final VehicleRepository vehicles;
+	private final int cacheSize;
+
+	private final StampedLock lock = new StampedLock();
+	/** Colonnes, modifiées sous le verrou d’écriture. */
+	private long[] ids = new long[0];
+	private final int[][] codes = new int[FACETS.size()][0];
+	private CatalogVehicle[] rows = new CatalogVehicle[0];
+	private int size;
+	private final Dictionary[] dictionaries = {new Dictionary(), new Dictionary(), new Dictionary(), new Dictionary()};
+
+	/** Incrémenté à chaque écriture : un résultat calculé avant une écriture n’est pas gardé en cache. */
+	private final AtomicLong generation = new AtomicLong();
+	private final Map<Query, CatalogResults> cache = new ConcurrentHashMap<>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter invalidations;
+	private final Timer scanTimer;
+
+	@Autowired
+	public VehicleCatalogService(VehicleRepository vehicles,
+								 MeterRegistry registry,
+								 @Value("${app.catalog.cacheSize:1000}") int cacheSize) {
+		this.vehicles = vehicles;
+		this.cacheSize = cacheSize;
+
+		Gauge.builder("catalog.vehicles", this, s -> s.size).register(registry);
+		Gauge.builder("catalog.cache.size", cache, Map::size).register(registry);
+		this.hits = Counter.builder("catalog.cache").tag("result", "hit").register(registry);
+		this.misses = Counter.builder("catalog.cache").tag("result", "miss").register(registry);
+		this.invalidations = Counter.builder("catalog.cache.invalidations").register(registry);
+		this.scanTimer = Timer.builder("catalog.scan").register(registry);
+	}
+
+	/** Critères d’une recherche ; un ensemble vide ne filtre pas. */
+	public record Query(Set<String> categories, Set<String> brands, Set<String> seats, Set<String> cities,
+						int offset, int limit) {
+
+		public Query {
+			categories = categories == null ? Set.of() : Set.copyOf(categories);
+			brands = brands == null ? Set.of() : Set.copyOf(brands);
+			seats = seats == null ? Set.of() : Set.copyOf(seats);
+			cities = cities == null ? Set.of() : Set.copyOf(cities);
+		}
+
+		private Set<String> filter(int facet) {
+			return switch (facet) {
+				case CATEGORY -> categories;
+				case BRAND -> brands;
+				case SEATS -> seats;
+				default -> cities;
+			};
+		}
+
+		/** Le véhicule (valeurs par facette) compte-t-il dans le résultat ou dans l’une de ses facettes ? */
+		private boolean dependsOn(String[] values) {
+			int failed = 0;
+			for (int f = 0; f < values.length; f++) {
+				Set<String> filter = filter(f);
+				if (!filter.isEmpty() && !filter.contains(values[f]) && ++failed > 1) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		rebuild();
+	}
+
+	/** Recharge tout le catalogue depuis la base et vide le cache. */
+	public void rebuild() {
+		rebuild(vehicles::scanListed);
+	}
+
+	void rebuild(Consumer<Consumer<CatalogVehicle>> source) {
+		long start = System.nanoTime();
+		List<CatalogVehicle> listed = new ArrayList<>();
+		source.accept(listed::add);
+		listed.sort(Comparator.comparingLong(CatalogVehicle::vehicleId));
+
+		long stamp = lock.writeLock();
+		try {
+			int n = listed.size();
+			ids = new long[n];
+			rows = listed.toArray(new CatalogVehicle[0]);
+			for (int f = 0; f < codes.length; f++) {
+				dictionaries[f] = new Dictionary();
+				codes[f] = new int[n];
+			}
+			for (int i = 0; i < n; i++) {
+				ids[i] = rows[i].vehicleId();
+				String[] values = valuesOf(rows[i]);
+				for (int f = 0; f < codes.length; f++) {
+					codes[f][i] = dictionaries[f].codeOf(values[f]);
+				}
+			}
+			size = n;
+			generation.incrementAndGet();
+			cache.clear();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		log.info("Vehicle catalogue loaded: {} vehicles in {} ms", listed.size(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	public CatalogResults search(Query query) {
+		CatalogResults cached = cache.get(query);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+
+		long seen = generation.get();
+		CatalogResults results = scanTimer.record(() -> scan(query));
+		if (cache.size() >= cacheSize) {
+			sweep();
+		}
+		cache.put(query, results);
+		if (generation.get() != seen) {
+			cache.remove(query, results);
+		}
+		return results;
+	}
+
+	/** Relit un véhicule après son écriture en base et met à jour l’instantané et le cache. */
+	public void vehicleChanged(long vehicleId) {
+		apply(vehicleId, vehicles.findListed(vehicleId).orElse(null));
+	}
+
+	/** <code>vehicle</code> vaut <code>null</code> si le véhicule n’est plus proposé. */
+	void apply(long vehicleId, CatalogVehicle vehicle) {
+		String[] before = null;
+		long stamp = lock.writeLock();
+		try {
+			int row = Arrays.binarySearch(ids, 0, size, vehicleId);
+			if (row >= 0) {
+				before = valuesOf(rows[row]);
+				if (vehicle == null) {
+					removeRow(row);
+				} else {
+					setRow(row, vehicle);
+				}
+			} else if (vehicle != null) {
+				insertRow(-row - 1, vehicle);
+			}
+			generation.incrementAndGet();
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+
+		String[] after = vehicle != null ? valuesOf(vehicle) : null;
+		for (Iterator<Query> it = cache.keySet().iterator(); it.hasNext(); ) {
+			Query query = it.next();
+			if ((before != null && query.dependsOn(before)) || (after != null && query.dependsOn(after))) {
+				it.remove();
+				invalidations.increment();
+			}
+		}
+	}
+
+	private CatalogResults scan(Query query) {
+		long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			try {
+				CatalogResults results = scanUnlocked(query);
+				if (lock.validate(stamp)) {
+					return results;
+				}
+			} catch (RuntimeException e) {
+				// colonnes modifiées pendant la lecture : relue sous verrou ci-dessous
+			}
+		}
+		stamp = lock.readLock();
+		try {
+			return scanUnlocked(query);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	private CatalogResults scanUnlocked(Query query) {
+		int n = size;
+		CatalogVehicle[] rows = this.rows;
+		int facetCount = codes.length;
+		int[][] columns = new int[facetCount][];
+		boolean[][] accepted = new boolean[facetCount][];
+		int[][] counts = new int[facetCount][];
+		String[][] values = new String[facetCount][];
+		for (int f = 0; f < facetCount; f++) {
+			columns[f] = codes[f];
+			values[f] = dictionaries[f].values();
+			counts[f] = new int[values[f].length];
+			Set<String> filter = query.filter(f);
+			if (!filter.isEmpty()) {
+				accepted[f] = new boolean[values[f].length];
+				for (String value : filter) {
+					int code = dictionaries[f].find(value);
+					if (code >= 0 && code < accepted[f].length) {
+						accepted[f][code] = true;
+					}
+				}
+			}
+		}
+
+		// seules les facettes filtrées sont testées par ligne
+		int[] filtered = new int[facetCount];
+		int filters = 0;
+		for (int f = 0; f < facetCount; f++) {
+			if (accepted[f] != null) {
+				filtered[filters++] = f;
+			}
+		}
+
+		int total = 0;
+		List<CatalogVehicle> page = new ArrayList<>(Math.min(query.limit(), 100));
+		for (int i = 0; i < n; i++) {
+			int failed = 0;
+			int failedFacet = -1;
+			for (int k = 0; k < filters && failed < 2; k++) {
+				int f = filtered[k];
+				if (!accepted[f][columns[f][i]]) {
+					failed++;
+					failedFacet = f;
+				}
+			}
+			if (failed == 0) {
+				if (total >= query.offset() && page.size() < query.limit()) {
+					page.add(rows[i]);
+				}
+				total++;
+				for (int f = 0; f < facetCount; f++) {
+					counts[f][columns[f][i]]++;
+				}
+			} else if (failed == 1) {
+				counts[failedFacet][columns[failedFacet][i]]++;
+			}
+		}
+
+		Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+		for (int f = 0; f < facetCount; f++) {
+			facets.put(FACETS.get(f), facet(values[f], counts[f]));
+		}
+		return new CatalogResults(total, List.copyOf(page), facets);
+	}
+
+	/** Valeurs par nombre de véhicules décroissant, sans les valeurs vides. */
+	private static Map<String, Integer> facet(String[] values, int[] counts) {
+		Integer[] order = new Integer[counts.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingInt(i -> -counts[i]).thenComparing(i -> values[i]));
+		Map<String, Integer> facet = new LinkedHashMap<>();
+		for (int code : order) {
+			if (counts[code] > 0 && !values[code].isEmpty()) {
+				facet.put(values[code], counts[code]);
+			}
+		}
+		return facet;
+	}
+
+	private static String[] valuesOf(CatalogVehicle vehicle) {
+		return new String[]{
+				nullToEmpty(vehicle.category()),
+				nullToEmpty(vehicle.brand()),
+				vehicle.seats() > 0 ? Integer.toString(vehicle.seats()) : "",
+				nullToEmpty(vehicle.city())};
+	}
+
+	private static String nullToEmpty(String value) {
+		return value != null ? value : "";
+	}
+
+	private void setRow(int row, CatalogVehicle vehicle) {
+		rows[row] = vehicle;
+		String[] values = valuesOf(vehicle);
+		for (int f = 0; f < codes.length; f++) {
+			codes[f][row] = dictionaries[f].codeOf(values[f]);
+		}
+	}
+
+	private void insertRow(int row, CatalogVehicle vehicle) {
+		if (size == ids.length) {
+			int capacity = Math.max(16, size + (size >> 1));
+			ids = Arrays.copyOf(ids, capacity);
+			rows = Arrays.copyOf(rows, capacity);
+			for (int f = 0; f < codes.length; f++) {
+				codes[f] = Arrays.copyOf(codes[f], capacity);
+			}
+		}
+		System.arraycopy(ids, row, ids, row + 1, size - row);
+		System.arraycopy(rows, row, rows, row + 1, size - row);
+		for (int[] column : codes) {
+			System.arraycopy(column, row, column, row + 1, size - row);
+		}
+		ids[row] = vehicle.vehicleId();
+		size++;
+		setRow(row, vehicle);
+	}
+
+	private void removeRow(int row) {
+		System.arraycopy(ids, row + 1, ids, row, size - row - 1);
+		System.arraycopy(rows, row + 1, rows, row, size - row - 1);
+		for (int[] column : codes) {
+			System.arraycopy(column, row + 1, column, row, size - row - 1);
+		}
+		size--;
+		rows[size] = null;
+	}
+
+	/** Vide un dixième du cache, dans l’ordre (pseudo-aléatoire) de la table. */
+	private void sweep() {
+		if (!sweeping.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			int excess = cache.size() - cacheSize + Math.max(1, cacheSize / 10);
+			Iterator<Query> it = cache.keySet().iterator();
+			while (excess-- > 0 && it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		} finally {
+			sweeping.set(false);
+		}
+	}
+
+	/** Codes des valeurs d’une facette ; modifié sous le verrou d’écriture, relu par les recherches. */
+	private static final class Dictionary {
+		private final Map<String, Integer> codes = new HashMap<>();
+		private volatile String[] values = new String[0];
+
+		private int codeOf(String value) {
+			Integer code = codes.get(value);
+			if (code == null) {
+				code = values.length;
+				codes.put(value, code);
+				String[] next = Arrays.copyOf(values, code + 1);
+				next[code] = value;
+				values = next;
+			}
+			return code;
+		}
+
+		/** Code d’une valeur connue, -1 sinon ; lu sans verrou, d’où la copie du tableau des valeurs. */
+		private int find(String value) {
+			String[] snapshot = values;
+			for (int i = 0; i < snapshot.length; i++) {
+				if (snapshot[i].equals(value)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private String[] values() {
+			return values;
+		}
+	}
+}
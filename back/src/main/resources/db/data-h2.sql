@@ -0,0 +1,4 @@
+-- Comptes de démonstration, mot de passe "password" (BCrypt). Le nom d’utilisateur est stocké dans email.
+MERGE INTO "User" (email, password, first_name, role) KEY (email) VALUES
+    ('alice', '$2a$10$PbWr199beD75znqcd6Jl6.3zniSmCYCmZH0IHITWImTsaVefqurYK', 'Alice', 'EMPLOYEE'),
+    ('bob',   '$2a$10$PbWr199beD75znqcd6Jl6.3zniSmCYCmZH0IHITWImTsaVefqurYK', 'Bob',   'CLIENT');
@@ -0,0 +1,129 @@
+-- Schéma embarqué (H2) utilisé par le PoC et les tests.
+-- Sous-ensemble de docs/schema_bdd.sql, limité aux tables exploitées par le backend.
+
+CREATE TABLE IF NOT EXISTS "User" (
+    user_id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email          VARCHAR(255) NOT NULL UNIQUE,
+    password       VARCHAR(255) NOT NULL,
+    first_name     VARCHAR(100),
+    last_name      VARCHAR(100),
+    role           ENUM('CLIENT','ADMIN','EMPLOYEE') NOT NULL DEFAULT 'CLIENT',
+    created_at     TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at     TIMESTAMP WITH TIME ZONE,
+    is_active      BOOLEAN NOT NULL DEFAULT TRUE
+);
+
+CREATE TABLE IF NOT EXISTS "Conversation" (
+    conversation_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    client_key      VARCHAR(64) NOT NULL,
+    client_id       BIGINT NULL,
+    agent_id        BIGINT NULL,
+    status          ENUM('OPEN','CLOSED') NOT NULL DEFAULT 'OPEN',
+    created_at      TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at      TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT fk_conversation_client FOREIGN KEY (client_id) REFERENCES "User"(user_id) ON DELETE RESTRICT,
+    CONSTRAINT fk_conversation_agent  FOREIGN KEY (agent_id)  REFERENCES "User"(user_id) ON DELETE SET NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_conversation_status ON "Conversation"(status);
+CREATE INDEX IF NOT EXISTS idx_conversation_agent ON "Conversation"(agent_id);
+CREATE INDEX IF NOT EXISTS idx_conversation_client_key ON "Conversation"(client_key, status);
+
+CREATE TABLE IF NOT EXISTS "Message" (
+    message_id      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    conversation_id BIGINT NOT NULL,
+    sender_id       BIGINT NULL,
+    sender_name     VARCHAR(255),
+    sender_role     VARCHAR(30) NOT NULL,
+    type            VARCHAR(10) NOT NULL DEFAULT 'CHAT',
+    content         CLOB NOT NULL,
+    sent_at         TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    is_read         BOOLEAN NOT NULL DEFAULT FALSE,
+    CONSTRAINT fk_message_conversation FOREIGN KEY (conversation_id) REFERENCES "Conversation"(conversation_id) ON DELETE CASCADE,
+    CONSTRAINT fk_message_sender       FOREIGN KEY (sender_id)      REFERENCES "User"(user_id)       ON DELETE RESTRICT
+);
+
+CREATE INDEX IF NOT EXISTS idx_message_conversation ON "Message"(conversation_id, sent_at);
+CREATE INDEX IF NOT EXISTS idx_message_sender ON "Message"(sender_id);
+
+-- Refresh tokens consommés (jti) et familles révoquées, conservés jusqu'à leur expiration.
+CREATE TABLE IF NOT EXISTS "RevokedToken" (
+    token_id        VARCHAR(64) PRIMARY KEY,
+    kind            ENUM('USED','FAMILY') NOT NULL,
+    expires_at      TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_token_kind ON "RevokedToken"(kind, expires_at);
+
+CREATE TABLE IF NOT EXISTS "Agency" (
+    agency_id       BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name            VARCHAR(150) NOT NULL,
+    country         VARCHAR(100),
+    city            VARCHAR(100)
+);
+
+-- category : catégorie affichée (citadine, SUV…), acriss_code : code ACRISS (ex. CDMR)
+-- owner_agency_id : agence de rattachement ; current_agency_id : agence où se trouve le véhicule, NULL si inconnue
+CREATE TABLE IF NOT EXISTS "Vehicle" (
+    vehicle_id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    category          VARCHAR(50) NOT NULL,
+    acriss_code       VARCHAR(10),
+    seats             INT CHECK (seats >= 1),
+    brand             VARCHAR(150),
+    model             VARCHAR(255),
+    color             VARCHAR(50),
+    status            ENUM('AVAILABLE','UNAVAILABLE','MAINTENANCE','BOOKED') NOT NULL DEFAULT 'AVAILABLE',
+    owner_agency_id   BIGINT NOT NULL,
+    current_agency_id BIGINT NULL,
+    license_plate     VARCHAR(30) NOT NULL UNIQUE,
+    is_active         BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at        TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at        TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT fk_vehicle_owner_agency   FOREIGN KEY (owner_agency_id)   REFERENCES "Agency"(agency_id) ON DELETE RESTRICT,
+    CONSTRAINT fk_vehicle_current_agency FOREIGN KEY (current_agency_id) REFERENCES "Agency"(agency_id) ON DELETE SET NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_vehicle_status ON "Vehicle"(status);
+CREATE INDEX IF NOT EXISTS idx_vehicle_current_agency ON "Vehicle"(current_agency_id);
+
+-- Location sur [start_at, end_at[ ; CONFIRMED, IN_PROGRESS et OVERDUE bloquent le véhicule
+CREATE TABLE IF NOT EXISTS "Rental" (
+    rental_id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    pickup_agency_id BIGINT NOT NULL,
+    return_agency_id BIGINT NOT NULL,
+    user_id          BIGINT NOT NULL,
+    vehicle_id       BIGINT NOT NULL,
+    start_at         TIMESTAMP WITH TIME ZONE NOT NULL,
+    end_at           TIMESTAMP WITH TIME ZONE NOT NULL,
+    status           ENUM('PENDING','CONFIRMED','IN_PROGRESS','COMPLETED','CANCELLED','OVERDUE','REFUNDED') NOT NULL DEFAULT 'PENDING',
+    amount           NUMERIC(12,2) NOT NULL CHECK (amount >= 0),
+    currency         ENUM('EUR','USD','GBP') NOT NULL,
+    created_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at       TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT chk_rental_dates CHECK (end_at > start_at),
+    CONSTRAINT fk_rental_pickup_agency FOREIGN KEY (pickup_agency_id) REFERENCES "Agency"(agency_id)   ON DELETE RESTRICT,
+    CONSTRAINT fk_rental_return_agency FOREIGN KEY (return_agency_id) REFERENCES "Agency"(agency_id)   ON DELETE RESTRICT,
+    CONSTRAINT fk_rental_user          FOREIGN KEY (user_id)          REFERENCES "User"(user_id)       ON DELETE RESTRICT,
+    CONSTRAINT fk_rental_vehicle       FOREIGN KEY (vehicle_id)       REFERENCES "Vehicle"(vehicle_id) ON DELETE RESTRICT
+);
+
+CREATE INDEX IF NOT EXISTS idx_rental_vehicle ON "Rental"(vehicle_id);
+CREATE INDEX IF NOT EXISTS idx_rental_status_end ON "Rental"(status, end_at);
+
+-- provider_payment_id : identifiant chez le prestataire de paiement, clé du rapprochement des relevés
+CREATE TABLE IF NOT EXISTS "Payment" (
+    payment_id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    rental_id           BIGINT NOT NULL,
+    amount              NUMERIC(12,2) NOT NULL CHECK (amount >= 0),
+    currency            ENUM('EUR','USD','GBP') NOT NULL,
+    status              ENUM('PENDING','SUCCEEDED','FAILED','REFUNDED') NOT NULL DEFAULT 'PENDING',
+    method              VARCHAR(50) NOT NULL,
+    provider_payment_id VARCHAR(255),
+    created_at          TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at          TIMESTAMP WITH TIME ZONE,
+    CONSTRAINT fk_payment_rental FOREIGN KEY (rental_id) REFERENCES "Rental"(rental_id) ON DELETE RESTRICT,
+    CONSTRAINT uq_payment_provider_id UNIQUE (provider_payment_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_payment_rental ON "Payment"(rental_id);
+CREATE INDEX IF NOT EXISTS idx_payment_status ON "Payment"(status);
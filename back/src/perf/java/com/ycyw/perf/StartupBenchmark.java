@@ -0,0 +1,190 @@
+package com.ycyw.perf;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Temps de démarrage de <code>ChatApplication</code>, mesuré du lancement du processus au premier
+ * <code>CONNECTED</code> reçu en réponse à un <code>CONNECT</code> STOMP (WebSocket brut sur
+ * <code>/api/ws-chat/websocket</code>), pour deux modes alternés à chaque tour :
+ * <ul>
+ *     <li><code>regular</code> : <code>java -jar</code> sur le jar Spring Boot ;</li>
+ *     <li><code>aot+cds</code> : jar extrait, <code>-Dspring.aot.enabled=true</code> et archive AppCDS.</li>
+ * </ul>
+ * Arguments : <code>java jar jarExtrait archive.jsa [tours]</code> (fournis par la tâche Gradle
+ * <code>startupBenchmark</code>). Le temps annoncé par Spring (« Started ChatApplication in … ») est
+ * affiché à titre de comparaison.
+ */
+public final class StartupBenchmark {
+
+	private static final Duration TIMEOUT = Duration.ofSeconds(120);
+	private static final Pattern STARTED = Pattern.compile("Started ChatApplication in ([0-9.]+) seconds");
+	private static final String CONNECT = "CONNECT\naccept-version:1.2\nhost:localhost\n\n\u0000";
+
+	private StartupBenchmark() {
+	}
+
+	private record Run(long connectedMs, double springSeconds) {
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 4) {
+			System.err.println("Usage: StartupBenchmark <java> <jar> <jar extrait> <archive.jsa> [tours]");
+			System.exit(2);
+		}
+		String java = args[0];
+		int runs = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+		Map<String, List<String>> modes = Map.of(
+				"regular", List.of(java, "-jar", args[1]),
+				"aot+cds", List.of(java, "-XX:SharedArchiveFile=" + args[3], "-Dspring.aot.enabled=true", "-jar", args[2]));
+		List<String> order = List.of("regular", "aot+cds");
+
+		Map<String, List<Run>> results = Map.of("regular", new ArrayList<>(), "aot+cds", new ArrayList<>());
+		for (int i = 0; i < runs; i++) {
+			for (String mode : order) {
+				Run run = start(modes.get(mode));
+				results.get(mode).add(run);
+				System.out.printf("%-8s run %d: first STOMP CONNECTED after %d ms (Spring: %.3f s)%n",
+						mode, i + 1, run.connectedMs(), run.springSeconds());
+			}
+		}
+
+		System.out.printf("%n%-8s %8s %8s %8s %10s%n", "mode", "min", "median", "max", "spring p50");
+		for (String mode : order) {
+			List<Run> sorted = results.get(mode).stream().sorted(Comparator.comparingLong(Run::connectedMs)).toList();
+			double[] spring = sorted.stream().mapToDouble(Run::springSeconds).sorted().toArray();
+			System.out.printf("%-8s %6d ms %6d ms %6d ms %8.3f s%n", mode, sorted.getFirst().connectedMs(),
+					sorted.get(sorted.size() / 2).connectedMs(), sorted.getLast().connectedMs(), spring[spring.length / 2]);
+		}
+	}
+
+	private static Run start(List<String> command) throws Exception {
+		int port = freePort();
+		Path work = Files.createTempDirectory("ycyw-startup");
+		Path log = work.resolve("application.log");
+		List<String> full = new ArrayList<>(command);
+		full.add("--server.port=" + port);
+		full.add("--app.search.directory=" + work.resolve("search"));
+
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(full)
+				.redirectErrorStream(true)
+				.redirectOutput(log.toFile())
+				.start();
+		try {
+			awaitStompConnected(port, process, start);
+			long connectedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			return new Run(connectedMs, springStartup(log));
+		} finally {
+			process.destroy();
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+			delete(work);
+		}
+	}
+
+	private static void awaitStompConnected(int port, Process process, long start) throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		URI uri = URI.create("ws://127.0.0.1:" + port + "/api/ws-chat/websocket");
+		while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+			if (!process.isAlive()) {
+				throw new IllegalStateException("Application exited with status " + process.exitValue());
+			}
+			CompletableFuture<Void> connected = new CompletableFuture<>();
+			WebSocket socket;
+			try {
+				socket = client.newWebSocketBuilder()
+						.connectTimeout(Duration.ofSeconds(1))
+						.buildAsync(uri, new ConnectedListener(connected))
+						.get(2, TimeUnit.SECONDS);
+			} catch (Exception notListening) {
+				Thread.sleep(5);
+				continue;
+			}
+			socket.sendText(CONNECT, true);
+			connected.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+			socket.abort();
+			return;
+		}
+		throw new IllegalStateException("No STOMP CONNECTED within " + TIMEOUT);
+	}
+
+	private static double springStartup(Path log) throws IOException {
+		Matcher matcher = STARTED.matcher(Files.readString(log));
+		return matcher.find() ? Double.parseDouble(matcher.group(1)) : Double.NaN;
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	/** Complète <code>connected</code> à la première trame <code>CONNECTED</code>. */
+	private static final class ConnectedListener implements WebSocket.Listener {
+		private final CompletableFuture<Void> connected;
+		private final StringBuilder frame = new StringBuilder();
+
+		private ConnectedListener(CompletableFuture<Void> connected) {
+			this.connected = connected;
+		}
+
+		@Override
+		public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+			frame.append(data);
+			if (last) {
+				if (frame.toString().startsWith("CONNECTED")) {
+					connected.complete(null);
+				} else if (frame.toString().startsWith("ERROR")) {
+					connected.completeExceptionally(new IllegalStateException(frame.toString()));
+				}
+				frame.setLength(0);
+			}
+			webSocket.request(1);
+			return null;
+		}
+
+		@Override
+		public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+			webSocket.request(1);
+			return null;
+		}
+
+		@Override
+		public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+			connected.completeExceptionally(new IllegalStateException("Closed: " + statusCode + " " + reason));
+			return null;
+		}
+
+		@Override
+		public void onError(WebSocket webSocket, Throwable error) {
+			connected.completeExceptionally(error);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.ycyw.perf;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Relevés de prestataire factices pour le rapprochement des paiements (<code>PaymentReconciliationService</code>).
+ * <p>
+ * La ligne <code>i</code> porte sur le paiement <code>pi_i</code> (identifiant sur 10 chiffres), au montant
+ * {@link #amountOf(long)} en EUR ; 1 % des lignes visent un paiement inconnu, 0,5 % portent un montant
+ * différent. Statuts : 90 % <code>SUCCEEDED</code>, 7 % <code>FAILED</code>, 3 % <code>REFUNDED</code>.
+ * </p>
+ * <pre>./gradlew generateStatement -Pstatement.file=/tmp/ycyw-statements/2026-10-17.csv -Pstatement.lines=1000000</pre>
+ */
+public final class StatementGenerator {
+
+	private StatementGenerator() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: StatementGenerator <fichier .csv|.jsonl> <lignes> [graine]");
+			System.exit(2);
+		}
+		Path file = Path.of(args[0]);
+		long lines = Long.parseLong(args[1]);
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		long start = System.nanoTime();
+		write(file, lines, seed);
+		System.out.printf("%s : %d lignes, %d Mo en %d ms%n", file, lines, Files.size(file) >> 20,
+				(System.nanoTime() - start) / 1_000_000);
+	}
+
+	public static String providerId(long i) {
+		return "pi_%010d".formatted(i);
+	}
+
+	public static BigDecimal amountOf(long i) {
+		return BigDecimal.valueOf(1_000 + i % 50_000, 2);
+	}
+
+	/** Écrit <code>lines</code> lignes, en CSV ou JSON Lines selon l’extension de <code>file</code>. */
+	public static void write(Path file, long lines, long seed) throws IOException {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		boolean csv = name.endsWith(".csv");
+		if (!csv && !name.endsWith(".jsonl") && !name.endsWith(".ndjson")) {
+			throw new IllegalArgumentException("Unsupported statement format: " + file.getFileName());
+		}
+		SplittableRandom random = new SplittableRandom(seed);
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (BufferedWriter out = Files.newBufferedWriter(file)) {
+			if (csv) {
+				out.write("provider_payment_id,created,status,amount,currency\n");
+			}
+			for (long i = 0; i < lines; i++) {
+				int draw = random.nextInt(1000);
+				String id = draw < 10 ? "pi_unknown_" + i : providerId(i);
+				BigDecimal amount = draw >= 10 && draw < 15 ? amountOf(i).add(BigDecimal.ONE) : amountOf(i);
+				int roll = random.nextInt(100);
+				String status = roll < 90 ? "SUCCEEDED" : roll < 97 ? "FAILED" : "REFUNDED";
+				if (csv) {
+					out.write(id + ",2026-10-17T00:00:00Z," + status + "," + amount.toPlainString() + ",EUR\n");
+				} else {
+					out.write("{\"provider_payment_id\":\"" + id + "\",\"created\":\"2026-10-17T00:00:00Z\",\"status\":\""
+							+ status + "\",\"amount\":\"" + amount.toPlainString() + "\",\"currency\":\"EUR\"}\n");
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,534 @@
+package com.ycyw.perf;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Générateur de charge STOMP contre une instance locale de <code>ChatApplication</code>, en WebSocket natif
+ * (<code>/api/ws</code>, ou <code>/api/ws-chat/websocket</code> sur l’endpoint SockJS).
+ * <ul>
+ *     <li><code>guests</code> sessions invitées (en-tête <code>X-Client-Id</code>), abonnées à
+ *     <code>/queue/support/{clientId}</code>, envoient chacune <code>guest-rate</code> messages par seconde sur
+ *     <code>/app/support.message</code> ;</li>
+ *     <li><code>agents</code> sessions employé (token obtenu par <code>/api/login</code>, réparties sur les comptes
+ *     <code>employee</code>), abonnées à <code>/user/queue/support.admin</code>, répondent chacune
+ *     <code>reply-rate</code> fois par seconde sur <code>/app/support.reply</code> à un invité qui leur a écrit.</li>
+ * </ul>
+ * Chaque message porte son instant d’envoi : la latence aller-retour est mesurée (HdrHistogram) sur trois
+ * chemins — écho à l’invité, invité vers agent, agent vers invité — et les pertes sont comptées après une
+ * période de vidange.
+ * <p>
+ * Arguments <code>--clé=valeur</code> (voir {@link Options}) ; la tâche Gradle <code>stompLoad</code> les
+ * transmet depuis <code>-Pload.args</code>. Les messages au-delà de <code>app.ratelimit.*</code> sont écartés
+ * par le serveur et comptés comme perdus : lancer l’instance avec <code>--app.ratelimit.enabled=false</code>
+ * pour mesurer le routage seul.
+ * </p>
+ */
+public final class StompLoadGenerator {
+
+	/** <code>lt:&lt;m|r&gt;:&lt;id&gt;:&lt;invité&gt;:&lt;envoi en ns&gt;</code>, dans le contenu du message. */
+	private static final Pattern MARK = Pattern.compile("lt:([mr]):(\\d+):(\\d+):(\\d+)");
+	private static final Pattern TOKEN = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"");
+	private static final Duration TIMEOUT = Duration.ofSeconds(30);
+	private static final Duration REPORT_INTERVAL = Duration.ofSeconds(5);
+	private static final String AGENT_QUEUE = "/user/queue/support.admin";
+
+	/** Limites par défaut de <code>application.properties</code>, pour avertir avant un test faussé. */
+	private static final double GUEST_RATE_LIMIT = 2;
+	private static final double EMPLOYEE_RATE_LIMIT = 20;
+
+	/**
+	 * @param url       base HTTP de l’instance (<code>--url</code>, <code>http://localhost:8080</code>)
+	 * @param endpoint  chemin WebSocket (<code>--endpoint</code>, <code>/api/ws</code>)
+	 * @param guests    sessions invitées (<code>--guests</code>, 1000)
+	 * @param agents    sessions employé (<code>--agents</code>, 2)
+	 * @param employees comptes <code>utilisateur:motdepasse</code> (<code>--employee</code>, répétable,
+	 *                  <code>alice:password</code>)
+	 * @param guestRate messages par seconde et par invité (<code>--guest-rate</code>, 0.5)
+	 * @param replyRate réponses par seconde et par session employé (<code>--reply-rate</code>, 10)
+	 * @param ramp      étalement des connexions (<code>--ramp</code>, secondes, 10)
+	 * @param duration  durée d’envoi (<code>--duration</code>, secondes, 60)
+	 * @param drain     attente des derniers messages (<code>--drain</code>, secondes, 5)
+	 */
+	record Options(URI url, String endpoint, int guests, int agents, List<String> employees, double guestRate,
+				   double replyRate, Duration ramp, Duration duration, Duration drain) {
+
+		static Options parse(String[] args) {
+			Map<String, String> values = new HashMap<>();
+			List<String> employees = new ArrayList<>();
+			for (String arg : args) {
+				if (!arg.startsWith("--") || !arg.contains("=")) {
+					throw new IllegalArgumentException("Expected --key=value, got " + arg);
+				}
+				String key = arg.substring(2, arg.indexOf('='));
+				String value = arg.substring(arg.indexOf('=') + 1);
+				if (key.equals("employee")) {
+					employees.add(value);
+				} else {
+					values.put(key, value);
+				}
+			}
+			if (employees.isEmpty()) {
+				employees.add("alice:password");
+			}
+			Options options = new Options(URI.create(values.getOrDefault("url", "http://localhost:8080")),
+					values.getOrDefault("endpoint", "/api/ws"),
+					Integer.parseInt(values.getOrDefault("guests", "1000")),
+					Integer.parseInt(values.getOrDefault("agents", "2")),
+					List.copyOf(employees),
+					Double.parseDouble(values.getOrDefault("guest-rate", "0.5")),
+					Double.parseDouble(values.getOrDefault("reply-rate", "10")),
+					Duration.ofSeconds(Long.parseLong(values.getOrDefault("ramp", "10"))),
+					Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "60"))),
+					Duration.ofSeconds(Long.parseLong(values.getOrDefault("drain", "5"))));
+			values.keySet().removeAll(Set.of("url", "endpoint", "guests", "agents", "guest-rate", "reply-rate", "ramp",
+					"duration", "drain"));
+			if (!values.isEmpty()) {
+				throw new IllegalArgumentException("Unknown options " + values.keySet());
+			}
+			return options;
+		}
+
+		URI webSocket() {
+			String scheme = url.getScheme().equals("https") ? "wss" : "ws";
+			return URI.create(scheme + "://" + url.getAuthority() + endpoint);
+		}
+	}
+
+	/** Un chemin mesuré : envois attendus, réceptions distinctes, latences. */
+	private static final class Route {
+		private final String name;
+		private final AtomicLong sent = new AtomicLong();
+		private final AtomicLong received = new AtomicLong();
+		private final AtomicLong duplicates = new AtomicLong();
+		private final Set<Long> seen = ConcurrentHashMap.newKeySet();
+		/** Latences en microsecondes. */
+		private final Recorder recorder = new Recorder(3);
+		private final Histogram total = new Histogram(3);
+		private long lastReceived;
+
+		private Route(String name) {
+			this.name = name;
+		}
+
+		/** Une session d’un même utilisateur peut recevoir la même copie : seule la première compte. */
+		private void receive(long id, long sentNanos, long now) {
+			if (!seen.add(id)) {
+				duplicates.incrementAndGet();
+				return;
+			}
+			received.incrementAndGet();
+			recorder.recordValue(Math.max(0, now - sentNanos) / 1000);
+		}
+
+		/** Intervalle depuis le dernier appel, ajouté au total. */
+		private synchronized String interval(double seconds) {
+			Histogram histogram = recorder.getIntervalHistogram();
+			total.add(histogram);
+			long count = received.get();
+			String line = String.format("%s %7.0f/s p50 %7.2f ms p99 %7.2f ms", name, (count - lastReceived) / seconds,
+					histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0);
+			lastReceived = count;
+			return line;
+		}
+	}
+
+	private static final long START = System.nanoTime();
+	private static final AtomicLong IDS = new AtomicLong();
+
+	private final Options options;
+	private final HttpClient http = HttpClient.newHttpClient();
+	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+			Math.max(2, Runtime.getRuntime().availableProcessors()), Thread.ofPlatform().name("load-", 0).daemon().factory());
+	private final String runId = Long.toString(System.currentTimeMillis(), 36);
+	private final Route echo = new Route("guest echo     ");
+	private final Route toAgent = new Route("guest -> agent ");
+	private final Route reply = new Route("agent -> guest ");
+	private final List<Route> routes = List.of(echo, toAgent, reply);
+	/** Invités ayant écrit à chaque employé : cibles possibles de ses réponses. */
+	private final Map<String, Correspondents> correspondents = new ConcurrentHashMap<>();
+	private final List<ScheduledFuture<?>> senders = new ArrayList<>();
+	private final AtomicLong sendFailures = new AtomicLong();
+
+	private StompLoadGenerator(Options options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options;
+		try {
+			options = Options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: StompLoadGenerator [--url=http://localhost:8080] [--endpoint=/api/ws] [--guests=1000]"
+					+ " [--agents=2] [--employee=alice:password]... [--guest-rate=0.5] [--reply-rate=10] [--ramp=10]"
+					+ " [--duration=60] [--drain=5]");
+			System.exit(2);
+			return;
+		}
+		if (!InetAddress.getByName(options.url().getHost()).isLoopbackAddress()) {
+			System.err.println("Refusing to load " + options.url() + ": only a locally started instance may be targeted");
+			System.exit(2);
+		}
+		if (options.guestRate() > GUEST_RATE_LIMIT || options.replyRate() > EMPLOYEE_RATE_LIMIT) {
+			System.err.printf("Warning: rates above the default app.ratelimit (guest %.0f/s, employee %.0f/s) are dropped"
+					+ " by the server and reported as loss; start the instance with --app.ratelimit.enabled=false%n",
+					GUEST_RATE_LIMIT, EMPLOYEE_RATE_LIMIT);
+		}
+		new StompLoadGenerator(options).run();
+	}
+
+	private void run() throws Exception {
+		List<StompSession> agentSessions = connectAgents();
+		List<StompSession> guestSessions = connectGuests();
+		System.out.printf("Connected %d agent and %d guest sessions%n", agentSessions.size(), guestSessions.size());
+
+		ScheduledFuture<?> reporter = scheduler.scheduleAtFixedRate(this::report, REPORT_INTERVAL.toMillis(),
+				REPORT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+		startSenders(guestSessions, agentSessions);
+		Thread.sleep(options.duration().toMillis());
+		senders.forEach(sender -> sender.cancel(false));
+		System.out.printf("Sending stopped, draining for %d s%n", options.drain().toSeconds());
+		Thread.sleep(options.drain().toMillis());
+		reporter.cancel(false);
+
+		guestSessions.forEach(StompSession::close);
+		agentSessions.forEach(StompSession::close);
+		scheduler.shutdownNow();
+		summary(guestSessions.size(), agentSessions.size());
+	}
+
+	private List<StompSession> connectAgents() throws Exception {
+		List<StompSession> sessions = new ArrayList<>();
+		if (options.agents() == 0) {
+			return sessions;
+		}
+		Map<String, String> tokens = new HashMap<>();
+		for (String account : options.employees()) {
+			String[] credentials = account.split(":", 2);
+			tokens.put(credentials[0], login(credentials[0], credentials.length > 1 ? credentials[1] : ""));
+		}
+		List<String> users = List.copyOf(tokens.keySet());
+		for (int i = 0; i < options.agents(); i++) {
+			String user = users.get(i % users.size());
+			Correspondents known = correspondents.computeIfAbsent(user, u -> new Correspondents());
+			StompSession session = StompSession.connect(http, options.webSocket(),
+					Map.of("Authorization", "Bearer " + tokens.get(user)), (destination, body) -> onAgentMessage(known, body));
+			session.subscribe(AGENT_QUEUE);
+			session.user = user;
+			sessions.add(session);
+		}
+		return sessions;
+	}
+
+	private String login(String username, String password) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(options.url().resolve("/api/login"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(
+						"{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+				.build();
+		HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+		Matcher token = TOKEN.matcher(response.body());
+		if (response.statusCode() != 200 || !token.find()) {
+			throw new IllegalStateException("Login of " + username + " failed: " + response.statusCode());
+		}
+		return token.group(1);
+	}
+
+	/** Connexions étalées sur <code>ramp</code>, établies en parallèle ; les échecs sont comptés, pas bloquants. */
+	private List<StompSession> connectGuests() throws InterruptedException {
+		ExecutorService connectors = Executors.newVirtualThreadPerTaskExecutor();
+		List<Future<StompSession>> pending = new ArrayList<>(options.guests());
+		long interval = options.guests() == 0 ? 0 : options.ramp().toNanos() / options.guests();
+		long start = System.nanoTime();
+		for (int i = 0; i < options.guests(); i++) {
+			int guest = i;
+			pending.add(connectors.submit(() -> {
+				String clientId = "load-" + runId + "-" + guest;
+				StompSession session = StompSession.connect(http, options.webSocket(), Map.of("X-Client-Id", clientId),
+						(destination, body) -> onGuestMessage(body));
+				session.subscribe("/queue/support/" + clientId);
+				session.guest = guest;
+				session.clientId = clientId;
+				return session;
+			}));
+			LockSupport.parkNanos(start + (i + 1) * interval - System.nanoTime());
+		}
+		List<StompSession> sessions = new ArrayList<>(pending.size());
+		int failed = 0;
+		for (Future<StompSession> future : pending) {
+			try {
+				sessions.add(future.get());
+			} catch (Exception e) {
+				failed++;
+			}
+		}
+		connectors.shutdown();
+		if (failed > 0) {
+			System.err.printf("%d guest sessions failed to connect%n", failed);
+		}
+		return sessions;
+	}
+
+	private void startSenders(List<StompSession> guests, List<StompSession> agents) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (options.guestRate() > 0) {
+			long period = (long) (1_000_000_000L / options.guestRate());
+			for (StompSession guest : guests) {
+				senders.add(scheduler.scheduleAtFixedRate(() -> sendGuestMessage(guest), random.nextLong(period),
+						period, TimeUnit.NANOSECONDS));
+			}
+		}
+		if (options.replyRate() > 0) {
+			long period = (long) (1_000_000_000L / options.replyRate());
+			for (StompSession agent : agents) {
+				Correspondents known = correspondents.get(agent.user);
+				senders.add(scheduler.scheduleAtFixedRate(() -> sendReply(agent, known), random.nextLong(period),
+						period, TimeUnit.NANOSECONDS));
+			}
+		}
+	}
+
+	private void sendGuestMessage(StompSession guest) {
+		long id = IDS.incrementAndGet();
+		String body = "{\"content\":\"" + mark('m', id, guest.guest) + "\",\"type\":\"CHAT\",\"sender\":\""
+				+ guest.clientId + "\"}";
+		if (guest.send("/app/support.message", body)) {
+			echo.sent.incrementAndGet();
+			if (options.agents() > 0) {
+				toAgent.sent.incrementAndGet();
+			}
+		} else {
+			sendFailures.incrementAndGet();
+		}
+	}
+
+	private void sendReply(StompSession agent, Correspondents known) {
+		int guest = known.pick();
+		if (guest < 0) {
+			return;
+		}
+		long id = IDS.incrementAndGet();
+		String body = "{\"targetClientId\":\"load-" + runId + "-" + guest + "\",\"content\":\"" + mark('r', id, guest)
+				+ "\",\"type\":\"CHAT\",\"sender\":\"" + agent.user + "\"}";
+		if (agent.send("/app/support.reply", body)) {
+			reply.sent.incrementAndGet();
+		} else {
+			sendFailures.incrementAndGet();
+		}
+	}
+
+	private static String mark(char kind, long id, int guest) {
+		return "lt:" + kind + ":" + id + ":" + guest + ":" + (System.nanoTime() - START);
+	}
+
+	private void onGuestMessage(String body) {
+		long now = System.nanoTime() - START;
+		Matcher mark = MARK.matcher(body);
+		while (mark.find()) {
+			Route route = mark.group(1).equals("m") ? echo : reply;
+			route.receive(Long.parseLong(mark.group(2)), Long.parseLong(mark.group(4)), now);
+		}
+	}
+
+	/** La file agent reçoit aussi l’écho des réponses de l’employé : seuls les messages d’invités sont mesurés. */
+	private void onAgentMessage(Correspondents known, String body) {
+		long now = System.nanoTime() - START;
+		Matcher mark = MARK.matcher(body);
+		while (mark.find()) {
+			if (mark.group(1).equals("m")) {
+				toAgent.receive(Long.parseLong(mark.group(2)), Long.parseLong(mark.group(4)), now);
+				known.add(Integer.parseInt(mark.group(3)));
+			}
+		}
+	}
+
+	private void report() {
+		double seconds = REPORT_INTERVAL.toMillis() / 1000.0;
+		for (Route route : routes) {
+			System.out.println(route.interval(seconds));
+		}
+		System.out.println();
+	}
+
+	private void summary(int guests, int agents) {
+		double seconds = REPORT_INTERVAL.toMillis() / 1000.0;
+		routes.forEach(route -> route.interval(seconds));
+		System.out.printf("%n%d guests x %.2f msg/s, %d agents x %.2f replies/s, %d s%n", guests, options.guestRate(),
+				agents, options.replyRate(), options.duration().toSeconds());
+		System.out.printf("%-15s %9s %9s %9s %7s %8s %8s %8s %8s %8s%n", "route", "sent", "received", "lost",
+				"loss", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+		for (Route route : routes) {
+			Histogram h = route.total;
+			long sent = route.sent.get();
+			long lost = Math.max(0, sent - route.received.get());
+			System.out.printf("%-15s %9d %9d %9d %6.2f%% %8.2f %8.2f %8.2f %8.2f %8.2f%n", route.name.trim(), sent,
+					route.received.get(), lost, sent == 0 ? 0 : 100.0 * lost / sent,
+					h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+					h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0);
+		}
+		long duplicates = routes.stream().mapToLong(route -> route.duplicates.get()).sum();
+		System.out.printf("send failures: %d, duplicate deliveries (same employee, several sessions): %d%n", sendFailures.get(), duplicates);
+	}
+
+	/** Invités connus d’un employé, dans l’ordre de leur premier message. */
+	private static final class Correspondents {
+		private final Set<Integer> members = ConcurrentHashMap.newKeySet();
+		private int[] guests = new int[16];
+		private int size;
+
+		private void add(int guest) {
+			if (members.add(guest)) {
+				synchronized (this) {
+					if (size == guests.length) {
+						guests = Arrays.copyOf(guests, size * 2);
+					}
+					guests[size++] = guest;
+				}
+			}
+		}
+
+		private synchronized int pick() {
+			return size == 0 ? -1 : guests[ThreadLocalRandom.current().nextInt(size)];
+		}
+	}
+
+	/**
+	 * Session STOMP minimale sur un WebSocket JDK : <code>CONNECT</code> sans heartbeat, abonnements, envois
+	 * sérialisés (un seul envoi en cours par WebSocket) et trames <code>MESSAGE</code> transmises au callback.
+	 */
+	private static final class StompSession implements WebSocket.Listener {
+		private final CompletableFuture<Void> connected = new CompletableFuture<>();
+		private final BiConsumer<String, String> onMessage;
+		private final StringBuilder buffer = new StringBuilder();
+		private WebSocket socket;
+		private int subscriptions;
+		private int guest;
+		private String clientId;
+		private String user;
+
+		private StompSession(BiConsumer<String, String> onMessage) {
+			this.onMessage = onMessage;
+		}
+
+		static StompSession connect(HttpClient http, URI uri, Map<String, String> headers,
+									BiConsumer<String, String> onMessage) throws Exception {
+			StompSession session = new StompSession(onMessage);
+			session.socket = http.newWebSocketBuilder()
+					.connectTimeout(TIMEOUT)
+					.buildAsync(uri, session)
+					.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+			StringBuilder frame = new StringBuilder("CONNECT\naccept-version:1.2\nhost:localhost\nheart-beat:0,0\n");
+			headers.forEach((name, value) -> frame.append(name).append(':').append(value).append('\n'));
+			session.write(frame.append('\n').append('\u0000').toString());
+			session.connected.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+			return session;
+		}
+
+		void subscribe(String destination) {
+			write("SUBSCRIBE\nid:sub-" + subscriptions++ + "\ndestination:" + destination + "\n\n\u0000");
+		}
+
+		boolean send(String destination, String json) {
+			try {
+				write("SEND\ndestination:" + destination + "\ncontent-type:application/json\n\n" + json + "\u0000");
+				return true;
+			} catch (RuntimeException e) {
+				return false;
+			}
+		}
+
+		private synchronized void write(String frame) {
+			socket.sendText(frame, true).join();
+		}
+
+		void close() {
+			socket.abort();
+		}
+
+		@Override
+		public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+			buffer.append(data);
+			int end;
+			while ((end = buffer.indexOf("\u0000")) >= 0) {
+				frame(buffer.substring(0, end));
+				buffer.delete(0, end + 1);
+			}
+			webSocket.request(1);
+			return null;
+		}
+
+		private void frame(String frame) {
+			int start = 0;
+			while (start < frame.length() && (frame.charAt(start) == '\n' || frame.charAt(start) == '\r')) {
+				start++;
+			}
+			int headersEnd = frame.indexOf("\n\n", start);
+			if (headersEnd < 0) {
+				return;
+			}
+			String[] headers = frame.substring(start, headersEnd).split("\n");
+			switch (headers[0]) {
+				case "CONNECTED" -> connected.complete(null);
+				case "ERROR" -> connected.completeExceptionally(new IllegalStateException(frame));
+				case "MESSAGE" -> {
+					String destination = null;
+					for (String header : headers) {
+						if (header.startsWith("destination:")) {
+							destination = header.substring("destination:".length());
+						}
+					}
+					onMessage.accept(destination, frame.substring(headersEnd + 2));
+				}
+				default -> { }
+			}
+		}
+
+		@Override
+		public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+			webSocket.request(1);
+			return null;
+		}
+
+		@Override
+		public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+			connected.completeExceptionally(new IllegalStateException("Closed: " + statusCode + " " + reason));
+			return null;
+		}
+
+		@Override
+		public void onError(WebSocket webSocket, Throwable error) {
+			connected.completeExceptionally(error);
+		}
+	}
+}
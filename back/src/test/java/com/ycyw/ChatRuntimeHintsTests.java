@@ -0,0 +1,26 @@
+package com.ycyw;
+
+import com.ycyw.dto.AdminReply;
+import com.ycyw.dto.SearchHit;
+import com.ycyw.dto.SearchResults;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatRuntimeHintsTests {
+
+	@Test
+	void registersBindingHintsForPayloadsAndSqlScripts() {
+		RuntimeHints hints = new RuntimeHints();
+		new ChatRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(AdminReply.class, "getTargetClientId")).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(AdminReply.class, "setTargetClientId")).accepts(hints);
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(SearchResults.class, "hits")).accepts(hints);
+		// types des composants, enregistrés récursivement
+		assertThat(RuntimeHintsPredicates.reflection().onType(SearchHit.class)).accepts(hints);
+		assertThat(RuntimeHintsPredicates.resource().forResource("db/schema-h2.sql")).accepts(hints);
+	}
+}
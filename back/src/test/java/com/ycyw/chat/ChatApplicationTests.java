@@ -1,13 +1,93 @@
 package com.ycyw.chat;
 
+import com.ycyw.security.JwtTokenMinter;
+import com.ycyw.service.AgentAssignmentService;
+import com.ycyw.service.PresenceRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 @SpringBootTest
 class ChatApplicationTests {
 
+	@Autowired
+	private JwtTokenMinter minter;
+
+	@Autowired
+	@Qualifier("stompAuthInterceptor")
+	private ChannelInterceptor stompAuthInterceptor;
+
+	@Autowired
+	@Qualifier("destinationInterceptor")
+	private ChannelInterceptor destinationInterceptor;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void stompConnectWithBearerTokenAuthenticatesTheSession() {
+		String token = minter.mintAccessToken(User.withUsername("alice").password("x").roles("EMPLOYEE").build());
+		StompHeaderAccessor connect = StompHeaderAccessor.create(StompCommand.CONNECT);
+		connect.setNativeHeader("Authorization", "Bearer " + token);
+		connect.setSessionAttributes(new HashMap<>());
+		connect.setLeaveMutable(true);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders());
+
+		stompAuthInterceptor.preSend(message, mock(MessageChannel.class));
+
+		assertThat(connect.getUser()).isInstanceOfSatisfying(Authentication.class, user -> {
+			assertThat(user.getName()).isEqualTo("alice");
+			assertThat(user.getAuthorities()).extracting("authority").containsExactly("ROLE_EMPLOYEE");
+		});
+	}
+
+	@Test
+	void agentTopicsAreReservedToEmployees() {
+		UsernamePasswordAuthenticationToken alice = new UsernamePasswordAuthenticationToken("alice", null,
+				List.of(new SimpleGrantedAuthority("ROLE_EMPLOYEE")));
+		UsernamePasswordAuthenticationToken bob = new UsernamePasswordAuthenticationToken("bob", null,
+				List.of(new SimpleGrantedAuthority("ROLE_CLIENT")));
+
+		assertThat(destinationInterceptor.preSend(frame(StompCommand.SUBSCRIBE, PresenceRegistry.PRESENCE_TOPIC, alice),
+				mock(MessageChannel.class))).isNotNull();
+		assertThat(destinationInterceptor.preSend(frame(StompCommand.SUBSCRIBE, PresenceRegistry.PRESENCE_TOPIC, bob),
+				mock(MessageChannel.class))).isNull();
+		assertThat(destinationInterceptor.preSend(frame(StompCommand.SUBSCRIBE, AgentAssignmentService.NOTICE_TOPIC, null),
+				mock(MessageChannel.class))).isNull();
+		assertThat(destinationInterceptor.preSend(frame(StompCommand.SUBSCRIBE, "/queue/support/client-1", null),
+				mock(MessageChannel.class))).isNotNull();
+		// publication directe sur le broker refusée, même pour un employé
+		assertThat(destinationInterceptor.preSend(frame(StompCommand.SEND, PresenceRegistry.PRESENCE_TOPIC, alice),
+				mock(MessageChannel.class))).isNull();
+		assertThat(destinationInterceptor.preSend(frame(StompCommand.SEND, "/app/support.message", null),
+				mock(MessageChannel.class))).isNotNull();
+	}
+
+	private static Message<byte[]> frame(StompCommand command, String destination, Authentication user) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setDestination(destination);
+		accessor.setSessionId("s1");
+		accessor.setUser(user);
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
 }
@@ -0,0 +1,200 @@
+package com.ycyw.cluster;
+
+import com.ycyw.dto.AdminMsg;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClusterRelayTests {
+
+	private static final InetAddress LOOPBACK = InetAddress.getLoopbackAddress();
+
+	private final InProcessClusterTransport.Hub hub = new InProcessClusterTransport.Hub();
+	private final List<Runnable> cleanup = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		cleanup.forEach(Runnable::run);
+	}
+
+	@Test
+	void deliversOnlyToNodesHoldingTheClient() throws InterruptedException {
+		Node a = node("a");
+		Node b = node("b");
+		Node c = node("c");
+		b.directory.onConnected(connected("s1", "client-1"));
+		await(() -> a.directory.nodesFor(SessionDirectory.Kind.CLIENT, "client-1").contains("b"));
+
+		a.relay.sendToClient("client-1", Map.of("content", "bonjour"), Instant.now());
+
+		await(() -> !b.sent.isEmpty());
+		Message<?> delivered = b.sent.peek();
+		assertThat(SimpMessageHeaderAccessor.getDestination(delivered.getHeaders())).isEqualTo("/queue/support/client-1");
+		assertThat(new String((byte[]) delivered.getPayload())).contains("bonjour");
+		assertThat(a.sent).hasSize(1);
+		assertThat(c.sent).isEmpty();
+	}
+
+	@Test
+	void forwardsConversationToItsHomeNode() throws InterruptedException {
+		Node a = node("a");
+		Node b = node("b");
+		BlockingQueue<AdminMsg> handled = new LinkedBlockingQueue<>();
+		b.relay.setCommandHandler(new ClusterRelay.CommandHandler() {
+			@Override
+			public void onClientMessage(AdminMsg msg) {
+				handled.add(msg);
+			}
+
+			@Override
+			public void onAgentMessage(AdminMsg msg, String agent) {
+			}
+		});
+		b.directory.onConnected(connected("s1", "client-1"));
+		await(() -> "b".equals(a.relay.homeOf("client-1")));
+
+		AdminMsg msg = new AdminMsg("client-1", "guest", "GUEST", Instant.now(), "bonjour", "CHAT");
+		a.relay.forwardClientMessage(a.relay.homeOf("client-1"), msg);
+
+		assertThat(handled.poll(5, TimeUnit.SECONDS)).isEqualTo(msg);
+	}
+
+	@Test
+	void exchangesFramesOverTcp() throws InterruptedException {
+		BlockingQueue<ClusterFrame> received = new LinkedBlockingQueue<>();
+		BlockingQueue<String> joined = new LinkedBlockingQueue<>();
+		TcpClusterTransport b = tcp(List.of(), "secret", new SimpleMeterRegistry());
+		b.start("b", receiver(received, joined));
+		cleanup.add(b::stop);
+		TcpClusterTransport a = tcp(List.of(new InetSocketAddress(LOOPBACK, b.getLocalPort())), "secret",
+				new SimpleMeterRegistry());
+		a.start("a", receiver(new LinkedBlockingQueue<>(), joined));
+		cleanup.add(a::stop);
+
+		await(() -> joined.contains("b"));
+		a.send("b", ClusterFrame.deliver("/queue/support/client-1", null, "{}".getBytes()));
+
+		ClusterFrame frame = received.poll(5, TimeUnit.SECONDS);
+		assertThat(frame).isNotNull();
+		assertThat(frame.type()).isEqualTo(ClusterFrame.Type.DELIVER);
+		assertThat(frame.target()).isEqualTo("/queue/support/client-1");
+	}
+
+	@Test
+	void refusesPeersWithoutTheSharedSecret() throws Exception {
+		BlockingQueue<String> joined = new LinkedBlockingQueue<>();
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		TcpClusterTransport b = tcp(List.of(), "secret", registry);
+		b.start("b", receiver(new LinkedBlockingQueue<>(), joined));
+		cleanup.add(b::stop);
+		TcpClusterTransport a = tcp(List.of(new InetSocketAddress(LOOPBACK, b.getLocalPort())), "other",
+				new SimpleMeterRegistry());
+		a.start("a", receiver(new LinkedBlockingQueue<>(), joined));
+		cleanup.add(a::stop);
+
+		await(() -> registry.get("cluster.handshakes").counter().count() > 0);
+		// un HELLO non signé est refusé de même
+		try (Socket socket = new Socket(LOOPBACK, b.getLocalPort())) {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			ClusterFrame.hello("intruder", 1, Instant.now(), new byte[32]).writeTo(out);
+			out.flush();
+			assertThat(socket.getInputStream().read()).isEqualTo(-1);
+		}
+		assertThat(joined).isEmpty();
+	}
+
+	@Test
+	void rejectsOversizedFrames() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(ClusterFrame.Type.DELIVER.ordinal());
+		out.writeBoolean(false);
+		out.writeBoolean(false);
+		out.writeBoolean(false);
+		out.writeInt(Integer.MAX_VALUE);
+
+		assertThatThrownBy(() -> ClusterFrame.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))))
+				.isInstanceOf(IOException.class)
+				.hasMessageContaining("exceeds");
+	}
+
+	private TcpClusterTransport tcp(List<InetSocketAddress> peers, String secret, SimpleMeterRegistry registry) {
+		return new TcpClusterTransport(LOOPBACK, 0, peers, 16, secret, registry);
+	}
+
+	private record Node(SessionDirectory directory, ClusterRelay relay, Queue<Message<?>> sent) {
+	}
+
+	private Node node(String id) {
+		Queue<Message<?>> sent = new ConcurrentLinkedQueue<>();
+		SimpMessagingTemplate messaging = new SimpMessagingTemplate((message, timeout) -> sent.add(message));
+		InProcessClusterTransport transport = new InProcessClusterTransport(hub);
+		SessionDirectory directory = new SessionDirectory(transport, event -> { }, id);
+		ClusterRelay relay = new ClusterRelay(transport, directory, messaging, Jackson2ObjectMapperBuilder.json().build());
+		relay.start();
+		cleanup.add(relay::stop);
+		return new Node(directory, relay, sent);
+	}
+
+	private static SessionConnectedEvent connected(String sessionId, String clientId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+		accessor.setSessionId(sessionId);
+		accessor.setSessionAttributes(Map.of("clientId", clientId));
+		return new SessionConnectedEvent(new Object(), MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+	}
+
+	private static ClusterTransport.Receiver receiver(BlockingQueue<ClusterFrame> frames, BlockingQueue<String> joined) {
+		return new ClusterTransport.Receiver() {
+			@Override
+			public void onFrame(String fromNode, ClusterFrame frame) {
+				frames.add(frame);
+			}
+
+			@Override
+			public void onNodeJoined(String nodeId) {
+				joined.add(nodeId);
+			}
+
+			@Override
+			public void onNodeLeft(String nodeId) {
+			}
+		};
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).as("condition not met within 5s").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.ycyw.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.session.PollingSockJsSession;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StompMetricsTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final StompMetrics metrics = new StompMetrics(registry);
+	private final MessageChannel channel = (message, timeout) -> true;
+
+	@Test
+	void countsInboundFramesPerTemplatedDestination() {
+		for (int i = 0; i < 3; i++) {
+			metrics.inboundInterceptor().preSend(frame(StompCommand.SUBSCRIBE, "/queue/support/3f1c2a9e-8b7d-" + i), channel);
+		}
+		metrics.inboundInterceptor().preSend(frame(StompCommand.SEND, "/app/support.message"), channel);
+
+		assertThat(registry.get("stomp.inbound.frames").tag("command", "SUBSCRIBE")
+				.tag("destination", "/queue/support/{id}").counter().count()).isEqualTo(3);
+		assertThat(registry.get("stomp.inbound.frames").tag("command", "SEND")
+				.tag("destination", "/app/support.message").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void recordsLatencyOnlyForTimedSends() {
+		SimpMessageHeaderAccessor timed = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		timed.setDestination("/queue/support/42");
+		timed.setHeader(StompMetrics.RECEIVED_AT, Instant.now().minusMillis(5));
+		SimpMessageHeaderAccessor untimed = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		untimed.setDestination("/topic/support.admin");
+
+		metrics.outboundInterceptor().afterMessageHandled(message(timed), channel, m -> { }, null);
+		metrics.outboundInterceptor().afterMessageHandled(message(untimed), channel, m -> { }, null);
+
+		assertThat(registry.get("stomp.support.latency").tag("destination", "/queue/support/{id}").timer().count()).isEqualTo(1);
+		assertThat(registry.get("stomp.support.latency").timer().totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+		assertThat(registry.get("stomp.outbound.frames").tag("command", "MESSAGE").counters()).hasSize(2);
+	}
+
+	@Test
+	void countsOpenSessionsPerTransport() {
+		WebSocketSession websocket = session("a", WebSocketSession.class, new WebSocketExtension("permessage-deflate"));
+		WebSocketSession polling = session("b", PollingSockJsSession.class);
+
+		metrics.opened(websocket);
+		metrics.opened(websocket);
+		metrics.opened(polling);
+		assertThat(metrics.openSessions(StompMetrics.Transport.WEBSOCKET)).isEqualTo(1);
+		assertThat(metrics.openSessions(StompMetrics.Transport.SOCKJS_POLLING)).isEqualTo(1);
+		assertThat(registry.get("websocket.sessions.active").tag("transport", "http_polling").tag("sockjs", "true")
+				.gauge().value()).isEqualTo(1);
+		assertThat(registry.get("websocket.sessions.compressed").gauge().value()).isEqualTo(1);
+
+		metrics.closed(websocket);
+		metrics.closed(websocket);
+		assertThat(registry.get("websocket.sessions.active").tag("transport", "websocket").tag("sockjs", "false")
+				.gauge().value()).isZero();
+		assertThat(registry.get("websocket.sessions.compressed").gauge().value()).isZero();
+	}
+
+	@Test
+	void templatesIdentifiersButKeepsNamedDestinations() {
+		assertThat(StompMetrics.destinationTag("/user/queue/support.admin")).isEqualTo("/user/queue/support.admin");
+		assertThat(StompMetrics.destinationTag("/queue/support/abc123")).isEqualTo("/queue/support/{id}");
+		assertThat(StompMetrics.destinationTag(null)).isEqualTo("none");
+	}
+
+	private static Message<byte[]> frame(StompCommand command, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setDestination(destination);
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static WebSocketSession session(String id, Class<? extends WebSocketSession> type,
+											WebSocketExtension... extensions) {
+		WebSocketSession session = mock(type);
+		when(session.getId()).thenReturn(id);
+		when(session.getExtensions()).thenReturn(List.of(extensions));
+		return session;
+	}
+
+	private static Message<byte[]> message(SimpMessageHeaderAccessor accessor) {
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
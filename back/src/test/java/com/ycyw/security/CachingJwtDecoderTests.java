@@ -0,0 +1,91 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingJwtDecoderTests {
+
+	private static final Instant NOW = Instant.parse("2025-01-01T10:00:00Z");
+
+	private final AtomicInteger decodes = new AtomicInteger();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private Jwt jwt(String token, Instant expiresAt) {
+		return Jwt.withTokenValue(token).header("alg", "HS256").subject("alice")
+				.issuedAt(NOW.minusSeconds(60)).expiresAt(expiresAt).build();
+	}
+
+	@Test
+	void servesRepeatedTokensFromCacheUntilExpiry() {
+		Instant exp = NOW.plusSeconds(30);
+		AtomicReference<Instant> now = new AtomicReference<>(NOW);
+		CachingJwtDecoder decoder = new CachingJwtDecoder(token -> {
+			decodes.incrementAndGet();
+			return jwt(token, exp);
+		}, 100, Duration.ofMinutes(15), registry, new Clock() {
+			@Override
+			public ZoneId getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(ZoneId zone) {
+				return this;
+			}
+
+			@Override
+			public Instant instant() {
+				return now.get();
+			}
+		});
+
+		Jwt first = decoder.decode("token-a");
+		Jwt second = decoder.decode("token-a");
+
+		assertThat(second).isSameAs(first);
+		assertThat(decodes).hasValue(1);
+		assertThat(registry.get("security.jwt.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+
+		// à l’exp du JWT, l’entrée en cache n’est plus servie
+		now.set(exp);
+		assertThat(decoder.decode("token-a")).isNotSameAs(first);
+		assertThat(decodes).hasValue(2);
+		assertThat(registry.get("security.jwt.cache").tag("result", "miss").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void keysNonAsciiTokensApart() {
+		CachingJwtDecoder decoder = new CachingJwtDecoder(token -> {
+			decodes.incrementAndGet();
+			return jwt(token, NOW.plusSeconds(300));
+		}, 100, Duration.ofMinutes(15), registry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+		// en US-ASCII, les deux caractères deviennent '?' et partageraient la même empreinte
+		assertThat(decoder.decode("token-é").getTokenValue()).isEqualTo("token-é");
+		assertThat(decoder.decode("token-ü").getTokenValue()).isEqualTo("token-ü");
+		assertThat(decodes).hasValue(2);
+	}
+
+	@Test
+	void staysBoundedWhenFull() {
+		CachingJwtDecoder decoder = new CachingJwtDecoder(token -> jwt(token, NOW.plusSeconds(300)),
+				50, Duration.ofMinutes(15), registry, Clock.fixed(NOW, ZoneOffset.UTC));
+
+		for (int i = 0; i < 500; i++) {
+			decoder.decode("token-" + i);
+		}
+
+		assertThat(decoder.size()).isLessThanOrEqualTo(50);
+	}
+}
@@ -0,0 +1,144 @@
+package com.ycyw.security;
+
+import com.ycyw.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CachingUserDetailsServiceTests {
+
+	private static final Instant NOW = Instant.parse("2025-01-01T10:00:00Z");
+
+	private final EmbeddedDatabase db = new EmbeddedDatabaseBuilder()
+			.generateUniqueName(true)
+			.setType(EmbeddedDatabaseType.H2)
+			.addScripts("db/schema-h2.sql", "db/data-h2.sql")
+			.build();
+	private final AtomicInteger queries = new AtomicInteger();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final UserRepository repository = new UserRepository(new JdbcTemplate(db)) {
+		@Override
+		public Optional<UserDetails> findByEmail(String email) {
+			queries.incrementAndGet();
+			return super.findByEmail(email);
+		}
+	};
+
+	@AfterEach
+	void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	void servesUsersFromCacheUntilExpiryOrInvalidation() {
+		AtomicReference<Instant> now = new AtomicReference<>(NOW);
+		CachingUserDetailsService users = new CachingUserDetailsService(repository, 100, Duration.ofMinutes(5), registry,
+				new Clock() {
+					@Override
+					public ZoneId getZone() {
+						return ZoneOffset.UTC;
+					}
+
+					@Override
+					public Clock withZone(ZoneId zone) {
+						return this;
+					}
+
+					@Override
+					public Instant instant() {
+						return now.get();
+					}
+				});
+
+		UserDetails alice = users.loadUserByUsername("alice");
+		assertThat(alice.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_EMPLOYEE");
+		((CredentialsContainer) alice).eraseCredentials();
+		assertThat(users.loadUserByUsername("alice").getPassword()).startsWith("$2a$");
+		assertThat(queries).hasValue(1);
+		assertThat(registry.get("security.users.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+
+		// compte désactivé en base, hors de l’application
+		new JdbcTemplate(db).update("UPDATE \"User\" SET is_active = FALSE WHERE email = 'alice'");
+		assertThat(users.loadUserByUsername("alice").isEnabled()).isTrue();
+		assertThat(queries).hasValue(1);
+
+		// pris en compte à l’expiration de l’entrée
+		now.set(NOW.plus(Duration.ofMinutes(5)));
+		assertThat(users.loadUserByUsername("alice").isEnabled()).isFalse();
+		assertThat(users.loadUserByUsername("alice").isEnabled()).isFalse();
+		assertThat(queries).hasValue(2);
+
+		assertThatThrownBy(() -> users.loadUserByUsername("mallory")).isInstanceOf(UsernameNotFoundException.class);
+		assertThatThrownBy(() -> users.loadUserByUsername("mallory")).isInstanceOf(UsernameNotFoundException.class);
+		assertThat(users.size()).isEqualTo(1);
+	}
+
+	@Test
+	void sharesASingleQueryBetweenConcurrentMisses() throws Exception {
+		CountDownLatch querying = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		UserRepository slow = new UserRepository(new JdbcTemplate(db)) {
+			@Override
+			public Optional<UserDetails> findByEmail(String email) {
+				queries.incrementAndGet();
+				querying.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.findByEmail(email);
+			}
+		};
+		CachingUserDetailsService users = new CachingUserDetailsService(slow, 100, Duration.ofMinutes(5), registry);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<UserDetails>> loads = new ArrayList<>();
+			loads.add(executor.submit(() -> users.loadUserByUsername("bob")));
+			assertThat(querying.await(5, TimeUnit.SECONDS)).isTrue();
+			for (int i = 0; i < 7; i++) {
+				loads.add(executor.submit(() -> users.loadUserByUsername("bob")));
+			}
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (registry.get("security.users.cache").tag("result", "coalesced").counter().count() < 7
+					&& System.nanoTime() < deadline) {
+				Thread.onSpinWait();
+			}
+			release.countDown();
+			for (Future<UserDetails> load : loads) {
+				assertThat(load.get(5, TimeUnit.SECONDS).getUsername()).isEqualTo("bob");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(queries).hasValue(1);
+		assertThat(registry.get("security.users.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+	}
+}
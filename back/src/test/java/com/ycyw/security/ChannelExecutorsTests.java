@@ -0,0 +1,48 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChannelExecutorsTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void virtualExecutorRejectsOnceConcurrencyStaysExhausted() throws InterruptedException {
+		TaskExecutor executor = ChannelExecutors.virtual("clientInboundChannel", 2, 20, registry);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(2);
+		for (int i = 0; i < 2; i++) {
+			executor.execute(() -> {
+				started.countDown();
+				awaitQuietly(release);
+			});
+		}
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> executor.execute(() -> { })).isInstanceOf(RejectedExecutionException.class);
+		assertThat(registry.get("stomp.channel.rejected").counter().count()).isEqualTo(1);
+		assertThat(registry.get("executor.active").gauge().value()).isEqualTo(2);
+
+		release.countDown();
+		CountDownLatch done = new CountDownLatch(1);
+		executor.execute(done::countDown);
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.ycyw.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrameBatcherTests {
+
+	private final BlockingQueue<Message<?>> delivered = new LinkedBlockingQueue<>();
+	private final ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+	private final MessageChannel channel = (message, timeout) -> true;
+	private FrameBatcher batcher;
+
+	FrameBatcherTests() {
+		OrderedMessageChannelDecorator.configureInterceptor(outbound, true);
+		outbound.subscribe(delivered::add);
+	}
+
+	@AfterEach
+	void tearDown() {
+		batcher.stop();
+	}
+
+	@Test
+	void combinesFramesOfABatchSubscriptionInOrder() throws Exception {
+		batcher = new FrameBatcher(outbound, 10_000, 3);
+		Message<?> subscribe = batcher.inboundInterceptor().preSend(subscribe("sub-0", "/user/queue/support.admin.batch"), channel);
+		assertThat(SimpMessageHeaderAccessor.getDestination(subscribe.getHeaders())).isEqualTo("/user/queue/support.admin");
+
+		for (int i = 1; i <= 3; i++) {
+			assertThat(batcher.outboundInterceptor().preSend(message("sub-0", "{\"n\":" + i + "}"), channel)).isNull();
+		}
+
+		Message<?> batch = delivered.poll(1, TimeUnit.SECONDS);
+		assertThat(batch).isNotNull();
+		assertThat(new ObjectMapper().readTree((byte[]) batch.getPayload()).findValuesAsText("n")).containsExactly("1", "2", "3");
+		assertThat(StompHeaderAccessor.wrap(batch).getFirstNativeHeader("batch-size")).isEqualTo("3");
+		assertThat(SimpMessageHeaderAccessor.getSubscriptionId(batch.getHeaders())).isEqualTo("sub-0");
+	}
+
+	@Test
+	void flushesPartialBatchesAfterTheWindow() throws Exception {
+		batcher = new FrameBatcher(outbound, 20, 1000);
+		batcher.inboundInterceptor().preSend(subscribe("sub-0", "/topic/support.admin.batch"), channel);
+
+		batcher.outboundInterceptor().preSend(message("sub-0", "{\"n\":1}"), channel);
+
+		Message<?> batch = delivered.poll(1, TimeUnit.SECONDS);
+		assertThat(batch).isNotNull();
+		assertThat(new String((byte[]) batch.getPayload(), StandardCharsets.UTF_8)).isEqualTo("[{\"n\":1}]");
+	}
+
+	@Test
+	void leavesOtherSubscriptionsUntouched() {
+		batcher = new FrameBatcher(outbound, 10_000, 3);
+		batcher.inboundInterceptor().preSend(subscribe("sub-0", "/user/queue/support.admin.batch"), channel);
+		Message<?> plain = message("sub-1", "{\"n\":1}");
+
+		assertThat(batcher.outboundInterceptor().preSend(plain, channel)).isSameAs(plain);
+	}
+
+	private static Message<byte[]> subscribe(String subscriptionId, String destination) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setSessionId("s1");
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static Message<byte[]> message(String subscriptionId, String json) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId("s1");
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination("/queue/support.admin-users1");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+	}
+}
@@ -0,0 +1,75 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InboundRateLimiterTests {
+
+	private final List<Message<?>> outbound = new ArrayList<>();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final MessageChannel channel = (message, timeout) -> true;
+	// invités : 1/s, rafale de 3 ; ERROR après 2 abandons consécutifs
+	private final ChannelInterceptor limiter = new InboundRateLimiter(
+			(message, timeout) -> outbound.add(message), registry, true, 2, 1, 3, 5, 20, 20, 50).interceptor();
+
+	@Test
+	void dropsFramesBeyondTheBurstThenClosesTheOffendingSessionOnly() {
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.preSend(send("s1", "client-1"), channel)).isNotNull();
+		}
+		assertThat(limiter.preSend(send("s1", "client-1"), channel)).isNull();
+		assertThat(outbound).isEmpty();
+		assertThat(limiter.preSend(send("s1", "client-1"), channel)).isNull();
+
+		assertThat(outbound).singleElement().satisfies(error -> {
+			StompHeaderAccessor accessor = StompHeaderAccessor.wrap(error);
+			assertThat(accessor.getCommand()).isEqualTo(StompCommand.ERROR);
+			assertThat(accessor.getSessionId()).isEqualTo("s1");
+		});
+		assertThat(registry.get("stomp.inbound.ratelimited").tag("role", "GUEST").tag("outcome", "dropped")
+				.counter().count()).isEqualTo(2);
+		assertThat(registry.get("stomp.inbound.ratelimited").tag("role", "GUEST").tag("outcome", "rejected")
+				.counter().count()).isEqualTo(1);
+		assertThat(limiter.preSend(send("s2", "client-2"), channel)).isNotNull();
+	}
+
+	@Test
+	void sharesTheBudgetOfAClientAcrossItsSessions() {
+		for (int i = 0; i < 3; i++) {
+			assertThat(limiter.preSend(send("s" + i, "client-1"), channel)).isNotNull();
+		}
+		assertThat(limiter.preSend(send("s9", "client-1"), channel)).isNull();
+	}
+
+	@Test
+	void refillsTheBucketOverTime() {
+		InboundRateLimiter.Bucket bucket = new InboundRateLimiter.Bucket(new InboundRateLimiter.Limit(100, 1));
+		long now = System.nanoTime();
+		assertThat(bucket.tryAcquire(now)).isTrue();
+		assertThat(bucket.tryAcquire(now)).isFalse();
+		assertThat(bucket.tryAcquire(now + 10_000_000)).isTrue();
+		assertThat(bucket.isIdle(now + 20_000_000)).isTrue();
+	}
+
+	private static Message<byte[]> send(String sessionId, String clientId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/app/support.message");
+		accessor.setSessionAttributes(Map.of("clientId", clientId));
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
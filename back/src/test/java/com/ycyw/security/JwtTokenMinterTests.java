@@ -0,0 +1,62 @@
+package com.ycyw.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtTokenMinterTests {
+
+	private static final String SECRET = "MySecretForYourCarYourWay4l1f3xo";
+
+	private final JwtDecoder decoder = NimbusJwtDecoder
+			.withSecretKey(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"))
+			.build();
+
+	@Test
+	void mintsTokensAcceptedByTheNimbusDecoder() {
+		JwtTokenMinter minter = new JwtTokenMinter(SECRET, 900_000, 604_800_000);
+		UserDetails alice = User.withUsername("alice").password("x").roles("EMPLOYEE").build();
+
+		JwtTokenMinter.TokenPair tokens = minter.mint(alice);
+
+		Jwt access = decoder.decode(tokens.accessToken());
+		assertThat(access.getSubject()).isEqualTo("alice");
+		assertThat(access.getClaimAsStringList("roles")).isEqualTo(List.of("EMPLOYEE"));
+		assertThat(Duration.between(access.getIssuedAt(), access.getExpiresAt())).isEqualTo(Duration.ofMinutes(15));
+
+		Jwt refresh = decoder.decode(tokens.refreshToken());
+		assertThat(refresh.getSubject()).isEqualTo("alice");
+		assertThat(refresh.hasClaim("roles")).isFalse();
+		assertThat(refresh.getId()).isNotBlank();
+		assertThat(decoder.decode(minter.mint(alice, refresh.getClaimAsString(JwtTokenMinter.FAMILY_CLAIM)).refreshToken()))
+				.satisfies(rotated -> {
+					assertThat(rotated.getId()).isNotEqualTo(refresh.getId());
+					assertThat(rotated.getClaimAsString(JwtTokenMinter.FAMILY_CLAIM))
+							.isEqualTo(refresh.getClaimAsString(JwtTokenMinter.FAMILY_CLAIM));
+				});
+		assertThat(Duration.between(refresh.getIssuedAt(), refresh.getExpiresAt())).isEqualTo(Duration.ofDays(7));
+	}
+
+	@Test
+	void escapesSubjectAndFollowsRoleChanges() {
+		JwtTokenMinter minter = new JwtTokenMinter(SECRET, 900_000, 604_800_000);
+		String name = "o\"brien\\é";
+
+		minter.mintAccessToken(User.withUsername(name).password("x").roles("CLIENT").build());
+		String promoted = minter.mintAccessToken(User.withUsername(name).password("x").roles("EMPLOYEE").build());
+
+		Jwt jwt = decoder.decode(promoted);
+		assertThat(jwt.getSubject()).isEqualTo(name);
+		assertThat(jwt.getClaimAsStringList("roles")).isEqualTo(List.of("EMPLOYEE"));
+	}
+}
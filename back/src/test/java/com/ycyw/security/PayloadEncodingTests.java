@@ -0,0 +1,94 @@
+package com.ycyw.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.dto.ClientMsg;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadEncodingTests {
+
+	private final PayloadEncoding encoding = new PayloadEncoding();
+	private final MessageChannel channel = (message, timeout) -> true;
+	private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+
+	@Test
+	void transcodesMessagesForNativeSessionsThatAskedForCbor() throws Exception {
+		encoding.inboundInterceptor().preSend(connect("native", "websocket"), channel);
+		encoding.inboundInterceptor().preSend(connect("sockjs", PayloadEncoding.SOCKJS), channel);
+		AdminMsg msg = new AdminMsg("client-1", "bob", "CLIENT", Instant.parse("2025-01-01T10:00:00Z"), "Bonjour", "CHAT");
+		byte[] body = json.writeValueAsBytes(msg);
+
+		Message<?> cbor = encoding.outboundInterceptor().preSend(message("native", body), channel);
+		Message<?> unchanged = encoding.outboundInterceptor().preSend(message("sockjs", body), channel);
+
+		assertThat(cbor.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(PayloadEncoding.CBOR);
+		assertThat((byte[]) cbor.getPayload()).hasSizeLessThan(body.length);
+		assertThat(PayloadEncoding.cborMapper().readValue((byte[]) cbor.getPayload(), AdminMsg.class)).isEqualTo(msg);
+		assertThat(unchanged.getPayload()).isSameAs(body);
+	}
+
+	@Test
+	void readsCborSendFramesIntoTheSameDtos() throws Exception {
+		List<MessageConverter> converters = new ArrayList<>();
+		assertThat(encoding.configureMessageConverters(converters)).isTrue();
+		ClientMsg msg = new ClientMsg("Bonjour", "CHAT", "bob", "CLIENT", "client-1");
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setContentType(PayloadEncoding.CBOR);
+		Message<byte[]> send = MessageBuilder.createMessage(PayloadEncoding.cborMapper().writeValueAsBytes(msg), accessor.getMessageHeaders());
+
+		assertThat(converters.getFirst().fromMessage(send, ClientMsg.class)).isEqualTo(msg);
+		assertThat(converters.getFirst().toMessage(msg, null)).as("JSON reste l’encodage par défaut").isNull();
+	}
+
+	@Test
+	void detectsCborFramesFromTheirHeaders() {
+		StompHeaderAccessor cbor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		cbor.setContentType(PayloadEncoding.CBOR);
+		StompHeaderAccessor text = StompHeaderAccessor.create(StompCommand.MESSAGE);
+		text.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		StompEncoder encoder = new StompEncoder();
+
+		assertThat(WebSocketBrokerConfiguration.BinaryCborFrames.isCbor(
+				encoder.encode(cbor.getMessageHeaders(), new byte[]{(byte) 0xa1}))).isTrue();
+		assertThat(WebSocketBrokerConfiguration.BinaryCborFrames.isCbor(
+				encoder.encode(text.getMessageHeaders(), "content-type:application/cbor".getBytes()))).isFalse();
+	}
+
+	private static Message<byte[]> connect(String sessionId, String transport) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setSessionId(sessionId);
+		accessor.setNativeHeader("content-type", "application/cbor");
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put(PayloadEncoding.TRANSPORT_ATTRIBUTE, transport);
+		accessor.setSessionAttributes(attributes);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static Message<byte[]> message(String sessionId, byte[] body) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/queue/support/client-1");
+		accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+		return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+	}
+}
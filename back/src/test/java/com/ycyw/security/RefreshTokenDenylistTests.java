@@ -0,0 +1,211 @@
+package com.ycyw.security;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.cluster.InProcessClusterTransport;
+import com.ycyw.cluster.SessionDirectory;
+import com.ycyw.exception.InvalidJwtException;
+import com.ycyw.repository.RevokedTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RefreshTokenDenylistTests {
+
+	private static final String SECRET = "MySecretForYourCarYourWay4l1f3xo";
+
+	private final EmbeddedDatabase db = new EmbeddedDatabaseBuilder()
+			.generateUniqueName(true)
+			.setType(EmbeddedDatabaseType.H2)
+			.addScript("db/schema-h2.sql")
+			.build();
+	private final RevokedTokenRepository repository = new RevokedTokenRepository(new JdbcTemplate(db));
+	private final InProcessClusterTransport.Hub hub = new InProcessClusterTransport.Hub();
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final AtomicReference<Instant> now = new AtomicReference<>(Instant.now());
+	private final Clock clock = new Clock() {
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return now.get();
+		}
+	};
+
+	@AfterEach
+	void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	void rotatesRefreshTokensAndRevokesTheFamilyOnReuse() {
+		RefreshTokenDenylist denylist = denylist("node-1");
+		JwtTokenMinter minter = new JwtTokenMinter(SECRET, 900_000, 604_800_000);
+		JwtTokenUtil tokens = tokenUtil(minter, denylist);
+
+		String first = minter.mint(User.withUsername("bob").password("x").roles("CLIENT").build()).refreshToken();
+		String second = refreshCookieOf(tokens, first);
+		String third = refreshCookieOf(tokens, second);
+		assertThat(third).isNotEqualTo(second);
+
+		// le premier token, volé et rejoué après le délai de grâce : toute la famille est révoquée
+		now.set(now.get().plusSeconds(10));
+		assertThatThrownBy(() -> refreshCookieOf(tokens, first)).isInstanceOf(InvalidJwtException.class);
+		assertThatThrownBy(() -> refreshCookieOf(tokens, third)).isInstanceOf(InvalidJwtException.class);
+		assertThat(registry.get("security.refresh.reused").counter().count()).isEqualTo(1);
+
+		String other = minter.mint(User.withUsername("bob").password("x").roles("CLIENT").build()).refreshToken();
+		tokens.revokeRefreshToken(other);
+		assertThatThrownBy(() -> refreshCookieOf(tokens, other)).isInstanceOf(InvalidJwtException.class);
+		assertThat(denylist.size()).isEqualTo(2);
+	}
+
+	@Test
+	void returnsTheSuccessorPairToAReuseWithinTheGraceWindow() {
+		RefreshTokenDenylist denylist = denylist("node-1");
+		JwtTokenMinter minter = new JwtTokenMinter(SECRET, 900_000, 604_800_000);
+		JwtTokenUtil tokens = tokenUtil(minter, denylist);
+		String first = minter.mint(User.withUsername("bob").password("x").roles("CLIENT").build()).refreshToken();
+
+		MockHttpServletResponse firstTab = new MockHttpServletResponse();
+		String access = tokens.rotateTokens(first, firstTab);
+		// second onglet, même cookie, quelques instants plus tard
+		now.set(now.get().plusSeconds(2));
+		MockHttpServletResponse secondTab = new MockHttpServletResponse();
+		assertThat(tokens.rotateTokens(first, secondTab)).isEqualTo(access);
+		String successor = Objects.requireNonNull(firstTab.getCookie("refreshToken")).getValue();
+		assertThat(Objects.requireNonNull(secondTab.getCookie("refreshToken")).getValue()).isEqualTo(successor);
+		assertThat(registry.get("security.refresh.reused.grace").counter().count()).isEqualTo(1);
+
+		// la famille reste valide
+		String next = refreshCookieOf(tokens, successor);
+		assertThat(next).isNotEqualTo(successor);
+		assertThat(registry.get("security.refresh.reused").counter().count()).isZero();
+		assertThat(denylist.size()).isZero();
+
+		now.set(now.get().plusSeconds(10));
+		assertThatThrownBy(() -> refreshCookieOf(tokens, first)).isInstanceOf(InvalidJwtException.class);
+		assertThatThrownBy(() -> refreshCookieOf(tokens, next)).isInstanceOf(InvalidJwtException.class);
+	}
+
+	@Test
+	void sharesUsedTokensAcrossNodesAndPersistsThemInTheBackground() {
+		Instant expiresAt = now.get().plusSeconds(3600);
+		JwtTokenMinter.TokenPair pair = new JwtTokenMinter.TokenPair("access", "refresh");
+		RefreshTokenDenylist node1 = denylist("node-1");
+		RefreshTokenDenylist node2 = denylist("node-2");
+
+		assertThat(node1.exchange("jti-1", expiresAt, () -> pair)).contains(pair);
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		while (!node2.isUsed("jti-1") && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		// dans le délai de grâce, l’autre nœud émet une nouvelle paire ; ensuite, il refuse
+		JwtTokenMinter.TokenPair other = new JwtTokenMinter.TokenPair("access-2", "refresh-2");
+		assertThat(node2.exchange("jti-1", expiresAt, () -> other)).contains(other);
+		now.set(now.get().plusSeconds(10));
+		assertThat(node2.exchange("jti-1", expiresAt, () -> other)).isEmpty();
+
+		assertThat(persistedUsedTokens()).isZero();
+		node1.flush();
+		assertThat(persistedUsedTokens()).isEqualTo(1);
+		assertThat(denylist("node-3").isUsed("jti-1")).isTrue();
+	}
+
+	@Test
+	void loadsRevokedFamiliesAtStartupAndFromOtherNodes() {
+		Instant expiresAt = Instant.now().plusSeconds(3600);
+		repository.revokeFamily("persisted", expiresAt);
+		repository.revokeFamily("expired", Instant.now().minusSeconds(1));
+
+		RefreshTokenDenylist node1 = denylist("node-1");
+		RefreshTokenDenylist node2 = denylist("node-2");
+		assertThat(node2.isRevoked("persisted")).isTrue();
+		assertThat(node2.isRevoked("expired")).isFalse();
+
+		node1.revoke("logout", expiresAt);
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		while (node2.size() < 2 && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+		}
+		assertThat(node2.isRevoked("logout")).isTrue();
+
+		for (int i = 0; i < 2000; i++) {
+			node1.add("family-" + i, expiresAt);
+		}
+		assertThat(node1.isRevoked("family-1999")).isTrue();
+		for (int i = 0; i < 10_000; i++) {
+			assertThat(node1.isRevoked("unknown-" + i)).isFalse();
+		}
+		// filtre redimensionné pour 2 × 2002 entrées à 1 % de faux positifs
+		assertThat(registry.get("security.refresh.denylist").tag("result", "false_positive").counter().count())
+				.isLessThan(300);
+
+		node1.purge();
+		assertThat(repository.revokeFamily("expired", expiresAt)).isTrue();
+	}
+
+	private RefreshTokenDenylist denylist(String nodeId) {
+		InProcessClusterTransport transport = new InProcessClusterTransport(hub);
+		SimpMessagingTemplate messaging = new SimpMessagingTemplate((message, timeout) -> true);
+		ClusterRelay cluster = new ClusterRelay(transport, new SessionDirectory(transport, event -> { }, nodeId),
+				messaging, Jackson2ObjectMapperBuilder.json().build());
+		cluster.start();
+		RefreshTokenDenylist denylist = new RefreshTokenDenylist(repository, cluster, registry, 0.01, 3_600_000,
+				5000, 3_600_000, clock);
+		denylist.start();
+		return denylist;
+	}
+
+	private JwtTokenUtil tokenUtil(JwtTokenMinter minter, RefreshTokenDenylist denylist) {
+		JwtTokenUtil tokens = new JwtTokenUtil(minter,
+				NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256")).build(),
+				new InMemoryUserDetailsManager(User.withUsername("bob").password("x").roles("CLIENT").build()),
+				denylist);
+		ReflectionTestUtils.setField(tokens, "jwtRefreshExpirationInMs", 604_800_000);
+		return tokens;
+	}
+
+	private int persistedUsedTokens() {
+		AtomicInteger count = new AtomicInteger();
+		repository.forEachUsedToken(now.get(), (jti, expiresAt) -> count.incrementAndGet());
+		return count.get();
+	}
+
+	private static String refreshCookieOf(JwtTokenUtil tokens, String refreshToken) {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		tokens.rotateTokens(refreshToken, response);
+		return Objects.requireNonNull(response.getCookie("refreshToken")).getValue();
+	}
+}
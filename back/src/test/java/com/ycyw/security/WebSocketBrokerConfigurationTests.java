@@ -0,0 +1,95 @@
+package com.ycyw.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator.OverflowStrategy;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class WebSocketBrokerConfigurationTests {
+
+	private final CountDownLatch sending = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final List<String> delivered = new CopyOnWriteArrayList<>();
+	private Counter dropped;
+	private WebSocketSession slowSession;
+	private Thread flusher;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		dropped = new SimpleMeterRegistry().counter("websocket.messages.dropped");
+		slowSession = mock(WebSocketSession.class);
+		doAnswer(invocation -> {
+			WebSocketMessage<?> message = invocation.getArgument(0);
+			sending.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			delivered.add((String) message.getPayload());
+			return null;
+		}).when(slowSession).sendMessage(any());
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		release.countDown();
+		flusher.join(5000);
+	}
+
+	@Test
+	void countsMessagesDroppedFromTheBufferOfASlowSession() throws Exception {
+		ConcurrentWebSocketSessionDecorator session = blockedOnFirstMessage(OverflowStrategy.DROP);
+
+		for (int i = 1; i <= 4; i++) {
+			session.sendMessage(new TextMessage("msg" + i));
+		}
+		release.countDown();
+		flusher.join(5000);
+
+		assertThat(delivered).containsExactly("msg0", "msg3", "msg4");
+		assertThat(dropped.count()).isEqualTo(2);
+	}
+
+	@Test
+	void terminatesASlowSessionWithoutCountingDrops() throws Exception {
+		ConcurrentWebSocketSessionDecorator session = blockedOnFirstMessage(OverflowStrategy.TERMINATE);
+
+		session.sendMessage(new TextMessage("msg1"));
+		session.sendMessage(new TextMessage("msg2"));
+
+		assertThatThrownBy(() -> session.sendMessage(new TextMessage("msg3")))
+				.isInstanceOf(SessionLimitExceededException.class);
+		assertThat(dropped.count()).isZero();
+	}
+
+	/** Session dont le buffer tient deux messages, bloquée dans l’envoi du premier. */
+	private ConcurrentWebSocketSessionDecorator blockedOnFirstMessage(OverflowStrategy strategy) throws Exception {
+		ConcurrentWebSocketSessionDecorator session =
+				WebSocketBrokerConfiguration.concurrent(slowSession, 60_000, 10, strategy, dropped);
+		flusher = new Thread(() -> {
+			try {
+				session.sendMessage(new TextMessage("msg0"));
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		flusher.start();
+		assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+		return session;
+	}
+}
@@ -0,0 +1,165 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.cluster.ClusterTransport;
+import com.ycyw.cluster.InProcessClusterTransport;
+import com.ycyw.cluster.PresenceEvent;
+import com.ycyw.cluster.SessionDirectory;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AgentAssignmentServiceTests {
+
+	private final List<PresenceEvent> events = new ArrayList<>();
+	private final SessionDirectory directory;
+	private final PresenceRegistry presence;
+	private final AgentAssignmentService assignments;
+
+	AgentAssignmentServiceTests() {
+		SimpMessagingTemplate messaging = new SimpMessagingTemplate((message, timeout) -> true);
+		messaging.setMessageConverter(new SimpleMessageConverter());
+		ClusterTransport transport = new InProcessClusterTransport(new InProcessClusterTransport.Hub());
+		directory = new SessionDirectory(transport, event -> events.add((PresenceEvent) event), "node-1");
+		ClusterRelay cluster = new ClusterRelay(transport, directory, messaging, Jackson2ObjectMapperBuilder.json().build());
+		presence = new PresenceRegistry(directory, messaging);
+		JdbcTemplate unusedJdbc = new JdbcTemplate();
+		// service de persistance non démarré : les affectations restent en attente
+		ChatPersistenceService persistence = new ChatPersistenceService(
+				new ConversationRepository(unusedJdbc), new MessageRepository(unusedJdbc),
+				new TransactionTemplate(), new SimpleMeterRegistry(), 16, 10, 10, 10);
+		assignments = new AgentAssignmentService(directory, presence, cluster, persistence,
+				new ConversationRepository(unusedJdbc));
+	}
+
+	@Test
+	void assignsEachConversationToTheLeastLoadedAgent() {
+		connectAgent("a1", "alice");
+		connectAgent("c1", "carol");
+		deliverEvents();
+		presence.load("alice").set(2);
+
+		assertThat(assignments.agentFor("client-1")).isEqualTo("carol");
+		assertThat(assignments.agentFor("client-2")).isEqualTo("carol");
+		assertThat(assignments.agentFor("client-3")).isIn("alice", "carol");
+		assertThat(presence.loadOf("alice", 0) + presence.loadOf("carol", 0)).isEqualTo(5);
+		// une conversation reste à son agent
+		assertThat(assignments.agentFor("client-1")).isEqualTo("carol");
+	}
+
+	@Test
+	void reassignsTheConversationsOfAnAgentWhoLeaves() {
+		connectClient("s1", "client-1");
+		connectAgent("a1", "alice");
+		deliverEvents();
+		assertThat(assignments.agentFor("client-1")).isEqualTo("alice");
+
+		connectAgent("c1", "carol");
+		disconnect("a1");
+		deliverEvents();
+
+		assertThat(presence.loadOf("alice", 0)).isZero();
+		assertThat(presence.loadOf("carol", 0)).isEqualTo(1);
+		assertThat(assignments.agentFor("client-1")).isEqualTo("carol");
+	}
+
+	@Test
+	void queuesConversationsUntilAnAgentConnects() {
+		connectClient("s1", "client-1");
+		deliverEvents();
+		assertThat(assignments.agentFor("client-1")).isNull();
+
+		connectAgent("a1", "alice");
+		deliverEvents();
+
+		assertThat(presence.loadOf("alice", 0)).isEqualTo(1);
+		assertThat(assignments.agentFor("client-1")).isEqualTo("alice");
+	}
+
+	@Test
+	void dropsWaitingClientsThatDisconnectWithoutLeave() {
+		connectClient("s1", "client-1");
+		deliverEvents();
+		assertThat(assignments.agentFor("client-1")).isNull();
+		disconnect("s1");
+		deliverEvents();
+
+		connectAgent("a1", "alice");
+		deliverEvents();
+
+		assertThat(presence.loadOf("alice", 0)).isZero();
+	}
+
+	@Test
+	void onlyOnlineAgentsCanClaimAConversation() {
+		connectAgent("a1", "alice");
+		deliverEvents();
+
+		assertThat(assignments.claim("client-1", "bob")).isFalse();
+		// consulter l’agent affecté n’affecte personne
+		assertThat(assignments.assignedAgent("client-1")).isNull();
+		assertThat(presence.loadOf("alice", 0)).isZero();
+		assertThat(assignments.claim("client-1", "alice")).isTrue();
+		assertThat(assignments.assignedAgent("client-1")).isEqualTo("alice");
+		assertThat(presence.loadOf("alice", 0)).isEqualTo(1);
+	}
+
+	private void deliverEvents() {
+		List<PresenceEvent> pending = List.copyOf(events);
+		events.clear();
+		pending.forEach(event -> {
+			presence.onPresence(event);
+			assignments.onPresence(event);
+		});
+	}
+
+	private void connectClient(String sessionId, String clientId) {
+		connect(sessionId, clientId, null);
+	}
+
+	private void connectAgent(String sessionId, String agent) {
+		connect(sessionId, null, new UsernamePasswordAuthenticationToken(agent, null,
+				List.of(new SimpleGrantedAuthority("ROLE_EMPLOYEE"))));
+	}
+
+	private void connect(String sessionId, String clientId, Principal user) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+		accessor.setSessionId(sessionId);
+		Map<String, Object> attributes = new HashMap<>();
+		if (clientId != null) {
+			attributes.put("clientId", clientId);
+		}
+		accessor.setSessionAttributes(attributes);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		directory.onConnected(new SessionConnectedEvent(this, message, user));
+	}
+
+	private void disconnect(String sessionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		directory.onDisconnect(new SessionDisconnectEvent(this, message, sessionId, null));
+	}
+}
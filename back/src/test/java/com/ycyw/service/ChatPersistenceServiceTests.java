@@ -0,0 +1,122 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatPersistenceServiceTests {
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private SimpleMeterRegistry registry;
+	private ChatPersistenceService service;
+
+	@BeforeEach
+	void setUp() {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		registry = new SimpleMeterRegistry();
+		service = new ChatPersistenceService(
+				new ConversationRepository(jdbc),
+				new MessageRepository(jdbc),
+				new TransactionTemplate(new DataSourceTransactionManager(db)),
+				registry, 1000, 50, 20, 100);
+		service.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	void batchesMessagesIntoOneConversationPerClient() throws InterruptedException {
+		Instant t0 = Instant.parse("2025-01-01T10:00:00Z");
+		for (int i = 0; i < 120; i++) {
+			String clientId = i % 2 == 0 ? "client-a" : "client-b";
+			service.enqueue(new AdminMsg(clientId, null, "GUEST", t0.plusSeconds(i), "msg " + i, "CHAT"));
+		}
+		service.stop();
+
+		assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM \"Message\"", Integer.class)).isEqualTo(120);
+		assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM \"Conversation\"", Integer.class)).isEqualTo(2);
+		List<String> contents = jdbc.queryForList("""
+				SELECT m.content FROM "Message" m
+				JOIN "Conversation" c ON c.conversation_id = m.conversation_id
+				WHERE c.client_key = 'client-a' ORDER BY m.sent_at""", String.class);
+		assertThat(contents).hasSize(60).startsWith("msg 0", "msg 2");
+		assertThat(registry.get("chat.persistence.messages").tag("result", "persisted").counter().count())
+				.isEqualTo(120);
+		assertThat(registry.get("chat.persistence.flush").timer().count()).isGreaterThanOrEqualTo(3);
+	}
+
+	@Test
+	void reusesTheOpenConversationOfAReturningClient() throws InterruptedException {
+		jdbc.update("INSERT INTO \"Conversation\" (client_key) VALUES ('client-a')");
+
+		service.enqueue(new AdminMsg("client-a", "bob", "ROLE_CLIENT", Instant.now(), "hello", "CHAT"));
+		service.stop();
+
+		assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM \"Conversation\"", Integer.class)).isEqualTo(1);
+		assertThat(jdbc.queryForObject("SELECT sender_name FROM \"Message\"", String.class)).isEqualTo("bob");
+	}
+
+	@Test
+	void appliesReadReceiptsToPersistedAndQueuedMessages() throws InterruptedException {
+		Instant t0 = Instant.parse("2025-01-01T10:00:00Z");
+		for (int i = 0; i < 4; i++) {
+			service.enqueue(new AdminMsg("client-a", null, "GUEST", t0.plusSeconds(i), "client " + i, "CHAT"));
+			service.enqueue(new AdminMsg("client-a", "alice", "ROLE_EMPLOYEE", t0.plusSeconds(i), "agent " + i, "CHAT"));
+		}
+		while (registry.get("chat.persistence.messages").tag("result", "persisted").counter().count() < 8) {
+			Thread.sleep(10);
+		}
+
+		// plusieurs accusés de l’agent : seul le plus récent compte
+		service.recordRead("client-a", true, t0);
+		service.recordRead("client-a", true, t0.plusSeconds(2));
+		service.recordRead("client-a", false, t0.plusSeconds(1));
+		// message du client encore en file : inséré déjà lu
+		service.enqueue(new AdminMsg("client-a", null, "GUEST", t0.plusMillis(1500), "late", "CHAT"));
+		service.stop();
+
+		assertThat(jdbc.queryForList("""
+				SELECT content FROM "Message" WHERE is_read ORDER BY sent_at, content""", String.class))
+				.containsExactly("agent 0", "client 0", "agent 1", "client 1", "late", "client 2");
+	}
+
+	@Test
+	void writesRowByRowWhenTheBatchFails() throws InterruptedException {
+		Instant t0 = Instant.parse("2025-01-01T10:00:00Z");
+		service.enqueue(new AdminMsg("client-a", null, "GUEST", t0, "before", "CHAT"));
+		service.enqueue(new AdminMsg("client-a", "x".repeat(300), "GUEST", t0.plusSeconds(1), "too long", "CHAT"));
+		service.enqueue(new AdminMsg("client-a", null, "GUEST", t0.plusSeconds(2), "after", "CHAT"));
+		service.stop();
+
+		assertThat(jdbc.queryForList("SELECT content FROM \"Message\" ORDER BY sent_at", String.class))
+				.containsExactly("before", "after");
+		assertThat(registry.get("chat.persistence.messages").tag("result", "persisted").counter().count())
+				.isEqualTo(2);
+		assertThat(registry.get("chat.persistence.messages").tag("result", "failed").counter().count())
+				.isEqualTo(1);
+	}
+}
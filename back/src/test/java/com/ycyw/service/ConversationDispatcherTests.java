@@ -0,0 +1,98 @@
+package com.ycyw.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationDispatcherTests {
+
+	private ConversationDispatcher dispatcher;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		dispatcher.stop();
+	}
+
+	@Test
+	void keepsOrderWithinAConversation() throws InterruptedException {
+		dispatcher = new ConversationDispatcher(8, 64, 1000, true);
+		dispatcher.start();
+
+		List<Integer> seen = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(500);
+		for (int i = 0; i < 500; i++) {
+			int n = i;
+			assertThat(dispatcher.dispatch("client-1", () -> {
+				seen.add(n);
+				done.countDown();
+			})).isTrue();
+		}
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(seen).isSorted().hasSize(500);
+	}
+
+	@Test
+	void slowConversationOnlyBackPressuresItsOwnShard() throws InterruptedException {
+		dispatcher = new ConversationDispatcher(4, 2, 10, true);
+		dispatcher.start();
+
+		String slow = "slow-client";
+		String other = "other-client";
+		while (dispatcher.shardOf(other) == dispatcher.shardOf(slow)) {
+			other = other + "x";
+		}
+
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		dispatcher.dispatch(slow, () -> {
+			started.countDown();
+			awaitQuietly(release);
+		});
+		assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+		dispatcher.dispatch(slow, () -> { });
+		dispatcher.dispatch(slow, () -> { });
+		boolean overflow = dispatcher.dispatch(slow, () -> { });
+
+		CountDownLatch otherDone = new CountDownLatch(1);
+		boolean accepted = dispatcher.dispatch(other, otherDone::countDown);
+
+		assertThat(overflow).isFalse();
+		assertThat(dispatcher.getRejectedCount()).isEqualTo(1);
+		assertThat(accepted).isTrue();
+		assertThat(otherDone.await(1, TimeUnit.SECONDS)).isTrue();
+		release.countDown();
+	}
+
+	@Test
+	void stopWakesIdleShardsAndRunsQueuedTasks() throws InterruptedException {
+		dispatcher = new ConversationDispatcher(256, 1024, 10, true);
+		dispatcher.start();
+
+		AtomicInteger ran = new AtomicInteger();
+		for (int i = 0; i < 1000; i++) {
+			assertThat(dispatcher.dispatch("client-" + i % 10, ran::incrementAndGet)).isTrue();
+		}
+		long start = System.nanoTime();
+		dispatcher.stop();
+
+		assertThat(ran).hasValue(1000);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+		assertThat(dispatcher.dispatch("client-1", ran::incrementAndGet)).isFalse();
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
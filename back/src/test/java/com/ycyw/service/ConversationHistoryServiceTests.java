@@ -0,0 +1,220 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.dto.HistoryPage;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConversationHistoryServiceTests {
+
+	private static final Instant T0 = Instant.parse("2025-01-01T10:00:00Z");
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private SimpleMeterRegistry registry;
+	private ConversationRepository conversations;
+	private ChatPersistenceService persistence;
+	private ConversationHistoryService history;
+
+	@BeforeEach
+	void setUp() {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		registry = new SimpleMeterRegistry();
+		conversations = new ConversationRepository(jdbc);
+		persistence = new ChatPersistenceService(conversations, new MessageRepository(jdbc),
+				new TransactionTemplate(new DataSourceTransactionManager(db)), registry, 1000, 50, 20, 100);
+		persistence.start();
+		history = new ConversationHistoryService(new MessageRepository(jdbc), conversations, persistence,
+				registry, 4, 2);
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		persistence.stop();
+		db.shutdown();
+	}
+
+	@Test
+	void ringBufferKeepsTheLatestMessagesNewestFirst() {
+		ConversationHistoryService.MessageRingBuffer buffer = new ConversationHistoryService.MessageRingBuffer(3);
+		for (int i = 0; i < 5; i++) {
+			buffer.add(msg("client-a", i));
+		}
+		List<ConversationHistoryService.Entry> out = new ArrayList<>();
+
+		List<ConversationHistoryService.Entry> oldest = buffer.collectBefore(
+				ConversationHistoryService.Cursor.parse(T0.plusSeconds(4).toString()), 10, out);
+
+		assertThat(out).extracting(entry -> entry.message().content()).containsExactly("msg 3", "msg 2");
+		assertThat(oldest).extracting(entry -> entry.message().content()).containsExactly("msg 2");
+	}
+
+	@Test
+	void servesRecentPagesFromMemory() {
+		for (int i = 0; i < 4; i++) {
+			history.append(msg("client-a", i));
+		}
+
+		HistoryPage page = history.page("client-a", null, 2);
+
+		assertThat(page.messages()).extracting(AdminMsg::content).containsExactly("msg 2", "msg 3");
+		assertThat(page.nextCursor()).isEqualTo(T0.plusSeconds(2) + "~2");
+		assertThat(registry.get("chat.history.pages").tag("source", "memory").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedConversation() {
+		history.append(msg("client-a", 0));
+		history.append(msg("client-b", 0));
+		history.page("client-a", null, 1);
+		history.append(msg("client-c", 0));
+
+		assertThat(history.page("client-a", null, 1).messages()).hasSize(1);
+		assertThat(history.page("client-b", null, 1).messages()).isEmpty();
+		assertThat(registry.get("chat.history.conversations").gauge().value()).isEqualTo(2);
+	}
+
+	@Test
+	void completesFromTheDatabaseBeyondTheBuffer() {
+		long conversation = conversations.create("client-a");
+		for (int i = 0; i < 6; i++) {
+			insert(conversation, "msg " + i, T0.plusSeconds(i));
+		}
+		for (int i = 2; i < 6; i++) {
+			history.append(msg("client-a", i));
+		}
+
+		HistoryPage page = history.page("client-a", null, 5);
+
+		assertThat(page.messages()).extracting(AdminMsg::content)
+				.containsExactly("msg 1", "msg 2", "msg 3", "msg 4", "msg 5");
+		assertThat(page.nextCursor()).startsWith(T0.plusSeconds(1) + "/");
+		assertThat(history.page("client-a", page.nextCursor(), 5).messages())
+				.extracting(AdminMsg::content).containsExactly("msg 0");
+	}
+
+	@Test
+	void pagesThroughMessagesSharingTheSameTimestamp() {
+		long conversation = conversations.create("client-a");
+		for (int i = 0; i < 5; i++) {
+			insert(conversation, "msg " + i, T0);
+		}
+
+		HistoryPage first = history.page("client-a", null, 2);
+		HistoryPage second = history.page("client-a", first.nextCursor(), 2);
+		HistoryPage third = history.page("client-a", second.nextCursor(), 2);
+
+		assertThat(first.messages()).extracting(AdminMsg::content).containsExactly("msg 3", "msg 4");
+		assertThat(second.messages()).extracting(AdminMsg::content).containsExactly("msg 1", "msg 2");
+		assertThat(third.messages()).extracting(AdminMsg::content).containsExactly("msg 0");
+		assertThat(third.nextCursor()).isNull();
+	}
+
+	@Test
+	void pagesThroughBufferedMessagesSharingTheSameTimestamp() {
+		for (int i = 0; i < 4; i++) {
+			history.append(msg("client-a", "msg " + i, T0));
+		}
+
+		HistoryPage first = history.page("client-a", null, 2);
+		HistoryPage second = history.page("client-a", first.nextCursor(), 2);
+
+		assertThat(first.messages()).extracting(AdminMsg::content).containsExactly("msg 2", "msg 3");
+		assertThat(second.messages()).extracting(AdminMsg::content).containsExactly("msg 0", "msg 1");
+	}
+
+	@Test
+	void completesFromTheDatabaseWithMessagesTiedWithTheOldestBuffered() {
+		long conversation = conversations.create("client-a");
+		for (int i = 0; i < 6; i++) {
+			insert(conversation, "msg " + i, T0);
+			if (i >= 2) {
+				history.append(msg("client-a", "msg " + i, T0));
+			}
+		}
+
+		HistoryPage first = history.page("client-a", null, 3);
+		HistoryPage second = history.page("client-a", first.nextCursor(), 3);
+
+		assertThat(first.messages()).extracting(AdminMsg::content).containsExactly("msg 3", "msg 4", "msg 5");
+		assertThat(second.messages()).extracting(AdminMsg::content).containsExactly("msg 0", "msg 1", "msg 2");
+		assertThat(history.page("client-a", second.nextCursor(), 3).messages()).isEmpty();
+	}
+
+	@Test
+	void doesNotSkipTiedMessagesWhileTheBufferIsNotYetPersisted() {
+		long conversation = conversations.create("client-a");
+		insert(conversation, "msg 0", T0);
+		insert(conversation, "msg 1", T0);
+		for (int i = 2; i < 6; i++) {
+			history.append(msg("client-a", "msg " + i, T0));
+		}
+
+		HistoryPage page = history.page("client-a", null, 6);
+
+		assertThat(page.messages()).extracting(AdminMsg::content)
+				.containsExactly("msg 0", "msg 1", "msg 2", "msg 3", "msg 4", "msg 5");
+	}
+
+	@Test
+	void returnsAnEmptyPageForAMalformedCursor() {
+		history.append(msg("client-a", 0));
+
+		assertThat(history.page("client-a", "yesterday", 10).messages()).isEmpty();
+		assertThat(history.page("client-a", T0 + "/x", 10).messages()).isEmpty();
+	}
+
+	@Test
+	void bindsTheConversationToItsFirstSignedInReader() throws InterruptedException {
+		jdbc.update("INSERT INTO \"User\" (email, password) VALUES ('bob', 'x')");
+
+		assertThat(history.mayRead("client-a", null)).isTrue();
+		assertThat(history.mayRead("client-a", "bob")).isTrue();
+		assertThat(history.mayRead("client-a", "mallory")).isFalse();
+		assertThat(history.mayRead("client-a", null)).isFalse();
+
+		// rattachement persisté : toujours refusé une fois la mémoire perdue
+		persistence.stop();
+		ConversationHistoryService restarted = new ConversationHistoryService(new MessageRepository(jdbc),
+				conversations, persistence, registry, 4, 2);
+		assertThat(restarted.mayRead("client-a", "mallory")).isFalse();
+		assertThat(restarted.mayRead("client-a", "bob")).isTrue();
+	}
+
+	private static AdminMsg msg(String clientId, int i) {
+		return msg(clientId, "msg " + i, T0.plusSeconds(i));
+	}
+
+	private static AdminMsg msg(String clientId, String content, Instant timestamp) {
+		return new AdminMsg(clientId, null, "GUEST", timestamp, content, "CHAT");
+	}
+
+	private void insert(long conversation, String content, Instant sentAt) {
+		jdbc.update("""
+				INSERT INTO "Message" (conversation_id, sender_role, content, sent_at) VALUES (?, 'GUEST', ?, ?)""",
+				conversation, content, OffsetDateTime.ofInstant(sentAt, ZoneOffset.UTC));
+	}
+}
@@ -0,0 +1,127 @@
+package com.ycyw.service;
+
+import com.ycyw.exception.LoginUnavailableException;
+import com.ycyw.exception.TooManyLoginAttemptsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CredentialVerificationExecutorTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final CountDownLatch unblock = new CountDownLatch(1);
+	private CredentialVerificationExecutor executor;
+
+	@AfterEach
+	void tearDown() {
+		unblock.countDown();
+		executor.shutdown();
+	}
+
+	@Test
+	void rejectsConcurrentAttemptsOfTheSameUserWith429() throws Exception {
+		executor = new CredentialVerificationExecutor(registry, 2, 8, 1, 5000);
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> executor.verify("alice", () -> {
+			started.countDown();
+			return blocked("ok");
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> executor.verify("alice", () -> "ok")).isInstanceOf(TooManyLoginAttemptsException.class);
+		assertThat(executor.verify("bob", () -> "ok")).isEqualTo("ok");
+		assertThat(registry.get("auth.login.rejected").tag("reason", "user_limit").counter().count()).isEqualTo(1);
+
+		unblock.countDown();
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+		assertThat(executor.verify("alice", () -> "again")).isEqualTo("again");
+	}
+
+	@Test
+	void rejectsWith503WhenTheQueueIsFull() throws Exception {
+		executor = new CredentialVerificationExecutor(registry, 1, 1, 2, 5000);
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> executor.verify("alice", () -> {
+			started.countDown();
+			return blocked("ok");
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		CompletableFuture.runAsync(() -> executor.verify("bob", () -> "queued"));
+		while (registry.get("auth.login.queue.depth").gauge().value() < 1) {
+			Thread.sleep(5);
+		}
+
+		assertThatThrownBy(() -> executor.verify("carol", () -> "ok")).isInstanceOf(LoginUnavailableException.class);
+		assertThat(registry.get("auth.login.rejected").tag("reason", "queue_full").counter().count()).isEqualTo(1);
+		// le créneau de l’appel refusé est rendu
+		unblock.countDown();
+		awaitIdle();
+		assertThat(executor.verify("carol", () -> "ok")).isEqualTo("ok");
+	}
+
+	@Test
+	void keepsTheSlotOfATimedOutVerificationUntilItFinishes() throws Exception {
+		executor = new CredentialVerificationExecutor(registry, 1, 8, 1, 100);
+		CountDownLatch finished = new CountDownLatch(1);
+
+		assertThatThrownBy(() -> executor.verify("alice", () -> {
+			try {
+				return blocked("ok");
+			} finally {
+				finished.countDown();
+			}
+		})).isInstanceOf(LoginUnavailableException.class);
+		assertThat(registry.get("auth.login.rejected").tag("reason", "timeout").counter().count()).isEqualTo(1);
+		// la vérification tourne encore : son créneau reste pris
+		assertThatThrownBy(() -> executor.verify("alice", () -> "ok")).isInstanceOf(TooManyLoginAttemptsException.class);
+
+		unblock.countDown();
+		assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+		awaitIdle();
+		assertThat(executor.verify("alice", () -> "ok")).isEqualTo("ok");
+	}
+
+	@Test
+	void releasesTheSlotOfAQueuedVerificationThatTimesOut() throws Exception {
+		executor = new CredentialVerificationExecutor(registry, 1, 8, 1, 100);
+		CountDownLatch started = new CountDownLatch(1);
+		CompletableFuture.runAsync(() -> executor.verify("alice", () -> {
+			started.countDown();
+			return blocked("ok");
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		assertThatThrownBy(() -> executor.verify("bob", () -> "ok")).isInstanceOf(LoginUnavailableException.class);
+		// retirée de la file sans avoir démarré : nouvel essai possible, pas de 429
+		assertThatThrownBy(() -> executor.verify("bob", () -> "ok")).isInstanceOf(LoginUnavailableException.class);
+		assertThat(registry.get("auth.login.queue.depth").gauge().value()).isZero();
+	}
+
+	private String blocked(String value) {
+		// BCrypt n’est pas interruptible : l’attente ne l’est pas non plus
+		while (true) {
+			try {
+				if (unblock.await(10, TimeUnit.MILLISECONDS)) {
+					return value;
+				}
+			} catch (InterruptedException ignored) {
+				// comme un calcul en cours, la tâche va au bout
+			}
+		}
+	}
+
+	/** Attend que le pool ait rendu tous ses threads, donc tous les créneaux des tâches démarrées. */
+	private void awaitIdle() throws InterruptedException {
+		while (registry.get("auth.login.active").gauge().value() > 0
+				|| registry.get("auth.login.queue.depth").gauge().value() > 0) {
+			Thread.sleep(5);
+		}
+	}
+}
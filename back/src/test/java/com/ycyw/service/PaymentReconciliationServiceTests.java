@@ -0,0 +1,132 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.ReconciliationReport;
+import com.ycyw.exception.MalformedStatementException;
+import com.ycyw.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentReconciliationServiceTests {
+
+	@TempDir
+	Path statements;
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private PaymentReconciliationService reconciliation;
+
+	@BeforeEach
+	void setUp() {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		jdbc.update("INSERT INTO \"Agency\" (agency_id, name) VALUES (1, 'Paris')");
+		jdbc.update("INSERT INTO \"User\" (user_id, email, password) VALUES (1, 'bob', 'x')");
+		jdbc.update("""
+				INSERT INTO "Vehicle" (vehicle_id, owner_agency_id, current_agency_id, category, license_plate)
+				VALUES (1, 1, 1, 'citadine', 'AA-001-ZZ')""");
+		jdbc.update("""
+				INSERT INTO "Rental" (rental_id, pickup_agency_id, return_agency_id, user_id, vehicle_id, start_at, end_at,
+				                      amount, currency)
+				VALUES (1, 1, 1, 1, 1, TIMESTAMP WITH TIME ZONE '2026-01-01 10:00:00+00',
+				        TIMESTAMP WITH TIME ZONE '2026-01-02 10:00:00+00', 200.00, 'EUR')""");
+		jdbc.update("""
+				INSERT INTO "Payment" (payment_id, rental_id, amount, currency, status, method, provider_payment_id) VALUES
+				(1, 1, 120.00, 'EUR', 'PENDING', 'card', 'pi_1'), (2, 1, 80.50, 'EUR', 'PENDING', 'card', 'pi_2'),
+				(3, 1, 99.99, 'GBP', 'SUCCEEDED', 'card', 'pi_3'), (4, 1, 10.00, 'EUR', 'PENDING', 'card', 'pi_4'),
+				(5, 1, 45.00, 'USD', 'SUCCEEDED', 'card', 'pi_5')""");
+		// fenêtre de 128 octets : une ligne sur deux ou trois est à cheval sur deux fenêtres
+		reconciliation = new PaymentReconciliationService(new PaymentRepository(jdbc),
+				new TransactionTemplate(new DataSourceTransactionManager(db)), new SimpleMeterRegistry(),
+				statements, 2, new StatementReader(128), Clock.systemUTC());
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	void updatesMatchingPaymentsAndCountsEveryOtherOutcome() throws IOException {
+		Files.writeString(statements.resolve("2026-10-17.csv"), """
+				provider_payment_id,created,status,amount,currency\r
+				pi_1,2026-10-17T08:00:00Z,succeeded,120.0,EUR\r
+				pi_2,2026-10-17T08:01:00Z,FAILED,80.50,EUR
+				pi_3,2026-10-17T08:02:00Z,SUCCEEDED,99.99,GBP
+				pi_4,2026-10-17T08:03:00Z,SUCCEEDED,12.00,EUR
+				pi_404,2026-10-17T08:04:00Z,SUCCEEDED,1.00,EUR
+
+				pi_5,2026-10-17T08:05:00Z,REFUNDED,45.00
+				pi_5,2026-10-17T08:06:00Z,REFUNDED,45,USD
+				pi_1,2026-10-17T08:07:00Z,REFUNDED,120.00,EUR""");
+
+		ReconciliationReport report = reconciliation.reconcile("2026-10-17.csv").orElseThrow();
+
+		assertThat(report.lines()).isEqualTo(7);
+		assertThat(report.updated()).isEqualTo(4);
+		assertThat(report.unchanged()).isEqualTo(1);
+		assertThat(report.unknown()).isEqualTo(1);
+		assertThat(report.amountMismatches()).isEqualTo(1);
+		assertThat(report.malformed()).isEqualTo(1);
+		assertThat(jdbc.queryForList("SELECT status FROM \"Payment\" ORDER BY payment_id", String.class))
+				.containsExactly("REFUNDED", "FAILED", "SUCCEEDED", "PENDING", "REFUNDED");
+	}
+
+	@Test
+	void neverMovesAStatusBackwards() throws IOException {
+		// lots de deux lignes : pi_5 est remboursé dans le premier, puis une ligne plus ancienne le redonne réussi
+		Files.writeString(statements.resolve("replayed.csv"), """
+				provider_payment_id,created,status,amount,currency
+				pi_5,2026-10-17T09:00:00Z,REFUNDED,45.00,USD
+				pi_3,2026-10-17T08:00:00Z,FAILED,99.99,GBP
+				pi_5,2026-10-17T08:00:00Z,SUCCEEDED,45.00,USD
+				pi_2,2026-10-17T08:00:00Z,FAILED,80.50,EUR
+				pi_2,2026-10-17T08:05:00Z,SUCCEEDED,80.50,EUR""");
+
+		ReconciliationReport report = reconciliation.reconcile("replayed.csv").orElseThrow();
+
+		assertThat(report.updated()).isEqualTo(3);
+		assertThat(report.conflicts()).isEqualTo(2);
+		assertThat(jdbc.queryForList("SELECT status FROM \"Payment\" ORDER BY payment_id", String.class))
+				.containsExactly("PENDING", "SUCCEEDED", "SUCCEEDED", "PENDING", "REFUNDED");
+	}
+
+	@Test
+	void readsJsonLinesAndRejectsStatementsItCannotUse() throws IOException {
+		Files.writeString(statements.resolve("statement.jsonl"), """
+				{"provider_payment_id":"pi_1","status":"SUCCEEDED","amount":"120.00","currency":"EUR","fee":{"amount":3}}
+				{"provider_payment_id":"pi_2","status":"FAILED","amount":80.5,"currency":"eur"}
+				{"provider_payment_id":"pi_4","status":"PENDING","amount":10,"currency":"EUR"}
+				not json""");
+
+		ReconciliationReport report = reconciliation.reconcile("statement.jsonl").orElseThrow();
+		assertThat(report.updated()).isEqualTo(2);
+		assertThat(report.malformed()).isEqualTo(2);
+
+		Files.writeString(statements.resolve("no-header.csv"), "pi_1,SUCCEEDED,120.00,EUR\n");
+		assertThatThrownBy(() -> reconciliation.reconcile("no-header.csv")).isInstanceOf(MalformedStatementException.class);
+		assertThatThrownBy(() -> reconciliation.reconcile("../statement.jsonl")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> reconciliation.reconcile("/")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> reconciliation.reconcile("statement.txt")).isInstanceOf(IOException.class);
+	}
+}
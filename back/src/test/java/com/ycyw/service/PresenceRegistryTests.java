@@ -0,0 +1,94 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.InProcessClusterTransport;
+import com.ycyw.cluster.PresenceEvent;
+import com.ycyw.cluster.SessionDirectory;
+import com.ycyw.dto.PresenceDelta;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PresenceRegistryTests {
+
+	private final List<Object> pushed = new ArrayList<>();
+	private final List<PresenceEvent> events = new ArrayList<>();
+	private final SessionDirectory directory = new SessionDirectory(
+			new InProcessClusterTransport(new InProcessClusterTransport.Hub()),
+			event -> events.add((PresenceEvent) event), "node-1");
+	private final PresenceRegistry registry;
+
+	PresenceRegistryTests() {
+		SimpMessagingTemplate messaging = new SimpMessagingTemplate((message, timeout) -> pushed.add(message.getPayload()));
+		messaging.setMessageConverter(new SimpleMessageConverter());
+		registry = new PresenceRegistry(directory, messaging);
+	}
+
+	@Test
+	void tracksClientsAcrossTheirSessionsAndPushesDeltas() {
+		connect("s1", "client-1", null);
+		connect("s2", "client-1", null);
+		deliverEvents();
+		assertThat(registry.snapshot().clients()).containsExactly("client-1");
+		assertThat(pushed).singleElement().isInstanceOfSatisfying(PresenceDelta.class, delta -> {
+			assertThat(delta.kind()).isEqualTo("CLIENT");
+			assertThat(delta.online()).isTrue();
+		});
+
+		disconnect("s1");
+		deliverEvents();
+		assertThat(registry.isClientOnline("client-1")).isTrue();
+
+		disconnect("s2");
+		deliverEvents();
+		assertThat(registry.snapshot().clients()).isEmpty();
+		assertThat(pushed).hasSize(2).last().extracting("online").isEqualTo(false);
+	}
+
+	@Test
+	void reportsOnlineAgentsWithTheirLoad() {
+		registry.load("alice").set(2);
+		connect("s1", "client-1", new UsernamePasswordAuthenticationToken("alice", null,
+				List.of(new SimpleGrantedAuthority("ROLE_EMPLOYEE"))));
+		deliverEvents();
+
+		assertThat(registry.snapshot().agents()).containsOnlyKeys("alice");
+		assertThat(registry.snapshot().agents().get("alice").intValue()).isEqualTo(2);
+		assertThat(pushed).extracting("kind").containsExactlyInAnyOrder("CLIENT", "AGENT");
+	}
+
+	private void deliverEvents() {
+		List<PresenceEvent> pending = List.copyOf(events);
+		events.clear();
+		pending.forEach(registry::onPresence);
+	}
+
+	private void connect(String sessionId, String clientId, Principal user) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+		accessor.setSessionId(sessionId);
+		accessor.setSessionAttributes(Map.of("clientId", clientId));
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		directory.onConnected(new SessionConnectedEvent(this, message, user));
+	}
+
+	private void disconnect(String sessionId) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+		accessor.setSessionId(sessionId);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		directory.onDisconnect(new SessionDisconnectEvent(this, message, sessionId, null));
+	}
+}
@@ -0,0 +1,100 @@
+package com.ycyw.service;
+
+import com.ycyw.cluster.ClusterRelay;
+import com.ycyw.cluster.ClusterTransport;
+import com.ycyw.cluster.InProcessClusterTransport;
+import com.ycyw.cluster.SessionDirectory;
+import com.ycyw.dto.UnreadCount;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.converter.SimpleMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReceiptServiceTests {
+
+	private static final Instant T0 = Instant.parse("2025-01-01T10:00:00Z");
+
+	/** Destinations et compteurs poussés, dans l’ordre. */
+	private final List<String> destinations = new ArrayList<>();
+	private final List<UnreadCount> pushed = new ArrayList<>();
+	private final ReadReceiptService receipts;
+
+	ReadReceiptServiceTests() {
+		SimpMessagingTemplate messaging = new SimpMessagingTemplate((message, timeout) -> {
+			destinations.add(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+			pushed.add((UnreadCount) message.getPayload());
+			return true;
+		});
+		messaging.setMessageConverter(new SimpleMessageConverter());
+		ClusterTransport transport = new InProcessClusterTransport(new InProcessClusterTransport.Hub());
+		SessionDirectory directory = new SessionDirectory(transport, event -> { }, "node-1");
+		ClusterRelay cluster = new ClusterRelay(transport, directory, messaging, Jackson2ObjectMapperBuilder.json().build());
+		JdbcTemplate unusedJdbc = new JdbcTemplate();
+		// service de persistance non démarré : les accusés restent en attente
+		ChatPersistenceService persistence = new ChatPersistenceService(
+				new ConversationRepository(unusedJdbc), new MessageRepository(unusedJdbc),
+				new TransactionTemplate(), new SimpleMeterRegistry(), 16, 10, 10, 10);
+		receipts = new ReadReceiptService(cluster, persistence);
+	}
+
+	@Test
+	void countsUnreadMessagesUntilTheAgentAcknowledges() {
+		for (int i = 0; i < 3; i++) {
+			receipts.onClientMessage("client-a", T0.plusSeconds(i), "alice");
+		}
+		receipts.onClientMessage("client-b", T0, "alice");
+		assertThat(receipts.unreadOf("client-a")).isEqualTo(3);
+		assertThat(receipts.totalOf("alice")).isEqualTo(4);
+		assertThat(pushed.getLast()).isEqualTo(new UnreadCount("client-b", 1, 4, pushed.getLast().timestamp()));
+		assertThat(destinations).containsOnly("/user/alice" + ReadReceiptService.UNREAD_QUEUE);
+
+		receipts.readByAgent("client-a", "alice", T0.plusSeconds(1));
+		assertThat(receipts.unreadOf("client-a")).isEqualTo(1);
+		assertThat(pushed.getLast().unread()).isEqualTo(1);
+		assertThat(pushed.getLast().total()).isEqualTo(2);
+		assertThat(receipts.unreadFor("alice")).extracting(UnreadCount::clientId)
+				.containsExactlyInAnyOrder("client-a", "client-b");
+
+		int pushes = pushed.size();
+		receipts.readByAgent("client-a", "alice", T0);
+		assertThat(pushed).hasSize(pushes);
+	}
+
+	@Test
+	void movesUnreadMessagesToTheAgentTakingOverTheConversation() {
+		receipts.onClientMessage("client-a", T0, null);
+		receipts.onClientMessage("client-a", T0.plusSeconds(1), "alice");
+		assertThat(receipts.totalOf("alice")).isEqualTo(2);
+
+		receipts.onClientMessage("client-a", T0.plusSeconds(2), "bob");
+		assertThat(receipts.totalOf("alice")).isZero();
+		assertThat(receipts.totalOf("bob")).isEqualTo(3);
+
+		receipts.release("client-a");
+		assertThat(receipts.totalOf("bob")).isZero();
+		assertThat(pushed.getLast().unread()).isZero();
+		assertThat(receipts.unreadFor("bob")).isEmpty();
+	}
+
+	@Test
+	void keepsCountingBeyondTheTrackedMessages() {
+		for (int i = 0; i < ReadReceiptService.MAX_TRACKED + 10; i++) {
+			receipts.onClientMessage("client-a", T0.plusMillis(i), "alice");
+		}
+		receipts.readByAgent("client-a", "alice", T0.plusMillis(ReadReceiptService.MAX_TRACKED));
+		assertThat(receipts.unreadOf("client-a")).isEqualTo(9);
+		assertThat(receipts.totalOf("alice")).isEqualTo(9);
+	}
+}
@@ -0,0 +1,109 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.AdminMsg;
+import com.ycyw.dto.SearchHit;
+import com.ycyw.dto.SearchResults;
+import com.ycyw.repository.ConversationRepository;
+import com.ycyw.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SupportSearchServiceTests {
+
+	private static final Instant T0 = Instant.parse("2025-01-01T10:00:00.123456Z");
+
+	@TempDir
+	Path indexDir;
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private SupportSearchService search;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		search = new SupportSearchService(new MessageRepository(jdbc), new SimpleMeterRegistry(),
+				indexDir, false, 1000, 100, 10, 60_000);
+		search.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		search.stop();
+		db.shutdown();
+	}
+
+	@Test
+	void findsTermsAndPhrasesWithFilters() {
+		search.enqueue(new AdminMsg("client-a", null, "GUEST", T0, "Ma réservation YCYW-48213 pour la AB-123-CD", "CHAT"), null);
+		search.enqueue(new AdminMsg("client-a", "alice", "EMPLOYEE", T0.plusSeconds(60), "La réservation est confirmée", "CHAT"), "alice");
+		search.enqueue(new AdminMsg("client-b", null, "GUEST", T0.plusSeconds(120), "Une autre reservation, CD-123-AB", "CHAT"), "bob");
+
+		assertThat(await(() -> search("reservation", null, null, null, null), 3)).hasSize(3);
+		assertThat(search("ab-123-cd", null, null, null, null))
+				.singleElement().extracting(SearchHit::clientId).isEqualTo("client-a");
+		assertThat(search("\"confirmée réservation\"", null, null, null, null)).isEmpty();
+		assertThat(search("réservation ycyw-48213", null, null, null, null))
+				.singleElement().extracting(SearchHit::timestamp).isEqualTo(T0);
+		assertThat(search("reservation", "client-a", null, null, null)).hasSize(2);
+		assertThat(search("reservation", null, "bob", null, null))
+				.singleElement().extracting(SearchHit::clientId).isEqualTo("client-b");
+		assertThat(search("reservation", null, null, T0.plusSeconds(60), T0.plusSeconds(120)))
+				.singleElement().extracting(SearchHit::sender).isEqualTo("alice");
+		assertThat(search("  ", null, null, null, null)).isEmpty();
+	}
+
+	@Test
+	void rebuildsFromTheMessageTableWithoutDuplicates() {
+		ConversationRepository conversations = new ConversationRepository(jdbc);
+		long id = conversations.create("client-a");
+		AdminMsg persisted = new AdminMsg("client-a", null, "GUEST", T0, "Mon véhicule est en panne", "CHAT");
+		new MessageRepository(jdbc).insertAll(List.of(persisted), new long[]{id}, new boolean[1]);
+
+		search.enqueue(persisted, null);
+		search.enqueue(new AdminMsg("client-z", null, "GUEST", T0, "Message absent de la base", "CHAT"), null);
+		assertThat(await(() -> search("panne", null, null, null, null), 1)).hasSize(1);
+		assertThat(await(() -> search("base", null, null, null, null), 1)).hasSize(1);
+
+		assertThat(search.rebuild()).isTrue();
+		await(() -> search.isRebuilding() ? List.of() : List.of(persisted), 1);
+
+		assertThat(search("panne", null, null, null, null)).singleElement()
+				.extracting(SearchHit::timestamp).isEqualTo(T0);
+		assertThat(search("base", null, null, null, null)).isEmpty();
+	}
+
+	private List<SearchHit> search(String q, String clientId, String agent, Instant from, Instant to) {
+		SearchResults results = search.search(q, clientId, agent, from, to, 20);
+		return results.hits();
+	}
+
+	private static <T> List<T> await(Supplier<List<T>> poll, int expected) {
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		List<T> result = poll.get();
+		while (result.size() < expected && System.nanoTime() < deadline) {
+			Thread.onSpinWait();
+			result = poll.get();
+		}
+		return result;
+	}
+}
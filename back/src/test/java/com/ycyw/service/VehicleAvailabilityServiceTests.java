@@ -0,0 +1,146 @@
+package com.ycyw.service;
+
+import com.ycyw.repository.RentalRepository;
+import com.ycyw.repository.VehicleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VehicleAvailabilityServiceTests {
+
+	private static final Instant T0 = Instant.now().truncatedTo(ChronoUnit.DAYS).plus(Duration.ofDays(10));
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private VehicleAvailabilityService availability;
+
+	@BeforeEach
+	void setUp() {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		jdbc.update("INSERT INTO \"Agency\" (agency_id, name) VALUES (1, 'Paris'), (2, 'Lyon')");
+		jdbc.update("INSERT INTO \"User\" (user_id, email, password) VALUES (1, 'bob', 'x')");
+		vehicle(10, 1, "citadine", "AVAILABLE");
+		vehicle(11, 1, "citadine", "BOOKED");
+		vehicle(12, 1, "citadine", "MAINTENANCE");
+		vehicle(13, 1, "SUV", "AVAILABLE");
+		vehicle(14, 2, "citadine", "AVAILABLE");
+		rental(100, 10, T0, T0.plus(Duration.ofDays(2)), "CONFIRMED");
+		rental(101, 11, T0.minus(Duration.ofDays(3)), T0.minus(Duration.ofDays(1)), "IN_PROGRESS");
+		rental(102, 11, T0, T0.plus(Duration.ofDays(1)), "CANCELLED");
+		availability = new VehicleAvailabilityService(new VehicleRepository(jdbc), new RentalRepository(jdbc),
+				new SimpleMeterRegistry());
+		availability.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	void findsFreeVehiclesOfACategoryInAnAgency() {
+		assertThat(available(T0.plus(Duration.ofHours(1)), T0.plus(Duration.ofHours(5)))).containsExactly(11L);
+		assertThat(available(T0.minus(Duration.ofDays(2)), T0.minus(Duration.ofHours(1)))).containsExactly(10L);
+		// bornes demi-ouvertes : la location de 10 se termine exactement au début de la période
+		assertThat(available(T0.plus(Duration.ofDays(2)), T0.plus(Duration.ofDays(3)))).containsExactly(10L, 11L);
+		// une seconde de chevauchement suffit à exclure le véhicule
+		assertThat(available(T0.plus(Duration.ofDays(2)).minusSeconds(1), T0.plus(Duration.ofDays(3))))
+				.containsExactly(11L);
+		assertThat(availability.findAvailable(2, "citadine", T0, T0.plusSeconds(60)).vehicleIds()).containsExactly(14L);
+		assertThat(availability.findAvailable(3, "citadine", T0, T0.plusSeconds(60)).vehicleIds()).isEmpty();
+	}
+
+	@Test
+	void followsRentalAndVehicleChanges() {
+		Instant from = T0.plus(Duration.ofHours(1));
+		Instant to = T0.plus(Duration.ofHours(5));
+
+		jdbc.update("UPDATE \"Rental\" SET status = 'CONFIRMED' WHERE rental_id = 102");
+		availability.rentalChanged(102);
+		assertThat(available(from, to)).isEmpty();
+
+		jdbc.update("UPDATE \"Rental\" SET status = 'CANCELLED' WHERE rental_id = 100");
+		availability.rentalChanged(100);
+		assertThat(available(from, to)).containsExactly(10L);
+
+		jdbc.update("UPDATE \"Vehicle\" SET status = 'AVAILABLE' WHERE vehicle_id = 12");
+		availability.vehicleChanged(12);
+		jdbc.update("UPDATE \"Vehicle\" SET current_agency_id = 2 WHERE vehicle_id = 10");
+		availability.vehicleChanged(10);
+		assertThat(available(from, to)).containsExactly(12L);
+		assertThat(availability.findAvailable(2, "citadine", from, to).vehicleIds()).containsExactly(10L, 14L);
+
+		vehicle(15, 1, "citadine", "AVAILABLE");
+		availability.vehicleChanged(15);
+		rental(103, 15, T0.plus(Duration.ofHours(4)), T0.plus(Duration.ofHours(8)), "CONFIRMED");
+		availability.rentalChanged(103);
+		assertThat(available(from, to)).containsExactly(12L);
+		assertThat(available(T0.plus(Duration.ofHours(8)), T0.plus(Duration.ofHours(9)))).containsExactly(12L, 15L);
+	}
+
+	@Test
+	void overdueRentalsBlockTheVehicleUntilItIsReturned() {
+		Instant now = Instant.now();
+		rental(104, 13, now.minus(Duration.ofDays(3)), now.minus(Duration.ofDays(1)), "OVERDUE");
+		availability.rentalChanged(104);
+		assertThat(availability.findAvailable(1, "SUV", T0, T0.plusSeconds(60)).vehicleIds()).isEmpty();
+
+		jdbc.update("UPDATE \"Rental\" SET status = 'COMPLETED' WHERE rental_id = 104");
+		availability.rentalChanged(104);
+		assertThat(availability.findAvailable(1, "SUV", T0, T0.plusSeconds(60)).vehicleIds()).containsExactly(13L);
+
+		// reconstruction : la location en retard est relue bien que sa fin prévue soit passée
+		jdbc.update("UPDATE \"Rental\" SET status = 'OVERDUE' WHERE rental_id = 104");
+		availability.rebuild();
+		assertThat(availability.findAvailable(1, "SUV", T0, T0.plusSeconds(60)).vehicleIds()).isEmpty();
+	}
+
+	@Test
+	void vehiclesWithoutACurrentAgencyAreNotOffered() {
+		jdbc.update("UPDATE \"Vehicle\" SET current_agency_id = NULL WHERE vehicle_id = 14");
+		availability.vehicleChanged(14);
+		jdbc.update("UPDATE \"Vehicle\" SET is_active = FALSE WHERE vehicle_id = 10");
+		availability.vehicleChanged(10);
+
+		assertThat(availability.findAvailable(2, "citadine", T0, T0.plusSeconds(60)).vehicleIds()).isEmpty();
+		assertThat(availability.findAvailable(0, "citadine", T0, T0.plusSeconds(60)).vehicleIds()).isEmpty();
+		assertThat(available(T0.minus(Duration.ofDays(2)), T0.minus(Duration.ofHours(1)))).isEmpty();
+	}
+
+	private long[] available(Instant from, Instant to) {
+		return availability.findAvailable(1, "citadine", from, to).vehicleIds();
+	}
+
+	private void vehicle(long id, long agencyId, String category, String status) {
+		jdbc.update("""
+				INSERT INTO "Vehicle" (vehicle_id, owner_agency_id, current_agency_id, category, status, license_plate)
+				VALUES (?, ?, ?, ?, ?, ?)""", id, agencyId, agencyId, category, status, "AA-" + id + "-ZZ");
+	}
+
+	private void rental(long id, long vehicleId, Instant start, Instant end, String status) {
+		jdbc.update("""
+				INSERT INTO "Rental" (rental_id, pickup_agency_id, return_agency_id, user_id, vehicle_id, start_at, end_at,
+				                      status, amount, currency)
+				VALUES (?, 1, 1, 1, ?, ?, ?, ?, 100.00, 'EUR')""",
+				id, vehicleId, OffsetDateTime.ofInstant(start, ZoneOffset.UTC), OffsetDateTime.ofInstant(end, ZoneOffset.UTC),
+				status);
+	}
+}
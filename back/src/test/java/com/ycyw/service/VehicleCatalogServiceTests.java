@@ -0,0 +1,106 @@
+package com.ycyw.service;
+
+import com.ycyw.dto.CatalogResults;
+import com.ycyw.dto.CatalogVehicle;
+import com.ycyw.repository.VehicleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VehicleCatalogServiceTests {
+
+	private EmbeddedDatabase db;
+	private JdbcTemplate jdbc;
+	private SimpleMeterRegistry registry;
+	private VehicleCatalogService catalog;
+
+	@BeforeEach
+	void setUp() {
+		db = new EmbeddedDatabaseBuilder()
+				.generateUniqueName(true)
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("db/schema-h2.sql")
+				.build();
+		jdbc = new JdbcTemplate(db);
+		jdbc.update("INSERT INTO \"Agency\" (agency_id, name, city) VALUES (1, 'Paris Gare de Lyon', 'Paris'), (2, 'Lyon Part-Dieu', 'Lyon')");
+		jdbc.update("""
+				INSERT INTO "Vehicle" (vehicle_id, owner_agency_id, current_agency_id, category, acriss_code, brand, model,
+				                       seats, status, license_plate) VALUES
+				(10, 1, 1, 'citadine', 'EDMR', 'Renault', 'Clio', 5, 'AVAILABLE', 'AA-010-ZZ'),
+				(11, 1, 1, 'citadine', 'EDMR', 'Peugeot', '208', 5, 'AVAILABLE', 'AA-011-ZZ'),
+				(12, 1, 1, 'SUV', 'SFAR', 'Peugeot', '5008', 7, 'AVAILABLE', 'AA-012-ZZ'),
+				(13, 2, 2, 'citadine', 'EDMR', 'Renault', 'Clio', 5, 'AVAILABLE', 'AA-013-ZZ'),
+				(14, 2, 2, 'citadine', 'CDMR', 'Renault', 'Megane', 5, 'MAINTENANCE', 'AA-014-ZZ')""");
+		registry = new SimpleMeterRegistry();
+		catalog = new VehicleCatalogService(new VehicleRepository(jdbc), registry, 100);
+		catalog.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		db.shutdown();
+	}
+
+	@Test
+	void filtersPagesAndCountsFacetsWithoutTheirOwnFilter() {
+		CatalogResults all = catalog.search(query(Set.of(), Set.of(), Set.of(), 0, 20));
+		assertThat(all.total()).isEqualTo(4);
+		assertThat(all.vehicles()).extracting(CatalogVehicle::vehicleId).containsExactly(10L, 11L, 12L, 13L);
+		assertThat(all.facets().get("city")).containsExactly(Map.entry("Paris", 3), Map.entry("Lyon", 1));
+		assertThat(all.facets().get("seats")).containsExactly(Map.entry("5", 3), Map.entry("7", 1));
+
+		CatalogResults renaultInParis = catalog.search(query(Set.of(), Set.of("Renault"), Set.of("Paris"), 0, 20));
+		assertThat(renaultInParis.total()).isEqualTo(1);
+		assertThat(renaultInParis.vehicles()).extracting(CatalogVehicle::model).containsExactly("Clio");
+		// les marques ignorent le filtre de marque, les villes celui de ville
+		assertThat(renaultInParis.facets().get("brand")).containsExactly(Map.entry("Peugeot", 2), Map.entry("Renault", 1));
+		assertThat(renaultInParis.facets().get("city")).containsExactly(Map.entry("Lyon", 1), Map.entry("Paris", 1));
+		assertThat(renaultInParis.facets().get("category")).containsExactly(Map.entry("citadine", 1));
+
+		CatalogResults secondPage = catalog.search(query(Set.of("citadine"), Set.of(), Set.of(), 1, 1));
+		assertThat(secondPage.total()).isEqualTo(3);
+		assertThat(secondPage.vehicles()).extracting(CatalogVehicle::vehicleId).containsExactly(11L);
+
+		assertThat(catalog.search(query(Set.of("XXXX"), Set.of(), Set.of(), 0, 20)).total()).isZero();
+	}
+
+	@Test
+	void evictsOnlyTheCachedSearchesAVehicleChangeCanAffect() {
+		VehicleCatalogService.Query lyon = query(Set.of(), Set.of(), Set.of("Lyon"), 0, 20);
+		VehicleCatalogService.Query renaultSuvInParis = query(Set.of("SUV"), Set.of("Renault"), Set.of("Paris"), 0, 20);
+		CatalogResults before = catalog.search(lyon);
+		CatalogResults suv = catalog.search(renaultSuvInParis);
+		assertThat(catalog.search(lyon)).isSameAs(before);
+
+		// 11 (citadine, Peugeot) manque au moins deux filtres de renaultSuvInParis avant comme après : résultat gardé
+		jdbc.update("UPDATE \"Vehicle\" SET current_agency_id = 2 WHERE vehicle_id = 11");
+		catalog.vehicleChanged(11);
+		CatalogResults after = catalog.search(lyon);
+		assertThat(after).isNotSameAs(before);
+		assertThat(after.vehicles()).extracting(CatalogVehicle::vehicleId).containsExactly(11L, 13L);
+		assertThat(catalog.search(renaultSuvInParis)).isSameAs(suv);
+		assertThat(registry.get("catalog.cache.invalidations").counter().count()).isEqualTo(1.0);
+
+		jdbc.update("UPDATE \"Vehicle\" SET status = 'AVAILABLE' WHERE vehicle_id = 14");
+		catalog.vehicleChanged(14);
+		jdbc.update("UPDATE \"Vehicle\" SET status = 'UNAVAILABLE' WHERE vehicle_id = 13");
+		catalog.vehicleChanged(13);
+		assertThat(catalog.search(lyon).vehicles()).extracting(CatalogVehicle::vehicleId).containsExactly(11L, 14L);
+		assertThat(catalog.search(query(Set.of(), Set.of(), Set.of(), 0, 20)).total()).isEqualTo(4);
+	}
+
+	private static VehicleCatalogService.Query query(Set<String> categories, Set<String> brands, Set<String> cities,
+													 int offset, int limit) {
+		return new VehicleCatalogService.Query(categories, brands, Set.of(), cities, offset, limit);
+	}
+}
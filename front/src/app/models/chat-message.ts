@@ -1,6 +1,6 @@
 export interface ChatMessage {
   content: string;
-  type: 'CHAT' | 'JOIN' | 'LEAVE';
+  type: 'CHAT' | 'JOIN' | 'LEAVE' | 'READ';
   sender: string | null;                 // côté serveur: username ou null (guest)
   timestamp: string;
   clientId?: string;
@@ -17,3 +17,34 @@ export interface AdminMsg {
   content: string;
   type: 'CHAT' | 'JOIN' | 'LEAVE';
 }
+
+/** notification d’affectation diffusée à tous les agents (topic admin) */
+export interface ConversationNotice {
+  clientId: string;
+  status: 'ASSIGNED' | 'UNASSIGNED';
+  agent: string | null;
+  timestamp: string;
+}
+
+/** changement de présence poussé aux agents (topic presence) */
+export interface PresenceDelta {
+  kind: 'CLIENT' | 'AGENT';
+  id: string;
+  online: boolean;
+  load: number | null;
+  timestamp: string;
+}
+
+/** état de présence initial (subscribe /app/support.presence) */
+export interface PresenceSnapshot {
+  clients: string[];
+  agents: Record<string, number>;
+}
+
+/** non-lus d’une conversation et total de l’agent (user queue support.unread, subscribe /app/support.unread) */
+export interface UnreadCount {
+  clientId: string;
+  unread: number;
+  total: number;
+  timestamp: string;
+}
@@ -33,6 +33,8 @@ export class Chat implements OnInit, OnDestroy {
   input = signal('');
 
   private stopAuthEffect?: EffectRef;
+  private stopReadEffect?: EffectRef;
+  private lastAck: string | null = null;
   private lastKey: string | null = null;
 
   constructor() {
@@ -48,6 +50,16 @@ export class Chat implements OnInit, OnDestroy {
         this.lastKey = key;
       }
     });
+
+    // Accusé de lecture dès qu’un message du support est visible (fenêtre ouverte)
+    this.stopReadEffect = effect(() => {
+      if (!this.open()) return;
+      const last = [...this.messages()].reverse().find(m => !this.isMine(m) && m.type === 'CHAT');
+      if (last && last.timestamp !== this.lastAck) {
+        this.lastAck = last.timestamp;
+        this.chat.markRead(last.timestamp);
+      }
+    });
   }
 
   ngOnInit(): void {
@@ -98,6 +110,7 @@ export class Chat implements OnInit, OnDestroy {
 
   ngOnDestroy(): void {
     this.stopAuthEffect?.destroy();
+    this.stopReadEffect?.destroy();
   }
 
 }
@@ -49,6 +49,8 @@ export class Support implements OnInit {
   @ViewChild('threadRef') threadRef!: ElementRef<HTMLDivElement>;
 
   convs = signal<Map<string, Conversation>>(new Map());
+  onlineClients = signal<Set<string>>(new Set());
+  totalUnread = signal(0);
   selectedId = signal<string | null>(null);
   messageTrigger = signal(0);
 
@@ -72,6 +74,7 @@ export class Support implements OnInit {
 
 
   private lastOptimisticByClient = new Map<string, { content: string; at: number }>();
+  private lastAckByClient = new Map<string, string>();
 
 
   ngOnInit(): void {
@@ -81,94 +84,153 @@ export class Support implements OnInit {
 
     this.chat.connectSupport();
 
-    this.chat.adminMessages$.subscribe(evt => {
+    // Notifications d’affectation : une conversation en attente apparaît pour tous les agents,
+    // puis disparaît chez les autres dès qu’un agent la prend en charge.
+    this.chat.notices$.subscribe(notice => {
       const map = new Map(this.convs());
+      const existing = Array.from(map.values()).filter(c => c.clientId === notice.clientId);
+      if (notice.status === 'UNASSIGNED' && existing.length === 0) {
+        const key = `guest:${notice.clientId}`;
+        map.set(key, {
+          key,
+          clientId: notice.clientId,
+          display: displayOf(notice),
+          lastAt: Date.now(),
+          unread: 1,
+          messages: []
+        });
+      } else if (notice.status === 'ASSIGNED' && notice.agent !== me.username) {
+        existing.forEach(c => map.delete(c.key));
+        if (existing.some(c => c.key === this.selectedId())) this.selectedId.set(null);
+      } else {
+        return;
+      }
+      this.convs.set(map);
+    });
+
+    // Présence des clients : état initial puis deltas
+    this.chat.presenceSnapshot$.subscribe(snapshot => this.onlineClients.set(new Set(snapshot.clients)));
+    this.chat.presence$.subscribe(delta => {
+      if (delta.kind !== 'CLIENT') return;
+      const online = new Set(this.onlineClients());
+      if (delta.online) online.add(delta.id); else online.delete(delta.id);
+      this.onlineClients.set(online);
+    });
+
+    // Non-lus tenus par le serveur : il fait foi, y compris après un rechargement de la page
+    this.chat.unread$.subscribe(counts => {
+      const map = new Map(this.convs());
+      for (const count of counts) {
+        this.totalUnread.set(count.total);
+        for (const conv of map.values()) {
+          if (conv.clientId !== count.clientId) continue;
+          if (conv.key === this.selectedId()) this.acknowledge(conv);
+          else map.set(conv.key, { ...conv, unread: count.unread });
+        }
+      }
+      this.convs.set(map);
+    });
+
+    // Messages groupés par le serveur (abonnement .batch) : un seul rendu par lot
+    this.chat.adminMessages$.subscribe(batch => {
+      const map = new Map(this.convs());
+      let selectedUpdated = false;
+      for (const evt of batch) {
+        if (this.applyAdminMessage(map, evt)) selectedUpdated = true;
+      }
+      this.convs.set(map);
+
+      if (selectedUpdated) {
+        const selected = this.selectedConv();
+        if (selected) this.acknowledge(selected);
+        this.messageTrigger.update(v => v + 1);
+        queueMicrotask(() => {
+          const el = this.threadRef?.nativeElement;
+          if (el) el.scrollTop = el.scrollHeight;
+        });
+      }
+    });
+  }
 
-      const isSupportMsg = !!evt.role && (evt.role.includes('EMPLOYEE') || evt.role.includes('ROLE_EMPLOYEE'));
+  /** Ajoute un message à sa conversation ; renvoie true si c’est la conversation affichée. */
+  private applyAdminMessage(map: Map<string, Conversation>, evt: any): boolean {
+    const isSupportMsg = !!evt.role && (evt.role.includes('EMPLOYEE') || evt.role.includes('ROLE_EMPLOYEE'));
 
-      let key: string;
-      let existing: Conversation | undefined;
+    let key: string;
+    let existing: Conversation | undefined;
 
 
-      if (isSupportMsg) {
-        const prefKey = this.keyByClientId.get(evt.clientId);
-        if (prefKey && map.has(prefKey)) {
-          key = prefKey;
-          existing = map.get(prefKey);
+    if (isSupportMsg) {
+      const prefKey = this.keyByClientId.get(evt.clientId);
+      if (prefKey && map.has(prefKey)) {
+        key = prefKey;
+        existing = map.get(prefKey);
+      } else {
+
+        const selKey = this.selectedId();
+        const selConv = selKey ? map.get(selKey) : undefined;
+        if (selConv && selConv.clientId === evt.clientId) {
+          key = selKey!;
+          existing = selConv;
         } else {
 
-          const selKey = this.selectedId();
-          const selConv = selKey ? map.get(selKey) : undefined;
-          if (selConv && selConv.clientId === evt.clientId) {
-            key = selKey!;
-            existing = selConv;
+          const candidates = Array.from(map.values()).filter(c => c.clientId === evt.clientId);
+          if (candidates.length > 0) {
+            candidates.sort((a, b) => b.lastAt - a.lastAt);
+            existing = candidates[0];
+            key = existing.key;
           } else {
 
-            const candidates = Array.from(map.values()).filter(c => c.clientId === evt.clientId);
-            if (candidates.length > 0) {
-              candidates.sort((a, b) => b.lastAt - a.lastAt);
-              existing = candidates[0];
-              key = existing.key;
-            } else {
-
-              key = `guest:${evt.clientId}`;
-              existing = undefined;
-            }
+            key = `guest:${evt.clientId}`;
+            existing = undefined;
           }
         }
-      } else {
-        key = convKeyOf(evt);
-        existing = map.get(key);
-
-        this.keyByClientId.set(evt.clientId, key);
       }
+    } else {
+      key = convKeyOf(evt);
+      existing = map.get(key);
 
-      const newMessage: MessageItem = {
-        id: uuid(),
-        from: isSupportMsg ? 'support' : 'client',
-        content: evt.content,
-        at: evt.timestamp,
-        sender: evt.sender ?? null
-      };
-
-      let messages = existing?.messages ?? [];
-      if (isSupportMsg) {
-        const last = this.lastOptimisticByClient.get(evt.clientId);
-        const evtTime = new Date(evt.timestamp).getTime();
-        const echoLikely = !!last && last.content === evt.content && Math.abs(evtTime - last.at) < 2000;
-        if (!echoLikely) messages = [...messages, newMessage];
-        else this.lastOptimisticByClient.delete(evt.clientId);
-      } else {
-        messages = [...messages, newMessage];
-      }
+      this.keyByClientId.set(evt.clientId, key);
+    }
+
+    const newMessage: MessageItem = {
+      id: uuid(),
+      from: isSupportMsg ? 'support' : 'client',
+      content: evt.content,
+      at: evt.timestamp,
+      sender: evt.sender ?? null
+    };
 
-      const display = existing?.display ?? displayOf(evt);
+    let messages = existing?.messages ?? [];
+    if (isSupportMsg) {
+      const last = this.lastOptimisticByClient.get(evt.clientId);
+      const evtTime = new Date(evt.timestamp).getTime();
+      const echoLikely = !!last && last.content === evt.content && Math.abs(evtTime - last.at) < 2000;
+      if (!echoLikely) messages = [...messages, newMessage];
+      else this.lastOptimisticByClient.delete(evt.clientId);
+    } else {
+      messages = [...messages, newMessage];
+    }
 
-      const selected = this.selectedId();
-      const isSelected = selected === key;
+    const display = existing?.display ?? displayOf(evt);
 
-      const updatedConv: Conversation = {
-        key,
-        clientId: evt.clientId,
-        display,
-        lastAt: Date.now(),
-        unread: isSelected ? 0 : (existing?.unread ?? 0) + 1,
-        messages
-      };
+    const selected = this.selectedId();
+    const isSelected = selected === key;
 
-      map.set(key, updatedConv);
-      this.convs.set(map);
+    const updatedConv: Conversation = {
+      key,
+      clientId: evt.clientId,
+      display,
+      lastAt: Date.now(),
+      // compteur poussé par le serveur (unread$) : pas d’incrément local
+      unread: isSelected ? 0 : (existing?.unread ?? 0),
+      messages
+    };
 
-      if (!selected) this.selectedId.set(key);
+    map.set(key, updatedConv);
 
-      if (isSelected) {
-        this.messageTrigger.update(v => v + 1);
-        queueMicrotask(() => {
-          const el = this.threadRef?.nativeElement;
-          if (el) el.scrollTop = el.scrollHeight;
-        });
-      }
-    });
+    if (!selected) this.selectedId.set(key);
+    return isSelected;
   }
 
   select(key: string) {
@@ -180,6 +242,7 @@ export class Support implements OnInit {
       this.convs.set(map);
 
       this.keyByClientId.set(conv.clientId, key);
+      this.acknowledge(conv);
     }
     queueMicrotask(() => {
       const el = this.threadRef?.nativeElement;
@@ -187,6 +250,14 @@ export class Support implements OnInit {
     });
   }
 
+  /** Accuse lecture jusqu’au dernier message du client affiché (une fois par message) */
+  private acknowledge(conv: Conversation) {
+    const last = [...conv.messages].reverse().find(m => m.from === 'client');
+    if (!last || this.lastAckByClient.get(conv.clientId) === last.at) return;
+    this.lastAckByClient.set(conv.clientId, last.at);
+    this.chat.markReadByAgent(conv.clientId, last.at);
+  }
+
   reply(text: string) {
     const key = this.selectedId();
     const msg = text?.trim();
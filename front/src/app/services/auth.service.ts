@@ -1,7 +1,7 @@
 import { inject, Injectable, signal } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
 import { LoginRequest } from '../pages/signin/interfaces/loginRequest.interface';
-import {catchError, map, Observable, of, switchMap, tap, throwError} from 'rxjs';
+import {catchError, finalize, map, Observable, of, shareReplay, switchMap, tap, throwError} from 'rxjs';
 import { Router } from '@angular/router';
 
 export type Role = 'EMPLOYEE'|'CLIENT'|'GUEST';
@@ -14,6 +14,8 @@ const GUEST: Me = { authenticated: false, username: 'guest', role: "GUEST" }
 export class AuthService {
   private http = inject(HttpClient);
   me = signal<Me>(GUEST);
+  /** Renouvellement en cours : un refresh token ne peut être échangé qu'une fois (rotation côté serveur). */
+  private refreshing$?: Observable<UserSessionInformation>;
   constructor(
     private router: Router,
   ) {}
@@ -40,6 +42,8 @@ export class AuthService {
   }
 
   logout() {
+    // révoque la famille du refresh token (cookie limité à /api/refresh)
+    this.http.post<void>('/api/refresh/revoke', {}, { withCredentials: true }).subscribe({ error: () => {} });
     localStorage.removeItem('token');
     sessionStorage.removeItem('chatClientId');
 
@@ -94,13 +98,18 @@ export class AuthService {
   }
 
   getRefreshToken(): Observable<UserSessionInformation> {
-    return this.http.post<UserSessionInformation>('/api/refresh', {}, { withCredentials: true })
-      .pipe(
-        tap((userSession: UserSessionInformation) => {
-          this.saveToken(userSession.token);
-          this.me.set({ authenticated: true, username: userSession.username, role: userSession.role });
-        })
-      );
+    if (!this.refreshing$) {
+      this.refreshing$ = this.http.post<UserSessionInformation>('/api/refresh', {}, { withCredentials: true })
+        .pipe(
+          tap((userSession: UserSessionInformation) => {
+            this.saveToken(userSession.token);
+            this.me.set({ authenticated: true, username: userSession.username, role: userSession.role });
+          }),
+          finalize(() => this.refreshing$ = undefined),
+          shareReplay(1)
+        );
+    }
+    return this.refreshing$;
   }
 
   private handleUnauthorizedError(): Observable<Me> {
@@ -1,9 +1,9 @@
 import { Injectable, signal } from '@angular/core';
-import { Client, IMessage, StompSubscription } from '@stomp/stompjs';
+import { Client, IMessage, IStompSocket, StompSubscription } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 import { Subject } from 'rxjs';
 import { AuthService } from './auth.service';
-import {ChatMessage} from '../models/chat-message';
+import {ChatMessage, ConversationNotice, PresenceDelta, PresenceSnapshot, UnreadCount} from '../models/chat-message';
 import {uuid} from '../utils/uuid.util';
 
 
@@ -12,9 +12,20 @@ export class ChatService {
   private client: Client | null = null;
   private sub: StompSubscription | null = null;
   private mode: 'client' | 'support' | null = null;
+  /** WebSocket natif par défaut ; SockJS si le navigateur ne l’a pas ou si le natif n’a pas abouti */
+  private transport: 'native' | 'sockjs' = typeof WebSocket === 'function' ? 'native' : 'sockjs';
+  private nativeConnected = false;
+  private sockJsConnected = false;
+  /** Pas de nouvel essai du natif avant cet instant (ms epoch) */
+  private nativeRetryAt = 0;
+  private static readonly NATIVE_RETRY_MS = 60_000;
 
   private _clientId = sessionStorage.getItem('chatClientId') ?? uuid();
-  adminMessages$ = new Subject<any>();
+  adminMessages$ = new Subject<any[]>();
+  notices$ = new Subject<ConversationNotice>();
+  presenceSnapshot$ = new Subject<PresenceSnapshot>();
+  presence$ = new Subject<PresenceDelta>();
+  unread$ = new Subject<UnreadCount[]>();
 
   messages = signal<ChatMessage[]>([]);
   connected = signal(false);
@@ -29,6 +40,39 @@ export class ChatService {
 
   get clientId() { return this._clientId; }
 
+  /** `/api/ws` en WebSocket natif ; `/api/ws-chat` (SockJS) en repli */
+  private openSocket(): IStompSocket {
+    return this.transport === 'native'
+      ? new WebSocket('ws://localhost:8080/api/ws')
+      : new SockJS('http://localhost:8080/api/ws-chat');
+  }
+
+  /**
+   * Natif fermé sans avoir été connecté (proxy, pare-feu…) : les reconnexions passent par SockJS.
+   * Le natif est retenté à la fin d’une session SockJS qui avait abouti, au plus une fois par NATIVE_RETRY_MS :
+   * un échec passager ne condamne pas la page au repli.
+   */
+  private onSocketClosed() {
+    this.connected.set(false);
+    if (this.transport === 'native' && !this.nativeConnected) {
+      console.warn('[STOMP] native WebSocket unavailable, falling back to SockJS');
+      this.transport = 'sockjs';
+      this.sockJsConnected = false;
+      this.nativeRetryAt = Date.now() + ChatService.NATIVE_RETRY_MS;
+    } else if (this.transport === 'sockjs' && this.sockJsConnected && typeof WebSocket === 'function'
+      && Date.now() >= this.nativeRetryAt) {
+      console.info('[STOMP] retrying native WebSocket');
+      this.transport = 'native';
+      this.nativeConnected = false;
+    }
+  }
+
+  private onTransportConnected() {
+    this.connected.set(true);
+    if (this.transport === 'native') this.nativeConnected = true;
+    else this.sockJsConnected = true;
+  }
+
   /** Coupe proprement la connexion STOMP et vide l’état local */
   private reset() {
     try { this.sub?.unsubscribe(); } catch {}
@@ -47,7 +91,7 @@ export class ChatService {
 
     this.mode = 'client';
     this.client = new Client({
-      webSocketFactory: () => new SockJS('http://localhost:8080/api/ws-chat'),
+      webSocketFactory: () => this.openSocket(),
       reconnectDelay: 2000,
       beforeConnect: () => {
         const headers: Record<string, string> = { 'X-Client-Id': this.clientId };
@@ -56,7 +100,14 @@ export class ChatService {
         this.client!.connectHeaders = headers;
       },
       onConnect: () => {
-        this.connected.set(true);
+        this.onTransportConnected();
+        // Rejoue l’historique de la conversation (reconnexion, rechargement de page)
+        this.client!.subscribe('/app/support.history', (frame: IMessage) => {
+          try {
+            const page = JSON.parse(frame.body) as { messages: ChatMessage[] };
+            this.messages.set(page.messages ?? []);
+          } catch (e) { console.error('Invalid history payload', e); }
+        });
         this.sub = this.client!.subscribe(`/queue/support/${this.clientId}`, (frame: IMessage) => {
           try {
             const msg = JSON.parse(frame.body) as ChatMessage;
@@ -65,14 +116,14 @@ export class ChatService {
         });
       },
       onStompError: () => this.connected.set(false),
-      onWebSocketClose: () => this.connected.set(false),
+      onWebSocketClose: () => this.onSocketClosed(),
       debug: m => console.log('[STOMP]', m),
     });
 
     this.client.activate();
   }
 
-  sendToSupport(content: string, type: 'CHAT' | 'JOIN' | 'LEAVE' = 'CHAT') {
+  sendToSupport(content: string, type: 'CHAT' | 'JOIN' | 'LEAVE' | 'READ' = 'CHAT') {
 
     if (!this.client || !this.connected()) return;
 
@@ -100,21 +151,40 @@ export class ChatService {
 
     this.mode = 'support';
     this.client = new Client({
-      webSocketFactory: () => new SockJS('http://localhost:8080/api/ws-chat'),
+      webSocketFactory: () => this.openSocket(),
       reconnectDelay: 2000,
       beforeConnect: () => {
         const tok = this.auth.getToken?.();
         this.client!.connectHeaders = tok ? { Authorization: `Bearer ${tok}` } : {};
       },
       onConnect: () => {
-        this.connected.set(true);
-        // ✅ Un EMPLOYEE écoute le topic admin (tous les messages clients)
-        this.sub = this.client!.subscribe('/topic/support.admin', frame => {
+        this.onTransportConnected();
+        // ✅ Un EMPLOYEE reçoit les messages des conversations qui lui sont affectées,
+        // regroupés par le serveur (tableau ordonné, une trame toutes les ~50 ms au plus)
+        this.sub = this.client!.subscribe('/user/queue/support.admin.batch', frame => {
           try { this.adminMessages$.next(JSON.parse(frame.body)); } catch (e) { console.error(e); }
         });
+        // ... et les notifications d’affectation communes à tous les agents
+        this.client!.subscribe('/topic/support.admin', frame => {
+          try { this.notices$.next(JSON.parse(frame.body)); } catch (e) { console.error(e); }
+        });
+        // présence : deltas poussés par le serveur, puis état initial
+        this.client!.subscribe('/topic/support.presence', frame => {
+          try { this.presence$.next(JSON.parse(frame.body)); } catch (e) { console.error(e); }
+        });
+        this.client!.subscribe('/app/support.presence', frame => {
+          try { this.presenceSnapshot$.next(JSON.parse(frame.body)); } catch (e) { console.error(e); }
+        });
+        // non-lus tenus par le serveur : changements poussés, puis état initial
+        this.client!.subscribe('/user/queue/support.unread', frame => {
+          try { this.unread$.next([JSON.parse(frame.body)]); } catch (e) { console.error(e); }
+        });
+        this.client!.subscribe('/app/support.unread', frame => {
+          try { this.unread$.next(JSON.parse(frame.body)); } catch (e) { console.error(e); }
+        });
       },
       onStompError: () => this.connected.set(false),
-      onWebSocketClose: () => this.connected.set(false),
+      onWebSocketClose: () => this.onSocketClosed(),
       debug: m => console.log('[STOMP]', m),
     });
 
@@ -134,6 +204,20 @@ export class ChatService {
     });
   }
 
+  /** Accusé de lecture du client : messages du support lus jusqu’à `upTo` (horodatage ISO du dernier lu) */
+  markRead(upTo: string) {
+    this.sendToSupport(upTo, 'READ');
+  }
+
+  /** Accusé de lecture d’un agent pour une conversation */
+  markReadByAgent(targetClientId: string, upTo: string) {
+    if (!this.client || !this.connected()) return;
+    this.client.publish({
+      destination: '/app/support.reply',
+      body: JSON.stringify({ targetClientId, content: upTo, type: 'READ' })
+    });
+  }
+
   resetConnection(_reconnect: boolean) {
     this.sub?.unsubscribe();
     this.sub = null;